@@ -10,6 +10,7 @@ import tn.esprit.ruya.repositories.IFichierrepo;
 import tn.esprit.ruya.models.Carthago;
 import tn.esprit.ruya.models.Fichier;
 import tn.esprit.ruya.models.User;
+import tn.esprit.ruya.models.FamilleValeur;
 import tn.esprit.ruya.repositories.IUserRepo;
 
 import java.time.LocalDateTime;
@@ -31,13 +32,13 @@ public class DataInitializerCarthago {
         };
     }
 
-    private Carthago.CodeValeur getCodeValeurForCarthago(String type) {
+    private FamilleValeur getCodeValeurForCarthago(String type) {
         return switch (type.toLowerCase()) {
-            case "cheque" -> Carthago.CodeValeur.CHEQUE;
-            case "effet" -> Carthago.CodeValeur.EFFET;
-            case "virement" -> Carthago.CodeValeur.VIREMENT;
-            case "prelevement" -> Carthago.CodeValeur.PRELEVEMENT;
-            default -> Carthago.CodeValeur.CHEQUE; // Par défaut CHEQUE
+            case "cheque" -> FamilleValeur.CHEQUE;
+            case "effet" -> FamilleValeur.EFFET;
+            case "virement" -> FamilleValeur.VIREMENT;
+            case "prelevement" -> FamilleValeur.PRELEVEMENT;
+            default -> FamilleValeur.CHEQUE; // Par défaut CHEQUE
         };
     }
 
@@ -198,7 +199,7 @@ public class DataInitializerCarthago {
             for (int i = 0; i < 50; i++) {
                 Carthago c = new Carthago();
                 c.setNomFichier("cheque_" + String.format("%05d", i + 1));
-                c.setCodeValeur(Carthago.CodeValeur.CHEQUE);
+                c.setCodeValeur(FamilleValeur.CHEQUE);
                 c.setCodEn("22");
                 c.setMontant(1000.0 + (i * 100));
                 c.setNomber(1); // 1 chèque par enregistrement
@@ -0,0 +1,69 @@
+package tn.esprit.ruya.controllers;
+
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import tn.esprit.ruya.services.AmplitudeImportService;
+import tn.esprit.ruya.services.RapprochementAmplitudeService;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/amplitude")
+@AllArgsConstructor
+public class AmplitudeController {
+
+    private final AmplitudeImportService amplitudeImportService;
+    private final RapprochementAmplitudeService rapprochementAmplitudeService;
+
+    /**
+     * Importe un fichier de résultat d'intégration Amplitude déposé dans le dossier d'import
+     */
+    @PostMapping("/import")
+    public ResponseEntity<?> importer(@RequestParam String fichier, @RequestParam Long userId) {
+        try {
+            return ResponseEntity.ok(amplitudeImportService.importer(fichier, userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("❌ Erreur import Amplitude: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("error", "Erreur import Amplitude"));
+        }
+    }
+
+    /**
+     * Recalcule le rapprochement Carthago / Amplitude d'une session (par défaut aujourd'hui)
+     */
+    @PostMapping("/rapprochement")
+    public ResponseEntity<?> rapprocher(@RequestParam(required = false) String session) {
+        try {
+            LocalDate jour = session != null ? LocalDate.parse(session) : LocalDate.now();
+            return ResponseEntity.ok(rapprochementAmplitudeService.rapprocher(jour));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Date de session invalide (AAAA-MM-JJ) : " + session));
+        } catch (Exception e) {
+            System.err.println("❌ Erreur rapprochement Amplitude: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("error", "Erreur rapprochement Amplitude"));
+        }
+    }
+
+    /**
+     * Nombre de chèques par résultat de rapprochement sur une période de sessions
+     */
+    @GetMapping("/rapprochement/synthese")
+    public ResponseEntity<?> synthese(@RequestParam(required = false) String debut,
+                                      @RequestParam(required = false) String fin) {
+        try {
+            LocalDate jourDebut = debut != null ? LocalDate.parse(debut) : LocalDate.now();
+            LocalDate jourFin = fin != null ? LocalDate.parse(fin) : jourDebut;
+            return ResponseEntity.ok(rapprochementAmplitudeService.synthese(jourDebut, jourFin));
+        } catch (DateTimeParseException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Date invalide (AAAA-MM-JJ) : " + e.getParsedString()));
+        } catch (Exception e) {
+            System.err.println("❌ Erreur synthèse rapprochement: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("error", "Erreur synthèse rapprochement"));
+        }
+    }
+}
@@ -3,10 +3,19 @@ package tn.esprit.ruya.controllers;
 import lombok.AllArgsConstructor;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import tn.esprit.ruya.services.ArchivageService;
+import tn.esprit.ruya.services.CarthagoCubeService;
+import tn.esprit.ruya.services.CarthagoSessionSnapshot;
 import tn.esprit.ruya.services.CarthagoService;
+import tn.esprit.ruya.services.FileControleService;
+import tn.esprit.ruya.services.TraceChequeService;
 import tn.esprit.ruya.models.Carthago;
+import tn.esprit.ruya.models.CubeRequestDTO;
+import tn.esprit.ruya.models.FamilleValeur;
 
+import java.util.EnumMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -15,6 +24,11 @@ import java.util.Optional;
 public class CarthagoController {
 
     private final CarthagoService carthagoService;
+    private final ArchivageService archivageService;
+    private final CarthagoCubeService carthagoCubeService;
+    private final CarthagoSessionSnapshot carthagoSessionSnapshot;
+    private final TraceChequeService traceChequeService;
+    private final FileControleService fileControleService;
 
     @GetMapping
     public ResponseEntity<List<Carthago>> getAll() {
@@ -46,4 +60,82 @@ public class CarthagoController {
         carthagoService.delete(id);
         return ResponseEntity.noContent().build();
     }
+
+    // Archivage manuel des sessions clôturées (partitions CARTHAGO / FICHIERS)
+    @PostMapping("/archivage")
+    public ResponseEntity<Map<String, Object>> archiver() {
+        return ResponseEntity.ok(archivageService.archiverSessionsCloturees());
+    }
+
+    // Agrégation multidimensionnelle (dimensions + mesures) en une seule requête
+    @PostMapping("/cube")
+    public ResponseEntity<?> cube(@RequestBody CubeRequestDTO request) {
+        try {
+            return ResponseEntity.ok(carthagoCubeService.calculerCube(request));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("❌ Erreur calcul cube Carthago: " + e.getMessage());
+            return ResponseEntity.internalServerError().body(Map.of("error", "Erreur lors du calcul du cube"));
+        }
+    }
+
+    // Comptage / somme instantanés sur le snapshot en mémoire de la session du jour
+    @GetMapping("/session/snapshot")
+    public ResponseEntity<CarthagoSessionSnapshot.Resultat> snapshotSession(
+            @RequestParam(required = false) Boolean avantCTR,
+            @RequestParam(required = false) Boolean apresCTR,
+            @RequestParam(required = false) Boolean fichierEnv,
+            @RequestParam(required = false) Boolean traiteParCTR,
+            @RequestParam(required = false) Boolean controleEffectue,
+            @RequestParam(required = false) Boolean aVerifier,
+            @RequestParam(required = false) Boolean remiseDouble,
+            @RequestParam(required = false) FamilleValeur codeValeur,
+            @RequestParam(required = false) Carthago.TypeFichier typeFichier,
+            @RequestParam(required = false) Carthago.StatutCheque statutCheque,
+            @RequestParam(required = false) Carthago.Sens sens) {
+        Map<CarthagoSessionSnapshot.Indicateur, Boolean> indicateurs = new EnumMap<>(CarthagoSessionSnapshot.Indicateur.class);
+        indicateurs.put(CarthagoSessionSnapshot.Indicateur.AVANT_CTR, avantCTR);
+        indicateurs.put(CarthagoSessionSnapshot.Indicateur.APRES_CTR, apresCTR);
+        indicateurs.put(CarthagoSessionSnapshot.Indicateur.FICHIER_ENV, fichierEnv);
+        indicateurs.put(CarthagoSessionSnapshot.Indicateur.TRAITE_PAR_CTR, traiteParCTR);
+        indicateurs.put(CarthagoSessionSnapshot.Indicateur.CONTROLE_EFFECTUE, controleEffectue);
+        indicateurs.put(CarthagoSessionSnapshot.Indicateur.A_VERIFIER, aVerifier);
+        indicateurs.put(CarthagoSessionSnapshot.Indicateur.REMISE_DOUBLE, remiseDouble);
+        return ResponseEntity.ok(carthagoSessionSnapshot.compter(indicateurs, codeValeur, typeFichier, statutCheque, sens));
+    }
+
+    // Parcours d'un chèque : Carthago, CTR de sa session et intégration Amplitude
+    @GetMapping("/trace/{numeroCheque}")
+    public ResponseEntity<?> tracerCheque(@PathVariable String numeroCheque,
+                                          @RequestParam(required = false) String banque) {
+        try {
+            return ResponseEntity.ok(traceChequeService.tracer(numeroCheque, banque));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // File de contrôle : réserve un lot de chèques à vérifier pour un opérateur
+    @PostMapping("/controle/reservation")
+    public ResponseEntity<?> reserverCheques(@RequestParam Long userId,
+                                             @RequestParam(defaultValue = "20") int taille) {
+        try {
+            return ResponseEntity.ok(fileControleService.reserver(userId, taille));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    // File de contrôle : valide le contrôle des chèques réservés (controleEffectue / dateControle)
+    @PostMapping("/controle/validation")
+    public ResponseEntity<?> validerControle(@RequestParam Long userId, @RequestBody List<Long> ids) {
+        return ResponseEntity.ok(fileControleService.controler(userId, ids));
+    }
+
+    // File de contrôle : rend des chèques réservés sans les contrôler
+    @PostMapping("/controle/liberation")
+    public ResponseEntity<?> libererCheques(@RequestParam Long userId, @RequestBody List<Long> ids) {
+        return ResponseEntity.ok(Map.of("liberes", fileControleService.liberer(userId, ids)));
+    }
 }
@@ -1,13 +1,21 @@
 package tn.esprit.ruya.controllers;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import tn.esprit.ruya.models.CTR;
+import tn.esprit.ruya.models.CtrListeDTO;
+import tn.esprit.ruya.models.CtrPageDTO;
 import tn.esprit.ruya.repositories.CtrRepository;
+import tn.esprit.ruya.services.GenerationCtrService;
+import tn.esprit.ruya.services.ReceptionCtrService;
+import tn.esprit.ruya.services.ReconciliationCtrService;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @RestController
@@ -22,6 +30,15 @@ public class CtrController {
     @Autowired
     private CtrRepository ctrRepository;
 
+    @Autowired
+    private ReconciliationCtrService reconciliationCtrService;
+
+    @Autowired
+    private GenerationCtrService generationCtrService;
+
+    @Autowired
+    private ReceptionCtrService receptionCtrService;
+
     /**
      * Crée un nouveau CTR
      * @param ctr Données du CTR à créer
@@ -86,6 +103,66 @@ public class CtrController {
         }
     }
 
+    /**
+     * Récupère une page de CTR (pagination par curseur) avec filtres optionnels
+     * @param start Date de début (optionnel, format ISO)
+     * @param end Date de fin (optionnel, format ISO)
+     * @param apresId Curseur : id du dernier CTR de la page précédente
+     * @param apresTs Curseur : date de création de ce CTR (relue en base si absente)
+     * @param taille Nombre d'éléments par page (max 500)
+     * @return Page de CTR et curseur de la page suivante
+     */
+    @GetMapping("/page")
+    public ResponseEntity<CtrPageDTO> getCtrPage(
+            @RequestParam(required = false) String start,
+            @RequestParam(required = false) String end,
+            @RequestParam(required = false) String sessionCtr,
+            @RequestParam(required = false) String statutCtr,
+            @RequestParam(required = false) Boolean equilibre,
+            @RequestParam(required = false) Boolean remiseNonParvenue,
+            @RequestParam(required = false) Long apresId,
+            @RequestParam(required = false) String apresTs,
+            @RequestParam(defaultValue = "50") int taille) {
+        try {
+            LocalDateTime startDate = start != null ? LocalDateTime.parse(start) : LocalDateTime.now().minusDays(1);
+            LocalDateTime endDate = end != null ? LocalDateTime.parse(end) : LocalDateTime.now();
+            int tailleEffective = Math.max(1, Math.min(taille, 500));
+
+            // Curseur (createdAt, id) : la page suivante commence juste avant le dernier CTR affiché
+            Long avantId = Long.MAX_VALUE;
+            if (apresId != null) {
+                LocalDateTime curseurTs = apresTs != null ? LocalDateTime.parse(apresTs)
+                        : ctrRepository.findById(apresId).map(CTR::getCreatedAt).orElse(null);
+                if (curseurTs == null) {
+                    return ResponseEntity.badRequest().build();
+                }
+                if (curseurTs.isBefore(endDate)) {
+                    endDate = curseurTs;
+                    avantId = apresId;
+                } else if (curseurTs.isEqual(endDate)) {
+                    avantId = apresId;
+                }
+            }
+
+            // Un élément de plus pour savoir s'il existe une page suivante
+            List<CtrListeDTO> elements = ctrRepository.findPageByCreatedAtBetween(startDate, endDate,
+                    sessionCtr, statutCtr, equilibre, remiseNonParvenue, avantId,
+                    PageRequest.of(0, tailleEffective + 1));
+            boolean suivant = elements.size() > tailleEffective;
+            if (suivant) {
+                elements = elements.subList(0, tailleEffective);
+            }
+            CtrListeDTO dernier = suivant ? elements.get(elements.size() - 1) : null;
+            return ResponseEntity.ok(new CtrPageDTO(elements, elements.size(), suivant,
+                    dernier != null ? dernier.getId() : null,
+                    dernier != null ? dernier.getCreatedAt() : null));
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la récupération de la page CTR: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
     /**
      * Met à jour un CTR existant
      * @param id ID du CTR à mettre à jour
@@ -179,4 +256,72 @@ public class CtrController {
             return ResponseEntity.internalServerError().build();
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Lance immédiatement une réconciliation des CTR (hors heures d'activité comprises)
+     * @return Résultat du passage, ou VERROUILLE si un autre nœud est en cours
+     */
+    @PostMapping("/reconciliation")
+    public ResponseEntity<Map<String, Object>> lancerReconciliation() {
+        try {
+            return ResponseEntity.ok(reconciliationCtrService.reconcilier());
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la réconciliation CTR: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Retard (watermark) et durée du dernier passage de réconciliation
+     */
+    @GetMapping("/reconciliation/statut")
+    public ResponseEntity<Map<String, Object>> getStatutReconciliation() {
+        try {
+            return ResponseEntity.ok(reconciliationCtrService.statut());
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la lecture du statut de réconciliation: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Génère le fichier aller vers CTR des chèques Carthago éligibles d'une session
+     * @param session Date de session (optionnel, format ISO, par défaut aujourd'hui)
+     * @param userId Utilisateur à l'origine de la génération
+     * @return Fichier produit, nombre de chèques et CTR d'envoi créé
+     */
+    @PostMapping("/generation")
+    public ResponseEntity<?> genererFichierCtr(@RequestParam(required = false) String session,
+                                               @RequestParam Long userId) {
+        try {
+            LocalDate jour = session != null ? LocalDate.parse(session) : LocalDate.now();
+            return ResponseEntity.ok(generationCtrService.generer(jour, userId));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la génération du fichier CTR: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Importe un accusé de réception CTR déposé dans le dossier de réception
+     * @param fichier Nom du fichier (relatif à ruya.ctr.reception-dir)
+     * @return Chèques acceptés, rejetés, non parvenus et inconnus
+     */
+    @PostMapping("/reception")
+    public ResponseEntity<?> importerReception(@RequestParam String fichier) {
+        try {
+            return ResponseEntity.ok(receptionCtrService.importer(fichier));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        } catch (Exception e) {
+            System.err.println("Erreur lors de l'import de l'accusé de réception CTR: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package tn.esprit.ruya.controllers;
+
+import lombok.AllArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import tn.esprit.ruya.services.JobService;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/jobs")
+@AllArgsConstructor
+public class JobController {
+
+    private final JobService jobService;
+
+    // Traitements de masse disponibles
+    @GetMapping("/types")
+    public ResponseEntity<?> types() {
+        return ResponseEntity.ok(jobService.listerTypes());
+    }
+
+    @GetMapping
+    public ResponseEntity<?> lister() {
+        return ResponseEntity.ok(jobService.lister());
+    }
+
+    // Crée et démarre un job : POST /api/jobs?type=CARTHAGO_REMISE_DOUBLE&workers=4&tailleChunk=5000
+    @PostMapping
+    public ResponseEntity<?> creer(@RequestParam String type,
+                                   @RequestParam(required = false) Integer workers,
+                                   @RequestParam(required = false) Integer tailleChunk) {
+        try {
+            return ResponseEntity.ok(jobService.creer(type, workers, tailleChunk));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> suivre(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(jobService.suivre(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/{id}/pause")
+    public ResponseEntity<?> pause(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(jobService.mettreEnPause(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        }
+    }
+
+    @PostMapping("/{id}/reprise")
+    public ResponseEntity<?> reprendre(@PathVariable Long id) {
+        try {
+            return ResponseEntity.ok(jobService.demarrer(id));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.notFound().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.badRequest().body(Map.of("error", e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package tn.esprit.ruya.controllers;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import tn.esprit.ruya.models.AbonnementDigest;
+import tn.esprit.ruya.services.DigestNotificationsService;
+import tn.esprit.ruya.services.MailService;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/mails")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class MailController {
+
+    private final MailService mailService;
+    private final DigestNotificationsService digestService;
+
+    // État de la file d'envoi des emails
+    @GetMapping("/statut")
+    public ResponseEntity<Map<String, Object>> statut() {
+        return ResponseEntity.ok(mailService.statut());
+    }
+
+    // Envoi immédiat des emails en attente (sans attendre le prochain passage)
+    @PostMapping("/envoyer")
+    public ResponseEntity<Map<String, Integer>> envoyer() {
+        return ResponseEntity.ok(Map.of("envoyes", mailService.envoyer()));
+    }
+
+    // Inscription / désinscription au récapitulatif des notifications
+    @PutMapping("/digest/{userId}")
+    public ResponseEntity<AbonnementDigest> abonner(@PathVariable Long userId,
+                                                    @RequestParam(defaultValue = "true") boolean actif) {
+        return ResponseEntity.ok(digestService.abonner(userId, actif));
+    }
+
+    @GetMapping("/digest/{userId}")
+    public ResponseEntity<AbonnementDigest> getAbonnement(@PathVariable Long userId) {
+        AbonnementDigest abonnement = digestService.getAbonnement(userId);
+        return abonnement != null ? ResponseEntity.ok(abonnement) : ResponseEntity.notFound().build();
+    }
+
+    // Envoi manuel des récapitulatifs
+    @PostMapping("/digest/envoyer")
+    public ResponseEntity<Map<String, Integer>> envoyerDigests() {
+        return ResponseEntity.ok(Map.of("emails", digestService.envoyerDigests()));
+    }
+}
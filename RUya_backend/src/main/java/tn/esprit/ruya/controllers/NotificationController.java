@@ -1,12 +1,28 @@
 package tn.esprit.ruya.controllers;
 
 import lombok.AllArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tn.esprit.ruya.models.Fichier;
 import tn.esprit.ruya.models.Notification;
+import tn.esprit.ruya.models.NotificationPageDTO;
+import tn.esprit.ruya.models.NotificationSynthese;
+import tn.esprit.ruya.repositories.NotificationSyntheseRepository;
+import tn.esprit.ruya.services.NotificationOutboxService;
+import tn.esprit.ruya.services.NotificationRechercheService;
+import tn.esprit.ruya.services.NotificationRetentionService;
 import tn.esprit.ruya.services.NotificationService;
+import tn.esprit.ruya.services.NotificationStreamService;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @RestController
 @AllArgsConstructor
@@ -15,6 +31,11 @@ import java.util.List;
 public class NotificationController {
 
     private NotificationService notificationService;
+    private NotificationOutboxService notificationOutboxService;
+    private NotificationStreamService notificationStreamService;
+    private NotificationRetentionService notificationRetentionService;
+    private NotificationSyntheseRepository notificationSyntheseRepository;
+    private NotificationRechercheService notificationRechercheService;
 
     // Récupérer toutes les notifications
     @GetMapping
@@ -22,6 +43,103 @@ public class NotificationController {
         return ResponseEntity.ok(notificationService.getAllNotifications());
     }
 
+    /**
+     * Fil de notifications paginé par curseur (cloche) : projection allégée, coût constant
+     * quel que soit l'historique
+     * @param userId Utilisateur (optionnel, toutes les notifications sinon)
+     * @param lu Filtre lu / non lu (optionnel)
+     * @param avantTs Curseur : timestamp de la dernière notification affichée (page plus ancienne)
+     * @param avantId Curseur : id de la dernière notification affichée
+     * @param apresTs Curseur : timestamp de la plus récente affichée (nouvelles notifications)
+     * @param apresId Curseur : id de la plus récente affichée
+     * @param taille Nombre d'éléments par page (max 100)
+     * @return Page de notifications et curseur de la page suivante
+     */
+    @GetMapping("/flux")
+    public ResponseEntity<?> getFlux(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Boolean lu,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime avantTs,
+            @RequestParam(required = false) Long avantId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime apresTs,
+            @RequestParam(required = false) Long apresId,
+            @RequestParam(defaultValue = "20") int taille) {
+        if (avantTs != null && apresTs != null) {
+            return ResponseEntity.badRequest().body(Map.of("error", "avantTs et apresTs sont exclusifs"));
+        }
+        try {
+            int tailleEffective = Math.max(1, Math.min(taille, 100));
+            NotificationPageDTO page = notificationService.getFlux(userId, lu, avantTs, avantId,
+                    apresTs, apresId, tailleEffective);
+            return ResponseEntity.ok(page);
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la récupération du fil de notifications: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    /**
+     * Flux temps réel (Server-Sent Events) : événements "notifications" (lots) et "perte"
+     * (notifications écartées, recharger via /flux)
+     * @param userId Utilisateur (optionnel, toutes les notifications sinon)
+     * @param types Types de notification (optionnel, tous sinon)
+     * @param dernierId Dernière version reçue (id des événements), pour le rattrapage (sinon en-tête Last-Event-ID)
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> stream(
+            @RequestParam(required = false) Long userId,
+            @RequestParam(required = false) Set<Notification.NotificationType> types,
+            @RequestParam(required = false) Long dernierId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = notificationStreamService.abonner(userId, types,
+                dernierId != null ? dernierId : lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+
+    @GetMapping("/stream/statut")
+    public ResponseEntity<Map<String, Object>> statutStream() {
+        return ResponseEntity.ok(notificationStreamService.statut());
+    }
+
+    /**
+     * Recherche plein texte (titre, message, nom du fichier), insensible aux accents et à la casse
+     * @param q Texte recherché (le dernier mot est un préfixe)
+     * @param page Numéro de page (0 = premiers résultats)
+     * @param taille Nombre d'éléments par page (max 100)
+     * @return Résultats classés par pertinence puis récence
+     */
+    @GetMapping("/recherche")
+    public ResponseEntity<?> rechercher(@RequestParam String q,
+                                        @RequestParam(defaultValue = "0") int page,
+                                        @RequestParam(defaultValue = "20") int taille) {
+        if (page < 0) {
+            return ResponseEntity.badRequest().body(Map.of("error", "page doit être positive"));
+        }
+        try {
+            return ResponseEntity.ok(notificationRechercheService.rechercher(q, page,
+                    Math.max(1, Math.min(taille, 100))));
+        } catch (Exception e) {
+            System.err.println("Erreur lors de la recherche de notifications: " + e.getMessage());
+            e.printStackTrace();
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/recherche/statut")
+    public ResponseEntity<Map<String, Object>> statutRecherche() {
+        return ResponseEntity.ok(notificationRechercheService.statut());
+    }
+
+    // Reconstruction manuelle de l'index de recherche depuis la base
+    @PostMapping("/recherche/reconstruire")
+    public ResponseEntity<Map<String, Object>> reconstruireIndex() {
+        return ResponseEntity.ok(notificationRechercheService.reconstruire());
+    }
+
     // Récupérer toutes les notifications d'un utilisateur
     @GetMapping("/user/{userId}")
     public ResponseEntity<List<Notification>> getNotificationsByUser(@PathVariable Long userId) {
@@ -40,6 +158,12 @@ public class NotificationController {
         return ResponseEntity.ok(notificationService.getNotificationsNonLuesByUser(userId));
     }
 
+    // Fichiers d'une notification regroupée (trace fichier par fichier, si activée)
+    @GetMapping("/{id}/fichiers")
+    public ResponseEntity<List<Fichier>> getFichiersRegroupes(@PathVariable Long id) {
+        return ResponseEntity.ok(notificationService.getFichiersRegroupes(id));
+    }
+
     // Marquer une notification comme lue
     @PutMapping("/{id}/marquer-lue")
     public ResponseEntity<Notification> marquerCommeLue(@PathVariable Long id) {
@@ -51,11 +175,22 @@ public class NotificationController {
         }
     }
 
-    // Marquer toutes les notifications comme lues
+    // Marquer toutes les notifications comme lues, jusqu'à la dernière affichée (id et/ou date)
     @PutMapping("/marquer-toutes-lues")
-    public ResponseEntity<Void> marquerToutesCommeLues() {
-        notificationService.marquerToutesCommeLues();
-        return ResponseEntity.ok().build();
+    public ResponseEntity<Map<String, Integer>> marquerToutesCommeLues(
+            @RequestParam(required = false) Long jusquaId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime jusqua) {
+        return ResponseEntity.ok(Map.of("marquees", notificationService.marquerToutesCommeLues(jusquaId, jusqua)));
+    }
+
+    // Marquer toutes les notifications d'un utilisateur comme lues
+    @PutMapping("/user/{userId}/marquer-toutes-lues")
+    public ResponseEntity<Map<String, Integer>> marquerToutesCommeLuesByUser(
+            @PathVariable Long userId,
+            @RequestParam(required = false) Long jusquaId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime jusqua) {
+        return ResponseEntity.ok(Map.of("marquees",
+                notificationService.marquerToutesCommeLuesByUser(userId, jusquaId, jusqua)));
     }
 
     // Compter les notifications non lues
@@ -69,4 +204,29 @@ public class NotificationController {
     public ResponseEntity<Long> countNotificationsNonLuesByUser(@PathVariable Long userId) {
         return ResponseEntity.ok(notificationService.countNotificationsNonLuesByUser(userId));
     }
-}
\ No newline at end of file
+
+    // État de l'outbox des notifications (événements en attente / abandonnés)
+    @GetMapping("/outbox/statut")
+    public ResponseEntity<Map<String, Object>> statutOutbox() {
+        return ResponseEntity.ok(notificationOutboxService.statut());
+    }
+
+    // Purge manuelle des notifications expirées (rétention lues / non lues)
+    @PostMapping("/retention")
+    public ResponseEntity<Map<String, Object>> purger() {
+        return ResponseEntity.ok(notificationRetentionService.purger());
+    }
+
+    @GetMapping("/retention/statut")
+    public ResponseEntity<Map<String, Object>> statutRetention() {
+        return ResponseEntity.ok(notificationRetentionService.statut());
+    }
+
+    // Synthèse journalière des notifications purgées
+    @GetMapping("/synthese")
+    public ResponseEntity<List<NotificationSynthese>> getSynthese(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate debut,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fin) {
+        return ResponseEntity.ok(notificationSyntheseRepository.findByJourBetweenOrderByJourAsc(debut, fin));
+    }
+}
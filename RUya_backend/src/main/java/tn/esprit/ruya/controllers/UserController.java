@@ -1,5 +1,6 @@
 package tn.esprit.ruya.controllers;
 
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
 import tn.esprit.ruya.models.ConfirmResetCodeDto;
 import tn.esprit.ruya.models.User;
@@ -103,14 +104,14 @@ public class UserController {
     }
 
     @PostMapping("/reset-password")
-    public ResponseEntity<?> resetPassword(@RequestBody Map<String, String> body) {
+    public ResponseEntity<?> resetPassword(@RequestBody Map<String, String> body, HttpServletRequest request) {
         String email = body.get("email");
-        return userServ.generateAndSendResetCode(email);
+        return userServ.generateAndSendResetCode(email, request.getRemoteAddr());
     }
 
     @PostMapping("/confirm-reset-password")
-    public ResponseEntity<?> confirmResetPassword(@RequestBody ConfirmResetCodeDto dto) {
-        return userServ.confirmResetCode(dto);
+    public ResponseEntity<?> confirmResetPassword(@RequestBody ConfirmResetCodeDto dto, HttpServletRequest request) {
+        return userServ.confirmResetCode(dto, request.getRemoteAddr());
     }
 
     @PutMapping("/{id}/status")
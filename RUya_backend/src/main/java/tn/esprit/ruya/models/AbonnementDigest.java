@@ -0,0 +1,33 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Inscription d'un utilisateur au récapitulatif périodique des notifications par email.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "ABONNEMENTS_DIGEST")
+public class AbonnementDigest {
+
+    @Id
+    @Column(name = "ID_USER")
+    private Long idUser;
+
+    @Column(name = "ACTIF", nullable = false)
+    private Boolean actif = true;
+
+    @Column(name = "DERNIER_ENVOI")
+    private LocalDateTime dernierEnvoi; // notifications récapitulées jusqu'à cette date
+
+    public AbonnementDigest(Long idUser) {
+        this.idUser = idUser;
+    }
+}
@@ -12,7 +12,9 @@ import java.time.LocalDateTime;
 @Setter
 @Entity
 @NoArgsConstructor
-@Table(name = "AMPLITUDE")
+@Table(name = "AMPLITUDE", indexes = {
+        @Index(name = "IDX_AMPLITUDE_NUMERO_MONTANT", columnList = "NUMERO_CHEQUE, MONTANT")
+})
 public class Amplitude {
 
     @Id
@@ -20,7 +22,7 @@ public class Amplitude {
     @Column(name = "ID_AMPLITUDE")
     private Long id;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
     @JoinColumn(name = "ID_USER", nullable = false)
     private User user;
@@ -0,0 +1,89 @@
+package tn.esprit.ruya.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Agrégats de la table AMPLITUDE sur une période, issus d'une seule requête
+ * groupée par type de chèque et statut de traitement.
+ */
+@Data
+@NoArgsConstructor
+public class AmplitudeAgregatDTO {
+
+    // === VOLUMES ===
+    private long nbChequeINTRA;
+    private long nbChequeINTER;
+    private long nbIntegre;
+    private long nbRejete;
+    private long nbEnCours;
+
+    // === MONTANTS (en millimes, accumulés sans arrondi) ===
+    private long millimesTotal;
+    private long millimesIntegre;
+    private long millimesRejete;
+
+    // === LATENCE (réception -> statut final, en secondes) ===
+    private Double latenceMoyenneSecondes;
+
+    public long getTotal() {
+        return nbChequeINTRA + nbChequeINTER;
+    }
+
+    public double getMontantTotal() {
+        return Montant.versDinars(millimesTotal);
+    }
+
+    public double getMontantIntegre() {
+        return Montant.versDinars(millimesIntegre);
+    }
+
+    public double getMontantRejete() {
+        return Montant.versDinars(millimesRejete);
+    }
+
+    /**
+     * Construit les agrégats à partir des lignes
+     * [typeCheque, statutTraitement, nombre, millimes, latenceMoyenne, nombreLatences].
+     */
+    public static AmplitudeAgregatDTO depuisLignes(List<Object[]> lignes) {
+        AmplitudeAgregatDTO agregat = new AmplitudeAgregatDTO();
+        double latenceCumulee = 0;
+        long nombreLatences = 0;
+
+        for (Object[] ligne : lignes) {
+            String type = (String) ligne[0];
+            String statut = (String) ligne[1];
+            long nombre = ((Number) ligne[2]).longValue();
+            long millimes = Montant.millimes((Number) ligne[3]);
+
+            if ("INTER".equals(type)) {
+                agregat.nbChequeINTER += nombre;
+            } else {
+                agregat.nbChequeINTRA += nombre;
+            }
+            agregat.millimesTotal += millimes;
+
+            if ("INTEGRE".equals(statut)) {
+                agregat.nbIntegre += nombre;
+                agregat.millimesIntegre += millimes;
+            } else if ("REJETE".equals(statut)) {
+                agregat.nbRejete += nombre;
+                agregat.millimesRejete += millimes;
+            } else {
+                agregat.nbEnCours += nombre;
+            }
+
+            if (ligne[4] != null) {
+                long n = ((Number) ligne[5]).longValue();
+                latenceCumulee += ((Number) ligne[4]).doubleValue() * n;
+                nombreLatences += n;
+            }
+        }
+
+        agregat.latenceMoyenneSecondes = nombreLatences > 0 ? latenceCumulee / nombreLatences : null;
+        return agregat;
+    }
+}
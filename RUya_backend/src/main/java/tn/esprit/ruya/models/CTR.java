@@ -1,5 +1,6 @@
 package tn.esprit.ruya.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Getter;
@@ -12,7 +13,11 @@ import java.time.LocalDateTime;
 @Setter
 @Entity
 @NoArgsConstructor
-@Table(name = "CTR")
+@Table(name = "CTR", indexes = {
+        @Index(name = "IDX_CTR_CREATED_AT_ID", columnList = "CREATED_AT, ID_CTR"),
+        @Index(name = "IDX_CTR_UPDATED_AT", columnList = "UPDATED_AT"),
+        @Index(name = "IDX_CTR_CODE_VALEUR", columnList = "CODE_VALEUR_ID, CREATED_AT")
+})
 public class CTR {
 
     @Id
@@ -20,7 +25,7 @@ public class CTR {
     @Column(name = "ID_CTR")
     private Long id;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnoreProperties({ "hibernateLazyInitializer", "handler" })
     @JoinColumn(name = "ID_USER", nullable = false)
     private User user;
@@ -38,6 +43,12 @@ public class CTR {
     @Column(name = "CODE_VALEUR")
     private String codeValeur; // CTR, ENV, DOUBLE
 
+    // Entrée du dictionnaire partagé, dérivée de codeValeur (voir CodeValeur)
+    @Convert(converter = CodeValeurConverter.class)
+    @Column(name = "CODE_VALEUR_ID", precision = 5)
+    @JsonIgnore
+    private CodeValeur codeValeurRef;
+
     @Column(name = "MONTANT")
     private Double montant;
 
@@ -51,16 +62,20 @@ public class CTR {
     @Column(name = "NOMBRE_FICHIERS")
     private Integer nombreFichiers; // éléments venant des Fichiers
 
-    @Column(name = "MONTANT_CARTHAGO")
+    // Montants d'équilibrage stockés en millimes (NUMBER(19)) : comparaison exacte
+    @Convert(converter = MontantMillimesConverter.class)
+    @Column(name = "MONTANT_CARTHAGO_MILLIMES", precision = 19)
     private Double montantCarthago;
 
-    @Column(name = "MONTANT_FICHIERS")
+    @Convert(converter = MontantMillimesConverter.class)
+    @Column(name = "MONTANT_FICHIERS_MILLIMES", precision = 19)
     private Double montantFichiers;
 
     @Column(name = "EQUILIBRE")
     private Boolean equilibre; // true si Carthago + Fichiers = CTR
 
-    @Column(name = "DIFFERENCE")
+    @Convert(converter = MontantMillimesConverter.class)
+    @Column(name = "DIFFERENCE_MILLIMES", precision = 19)
     private Double difference; // écart éventuel
 
     // === VARIABLES DE GÉNÉRATION VERS CTR ===
@@ -108,19 +123,12 @@ public class CTR {
     @PrePersist
     private void prePersist() {
         this.createdAt = LocalDateTime.now();
+        this.codeValeurRef = CodeValeur.parCode(codeValeur);
     }
 
     @PreUpdate
     private void preUpdate() {
         this.updatedAt = LocalDateTime.now();
-    }
-
-    // === ENUMS ===
-    // Types de valeur (codeValeur) - Types de documents bancaires
-    public enum CodeValeur {
-        CHEQUE, // Chèques
-        EFFET, // Effets de commerce
-        PRELEVEMENT, // Prélèvements
-        VIREMENT // Virements
+        this.codeValeurRef = CodeValeur.parCode(codeValeur);
     }
 }
\ No newline at end of file
@@ -1,10 +1,12 @@
 package tn.esprit.ruya.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
 import org.hibernate.annotations.UpdateTimestamp;
+import tn.esprit.ruya.services.CarthagoSnapshotListener;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
@@ -14,7 +16,14 @@ import java.time.LocalDateTime;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "CARTHAGO")
+@Table(name = "CARTHAGO", indexes = {
+        @Index(name = "IDX_CARTHAGO_UPDATED_AT", columnList = "UPDATED_AT"),
+        @Index(name = "IDX_CARTHAGO_NUMERO_CHEQUE", columnList = "NUMERO_CHEQUE, BANQUE_EMETTRICE"),
+        @Index(name = "IDX_CARTHAGO_CODE_ENV", columnList = "CODE_ENV"),
+        @Index(name = "IDX_CARTHAGO_A_CONTROLER", columnList = "CONTROLE_EFFECTUE, A_VERIFIER, STATUT_IMAGE"),
+        @Index(name = "IDX_CARTHAGO_CODE_VALEUR", columnList = "CODE_VALEUR_ID, CREATED_AT")
+})
+@EntityListeners(CarthagoSnapshotListener.class)
 public class Carthago {
 
     @Id
@@ -42,7 +51,13 @@ public class Carthago {
 
     @Column(name = "CODE_VALEUR", nullable = false)
     @Enumerated(EnumType.STRING)
-    private CodeValeur codeValeur;
+    private FamilleValeur codeValeur;
+
+    // Entrée du dictionnaire partagé, dérivée de codeValeur (voir CodeValeur)
+    @Convert(converter = CodeValeurConverter.class)
+    @Column(name = "CODE_VALEUR_ID", precision = 5)
+    @JsonIgnore
+    private CodeValeur codeValeurRef;
 
     @Column(name = "COD_EN")
     private String codEn;
@@ -113,6 +128,13 @@ public class Carthago {
     @Column(name = "DATE_CONTROLE")
     private LocalDateTime dateControle;
 
+    // === RÉSERVATION PAR UN OPÉRATEUR (file de contrôle) ===
+    @Column(name = "RESERVE_PAR")
+    private Long reservePar; // id de l'utilisateur détenteur du bail
+
+    @Column(name = "RESERVE_JUSQUA")
+    private LocalDateTime reserveJusqua; // expiration du bail
+
     // === TIMESTAMPS ===
     @CreationTimestamp
     @Column(name = "CREATED_AT", updatable = false)
@@ -122,6 +144,12 @@ public class Carthago {
     @Column(name = "UPDATED_AT")
     private LocalDateTime updatedAt;
 
+    @PrePersist
+    @PreUpdate
+    private void synchroniserCodeValeur() {
+        this.codeValeurRef = CodeValeur.pourFamille(codeValeur);
+    }
+
     // === ENUMS ===
     public enum TypeFichier {
         ELECTRONIQUE, MANUEL, WEB
@@ -135,14 +163,6 @@ public class Carthago {
         ENTRANT, SORTANT
     }
 
-    // Types de valeur (codeValeur) - Types de documents bancaires
-    public enum CodeValeur {
-        CHEQUE, // Chèques
-        EFFET, // Effets de commerce
-        PRELEVEMENT, // Prélèvements
-        VIREMENT // Virements
-    }
-
     // Statuts des chèques
     public enum StatutCheque {
         TRAITE, EN_COURS, REJETE, PENDING
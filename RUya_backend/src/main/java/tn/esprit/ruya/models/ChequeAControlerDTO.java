@@ -0,0 +1,25 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Chèque réservé par un opérateur dans la file de contrôle
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class ChequeAControlerDTO {
+
+    private Long id;
+    private String nomFichier;
+    private String numeroCheque;
+    private String banqueEmettrice;
+    private Double montant;
+    private Integer statutImage;
+    private Boolean aVerifier;
+    private LocalDateTime reserveJusqua;
+}
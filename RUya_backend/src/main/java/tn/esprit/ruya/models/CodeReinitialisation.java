@@ -0,0 +1,47 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Code de réinitialisation de mot de passe partagé entre les nœuds
+ * (ruya.reset.stockage=base) : empreinte du code, expiration, essais et
+ * compteur d'envois de la fenêtre de limitation.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "CODES_REINITIALISATION", indexes = {
+        @Index(name = "IDX_CODES_REINIT_EXPIRATION", columnList = "EXPIRATION")
+})
+public class CodeReinitialisation {
+
+    @Id
+    @Column(name = "EMAIL")
+    private String email;
+
+    @Column(name = "EMPREINTE", length = 64)
+    private String empreinte; // HMAC du code (EmpreinteCodes), null = pas de code actif
+
+    @Column(name = "EXPIRATION")
+    private LocalDateTime expiration;
+
+    @Column(name = "TENTATIVES", nullable = false)
+    private int tentatives;
+
+    @Column(name = "FENETRE_DEBUT", nullable = false)
+    private LocalDateTime fenetreDebut;
+
+    @Column(name = "ENVOIS", nullable = false)
+    private int envois;
+
+    public CodeReinitialisation(String email, LocalDateTime fenetreDebut) {
+        this.email = email;
+        this.fenetreDebut = fenetreDebut;
+    }
+}
@@ -0,0 +1,143 @@
+package tn.esprit.ruya.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dictionnaire partagé des codes valeur (code -> famille, statut, libellé).
+ *
+ * Les entités gardent le code saisi (CODE_VALEUR, texte ou numérique) et
+ * stockent en plus son identifiant dans une colonne NUMBER(5) indexée
+ * (CODE_VALEUR_ID, via CodeValeurConverter) : les filtres sont des égalités
+ * d'entiers et la classification se fait par consultation de tables en mémoire
+ * construites une seule fois.
+ *
+ * CODE_VALEUR_ID est dérivé du code par @PrePersist / @PreUpdate : les lignes
+ * écrites hors JPA (SQL, JdbcTemplate) le laissent vide jusqu'au passage de
+ * RattrapageCodeValeurService.
+ */
+public enum CodeValeur {
+
+    // Codes texte
+    CHEQUE(1, "CHEQUE", FamilleValeur.CHEQUE, Statut.REMIS, "Chèque"),
+    EFFET(2, "EFFET", FamilleValeur.EFFET, null, "Effet de commerce"),
+    PRELEVEMENT(3, "PRELEVEMENT", FamilleValeur.PRELEVEMENT, null, "Prélèvement"),
+    VIREMENT(4, "VIREMENT", FamilleValeur.VIREMENT, null, "Virement"),
+
+    // Codes numériques des fichiers
+    VIREMENT_10(10, "10", FamilleValeur.VIREMENT, null, "Virement"),
+    PRELEVEMENT_20(20, "20", FamilleValeur.PRELEVEMENT, null, "Prélèvement"),
+    CHEQUE_30(30, "30", FamilleValeur.CHEQUE, Statut.REMIS, "Chèque remis"),
+    CHEQUE_31(31, "31", FamilleValeur.CHEQUE, Statut.REMIS, "Chèque remis"),
+    CHEQUE_32(32, "32", FamilleValeur.CHEQUE, Statut.REJETE, "Chèque rejeté"),
+    CHEQUE_33(33, "33", FamilleValeur.CHEQUE, Statut.REJETE, "Chèque rejeté"),
+    CHEQUE_34(34, "34", FamilleValeur.CHEQUE, Statut.RENDU, "Chèque rendu"),
+    EFFET_40(40, "40", FamilleValeur.EFFET, null, "Effet"),
+    EFFET_41(41, "41", FamilleValeur.EFFET, null, "Effet");
+
+    // Statut porté par le code (chèques uniquement, null = en attente)
+    public enum Statut {
+        REMIS, REJETE, RENDU
+    }
+
+    private static final CodeValeur[] PAR_ID;
+    private static final Map<String, CodeValeur> PAR_CODE = new HashMap<>();
+    private static final Map<FamilleValeur, CodeValeur> PAR_FAMILLE = new EnumMap<>(FamilleValeur.class);
+    private static final Map<Statut, List<CodeValeur>> PAR_STATUT = new EnumMap<>(Statut.class);
+    private static final List<CodeValeur> AVEC_STATUT;
+
+    static {
+        int max = 0;
+        for (CodeValeur code : values()) {
+            max = Math.max(max, code.id);
+        }
+        PAR_ID = new CodeValeur[max + 1];
+
+        List<CodeValeur> avecStatut = new ArrayList<>();
+        for (CodeValeur code : values()) {
+            PAR_ID[code.id] = code;
+            PAR_CODE.put(code.code, code);
+            PAR_FAMILLE.putIfAbsent(code.famille, code); // le code texte est déclaré en premier
+            if (code.statut != null) {
+                PAR_STATUT.computeIfAbsent(code.statut, s -> new ArrayList<>()).add(code);
+                avecStatut.add(code);
+            }
+        }
+        PAR_STATUT.replaceAll((s, codes) -> Collections.unmodifiableList(codes));
+        AVEC_STATUT = Collections.unmodifiableList(avecStatut);
+    }
+
+    private final short id;
+    private final String code;
+    private final FamilleValeur famille;
+    private final Statut statut;
+    private final String libelle;
+
+    CodeValeur(int id, String code, FamilleValeur famille, Statut statut, String libelle) {
+        this.id = (short) id;
+        this.code = code;
+        this.famille = famille;
+        this.statut = statut;
+        this.libelle = libelle;
+    }
+
+    public short getId() {
+        return id;
+    }
+
+    public String getCode() {
+        return code;
+    }
+
+    public FamilleValeur getFamille() {
+        return famille;
+    }
+
+    public Statut getStatut() {
+        return statut;
+    }
+
+    public String getLibelle() {
+        return libelle;
+    }
+
+    /** @return l'entrée du dictionnaire, null si l'identifiant est inconnu */
+    public static CodeValeur parId(int id) {
+        return id >= 0 && id < PAR_ID.length ? PAR_ID[id] : null;
+    }
+
+    /** @return l'entrée correspondant au code saisi (casse et espaces ignorés), null si inconnu */
+    public static CodeValeur parCode(String code) {
+        return code != null ? PAR_CODE.get(code.trim().toUpperCase()) : null;
+    }
+
+    /** Code texte d'une famille (valeur stockée par Carthago) */
+    public static CodeValeur pourFamille(FamilleValeur famille) {
+        return famille != null ? PAR_FAMILLE.get(famille) : null;
+    }
+
+    public static List<CodeValeur> avecStatut(Statut statut) {
+        return PAR_STATUT.getOrDefault(statut, List.of());
+    }
+
+    /** Codes portant un statut (tous les autres sont en attente) */
+    public static List<CodeValeur> avecUnStatut() {
+        return AVEC_STATUT;
+    }
+
+    /**
+     * Expression SQL Oracle calculant CODE_VALEUR_ID à partir de la colonne texte,
+     * pour les lignes antérieures au dictionnaire (migration, repli).
+     */
+    public static String expressionSql(String colonne) {
+        StringBuilder sql = new StringBuilder("CASE UPPER(TRIM(").append(colonne).append("))");
+        for (CodeValeur code : values()) {
+            sql.append(" WHEN '").append(code.code).append("' THEN ").append(code.id);
+        }
+        return sql.append(" END").toString();
+    }
+}
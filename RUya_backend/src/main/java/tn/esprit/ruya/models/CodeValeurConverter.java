@@ -0,0 +1,21 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stocke une entrée du dictionnaire CodeValeur par son identifiant (NUMBER(5)).
+ */
+@Converter
+public class CodeValeurConverter implements AttributeConverter<CodeValeur, Short> {
+
+    @Override
+    public Short convertToDatabaseColumn(CodeValeur code) {
+        return code != null ? code.getId() : null;
+    }
+
+    @Override
+    public CodeValeur convertToEntityAttribute(Short id) {
+        return id != null ? CodeValeur.parId(id) : null;
+    }
+}
@@ -0,0 +1,47 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection allégée d'un CTR pour les listes paginées (une seule requête,
+ * utilisateur joint sans chargement de l'entité User)
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CtrListeDTO {
+
+    private Long id;
+    private String numeroCtr;
+    private String typeOperation;
+    private String statutCtr;
+    private String codeValeur;
+    private Double montant;
+    private Integer nombreElements;
+
+    // === ÉQUILIBRAGE ===
+    private Integer nombreCarthago;
+    private Integer nombreFichiers;
+    private Double montantCarthago;
+    private Double montantFichiers;
+    private Boolean equilibre;
+    private Double difference;
+
+    // === REMISES ===
+    private Boolean remiseDouble;
+    private Boolean remiseNonParvenue;
+
+    // === SUIVI ===
+    private String sessionCtr;
+    private String operateurCtr;
+    private LocalDateTime createdAt;
+    private LocalDateTime dateTraitement;
+
+    // === UTILISATEUR ===
+    private Long userId;
+    private String username;
+}
@@ -0,0 +1,20 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CtrPageDTO {
+
+    private List<CtrListeDTO> elements;
+    private int taille;
+    private boolean suivant;
+    private Long curseurSuivant; // à passer en apresId pour la page suivante
+    private LocalDateTime curseurSuivantTs; // à passer en apresTs (createdAt du dernier CTR de la page)
+}
@@ -0,0 +1,24 @@
+package tn.esprit.ruya.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+public class CubeRequestDTO {
+
+    // === PÉRIODE (par défaut : session du jour) ===
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    // === AXES D'ANALYSE ===
+    private List<String> dimensions; // codeValeur, typeFichier, statutCheque, sens, avantCTR, ...
+    private List<String> mesures;    // count, sumMontant, sumNomber
+
+    // === FILTRES OPTIONNELS (dimension -> valeur) ===
+    private Map<String, String> filtres;
+}
@@ -0,0 +1,67 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class CubeResultDTO {
+
+    private LocalDateTime start;
+    private LocalDateTime end;
+
+    // En-têtes : chaque ligne contient d'abord les dimensions puis les mesures
+    private List<String> dimensions;
+    private List<String> mesures;
+    private List<List<Object>> lignes;
+
+    /**
+     * Agrège le cube sur un sous-ensemble de ses dimensions (roll-up en mémoire)
+     */
+    public CubeResultDTO sousCube(List<String> dimensionsConservees) {
+        int[] positions = new int[dimensionsConservees.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = dimensions.indexOf(dimensionsConservees.get(i));
+            if (positions[i] < 0) {
+                throw new IllegalArgumentException("Dimension absente du cube : " + dimensionsConservees.get(i));
+            }
+        }
+
+        Map<List<Object>, long[]> groupes = new LinkedHashMap<>();
+        int nbDimensions = dimensions.size();
+        for (List<Object> ligne : lignes) {
+            List<Object> cle = new ArrayList<>(positions.length);
+            for (int position : positions) {
+                cle.add(ligne.get(position));
+            }
+            // Cumul entier : les montants en millimes, sans erreur d'arrondi sur le roll-up
+            long[] cumul = groupes.computeIfAbsent(cle, k -> new long[mesures.size()]);
+            for (int m = 0; m < cumul.length; m++) {
+                Object valeur = ligne.get(nbDimensions + m);
+                if (valeur instanceof Number nombre) {
+                    cumul[m] += "sumMontant".equals(mesures.get(m)) ? Montant.versMillimes(nombre) : nombre.longValue();
+                }
+            }
+        }
+
+        List<List<Object>> agregees = new ArrayList<>(groupes.size());
+        groupes.forEach((cle, cumul) -> {
+            List<Object> ligne = new ArrayList<>(cle);
+            for (int m = 0; m < cumul.length; m++) {
+                // Les comptages restent entiers, seules les sommes de montants sont décimales
+                ligne.add("sumMontant".equals(mesures.get(m)) ? (Object) Montant.versDinars(cumul[m]) : (Object) cumul[m]);
+            }
+            agregees.add(ligne);
+        });
+
+        return new CubeResultDTO(start, end, new ArrayList<>(dimensionsConservees), mesures, agregees);
+    }
+}
@@ -0,0 +1,12 @@
+package tn.esprit.ruya.models;
+
+/**
+ * Familles de valeurs (types de documents bancaires), partagées par
+ * Carthago, Fichier et CTR.
+ */
+public enum FamilleValeur {
+    CHEQUE, // Chèques
+    EFFET, // Effets de commerce
+    PRELEVEMENT, // Prélèvements
+    VIREMENT // Virements
+}
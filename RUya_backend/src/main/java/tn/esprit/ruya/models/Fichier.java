@@ -1,5 +1,6 @@
 package tn.esprit.ruya.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.*;
@@ -12,7 +13,10 @@ import java.time.LocalDateTime;
 @Entity
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "FICHIERS")
+@Table(name = "FICHIERS", indexes = {
+        @Index(name = "IDX_FICHIERS_UPDATED_AT", columnList = "UPDATED_AT"),
+        @Index(name = "IDX_FICHIERS_CODE_VALEUR", columnList = "CODE_VALEUR_ID, CREATED_AT")
+})
 public class Fichier extends BaseEntity {
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -36,6 +40,12 @@ public class Fichier extends BaseEntity {
     @Column(name = "CODE_VALEUR")
     private String codeValeur;
 
+    // Entrée du dictionnaire partagé, dérivée de codeValeur (voir CodeValeur)
+    @Convert(converter = CodeValeurConverter.class)
+    @Column(name = "CODE_VALEUR_ID", precision = 5)
+    @JsonIgnore
+    private CodeValeur codeValeurRef;
+
     @Column(name = "COD_EN")
     private String codEn;
 
@@ -91,11 +101,9 @@ public class Fichier extends BaseEntity {
         IMMEDIAT, DIFFERE
     }
 
-    // Types de valeur (codeValeur)
-    public enum CodeValeur {
-        CHEQUE,
-        EFFET,
-        PRELEVEMENT,
-        VIREMENT
+    @PrePersist
+    @PreUpdate
+    private void synchroniserCodeValeur() {
+        this.codeValeurRef = CodeValeur.parCode(codeValeur);
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Traitement de masse (backfill / recalcul) découpé en tranches d'identifiants
+ * parcourues par morceaux, avec reprise après arrêt (voir JobService).
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "JOBS")
+public class Job {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_JOB")
+    private Long id;
+
+    @Column(name = "TYPE", nullable = false)
+    private String type; // nom du JobTraitement
+
+    @Column(name = "TABLE_CIBLE")
+    private String tableCible;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUT", nullable = false)
+    private Statut statut;
+
+    // === DÉCOUPAGE ===
+    @Column(name = "ID_MIN")
+    private Long idMin;
+
+    @Column(name = "ID_MAX")
+    private Long idMax;
+
+    @Column(name = "TAILLE_CHUNK")
+    private Integer tailleChunk;
+
+    @Column(name = "NOMBRE_WORKERS")
+    private Integer nombreWorkers;
+
+    // === SUIVI ===
+    @Column(name = "DERNIERE_ERREUR", length = 1000)
+    private String derniereErreur;
+
+    @Column(name = "CREATED_AT")
+    private LocalDateTime createdAt;
+
+    @Column(name = "STARTED_AT")
+    private LocalDateTime startedAt;
+
+    @Column(name = "FINISHED_AT")
+    private LocalDateTime finishedAt;
+
+    @Column(name = "UPDATED_AT")
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    private void prePersist() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    @PreUpdate
+    private void preUpdate() {
+        this.updatedAt = LocalDateTime.now();
+    }
+
+    public enum Statut {
+        EN_ATTENTE, EN_COURS, EN_PAUSE, TERMINE, ECHEC
+    }
+}
@@ -0,0 +1,55 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Plage d'identifiants ]debut, fin] d'un job, traitée par un seul worker.
+ * Le curseur est le dernier identifiant dont le morceau a été validé.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "JOB_TRANCHES", indexes = {
+        @Index(name = "IDX_JOB_TRANCHES_JOB", columnList = "ID_JOB")
+})
+public class JobTranche {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_TRANCHE")
+    private Long id;
+
+    @Column(name = "ID_JOB", nullable = false)
+    private Long jobId;
+
+    @Column(name = "NUMERO")
+    private Integer numero;
+
+    @Column(name = "DEBUT", nullable = false)
+    private Long debut; // exclu
+
+    @Column(name = "FIN", nullable = false)
+    private Long fin; // inclus
+
+    @Column(name = "CURSEUR", nullable = false)
+    private Long curseur;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUT", nullable = false)
+    private Job.Statut statut;
+
+    @Column(name = "LIGNES_TRAITEES")
+    private Long lignesTraitees = 0L;
+
+    @Column(name = "CHUNKS_TRAITES")
+    private Long chunksTraites = 0L;
+
+    @Column(name = "UPDATED_AT")
+    private LocalDateTime updatedAt;
+}
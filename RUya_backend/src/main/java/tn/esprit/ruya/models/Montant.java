@@ -0,0 +1,88 @@
+package tn.esprit.ruya.models;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.stream.Collector;
+
+/**
+ * Représentation exacte des montants en millimes (1 dinar = 1000 millimes).
+ *
+ * Les entités exposent toujours les montants en dinars (Double), mais toutes
+ * les agrégations passent par un accumulateur long en millimes : pas de boxing
+ * par élément ni d'erreur d'arrondi cumulée, et les comparaisons d'équilibrage
+ * deviennent des égalités exactes.
+ */
+public final class Montant {
+
+    public static final long MILLIMES_PAR_DINAR = 1000L;
+
+    private Montant() {
+    }
+
+    /** Dinars -> millimes, arrondi au millime le plus proche (null = 0). */
+    public static long versMillimes(Double dinars) {
+        return dinars != null ? Math.round(dinars * MILLIMES_PAR_DINAR) : 0L;
+    }
+
+    /** Valeur numérique lue en base (NUMBER, BigDecimal, Double...) exprimée en dinars -> millimes. */
+    public static long versMillimes(Number dinars) {
+        if (dinars == null) {
+            return 0L;
+        }
+        if (dinars instanceof BigDecimal decimal) {
+            return decimal.movePointRight(3).setScale(0, RoundingMode.HALF_UP).longValueExact();
+        }
+        return Math.round(dinars.doubleValue() * MILLIMES_PAR_DINAR);
+    }
+
+    /** Valeur numérique lue en base déjà exprimée en millimes (SUM(ROUND(MONTANT * 1000))). */
+    public static long millimes(Number millimes) {
+        return millimes != null ? millimes.longValue() : 0L;
+    }
+
+    public static double versDinars(long millimes) {
+        return millimes / (double) MILLIMES_PAR_DINAR;
+    }
+
+    /**
+     * Somme exacte des montants d'une collection, accumulée en long.
+     * @return total en millimes
+     */
+    public static <T> long sommeMillimes(Collection<T> elements, Function<T, Double> montant) {
+        long total = 0L;
+        for (T element : elements) {
+            total += versMillimes(montant.apply(element));
+        }
+        return total;
+    }
+
+    /** Somme exacte des montants d'une collection, rendue en dinars. */
+    public static <T> double somme(Collection<T> elements, Function<T, Double> montant) {
+        return versDinars(sommeMillimes(elements, montant));
+    }
+
+    /**
+     * Remplace Collectors.summingDouble : accumulation dans un long[1] en millimes,
+     * conversion en dinars une seule fois à la fin.
+     */
+    public static <T> Collector<T, long[], Double> sommant(Function<T, Double> montant) {
+        return Collector.of(
+                () -> new long[1],
+                (cumul, element) -> cumul[0] += versMillimes(montant.apply(element)),
+                (a, b) -> {
+                    a[0] += b[0];
+                    return a;
+                },
+                cumul -> versDinars(cumul[0]));
+    }
+
+    /** Égalité au millime près, sans tolérance flottante. */
+    public static boolean egal(Double a, Double b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return versMillimes(a) == versMillimes(b);
+    }
+}
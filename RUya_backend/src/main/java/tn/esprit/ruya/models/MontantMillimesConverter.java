@@ -0,0 +1,24 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Stocke un montant exposé en dinars (Double) dans une colonne NUMBER(19)
+ * en millimes. À appliquer explicitement avec @Convert sur les colonnes migrées
+ * (voir db/oracle/montants_millimes.sql) : les colonnes MONTANT historiques
+ * restent en dinars.
+ */
+@Converter
+public class MontantMillimesConverter implements AttributeConverter<Double, Long> {
+
+    @Override
+    public Long convertToDatabaseColumn(Double dinars) {
+        return dinars != null ? Montant.versMillimes(dinars) : null;
+    }
+
+    @Override
+    public Double convertToEntityAttribute(Long millimes) {
+        return millimes != null ? Montant.versDinars(millimes) : null;
+    }
+}
@@ -1,5 +1,6 @@
 package tn.esprit.ruya.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import jakarta.persistence.*;
 import lombok.Getter;
@@ -12,7 +13,15 @@ import java.time.LocalDateTime;
 @Setter
 @Entity
 @NoArgsConstructor
-@Table(name = "NOTIFICATIONS")
+@Table(name = "NOTIFICATIONS", indexes = {
+        // Fil paginé (INotificationRepo.findFlux*) : colonnes d'égalité puis colonnes du tri ;
+        // IDX_NOTIFICATIONS_LU est remplacé (db/oracle/index_notifications.sql)
+        @Index(name = "IDX_NOTIFICATIONS_USER_FLUX", columnList = "ID_USER_ACTION, TIMESTAMP DESC, ID_NOTIFICATION DESC, LU"),
+        @Index(name = "IDX_NOTIFICATIONS_FLUX", columnList = "ID_USER_ACTION, LU, TIMESTAMP DESC, ID_NOTIFICATION DESC"),
+        @Index(name = "IDX_NOTIFICATIONS_LU_FLUX", columnList = "LU, TIMESTAMP DESC, ID_NOTIFICATION DESC"),
+        @Index(name = "IDX_NOTIFICATIONS_TIMESTAMP", columnList = "TIMESTAMP DESC, ID_NOTIFICATION DESC"),
+        @Index(name = "IDX_NOTIFICATIONS_VERSION", columnList = "VERSION_FLUX", unique = true)
+})
 public class Notification {
 
     @Id
@@ -30,12 +39,12 @@ public class Notification {
     @Column(name = "MESSAGE", nullable = false)
     private String message;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
     @JoinColumn(name = "ID_FICHIER")
     private Fichier fichier;
 
-    @ManyToOne(fetch = FetchType.EAGER)
+    @ManyToOne(fetch = FetchType.LAZY)
     @JsonIgnoreProperties({"hibernateLazyInitializer", "handler"})
     @JoinColumn(name = "ID_USER_ACTION")
     private User userAction; // L'utilisateur qui a effectué l'action
@@ -49,6 +58,20 @@ public class Notification {
     @Column(name = "ICON")
     private String icon;
 
+    // > 1 : rafale d'actions d'un même utilisateur regroupée (fichiers dans NOTIFICATIONS_FICHIERS)
+    @Column(name = "NB_FICHIERS")
+    private Integer nombre = 1;
+
+    // Numéro de modification, croissant à chaque écriture par l'outbox (création ou regroupement) :
+    // chaque nœud suit le flux par ce numéro (SuiviNotificationsService), null = hors flux
+    @Column(name = "VERSION_FLUX")
+    private Long versionFlux;
+
+    // Notification existante complétée par un regroupement, et non nouvelle ligne
+    @Transient
+    @JsonIgnore
+    private boolean regroupee;
+
     @PrePersist
     private void prePersist() {
         this.timestamp = LocalDateTime.now();
@@ -0,0 +1,31 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Trace fichier par fichier d'une notification regroupée, écrite par lots JDBC
+ * avec la notification (NotificationOutboxService).
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "NOTIFICATIONS_FICHIERS", indexes = {
+        @Index(name = "IDX_NOTIF_FICHIERS_NOTIF", columnList = "ID_NOTIFICATION")
+})
+public class NotificationFichier {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_NOTIFICATION_FICHIER")
+    private Long id;
+
+    @Column(name = "ID_NOTIFICATION", nullable = false)
+    private Long idNotification;
+
+    @Column(name = "ID_FICHIER", nullable = false)
+    private Long idFichier;
+}
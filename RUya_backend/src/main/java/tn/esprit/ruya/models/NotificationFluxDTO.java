@@ -0,0 +1,52 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection allégée d'une notification pour le fil paginé (une seule requête,
+ * fichier et utilisateur joints sans chargement des entités)
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationFluxDTO {
+
+    private Long id;
+    private Notification.NotificationType type;
+    private String titre;
+    private String message;
+    private String icon;
+    private Boolean lu;
+    private LocalDateTime timestamp;
+    private Integer nombre; // fichiers regroupés
+
+    // === FICHIER ===
+    private Long idFichier;
+    private String nomFichier;
+
+    // === UTILISATEUR ===
+    private Long idUserAction;
+    private String username;
+
+    private Long version; // numéro de modification (VERSION_FLUX), identifiant des événements du flux temps réel
+
+    public NotificationFluxDTO(Long id, Notification.NotificationType type, String titre, String message, String icon,
+                               Boolean lu, LocalDateTime timestamp, Integer nombre, Long idFichier, String nomFichier,
+                               Long idUserAction, String username) {
+        this(id, type, titre, message, icon, lu, timestamp, nombre, idFichier, nomFichier, idUserAction, username, null);
+    }
+
+    public static NotificationFluxDTO depuis(Notification notification) {
+        Fichier fichier = notification.getFichier();
+        User user = notification.getUserAction();
+        return new NotificationFluxDTO(notification.getId(), notification.getType(), notification.getTitre(),
+                notification.getMessage(), notification.getIcon(), notification.getLu(), notification.getTimestamp(), notification.getNombre(),
+                fichier != null ? fichier.getId() : null, fichier != null ? fichier.getNomFichier() : null,
+                user != null ? user.getId() : null, user != null ? user.getUsername() : null,
+                notification.getVersionFlux());
+    }
+}
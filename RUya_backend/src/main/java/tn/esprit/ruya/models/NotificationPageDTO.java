@@ -0,0 +1,22 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationPageDTO {
+
+    private List<NotificationFluxDTO> elements; // du plus récent au plus ancien
+    private int taille;
+    private boolean suivant;
+    // Curseur de la page suivante : (avantTs, avantId) pour les plus anciennes,
+    // (apresTs, apresId) pour les plus récentes
+    private LocalDateTime curseurTimestamp;
+    private Long curseurId;
+}
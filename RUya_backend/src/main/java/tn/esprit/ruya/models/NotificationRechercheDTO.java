@@ -0,0 +1,20 @@
+package tn.esprit.ruya.models;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class NotificationRechercheDTO {
+
+    private List<NotificationFluxDTO> elements; // par pertinence décroissante, puis du plus récent
+    private long total; // résultats avant pagination
+    private int page;
+    private int taille;
+    private boolean indexee; // false : index en construction, recherche LIKE en base
+    private long dureeMs;
+}
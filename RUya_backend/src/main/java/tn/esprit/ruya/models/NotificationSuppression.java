@@ -0,0 +1,34 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Journal des notifications supprimées par la rétention (suppressions JDBC par
+ * lots) : relu par SuiviNotificationsService sur chaque nœud pour retirer les
+ * ids des états en mémoire. Purgé par la rétention après quelques jours.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "NOTIFICATIONS_SUPPRESSIONS", indexes = {
+        @Index(name = "IDX_NOTIF_SUPPRESSIONS_DATE", columnList = "DATE_SUPPRESSION")
+})
+public class NotificationSuppression {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_SUPPRESSION")
+    private Long id;
+
+    @Column(name = "ID_NOTIFICATION", nullable = false)
+    private Long idNotification;
+
+    @Column(name = "DATE_SUPPRESSION", nullable = false)
+    private LocalDateTime dateSuppression;
+}
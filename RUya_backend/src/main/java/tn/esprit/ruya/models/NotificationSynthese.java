@@ -0,0 +1,43 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Synthèse journalière des notifications purgées par la rétention :
+ * une ligne par jour, type et utilisateur, alimentée par MERGE avant suppression.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "NOTIFICATIONS_SYNTHESE", uniqueConstraints = {
+        @UniqueConstraint(name = "UK_NOTIF_SYNTHESE", columnNames = {"JOUR", "TYPE", "ID_USER_ACTION"})
+})
+public class NotificationSynthese {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_SYNTHESE")
+    private Long id;
+
+    @Column(name = "JOUR", nullable = false)
+    private LocalDate jour;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "TYPE", nullable = false)
+    private Notification.NotificationType type;
+
+    @Column(name = "ID_USER_ACTION")
+    private Long idUserAction;
+
+    @Column(name = "NB_TOTAL", nullable = false)
+    private Long nbTotal;
+
+    @Column(name = "NB_LUES", nullable = false)
+    private Long nbLues;
+}
@@ -0,0 +1,74 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Email rendu en attente d'envoi (file persistante). Envoyé par lots par
+ * MailService puis supprimé ; reprogrammé avec un délai croissant en cas d'échec.
+ * Un email à durée de vie limitée (code de réinitialisation) n'est plus envoyé
+ * après EXPIRATION et est purgé ; le corps d'un email abandonné est effacé.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "OUTBOX_MAILS", indexes = {
+        @Index(name = "IDX_OUTBOX_MAILS_STATUT", columnList = "STATUT, PROCHAIN_ESSAI, ID_MAIL")
+})
+public class OutboxMail {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_MAIL")
+    private Long id;
+
+    @Column(name = "DESTINATAIRE", nullable = false)
+    private String destinataire;
+
+    @Column(name = "SUJET", nullable = false)
+    private String sujet;
+
+    @Lob
+    @Column(name = "CORPS", nullable = false)
+    private String corps; // HTML rendu
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUT", nullable = false, length = 16)
+    private Statut statut = Statut.EN_ATTENTE;
+
+    @Column(name = "TENTATIVES", nullable = false)
+    private int tentatives;
+
+    @Column(name = "PROCHAIN_ESSAI")
+    private LocalDateTime prochainEssai; // null = immédiat
+
+    @Column(name = "DERNIERE_ERREUR", length = 500)
+    private String derniereErreur;
+
+    @Column(name = "EXPIRATION")
+    private LocalDateTime expiration; // null = pas de limite
+
+    @Column(name = "CREATED_AT", nullable = false)
+    private LocalDateTime createdAt;
+
+    public OutboxMail(String destinataire, String sujet, String corps) {
+        this.destinataire = destinataire;
+        this.sujet = sujet;
+        this.corps = corps;
+    }
+
+    @PrePersist
+    private void prePersist() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public enum Statut {
+        EN_ATTENTE, // à envoyer
+        ECHEC // tentatives épuisées, corps effacé, conservé pour diagnostic puis purgé
+    }
+}
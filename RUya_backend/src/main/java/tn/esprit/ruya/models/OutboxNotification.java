@@ -0,0 +1,70 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Événement de notification en attente de distribution (outbox transactionnelle).
+ * Écrit dans la transaction de l'opération métier, transformé en NOTIFICATIONS
+ * par NotificationOutboxService puis supprimé.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "OUTBOX_NOTIFICATIONS", indexes = {
+        @Index(name = "IDX_OUTBOX_STATUT", columnList = "STATUT, ID_OUTBOX")
+})
+public class OutboxNotification {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_OUTBOX")
+    private Long id; // ordre de distribution
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "TYPE", nullable = false, length = 16)
+    private Notification.NotificationType type;
+
+    @Column(name = "ID_FICHIER", nullable = false)
+    private Long idFichier;
+
+    @Column(name = "ID_USER_ACTION", nullable = false)
+    private Long idUserAction;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "STATUT", nullable = false, length = 16)
+    private Statut statut = Statut.EN_ATTENTE;
+
+    @Column(name = "TENTATIVES", nullable = false)
+    private int tentatives;
+
+    @Column(name = "PROCHAIN_ESSAI")
+    private LocalDateTime prochainEssai; // null = immédiat
+
+    @Column(name = "DERNIERE_ERREUR", length = 500)
+    private String derniereErreur;
+
+    @Column(name = "CREATED_AT", nullable = false)
+    private LocalDateTime createdAt;
+
+    public OutboxNotification(Notification.NotificationType type, Long idFichier, Long idUserAction) {
+        this.type = type;
+        this.idFichier = idFichier;
+        this.idUserAction = idUserAction;
+    }
+
+    @PrePersist
+    private void prePersist() {
+        this.createdAt = LocalDateTime.now();
+    }
+
+    public enum Statut {
+        EN_ATTENTE, // à distribuer
+        ECHEC // tentatives épuisées, écarté de la distribution
+    }
+}
@@ -0,0 +1,63 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Résultat du rapprochement Carthago / Amplitude d'un chèque pour une session.
+ * Alimenté en masse par RapprochementAmplitudeService (INSERT ... SELECT).
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "RAPPROCHEMENT_AMPLITUDE", indexes = {
+        @Index(name = "IDX_RAPPROCHEMENT_SESSION", columnList = "SESSION_DATE, RESULTAT")
+})
+public class RapprochementAmplitude {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "ID_RAPPROCHEMENT")
+    private Long id;
+
+    @Column(name = "SESSION_DATE", nullable = false)
+    private LocalDate sessionDate;
+
+    @Column(name = "NUMERO_CHEQUE")
+    private String numeroCheque;
+
+    @Convert(converter = MontantMillimesConverter.class)
+    @Column(name = "MONTANT_MILLIMES", precision = 19)
+    private Double montant;
+
+    @Column(name = "ID_CARTHAGO")
+    private Long idCarthago; // null si orphelin Amplitude
+
+    @Column(name = "ID_AMPLITUDE")
+    private Long idAmplitude; // null si absent d'Amplitude
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "TYPE_CHEQUE")
+    private Amplitude.TypeCheque typeCheque; // INTRA, INTER (côté Amplitude)
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "RESULTAT", nullable = false)
+    private Resultat resultat;
+
+    @Column(name = "CREATED_AT")
+    private LocalDateTime createdAt;
+
+    public enum Resultat {
+        INTEGRE, // présent des deux côtés, intégré dans Amplitude
+        REJETE, // présent des deux côtés, rejeté par Amplitude
+        EN_COURS, // présent des deux côtés, intégration en cours
+        ABSENT_AMPLITUDE, // chèque Carthago sans ligne Amplitude
+        ORPHELIN_AMPLITUDE // ligne Amplitude sans chèque Carthago
+    }
+}
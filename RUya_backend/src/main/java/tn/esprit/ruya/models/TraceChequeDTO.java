@@ -0,0 +1,74 @@
+package tn.esprit.ruya.models;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parcours complet d'un chèque : Carthago -> CTR -> Amplitude
+ */
+@Data
+@NoArgsConstructor
+public class TraceChequeDTO {
+
+    private String numeroCheque;
+    private String banqueEmettrice;
+    private List<EtapeCarthago> carthago = new ArrayList<>();
+    private List<EtapeCtr> ctr = new ArrayList<>(); // CTR de la session du chèque
+    private List<EtapeAmplitude> amplitude = new ArrayList<>();
+    private long dureeMicros;
+
+    @Data
+    @NoArgsConstructor
+    public static class EtapeCarthago {
+        private Long id;
+        private String nomFichier;
+        private String banqueEmettrice;
+        private Double montant;
+        private String statutCheque;
+        private String typeFichier;
+        private LocalDate sessionDate;
+        private LocalDateTime createdAt;
+        private LocalDateTime dateTraitementCTR;
+        private LocalDateTime dateControle;
+
+        // === INDICATEURS ===
+        private Boolean avantCTR;
+        private Boolean apresCTR;
+        private Boolean traiteParCTR;
+        private Boolean fichierEnv;
+        private Boolean controleEffectue;
+        private Boolean aVerifier;
+        private Boolean remiseDouble;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class EtapeCtr {
+        private Long id;
+        private String numeroCtr;
+        private Double montant;
+        private String statutCtr;
+        private String typeOperation;
+        private String sessionCtr;
+        private LocalDateTime createdAt;
+        private LocalDateTime dateTraitement;
+        private Boolean equilibre;
+        private Boolean remiseNonParvenue;
+    }
+
+    @Data
+    @NoArgsConstructor
+    public static class EtapeAmplitude {
+        private Long id;
+        private Double montant;
+        private String statutTraitement;
+        private String typeCheque;
+        private LocalDateTime createdAt;
+        private LocalDateTime updatedAt;
+    }
+}
@@ -0,0 +1,58 @@
+package tn.esprit.ruya.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Verrou partagé entre les nœuds de l'application pour les traitements
+ * planifiés, avec le point de reprise (watermark) du dernier passage réussi.
+ */
+@Getter
+@Setter
+@Entity
+@NoArgsConstructor
+@Table(name = "VERROU_TRAITEMENT")
+public class VerrouTraitement {
+
+    @Id
+    @Column(name = "NOM", length = 64)
+    private String nom; // identifiant du traitement
+
+    // === VERROU ===
+    @Column(name = "VERROUILLE_JUSQUA")
+    private LocalDateTime verrouilleJusqua; // fin du bail, null si libre
+
+    @Column(name = "VERROUILLE_PAR")
+    private String verrouillePar; // nœud détenteur du bail
+
+    // === REPRISE ===
+    @Column(name = "WATERMARK")
+    private LocalDateTime watermark; // modifications traitées jusqu'à cette date
+
+    // === MÉTRIQUES DU DERNIER PASSAGE ===
+    @Column(name = "DERNIER_DEBUT")
+    private LocalDateTime dernierDebut;
+
+    @Column(name = "DERNIERE_FIN")
+    private LocalDateTime derniereFin;
+
+    @Column(name = "DERNIERE_DUREE_MS")
+    private Long derniereDureeMs;
+
+    @Column(name = "DERNIERES_SESSIONS")
+    private Integer dernieresSessions; // sessions recalculées
+
+    @Column(name = "DERNIERES_MISES_A_JOUR")
+    private Integer dernieresMisesAJour; // lignes mises à jour
+
+    @Column(name = "DERNIERE_ERREUR", length = 1000)
+    private String derniereErreur;
+
+    public VerrouTraitement(String nom) {
+        this.nom = nom;
+    }
+}
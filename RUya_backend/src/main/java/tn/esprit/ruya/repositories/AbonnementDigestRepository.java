@@ -0,0 +1,43 @@
+package tn.esprit.ruya.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.AbonnementDigest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface AbonnementDigestRepository extends JpaRepository<AbonnementDigest, Long> {
+
+    List<AbonnementDigest> findByActifTrue();
+
+    // Réservation de la période (depuis, jusqua] : un seul nœud (ou déclenchement) gagne la mise à jour
+    @Modifying
+    @Transactional
+    @Query("UPDATE AbonnementDigest a SET a.dernierEnvoi = :jusqua " +
+            "WHERE a.idUser = :idUser AND a.actif = true AND a.dernierEnvoi = :depuis")
+    int reserverPeriode(@Param("idUser") Long idUser,
+                        @Param("depuis") LocalDateTime depuis,
+                        @Param("jusqua") LocalDateTime jusqua);
+
+    // Même réservation pour un abonnement jamais envoyé
+    @Modifying
+    @Transactional
+    @Query("UPDATE AbonnementDigest a SET a.dernierEnvoi = :jusqua " +
+            "WHERE a.idUser = :idUser AND a.actif = true AND a.dernierEnvoi IS NULL")
+    int reserverPremierePeriode(@Param("idUser") Long idUser, @Param("jusqua") LocalDateTime jusqua);
+
+    // Annulation d'une réservation dont l'email n'a pas pu être mis en file
+    @Modifying
+    @Transactional
+    @Query("UPDATE AbonnementDigest a SET a.dernierEnvoi = :ancien " +
+            "WHERE a.idUser = :idUser AND a.dernierEnvoi = :jusqua")
+    int annulerReservation(@Param("idUser") Long idUser,
+                           @Param("jusqua") LocalDateTime jusqua,
+                           @Param("ancien") LocalDateTime ancien);
+}
@@ -7,6 +7,7 @@ import org.springframework.stereotype.Repository;
 import tn.esprit.ruya.models.Amplitude;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
 public interface AmplitudeRepository extends JpaRepository<Amplitude, Long> {
@@ -17,8 +18,16 @@ public interface AmplitudeRepository extends JpaRepository<Amplitude, Long> {
 
     Long countByCreatedAtBetweenAndStatutTraitement(LocalDateTime start, LocalDateTime end, Amplitude.StatutTraitement statutTraitement);
 
-    @Query("SELECT COALESCE(SUM(a.montant), 0.0) FROM Amplitude a WHERE a.createdAt BETWEEN :start AND :end")
-    Double sumMontantByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    // Sommes sumMontant* en millimes (Montant.versDinars pour l'affichage) : somme entière exacte
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(a.montant * 1000, 0)), 0) AS long) FROM Amplitude a WHERE a.createdAt BETWEEN :start AND :end")
+    Long sumMontantByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Agrégats du dashboard en une requête : [type, statut, nombre, montant en millimes, latence moyenne (s), nombre de latences]
+    @Query(value = "SELECT TYPE_CHEQUE, STATUT_TRAITEMENT, COUNT(*), COALESCE(SUM(ROUND(MONTANT * 1000)), 0), " +
+            "AVG(CASE WHEN STATUT_TRAITEMENT <> 'EN_COURS' AND UPDATED_AT IS NOT NULL " +
+            "THEN (CAST(UPDATED_AT AS DATE) - CAST(CREATED_AT AS DATE)) * 86400 END), " +
+            "COUNT(CASE WHEN STATUT_TRAITEMENT <> 'EN_COURS' AND UPDATED_AT IS NOT NULL THEN 1 END) " +
+            "FROM AMPLITUDE WHERE CREATED_AT BETWEEN :start AND :end " +
+            "GROUP BY TYPE_CHEQUE, STATUT_TRAITEMENT", nativeQuery = true)
+    List<Object[]> agregatsByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 }
-
-
@@ -5,9 +5,12 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import tn.esprit.ruya.models.Carthago;
+import tn.esprit.ruya.models.ChequeAControlerDTO;
+import tn.esprit.ruya.models.CodeValeur;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Repository
 public interface CarthageRepository extends JpaRepository<Carthago, Long> {
@@ -15,32 +18,33 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
         // === MÉTHODES DE BASE ===
         Long countByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
 
-        // Compter par code valeur (CHEQUE, EFFET, PRELEVEMENT, VIREMENT)
-        Long countByCreatedAtBetweenAndCodeValeur(LocalDateTime start, LocalDateTime end,
-                        Carthago.CodeValeur codeValeur);
+        // Compter par code valeur (CODE_VALEUR_ID du dictionnaire partagé)
+        Long countByCreatedAtBetweenAndCodeValeurRef(LocalDateTime start, LocalDateTime end,
+                        CodeValeur codeValeur);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end")
-        Double sumMontantByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+        // Sommes sumMontant* en millimes (Montant.versDinars pour l'affichage) : somme entière exacte
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end")
+        Long sumMontantByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
         // === MÉTHODES PAR TYPE_FICHIER ===
         Long countByCreatedAtBetweenAndTypeFichier(LocalDateTime start, LocalDateTime end, String typeFichier);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.typeFichier = :type")
-        Double sumMontantByCreatedAtBetweenAndTypeFichier(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.typeFichier = :type")
+        Long sumMontantByCreatedAtBetweenAndTypeFichier(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("type") String type);
 
         // === MÉTHODES PAR NATURE_FICHIER ===
         Long countByCreatedAtBetweenAndNatureFichier(LocalDateTime start, LocalDateTime end, String natureFichier);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.natureFichier = :nature")
-        Double sumMontantByCreatedAtBetweenAndNatureFichier(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.natureFichier = :nature")
+        Long sumMontantByCreatedAtBetweenAndNatureFichier(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("nature") String nature);
 
         // === MÉTHODES PAR SENS ===
         Long countByCreatedAtBetweenAndSens(LocalDateTime start, LocalDateTime end, String sens);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.sens = :sens")
-        Double sumMontantByCreatedAtBetweenAndSens(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.sens = :sens")
+        Long sumMontantByCreatedAtBetweenAndSens(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end,
                         @Param("sens") String sens);
 
         // === MÉTHODES SESSION ET STATUT ===
@@ -48,41 +52,41 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
 
         Long countByCreatedAtBetweenAndStatutCheque(LocalDateTime start, LocalDateTime end, String statutCheque);
 
-        Long countByCreatedAtBetweenAndStatutChequeAndCodeValeur(LocalDateTime start, LocalDateTime end,
-                        String statutCheque, Carthago.CodeValeur codeValeur);
+        Long countByCreatedAtBetweenAndStatutChequeAndCodeValeurRef(LocalDateTime start, LocalDateTime end,
+                        String statutCheque, CodeValeur codeValeur);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.statutCheque = :statut")
-        Double sumMontantByCreatedAtBetweenAndStatutCheque(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.statutCheque = :statut")
+        Long sumMontantByCreatedAtBetweenAndStatutCheque(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("statut") String statut);
 
         // === MÉTHODES AVANT/APRÈS CTR ===
         Long countByCreatedAtBetweenAndAvantCTR(LocalDateTime start, LocalDateTime end, Boolean avantCTR);
 
-        Long countByCreatedAtBetweenAndAvantCTRAndCodeValeur(LocalDateTime start, LocalDateTime end, Boolean avantCTR,
-                        Carthago.CodeValeur codeValeur);
+        Long countByCreatedAtBetweenAndAvantCTRAndCodeValeurRef(LocalDateTime start, LocalDateTime end, Boolean avantCTR,
+                        CodeValeur codeValeur);
 
         Long countByCreatedAtBetweenAndApresCTR(LocalDateTime start, LocalDateTime end, Boolean apresCTR);
 
-        Long countByCreatedAtBetweenAndApresCTRAndCodeValeur(LocalDateTime start, LocalDateTime end, Boolean apresCTR,
-                        Carthago.CodeValeur codeValeur);
+        Long countByCreatedAtBetweenAndApresCTRAndCodeValeurRef(LocalDateTime start, LocalDateTime end, Boolean apresCTR,
+                        CodeValeur codeValeur);
 
         Long countByCreatedAtBetweenAndStatutImage(LocalDateTime start, LocalDateTime end, Integer statutImage);
 
         Long countByCreatedAtBetweenAndTraiteParCTR(LocalDateTime start, LocalDateTime end, Boolean traiteParCTR);
 
-        Long countByCreatedAtBetweenAndTraiteParCTRAndCodeValeur(LocalDateTime start, LocalDateTime end,
-                        Boolean traiteParCTR, Carthago.CodeValeur codeValeur);
+        Long countByCreatedAtBetweenAndTraiteParCTRAndCodeValeurRef(LocalDateTime start, LocalDateTime end,
+                        Boolean traiteParCTR, CodeValeur codeValeur);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.avantCTR = :avant")
-        Double sumMontantByCreatedAtBetweenAndAvantCTR(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.avantCTR = :avant")
+        Long sumMontantByCreatedAtBetweenAndAvantCTR(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("avant") Boolean avant);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.apresCTR = :apres")
-        Double sumMontantByCreatedAtBetweenAndApresCTR(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.apresCTR = :apres")
+        Long sumMontantByCreatedAtBetweenAndApresCTR(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("apres") Boolean apres);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.traiteParCTR = :traite")
-        Double sumMontantByCreatedAtBetweenAndTraiteParCTR(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.traiteParCTR = :traite")
+        Long sumMontantByCreatedAtBetweenAndTraiteParCTR(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("traite") Boolean traite);
 
         // === MÉTHODES VALIDATION BO ===
@@ -90,8 +94,8 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
 
         Long countByCreatedAtBetweenAndChequeWebBo(LocalDateTime start, LocalDateTime end, Boolean chequeWebBo);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.valideBodinars = :valide")
-        Double sumMontantByCreatedAtBetweenAndValideBodinars(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.valideBodinars = :valide")
+        Long sumMontantByCreatedAtBetweenAndValideBodinars(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("valide") Boolean valide);
 
         // === MÉTHODES REMISES ET ENV ===
@@ -99,15 +103,15 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
 
         Long countByCreatedAtBetweenAndFichierEnv(LocalDateTime start, LocalDateTime end, Boolean fichierEnv);
 
-        Long countByCreatedAtBetweenAndFichierEnvAndCodeValeur(LocalDateTime start, LocalDateTime end,
-                        Boolean fichierEnv, Carthago.CodeValeur codeValeur);
+        Long countByCreatedAtBetweenAndFichierEnvAndCodeValeurRef(LocalDateTime start, LocalDateTime end,
+                        Boolean fichierEnv, CodeValeur codeValeur);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.remiseDouble = :double")
-        Double sumMontantByCreatedAtBetweenAndRemiseDouble(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.remiseDouble = :double")
+        Long sumMontantByCreatedAtBetweenAndRemiseDouble(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("double") Boolean remiseDouble);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.fichierEnv = :env")
-        Double sumMontantByCreatedAtBetweenAndFichierEnv(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.fichierEnv = :env")
+        Long sumMontantByCreatedAtBetweenAndFichierEnv(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("env") Boolean env);
 
         // === MÉTHODES CONTRÔLES ET VÉRIFICATIONS ===
@@ -119,8 +123,8 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
         Long countByCreatedAtBetweenAndControleEffectue(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("controle") Boolean controle);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.aVerifier = :verifier")
-        Double sumMontantByCreatedAtBetweenAndAVerifier(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.aVerifier = :verifier")
+        Long sumMontantByCreatedAtBetweenAndAVerifier(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("verifier") Boolean verifier);
 
         // === MÉTHODES COMBINÉES POUR DASHBOARD ===
@@ -132,9 +136,9 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
                         @Param("traite") Boolean traite,
                         @Param("statut") String statut);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
                         "AND c.traiteParCTR = :traite AND c.statutCheque = :statut")
-        Double sumMontantByCreatedAtBetweenAndTraiteParCTRAndStatutCheque(
+        Long sumMontantByCreatedAtBetweenAndTraiteParCTRAndStatutCheque(
                         @Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end,
                         @Param("traite") Boolean traite,
@@ -148,9 +152,9 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
                         @Param("avant") Boolean avant,
                         @Param("nature") String nature);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
                         "AND c.avantCTR = :avant AND c.natureFichier = :nature")
-        Double sumMontantByCreatedAtBetweenAndAvantCTRAndNatureFichier(
+        Long sumMontantByCreatedAtBetweenAndAvantCTRAndNatureFichier(
                         @Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end,
                         @Param("avant") Boolean avant,
@@ -164,9 +168,9 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
                         @Param("env") Boolean env,
                         @Param("apres") Boolean apres);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
                         "AND c.fichierEnv = :env AND c.apresCTR = :apres")
-        Double sumMontantByCreatedAtBetweenAndFichierEnvAndApresCTR(
+        Long sumMontantByCreatedAtBetweenAndFichierEnvAndApresCTR(
                         @Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end,
                         @Param("env") Boolean env,
@@ -182,13 +186,13 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
                         @Param("type") Carthago.TypeFichier type);
 
         @Query("SELECT COUNT(c) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
-                        "AND c.apresCTR = :apres AND c.typeFichier = :type AND c.codeValeur = :code")
+                        "AND c.apresCTR = :apres AND c.typeFichier = :type AND c.codeValeurRef = :code")
         Long countByCreatedAtBetweenAndApresCTRAndTypeFichierAndCodeValeur(
                         @Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end,
                         @Param("apres") Boolean apres,
                         @Param("type") Carthago.TypeFichier type,
-                        @Param("code") Carthago.CodeValeur code);
+                        @Param("code") CodeValeur code);
 
         @Query("SELECT COUNT(c) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
                         "AND c.controleEffectue = :controle AND c.typeFichier = :type")
@@ -199,13 +203,13 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
                         @Param("type") Carthago.TypeFichier type);
 
         @Query("SELECT COUNT(c) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
-                        "AND c.controleEffectue = :controle AND c.typeFichier = :type AND c.codeValeur = :code")
+                        "AND c.controleEffectue = :controle AND c.typeFichier = :type AND c.codeValeurRef = :code")
         Long countByCreatedAtBetweenAndControleEffectueAndTypeFichierAndCodeValeur(
                         @Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end,
                         @Param("controle") Boolean controle,
                         @Param("type") Carthago.TypeFichier type,
-                        @Param("code") Carthago.CodeValeur code);
+                        @Param("code") CodeValeur code);
 
         @Query("SELECT COUNT(c) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
                         "AND c.apresCTR = true AND c.statutCheque = :statut")
@@ -215,18 +219,42 @@ public interface CarthageRepository extends JpaRepository<Carthago, Long> {
                         @Param("statut") Carthago.StatutCheque statut);
 
         @Query("SELECT COUNT(c) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end " +
-                        "AND c.apresCTR = true AND c.statutCheque = :statut AND c.codeValeur = :code")
+                        "AND c.apresCTR = true AND c.statutCheque = :statut AND c.codeValeurRef = :code")
         Long countByCreatedAtBetweenAndApresCTRAndStatutChequeAndCodeValeur(
                         @Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end,
                         @Param("statut") Carthago.StatutCheque statut,
-                        @Param("code") Carthago.CodeValeur code);
+                        @Param("code") CodeValeur code);
 
         // === COMBINAISONS COMPLEXES EXISTANTES ===
         Long countByCreatedAtBetweenAndTypeFichierAndTraiteParCTR(LocalDateTime start, LocalDateTime end,
                         String typeFichier, Boolean traiteParCTR);
 
-        @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.typeFichier = :type AND c.traiteParCTR = :traite")
-        Double sumMontantByCreatedAtBetweenAndTypeFichierAndTraiteParCTR(@Param("start") LocalDateTime start,
+        @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM Carthago c WHERE c.createdAt BETWEEN :start AND :end AND c.typeFichier = :type AND c.traiteParCTR = :traite")
+        Long sumMontantByCreatedAtBetweenAndTypeFichierAndTraiteParCTR(@Param("start") LocalDateTime start,
                         @Param("end") LocalDateTime end, @Param("type") String type, @Param("traite") Boolean traite);
-}
\ No newline at end of file
+
+        // === PROJECTION COLONNAIRE POUR LE SNAPSHOT DE SESSION ===
+        @Query("SELECT c.id, c.codeValeur, c.typeFichier, c.statutCheque, c.sens, c.montant, " +
+                        "c.avantCTR, c.apresCTR, c.fichierEnv, c.traiteParCTR, c.controleEffectue, " +
+                        "c.aVerifier, c.remiseDouble FROM Carthago c " +
+                        "WHERE c.createdAt BETWEEN :start AND :end ORDER BY c.id")
+        List<Object[]> findColonnesSnapshotByCreatedAtBetween(@Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end);
+
+        // === REMISES NON PARVENUES (envois acquittés par CTR sans le chèque) ===
+        // [typeFichier, codeEnv, nombre de chèques]
+        @Query("SELECT c.typeFichier, c.codeEnv, COUNT(c) FROM Carthago c " +
+                        "WHERE c.createdAt BETWEEN :start AND :end AND c.codeValeurRef = :codeValeur " +
+                        "AND c.fichierEnv = true AND (c.traiteParCTR = false OR c.traiteParCTR IS NULL) " +
+                        "AND c.codeEnv IN (SELECT t.numeroCtr FROM CTR t WHERE t.recuParCtr = true) " +
+                        "GROUP BY c.typeFichier, c.codeEnv")
+        List<Object[]> countNonParvenusByCreatedAtBetween(@Param("start") LocalDateTime start,
+                        @Param("end") LocalDateTime end, @Param("codeValeur") CodeValeur codeValeur);
+
+        // === FILE DE CONTRÔLE ===
+        @Query("SELECT new tn.esprit.ruya.models.ChequeAControlerDTO(c.id, c.nomFichier, c.numeroCheque, " +
+                        "c.banqueEmettrice, c.montant, c.statutImage, c.aVerifier, c.reserveJusqua) " +
+                        "FROM Carthago c WHERE c.id IN :ids ORDER BY c.id")
+        List<ChequeAControlerDTO> findChequesAControlerByIdIn(@Param("ids") List<Long> ids);
+}
@@ -0,0 +1,34 @@
+package tn.esprit.ruya.repositories;
+
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.CodeReinitialisation;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface CodeReinitialisationRepository extends JpaRepository<CodeReinitialisation, String> {
+
+    // Ligne verrouillée (SELECT ... FOR UPDATE) : mises à jour sérialisées entre les nœuds
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT c FROM CodeReinitialisation c WHERE c.email = :email")
+    Optional<CodeReinitialisation> findPourMiseAJour(@Param("email") String email);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE CodeReinitialisation c SET c.empreinte = NULL, c.expiration = NULL " +
+            "WHERE c.empreinte IS NOT NULL AND c.expiration < :maintenant")
+    int invaliderExpires(@Param("maintenant") LocalDateTime maintenant);
+
+    @Transactional
+    @Modifying
+    @Query("DELETE FROM CodeReinitialisation c WHERE c.empreinte IS NULL AND c.fenetreDebut < :limite")
+    int supprimerInactifs(@Param("limite") LocalDateTime limite);
+}
@@ -1,10 +1,13 @@
 package tn.esprit.ruya.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import tn.esprit.ruya.models.CTR;
+import tn.esprit.ruya.models.CodeValeur;
+import tn.esprit.ruya.models.CtrListeDTO;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -21,17 +24,21 @@ public interface CtrRepository extends JpaRepository<CTR, Long> {
     Long countByCreatedAtBetweenAndRemiseNonParvenue(LocalDateTime start, LocalDateTime end, Boolean remiseNonParvenue);
 
     // === MÉTHODES DE SOMME MONTANTS ===
-    @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end")
-    Double sumMontantByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    // Sommes en millimes (Montant.versDinars pour l'affichage) : chaque montant arrondi au millime,
+    // somme entière exacte sans erreur flottante cumulée
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end")
+    Long sumMontantByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-    @Query("SELECT COALESCE(SUM(c.montant), 0.0) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end AND c.statutCtr = :statut")
-    Double sumMontantByCreatedAtBetweenAndStatutCtr(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end, @Param("statut") String statut);
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(c.montant * 1000, 0)), 0) AS long) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end AND c.statutCtr = :statut")
+    Long sumMontantByCreatedAtBetweenAndStatutCtr(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end, @Param("statut") String statut);
 
-    @Query("SELECT COALESCE(SUM(c.montantCarthago), 0.0) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end")
-    Double sumMontantCarthagoByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    @Query(value = "SELECT COALESCE(SUM(MONTANT_CARTHAGO_MILLIMES), 0) FROM CTR WHERE CREATED_AT BETWEEN :start AND :end",
+            nativeQuery = true)
+    Long sumMontantCarthagoByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-    @Query("SELECT COALESCE(SUM(c.montantFichiers), 0.0) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end")
-    Double sumMontantFichiersByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    @Query(value = "SELECT COALESCE(SUM(MONTANT_FICHIERS_MILLIMES), 0) FROM CTR WHERE CREATED_AT BETWEEN :start AND :end",
+            nativeQuery = true)
+    Long sumMontantFichiersByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
     // === MÉTHODES DE SOMME NOMBRES ===
     @Query("SELECT COALESCE(SUM(c.nombreCarthago), 0) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end")
@@ -47,15 +54,40 @@ public interface CtrRepository extends JpaRepository<CTR, Long> {
     @Query("SELECT COUNT(c) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end AND c.equilibre = true")
     Long countEquilibreByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
-    @Query("SELECT COALESCE(SUM(c.difference), 0.0) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end")
-    Double sumDifferenceByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    @Query(value = "SELECT COALESCE(SUM(DIFFERENCE_MILLIMES), 0) FROM CTR WHERE CREATED_AT BETWEEN :start AND :end",
+            nativeQuery = true)
+    Long sumDifferenceByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
     // === MÉTHODES DE RECHERCHE ===
-    List<CTR> findAllByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
+    @Query("SELECT c FROM CTR c LEFT JOIN FETCH c.user WHERE c.createdAt BETWEEN :start AND :end")
+    List<CTR> findAllByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+
+    // Page par curseur (keyset sur createdAt puis id, décroissants) avec filtres optionnels : parcours
+    // descendant de IDX_CTR_CREATED_AT_ID dans l'ordre du tri. Le curseur est passé en borne haute :
+    // end = createdAt du dernier CTR affiché et avantId = son id (Long.MAX_VALUE pour la première page)
+    @Query("SELECT new tn.esprit.ruya.models.CtrListeDTO(c.id, c.numeroCtr, c.typeOperation, c.statutCtr, " +
+            "c.codeValeur, c.montant, c.nombreElements, c.nombreCarthago, c.nombreFichiers, c.montantCarthago, " +
+            "c.montantFichiers, c.equilibre, c.difference, c.remiseDouble, c.remiseNonParvenue, c.sessionCtr, " +
+            "c.operateurCtr, c.createdAt, c.dateTraitement, u.id, u.username) " +
+            "FROM CTR c LEFT JOIN c.user u " +
+            "WHERE c.createdAt >= :start AND c.createdAt <= :end AND (c.createdAt < :end OR c.id < :avantId) " +
+            "AND (:sessionCtr IS NULL OR c.sessionCtr = :sessionCtr) " +
+            "AND (:statutCtr IS NULL OR c.statutCtr = :statutCtr) " +
+            "AND (:equilibre IS NULL OR c.equilibre = :equilibre) " +
+            "AND (:remiseNonParvenue IS NULL OR c.remiseNonParvenue = :remiseNonParvenue) " +
+            "ORDER BY c.createdAt DESC, c.id DESC")
+    List<CtrListeDTO> findPageByCreatedAtBetween(@Param("start") LocalDateTime start,
+                                                 @Param("end") LocalDateTime end,
+                                                 @Param("sessionCtr") String sessionCtr,
+                                                 @Param("statutCtr") String statutCtr,
+                                                 @Param("equilibre") Boolean equilibre,
+                                                 @Param("remiseNonParvenue") Boolean remiseNonParvenue,
+                                                 @Param("avantId") Long avantId,
+                                                 Pageable pageable);
 
     // === MÉTHODES SUPPLÉMENTAIRES POUR ANALYSES ===
-    @Query("SELECT COUNT(c) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end AND c.codeValeur = :code")
-    Long countByCreatedAtBetweenAndCodeValeur(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end, @Param("code") String code);
+    @Query("SELECT COUNT(c) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end AND c.codeValeurRef = :code")
+    Long countByCreatedAtBetweenAndCodeValeur(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end, @Param("code") CodeValeur code);
 
     @Query("SELECT COUNT(c) FROM CTR c WHERE c.createdAt BETWEEN :start AND :end AND c.genereVersCtr = :genere")
     Long countByCreatedAtBetweenAndGenereVersCtr(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end, @Param("genere") Boolean genere);
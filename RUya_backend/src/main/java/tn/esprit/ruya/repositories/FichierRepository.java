@@ -4,6 +4,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import tn.esprit.ruya.models.CodeValeur;
 import tn.esprit.ruya.models.Fichier;
 
 import java.time.LocalDateTime;
@@ -15,38 +16,39 @@ public interface FichierRepository extends JpaRepository<Fichier, Long> {
     // === MÉTHODES DE BASE ===
     Long countByCreatedAtBetween(LocalDateTime start, LocalDateTime end);
 
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end")
-    Double sumMontantByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
+    // Sommes sumMontant* en millimes (Montant.versDinars pour l'affichage) : somme entière exacte
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end")
+    Long sumMontantByCreatedAtBetween(@Param("start") LocalDateTime start, @Param("end") LocalDateTime end);
 
     // === MÉTHODES PAR TYPE/NATURE/CODE ===
     Long countByCreatedAtBetweenAndTypeFichier(LocalDateTime start, LocalDateTime end, Fichier.TypeFichier typeFichier);
 
     Long countByCreatedAtBetweenAndNatureFichier(LocalDateTime start, LocalDateTime end, Fichier.NatureFichier natureFichier);
 
-    Long countByCreatedAtBetweenAndCodeValeur(LocalDateTime start, LocalDateTime end, String codeValeur);
+    Long countByCreatedAtBetweenAndCodeValeurRef(LocalDateTime start, LocalDateTime end, CodeValeur codeValeur);
 
     // === COMBINAISONS POUR DASHBOARD ===
     Long countByCreatedAtBetweenAndTypeFichierAndNatureFichier(LocalDateTime start, LocalDateTime end, Fichier.TypeFichier typeFichier, Fichier.NatureFichier natureFichier);
 
     Long countByCreatedAtBetweenAndNatureFichierAndOrigineSaisie(LocalDateTime start, LocalDateTime end, Fichier.NatureFichier natureFichier, Fichier.OrigineSaisie origineSaisie);
 
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.typeFichier = :type")
-    Double sumMontantByCreatedAtBetweenAndTypeFichier(@Param("start") LocalDateTime start,
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.typeFichier = :type")
+    Long sumMontantByCreatedAtBetweenAndTypeFichier(@Param("start") LocalDateTime start,
                                                       @Param("end") LocalDateTime end, @Param("type") Fichier.TypeFichier type);
 
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.natureFichier = :nature")
-    Double sumMontantByCreatedAtBetweenAndNatureFichier(@Param("start") LocalDateTime start,
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.natureFichier = :nature")
+    Long sumMontantByCreatedAtBetweenAndNatureFichier(@Param("start") LocalDateTime start,
                                                         @Param("end") LocalDateTime end, @Param("nature") Fichier.NatureFichier nature);
 
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.codeValeur = :code")
-    Double sumMontantByCreatedAtBetweenAndCodeValeur(@Param("start") LocalDateTime start,
-                                                     @Param("end") LocalDateTime end, @Param("code") String code);
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.codeValeurRef = :code")
+    Long sumMontantByCreatedAtBetweenAndCodeValeur(@Param("start") LocalDateTime start,
+                                                     @Param("end") LocalDateTime end, @Param("code") CodeValeur code);
 
     // === MÉTHODES ORIGINE SAISIE ===
     Long countByCreatedAtBetweenAndOrigineSaisie(LocalDateTime start, LocalDateTime end, String origineSaisie);
 
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.origineSaisie = :origine")
-    Double sumMontantByCreatedAtBetweenAndOrigineSaisie(@Param("start") LocalDateTime start,
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.origineSaisie = :origine")
+    Long sumMontantByCreatedAtBetweenAndOrigineSaisie(@Param("start") LocalDateTime start,
                                                         @Param("end") LocalDateTime end, @Param("origine") String origine);
 
     // === MÉTHODES GÉNÉRÉ PAR ENCAISSE ===
@@ -54,8 +56,8 @@ public interface FichierRepository extends JpaRepository<Fichier, Long> {
     Long countByCreatedAtBetweenAndGenereParEncaisse(@Param("start") LocalDateTime start,
                                                      @Param("end") LocalDateTime end, @Param("genere") Boolean genere);
 
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.genereParEncaisse = :genere")
-    Double sumMontantByCreatedAtBetweenAndGenereParEncaisse(@Param("start") LocalDateTime start,
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.genereParEncaisse = :genere")
+    Long sumMontantByCreatedAtBetweenAndGenereParEncaisse(@Param("start") LocalDateTime start,
                                                             @Param("end") LocalDateTime end, @Param("genere") Boolean genere);
 
     // === MÉTHODES VALIDATION BO ===
@@ -63,8 +65,8 @@ public interface FichierRepository extends JpaRepository<Fichier, Long> {
     Long countByCreatedAtBetweenAndValidationBO(@Param("start") LocalDateTime start,
                                                 @Param("end") LocalDateTime end, @Param("validation") Boolean validation);
 
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.validation = :validation")
-    Double sumMontantByCreatedAtBetweenAndValidationBO(@Param("start") LocalDateTime start,
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.validation = :validation")
+    Long sumMontantByCreatedAtBetweenAndValidationBO(@Param("start") LocalDateTime start,
                                                        @Param("end") LocalDateTime end, @Param("validation") Boolean validation);
 
     // === MÉTHODES COMBINÉES POUR DASHBOARD ===
@@ -76,9 +78,9 @@ public interface FichierRepository extends JpaRepository<Fichier, Long> {
             @Param("genere") Boolean genere,
             @Param("valide") Boolean valide);
 
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end " +
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end " +
             "AND f.genereParEncaisse = :genere AND f.validation = :valide")
-    Double sumMontantByCreatedAtBetweenAndGenereParEncaisseAndValidationBO(
+    Long sumMontantByCreatedAtBetweenAndGenereParEncaisseAndValidationBO(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end,
             @Param("genere") Boolean genere,
@@ -93,9 +95,9 @@ public interface FichierRepository extends JpaRepository<Fichier, Long> {
             @Param("genere") Boolean genere,
             @Param("valide") Boolean valide);
 
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end " +
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end " +
             "AND f.natureFichier = :nature AND f.genereParEncaisse = :genere AND f.validation = :valide")
-    Double sumMontantByCreatedAtBetweenAndNatureFichierAndGenereParEncaisseAndValidationBO(
+    Long sumMontantByCreatedAtBetweenAndNatureFichierAndGenereParEncaisseAndValidationBO(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end,
             @Param("nature") Fichier.NatureFichier nature,
@@ -103,74 +105,74 @@ public interface FichierRepository extends JpaRepository<Fichier, Long> {
             @Param("valide") Boolean valide);
 
     @Query("SELECT COUNT(f) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end " +
-            "AND f.natureFichier = :nature AND f.codeValeur = :code")
+            "AND f.natureFichier = :nature AND f.codeValeurRef = :code")
     Long countByCreatedAtBetweenAndNatureFichierAndCodeValeur(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end,
             @Param("nature") Fichier.NatureFichier nature,
-            @Param("code") String code);
+            @Param("code") CodeValeur code);
 
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end " +
-            "AND f.natureFichier = :nature AND f.codeValeur = :code")
-    Double sumMontantByCreatedAtBetweenAndNatureFichierAndCodeValeur(
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end " +
+            "AND f.natureFichier = :nature AND f.codeValeurRef = :code")
+    Long sumMontantByCreatedAtBetweenAndNatureFichierAndCodeValeur(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end,
             @Param("nature") Fichier.NatureFichier nature,
-            @Param("code") String code);
+            @Param("code") CodeValeur code);
 
     // === COMBINAISONS COMPLEXES EXISTANTES ===
     Long countByCreatedAtBetweenAndTypeFichierAndOrigineSaisie(LocalDateTime start, LocalDateTime end,
                                                                Fichier.TypeFichier typeFichier, String origineSaisie);
 
-    @Query("SELECT COUNT(f) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.validation = :validation AND f.codeValeur = :code")
+    @Query("SELECT COUNT(f) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end AND f.validation = :validation AND f.codeValeurRef = :code")
     Long countByCreatedAtBetweenAndValidationBOAndCodeValeur(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end,
             @Param("validation") Boolean validation,
-            @Param("code") String code);
+            @Param("code") CodeValeur code);
 
     // === MÉTHODES POUR FICHIERSERVICE ===
     // Récupérer les fichiers par code valeur
-    List<Fichier> findByCodeValeurOrderByCreatedAtDesc(String codeValeur);
+    List<Fichier> findByCodeValeurRefOrderByCreatedAtDesc(CodeValeur codeValeur);
 
     // Récupérer les fichiers par type et code valeur
-    List<Fichier> findByTypeFichierAndCodeValeurOrderByCreatedAtDesc(Fichier.TypeFichier typeFichier,
-                                                                     String codeValeur);
+    List<Fichier> findByTypeFichierAndCodeValeurRefOrderByCreatedAtDesc(Fichier.TypeFichier typeFichier,
+                                                                     CodeValeur codeValeur);
 
     // Récupérer les fichiers par code valeur et type (ordre inversé pour le service)
-    List<Fichier> findByCodeValeurAndTypeFichierOrderByCreatedAtDesc(String codeValeur,
+    List<Fichier> findByCodeValeurRefAndTypeFichierOrderByCreatedAtDesc(CodeValeur codeValeur,
                                                                      Fichier.TypeFichier typeFichier);
 
     // Récupérer les fichiers par nature et code valeur
-    List<Fichier> findByNatureFichierAndCodeValeurOrderByCreatedAtDesc(Fichier.NatureFichier natureFichier,
-                                                                       String codeValeur);
+    List<Fichier> findByNatureFichierAndCodeValeurRefOrderByCreatedAtDesc(Fichier.NatureFichier natureFichier,
+                                                                       CodeValeur codeValeur);
 
     // Récupérer les fichiers par sens et code valeur
-    List<Fichier> findBySensAndCodeValeurOrderByCreatedAtDesc(Fichier.Sens sens, String codeValeur);
+    List<Fichier> findBySensAndCodeValeurRefOrderByCreatedAtDesc(Fichier.Sens sens, CodeValeur codeValeur);
 
     // Récupérer les fichiers par période et code valeur
-    List<Fichier> findByCreatedAtBetweenAndCodeValeurOrderByCreatedAtDesc(LocalDateTime start, LocalDateTime end,
-                                                                          String codeValeur);
+    List<Fichier> findByCreatedAtBetweenAndCodeValeurRefOrderByCreatedAtDesc(LocalDateTime start, LocalDateTime end,
+                                                                          CodeValeur codeValeur);
 
     // Récupérer les fichiers par montant et code valeur
-    List<Fichier> findByMontantAndCodeValeurOrderByCreatedAtDesc(Double montant, String codeValeur);
+    List<Fichier> findByMontantAndCodeValeurRefOrderByCreatedAtDesc(Double montant, CodeValeur codeValeur);
 
     // Récupérer les fichiers par validation et code valeur
-    List<Fichier> findByValidationAndCodeValeurOrderByCreatedAtDesc(Boolean validation, String codeValeur);
+    List<Fichier> findByValidationAndCodeValeurRefOrderByCreatedAtDesc(Boolean validation, CodeValeur codeValeur);
 
     // Compter les fichiers par code valeur
-    Long countByCodeValeur(String codeValeur);
+    Long countByCodeValeurRef(CodeValeur codeValeur);
 
     // Calculer le montant total par code valeur
-    @Query("SELECT COALESCE(SUM(f.montant), 0.0) FROM Fichier f WHERE f.codeValeur = :codeValeur")
-    Double sumMontantByCodeValeur(@Param("codeValeur") String codeValeur);
+    @Query("SELECT CAST(COALESCE(SUM(ROUND(f.montant * 1000, 0)), 0) AS long) FROM Fichier f WHERE f.codeValeurRef = :codeValeur")
+    Long sumMontantByCodeValeur(@Param("codeValeur") CodeValeur codeValeur);
 
     // === MÉTHODES POUR COMPTER LES CHÈQUES (NOMBER) ===
     @Query("SELECT COALESCE(SUM(f.nomber), 0) FROM Fichier f WHERE f.createdAt BETWEEN :start AND :end " +
-            "AND f.natureFichier = :nature AND f.codeValeur = :code")
+            "AND f.natureFichier = :nature AND f.codeValeurRef = :code")
     Long sumNomberByCreatedAtBetweenAndNatureFichierAndCodeValeur(
             @Param("start") LocalDateTime start,
             @Param("end") LocalDateTime end,
             @Param("nature") Fichier.NatureFichier nature,
-            @Param("code") String code);
+            @Param("code") CodeValeur code);
 }
\ No newline at end of file
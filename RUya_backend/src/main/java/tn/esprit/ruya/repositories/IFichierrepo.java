@@ -6,8 +6,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.CodeValeur;
 import tn.esprit.ruya.models.Fichier;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
@@ -27,4 +29,15 @@ public interface IFichierrepo extends JpaRepository<Fichier, Long> {
     @Query(value = "DELETE FROM FICHIERS", nativeQuery = true)
     void deleteAllNative();
 
+    // Répartition par entrée du dictionnaire : [codeValeurRef, nombre]
+    @Query("SELECT f.codeValeurRef, COUNT(f) FROM Fichier f GROUP BY f.codeValeurRef")
+    List<Object[]> countGroupByCodeValeurRef();
+
+    // Fichiers dont le code ne porte aucun statut (en attente)
+    @Query("SELECT f FROM Fichier f WHERE f.codeValeurRef IS NULL OR f.codeValeurRef NOT IN :codes")
+    List<Fichier> findByCodeValeurRefNotIn(@Param("codes") List<CodeValeur> codes);
+
+    List<Fichier> findTop10ByCodeValeurRefInAndCreatedAtAfterOrderByCreatedAtDesc(List<CodeValeur> codes,
+                                                                                  LocalDateTime depuis);
+
 }
@@ -1,33 +1,205 @@
 package tn.esprit.ruya.repositories;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.Fichier;
 import tn.esprit.ruya.models.Notification;
+import tn.esprit.ruya.models.NotificationFluxDTO;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
 public interface INotificationRepo extends JpaRepository<Notification, Long> {
 
     // Récupérer toutes les notifications ordonnées par timestamp
+    @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.fichier LEFT JOIN FETCH n.userAction " +
+            "ORDER BY n.timestamp DESC")
     List<Notification> findAllByOrderByTimestampDesc();
 
     // Récupérer toutes les notifications non lues
-    List<Notification> findByLuOrderByTimestampDesc(Boolean lu);
+    @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.fichier LEFT JOIN FETCH n.userAction " +
+            "WHERE n.lu = :lu ORDER BY n.timestamp DESC")
+    List<Notification> findByLuOrderByTimestampDesc(@Param("lu") Boolean lu);
 
     // Récupérer toutes les notifications par type
-    List<Notification> findByTypeOrderByTimestampDesc(Notification.NotificationType type);
+    @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.fichier LEFT JOIN FETCH n.userAction " +
+            "WHERE n.type = :type ORDER BY n.timestamp DESC")
+    List<Notification> findByTypeOrderByTimestampDesc(@Param("type") Notification.NotificationType type);
+
+    // Dernière notification non lue d'un utilisateur pour un type (regroupement des rafales)
+    Notification findFirstByTypeAndUserActionIdAndLuFalseOrderByIdDesc(Notification.NotificationType type,
+                                                                         Long userId);
+
+    // Fichiers d'une notification regroupée
+    @Query("SELECT f FROM Fichier f WHERE f.id IN " +
+            "(SELECT nf.idFichier FROM NotificationFichier nf WHERE nf.idNotification = :id) ORDER BY f.id")
+    List<Fichier> findFichiersRegroupes(@Param("id") Long id);
+
+    // Notifications par type sur une période (récapitulatif par email)
+    @Query("SELECT n.type, COUNT(n) FROM Notification n WHERE n.timestamp > :depuis AND n.timestamp <= :jusqua " +
+            "GROUP BY n.type")
+    List<Object[]> countByTypeBetween(@Param("depuis") LocalDateTime depuis, @Param("jusqua") LocalDateTime jusqua);
+
+    // Notifications les plus récentes d'une période (détail du récapitulatif), de la plus récente à la plus ancienne
+    @Query("SELECT new tn.esprit.ruya.models.NotificationFluxDTO(n.id, n.type, n.titre, n.message, n.icon, " +
+            "n.lu, n.timestamp, n.nombre, f.id, f.nomFichier, u.id, u.username) " +
+            "FROM Notification n LEFT JOIN n.fichier f LEFT JOIN n.userAction u " +
+            "WHERE n.timestamp > :depuis AND n.timestamp <= :jusqua ORDER BY n.timestamp DESC, n.id DESC")
+    List<NotificationFluxDTO> findRecentesBetween(@Param("depuis") LocalDateTime depuis,
+                                                  @Param("jusqua") LocalDateTime jusqua,
+                                                  Pageable pageable);
 
     // Compter les notifications non lues
     Long countByLu(Boolean lu);
 
+    // Non lues par utilisateur (réconciliation des compteurs en mémoire)
+    @Query("SELECT n.userAction.id, COUNT(n) FROM Notification n WHERE n.lu = false " +
+            "AND n.userAction IS NOT NULL GROUP BY n.userAction.id")
+    List<Object[]> countNonLuesGroupByUser();
+
     // Récupérer les notifications d'un utilisateur triées par timestamp décroissant
-    List<Notification> findByUserActionIdOrderByTimestampDesc(Long userId);
+    @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.fichier LEFT JOIN FETCH n.userAction " +
+            "WHERE n.userAction.id = :userId ORDER BY n.timestamp DESC")
+    List<Notification> findByUserActionIdOrderByTimestampDesc(@Param("userId") Long userId);
 
     // Récupérer les notifications non lues d'un utilisateur triées par timestamp
     // décroissant
-    List<Notification> findByUserActionIdAndLuFalseOrderByTimestampDesc(Long userId);
+    @Query("SELECT n FROM Notification n LEFT JOIN FETCH n.fichier LEFT JOIN FETCH n.userAction " +
+            "WHERE n.userAction.id = :userId AND n.lu = false ORDER BY n.timestamp DESC")
+    List<Notification> findByUserActionIdAndLuFalseOrderByTimestampDesc(@Param("userId") Long userId);
 
     // Compter les notifications non lues d'un utilisateur
     Long countByUserActionIdAndLuFalse(Long userId);
+
+    // === FIL PAGINÉ (curseur timestamp + id) ===
+    // Une requête par combinaison de filtres, sans prédicat "(:x IS NULL OR ...)" : chacune parcourt
+    // son index dans l'ordre du tri (plage d'accès sur le curseur, arrêt après la page) :
+    // - global : IDX_NOTIFICATIONS_TIMESTAMP ; global lues / non lues : IDX_NOTIFICATIONS_LU_FLUX
+    // - par utilisateur : IDX_NOTIFICATIONS_USER_FLUX ; par utilisateur lues / non lues : IDX_NOTIFICATIONS_FLUX
+    // Sans curseur, le service passe (FIN_DES_TEMPS, Long.MAX_VALUE).
+
+    String SELECT_FLUX = "SELECT new tn.esprit.ruya.models.NotificationFluxDTO(n.id, n.type, n.titre, n.message, " +
+            "n.icon, n.lu, n.timestamp, n.nombre, f.id, f.nomFichier, u.id, u.username) " +
+            "FROM Notification n LEFT JOIN n.fichier f LEFT JOIN n.userAction u ";
+
+    // Page plus ancienne que le curseur (avantTs, avantId), du plus récent au plus ancien
+    String AVANT = "n.timestamp <= :avantTs AND (n.timestamp < :avantTs OR n.id < :avantId) " +
+            "ORDER BY n.timestamp DESC, n.id DESC";
+
+    // Page plus récente que le curseur (apresTs, apresId), de la plus proche du curseur à la plus récente
+    String APRES = "n.timestamp >= :apresTs AND (n.timestamp > :apresTs OR n.id > :apresId) " +
+            "ORDER BY n.timestamp ASC, n.id ASC";
+
+    @Query(SELECT_FLUX + "WHERE " + AVANT)
+    List<NotificationFluxDTO> findFluxAvant(@Param("avantTs") LocalDateTime avantTs,
+                                            @Param("avantId") Long avantId,
+                                            Pageable pageable);
+
+    @Query(SELECT_FLUX + "WHERE n.lu = :lu AND " + AVANT)
+    List<NotificationFluxDTO> findFluxAvantByLu(@Param("lu") Boolean lu,
+                                                @Param("avantTs") LocalDateTime avantTs,
+                                                @Param("avantId") Long avantId,
+                                                Pageable pageable);
+
+    @Query(SELECT_FLUX + "WHERE n.userAction.id = :userId AND " + AVANT)
+    List<NotificationFluxDTO> findFluxAvantByUser(@Param("userId") Long userId,
+                                                  @Param("avantTs") LocalDateTime avantTs,
+                                                  @Param("avantId") Long avantId,
+                                                  Pageable pageable);
+
+    @Query(SELECT_FLUX + "WHERE n.userAction.id = :userId AND n.lu = :lu AND " + AVANT)
+    List<NotificationFluxDTO> findFluxAvantByUserAndLu(@Param("userId") Long userId,
+                                                       @Param("lu") Boolean lu,
+                                                       @Param("avantTs") LocalDateTime avantTs,
+                                                       @Param("avantId") Long avantId,
+                                                       Pageable pageable);
+
+    @Query(SELECT_FLUX + "WHERE " + APRES)
+    List<NotificationFluxDTO> findFluxApres(@Param("apresTs") LocalDateTime apresTs,
+                                            @Param("apresId") Long apresId,
+                                            Pageable pageable);
+
+    @Query(SELECT_FLUX + "WHERE n.lu = :lu AND " + APRES)
+    List<NotificationFluxDTO> findFluxApresByLu(@Param("lu") Boolean lu,
+                                                @Param("apresTs") LocalDateTime apresTs,
+                                                @Param("apresId") Long apresId,
+                                                Pageable pageable);
+
+    @Query(SELECT_FLUX + "WHERE n.userAction.id = :userId AND " + APRES)
+    List<NotificationFluxDTO> findFluxApresByUser(@Param("userId") Long userId,
+                                                  @Param("apresTs") LocalDateTime apresTs,
+                                                  @Param("apresId") Long apresId,
+                                                  Pageable pageable);
+
+    @Query(SELECT_FLUX + "WHERE n.userAction.id = :userId AND n.lu = :lu AND " + APRES)
+    List<NotificationFluxDTO> findFluxApresByUserAndLu(@Param("userId") Long userId,
+                                                       @Param("lu") Boolean lu,
+                                                       @Param("apresTs") LocalDateTime apresTs,
+                                                       @Param("apresId") Long apresId,
+                                                       Pageable pageable);
+
+    // === SUIVI PAR NUMÉRO DE MODIFICATION (VERSION_FLUX) ===
+
+    @Query("SELECT MAX(n.versionFlux) FROM Notification n")
+    Long findMaxVersionFlux();
+
+    // Notifications créées ou regroupées après la version donnée, dans l'ordre des modifications
+    @Query("SELECT new tn.esprit.ruya.models.NotificationFluxDTO(n.id, n.type, n.titre, n.message, n.icon, " +
+            "n.lu, n.timestamp, n.nombre, f.id, f.nomFichier, u.id, u.username, n.versionFlux) " +
+            "FROM Notification n LEFT JOIN n.fichier f LEFT JOIN n.userAction u " +
+            "WHERE n.versionFlux > :depuis ORDER BY n.versionFlux ASC")
+    List<NotificationFluxDTO> findModifieesDepuis(@Param("depuis") Long depuis, Pageable pageable);
+
+    // Rattrapage à la reconnexion d'un flux temps réel : les plus récentes modifications d'abord
+    @Query("SELECT new tn.esprit.ruya.models.NotificationFluxDTO(n.id, n.type, n.titre, n.message, n.icon, " +
+            "n.lu, n.timestamp, n.nombre, f.id, f.nomFichier, u.id, u.username, n.versionFlux) " +
+            "FROM Notification n LEFT JOIN n.fichier f LEFT JOIN n.userAction u " +
+            "WHERE n.versionFlux > :depuis AND (:userId IS NULL OR n.userAction.id = :userId) " +
+            "ORDER BY n.versionFlux DESC")
+    List<NotificationFluxDTO> findDernieresModifications(@Param("userId") Long userId,
+                                                         @Param("depuis") Long depuis,
+                                                         Pageable pageable);
+
+    @Query("SELECT COUNT(n) FROM Notification n " +
+            "WHERE n.versionFlux > :depuis AND (:userId IS NULL OR n.userAction.id = :userId)")
+    long countModificationsDepuis(@Param("userId") Long userId, @Param("depuis") Long depuis);
+
+    // Hydratation des résultats de l'index de recherche (page de résultats)
+    @Query("SELECT new tn.esprit.ruya.models.NotificationFluxDTO(n.id, n.type, n.titre, n.message, n.icon, " +
+            "n.lu, n.timestamp, n.nombre, f.id, f.nomFichier, u.id, u.username) " +
+            "FROM Notification n LEFT JOIN n.fichier f LEFT JOIN n.userAction u WHERE n.id IN :ids")
+    List<NotificationFluxDTO> findFluxByIdIn(@Param("ids") List<Long> ids);
+
+    // Recherche en base tant que l'index n'est pas construit (motif en minuscules, %...%)
+    @Query("SELECT new tn.esprit.ruya.models.NotificationFluxDTO(n.id, n.type, n.titre, n.message, n.icon, " +
+            "n.lu, n.timestamp, n.nombre, f.id, f.nomFichier, u.id, u.username) " +
+            "FROM Notification n LEFT JOIN n.fichier f LEFT JOIN n.userAction u " +
+            "WHERE LOWER(n.titre) LIKE :motif OR LOWER(n.message) LIKE :motif OR LOWER(f.nomFichier) LIKE :motif " +
+            "ORDER BY n.timestamp DESC, n.id DESC")
+    List<NotificationFluxDTO> findFluxByTexte(@Param("motif") String motif, Pageable pageable);
+
+    @Query("SELECT COUNT(n) FROM Notification n LEFT JOIN n.fichier f " +
+            "WHERE LOWER(n.titre) LIKE :motif OR LOWER(n.message) LIKE :motif OR LOWER(f.nomFichier) LIKE :motif")
+    long countByTexte(@Param("motif") String motif);
+
+    // Marquage en masse en une instruction ; bornes optionnelles (id / date) pour n'acquitter
+    // que ce que le client a affiché, sans toucher aux notifications arrivées entre-temps
+    @Transactional
+    @Modifying
+    @Query("UPDATE Notification n SET n.lu = true WHERE n.lu = false " +
+            "AND (:jusquaId IS NULL OR n.id <= :jusquaId) AND (:jusqua IS NULL OR n.timestamp <= :jusqua)")
+    int marquerLues(@Param("jusquaId") Long jusquaId, @Param("jusqua") LocalDateTime jusqua);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Notification n SET n.lu = true WHERE n.lu = false AND n.userAction.id = :userId " +
+            "AND (:jusquaId IS NULL OR n.id <= :jusquaId) AND (:jusqua IS NULL OR n.timestamp <= :jusqua)")
+    int marquerLuesByUser(@Param("userId") Long userId, @Param("jusquaId") Long jusquaId,
+                          @Param("jusqua") LocalDateTime jusqua);
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package tn.esprit.ruya.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.Job;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface JobRepository extends JpaRepository<Job, Long> {
+
+    List<Job> findTop50ByOrderByIdDesc();
+
+    List<Job> findByStatut(Job.Statut statut);
+
+    boolean existsByTypeAndStatutIn(String type, List<Job.Statut> statuts);
+
+    @Query("SELECT j.statut FROM Job j WHERE j.id = :id")
+    Job.Statut findStatut(@Param("id") Long id);
+
+    // Changements de statut ciblés : pas de réécriture d'une ligne lue avant un changement concurrent
+    @Transactional
+    @Modifying
+    @Query("UPDATE Job j SET j.statut = tn.esprit.ruya.models.Job.Statut.EN_PAUSE, j.updatedAt = :maintenant " +
+            "WHERE j.id = :id AND j.statut IN (tn.esprit.ruya.models.Job.Statut.EN_COURS, " +
+            "tn.esprit.ruya.models.Job.Statut.EN_ATTENTE)")
+    int mettreEnPause(@Param("id") Long id, @Param("maintenant") LocalDateTime maintenant);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Job j SET j.statut = tn.esprit.ruya.models.Job.Statut.ECHEC, j.derniereErreur = :erreur, " +
+            "j.updatedAt = :maintenant WHERE j.id = :id")
+    int marquerEchec(@Param("id") Long id, @Param("erreur") String erreur,
+                     @Param("maintenant") LocalDateTime maintenant);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE Job j SET j.statut = tn.esprit.ruya.models.Job.Statut.TERMINE, j.finishedAt = :fin, " +
+            "j.updatedAt = :maintenant WHERE j.id = :id AND j.statut <> tn.esprit.ruya.models.Job.Statut.TERMINE")
+    int terminer(@Param("id") Long id, @Param("fin") LocalDateTime fin,
+                 @Param("maintenant") LocalDateTime maintenant);
+}
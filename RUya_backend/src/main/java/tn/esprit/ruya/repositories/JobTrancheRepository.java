@@ -0,0 +1,34 @@
+package tn.esprit.ruya.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.Job;
+import tn.esprit.ruya.models.JobTranche;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface JobTrancheRepository extends JpaRepository<JobTranche, Long> {
+
+    List<JobTranche> findByJobIdOrderByNumero(Long jobId);
+
+    long countByJobIdAndStatutNot(Long jobId, Job.Statut statut);
+
+    // Point de reprise : exécuté dans la transaction du morceau traité
+    @Modifying
+    @Query("UPDATE JobTranche t SET t.curseur = :curseur, t.lignesTraitees = t.lignesTraitees + :lignes, " +
+            "t.chunksTraites = t.chunksTraites + 1, t.updatedAt = :maintenant WHERE t.id = :id")
+    int avancer(@Param("id") Long id, @Param("curseur") Long curseur, @Param("lignes") long lignes,
+                @Param("maintenant") LocalDateTime maintenant);
+
+    @Transactional
+    @Modifying
+    @Query("UPDATE JobTranche t SET t.statut = :statut, t.updatedAt = :maintenant WHERE t.id = :id")
+    int changerStatut(@Param("id") Long id, @Param("statut") Job.Statut statut,
+                      @Param("maintenant") LocalDateTime maintenant);
+}
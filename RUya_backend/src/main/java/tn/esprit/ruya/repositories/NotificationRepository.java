@@ -50,7 +50,8 @@ public interface NotificationRepository extends JpaRepository<Notification, Long
     // Compter les notifications non lues d'un utilisateur par type
     Long countByUserActionIdAndTypeAndLuFalse(Long userId, Notification.NotificationType type);
 
-    // Récupérer les notifications avant une date donnée (pour nettoyage)
+    // Récupérer les notifications avant une date donnée (consultation ; la purge passe par
+    // NotificationRetentionService, en lots ensemblistes)
     List<Notification> findByTimestampBefore(LocalDateTime timestamp);
 
     // Récupérer les notifications entre deux dates
@@ -0,0 +1,21 @@
+package tn.esprit.ruya.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import tn.esprit.ruya.models.NotificationSuppression;
+
+import java.util.List;
+
+@Repository
+public interface NotificationSuppressionRepository extends JpaRepository<NotificationSuppression, Long> {
+
+    @Query("SELECT MAX(s.id) FROM NotificationSuppression s")
+    Long findMaxId();
+
+    // Suppressions journalisées après la dernière lue, dans l'ordre du journal
+    @Query("SELECT s FROM NotificationSuppression s WHERE s.id > :depuis ORDER BY s.id ASC")
+    List<NotificationSuppression> findDepuis(@Param("depuis") Long depuis, Pageable pageable);
+}
@@ -0,0 +1,14 @@
+package tn.esprit.ruya.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import tn.esprit.ruya.models.NotificationSynthese;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface NotificationSyntheseRepository extends JpaRepository<NotificationSynthese, Long> {
+
+    List<NotificationSynthese> findByJourBetweenOrderByJourAsc(LocalDate debut, LocalDate fin);
+}
@@ -0,0 +1,40 @@
+package tn.esprit.ruya.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.OutboxMail;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxMailRepository extends JpaRepository<OutboxMail, Long> {
+
+    // Prochain lot à envoyer : en attente, non expiré et dont le délai de reprise est écoulé
+    @Query("SELECT m FROM OutboxMail m WHERE m.statut = :statut " +
+            "AND (m.prochainEssai IS NULL OR m.prochainEssai <= :maintenant) " +
+            "AND (m.expiration IS NULL OR m.expiration > :maintenant) ORDER BY m.id")
+    List<OutboxMail> findPrets(@Param("statut") OutboxMail.Statut statut,
+                               @Param("maintenant") LocalDateTime maintenant,
+                               Pageable pageable);
+
+    long countByStatut(OutboxMail.Statut statut);
+
+    // Emails expirés (jamais envoyés) : leur contenu n'a plus de valeur
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboxMail m WHERE m.expiration <= :maintenant")
+    int supprimerExpires(@Param("maintenant") LocalDateTime maintenant);
+
+    // Emails abandonnés conservés pour diagnostic jusqu'à la limite de rétention
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM OutboxMail m WHERE m.statut = :statut AND m.createdAt < :limite")
+    int supprimerEchecsAvant(@Param("statut") OutboxMail.Statut statut,
+                             @Param("limite") LocalDateTime limite);
+}
@@ -0,0 +1,17 @@
+package tn.esprit.ruya.repositories;
+
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import tn.esprit.ruya.models.OutboxNotification;
+
+import java.util.List;
+
+@Repository
+public interface OutboxNotificationRepository extends JpaRepository<OutboxNotification, Long> {
+
+    // Prochain lot à distribuer, dans l'ordre d'écriture
+    List<OutboxNotification> findByStatutOrderByIdAsc(OutboxNotification.Statut statut, Pageable pageable);
+
+    long countByStatut(OutboxNotification.Statut statut);
+}
@@ -0,0 +1,31 @@
+package tn.esprit.ruya.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import tn.esprit.ruya.models.RapprochementAmplitude;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface RapprochementAmplitudeRepository extends JpaRepository<RapprochementAmplitude, Long> {
+
+    @Modifying
+    @Query("DELETE FROM RapprochementAmplitude r WHERE r.sessionDate = :session")
+    int deleteBySessionDate(@Param("session") LocalDate session);
+
+    // Sessions récentes ayant encore des chèques dans un état non définitif
+    @Query("SELECT DISTINCT r.sessionDate FROM RapprochementAmplitude r " +
+            "WHERE r.sessionDate >= :depuis AND r.resultat IN :resultats")
+    List<LocalDate> findSessionsOuvertes(@Param("depuis") LocalDate depuis,
+                                         @Param("resultats") Collection<RapprochementAmplitude.Resultat> resultats);
+
+    // Synthèse par résultat et type : [resultat, typeCheque, nombre]
+    @Query("SELECT r.resultat, r.typeCheque, COUNT(r) FROM RapprochementAmplitude r " +
+            "WHERE r.sessionDate BETWEEN :debut AND :fin GROUP BY r.resultat, r.typeCheque")
+    List<Object[]> syntheseBySessionDateBetween(@Param("debut") LocalDate debut, @Param("fin") LocalDate fin);
+}
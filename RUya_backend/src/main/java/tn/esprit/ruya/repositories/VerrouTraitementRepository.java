@@ -0,0 +1,59 @@
+package tn.esprit.ruya.repositories;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.VerrouTraitement;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface VerrouTraitementRepository extends JpaRepository<VerrouTraitement, String> {
+
+    // Prise du bail : une seule mise à jour conditionnelle, atomique entre les nœuds
+    @Transactional
+    @Modifying
+    @Query("UPDATE VerrouTraitement v SET v.verrouilleJusqua = :jusqua, v.verrouillePar = :noeud " +
+            "WHERE v.nom = :nom AND (v.verrouilleJusqua IS NULL OR v.verrouilleJusqua < :maintenant)")
+    int acquerir(@Param("nom") String nom,
+                 @Param("noeud") String noeud,
+                 @Param("maintenant") LocalDateTime maintenant,
+                 @Param("jusqua") LocalDateTime jusqua);
+
+    // Prolongation du bail par son détenteur, tant qu'il n'a pas expiré
+    @Transactional
+    @Modifying
+    @Query("UPDATE VerrouTraitement v SET v.verrouilleJusqua = :jusqua " +
+            "WHERE v.nom = :nom AND v.verrouillePar = :noeud AND v.verrouilleJusqua >= :maintenant")
+    int prolonger(@Param("nom") String nom,
+                  @Param("noeud") String noeud,
+                  @Param("maintenant") LocalDateTime maintenant,
+                  @Param("jusqua") LocalDateTime jusqua);
+
+    // Libération du bail par son détenteur
+    @Transactional
+    @Modifying
+    @Query("UPDATE VerrouTraitement v SET v.verrouilleJusqua = NULL WHERE v.nom = :nom AND v.verrouillePar = :noeud")
+    int liberer(@Param("nom") String nom, @Param("noeud") String noeud);
+
+    // Fin de passage par le détenteur : métriques, watermark (inchangé si null) et libération en une mise à jour
+    @Transactional
+    @Modifying
+    @Query("UPDATE VerrouTraitement v SET v.verrouilleJusqua = NULL, " +
+            "v.watermark = COALESCE(:watermark, v.watermark), v.dernierDebut = :debut, v.derniereFin = :fin, " +
+            "v.derniereDureeMs = :dureeMs, v.dernieresSessions = :sessions, v.dernieresMisesAJour = :misesAJour, " +
+            "v.derniereErreur = :erreur WHERE v.nom = :nom AND v.verrouillePar = :noeud")
+    int terminer(@Param("nom") String nom,
+                 @Param("noeud") String noeud,
+                 @Param("watermark") LocalDateTime watermark,
+                 @Param("debut") LocalDateTime debut,
+                 @Param("fin") LocalDateTime fin,
+                 @Param("dureeMs") Long dureeMs,
+                 @Param("sessions") Integer sessions,
+                 @Param("misesAJour") Integer misesAJour,
+                 @Param("erreur") String erreur);
+
+}
@@ -0,0 +1,291 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.repositories.UserRepository;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Import des fichiers de résultat d'intégration Amplitude (format à largeur fixe).
+ *
+ * Format d'un enregistrement (une ligne, terminée par LF ou CRLF) :
+ * <pre>
+ *  positions  longueur  contenu
+ *  01 - 20    20        numéro de chèque, cadré à gauche, complété par des espaces
+ *  21 - 35    15        montant en millimes, cadré à droite, complété par des zéros
+ *  36 - 40    5         type de chèque : INTRA ou INTER
+ *  41         1         statut : I (INTEGRE), R (REJETE), E (EN_COURS)
+ * </pre>
+ *
+ * Le fichier est projeté en mémoire par fenêtres (FileChannel.map) et lu octet
+ * par octet : seul le numéro de chèque devient une chaîne. Les lignes sont
+ * fusionnées (MERGE) par lots dans AMPLITUDE sur la clé numéro + montant en
+ * millimes (ROUND(MONTANT * 1000), comparé en entier et non en FLOAT), avec
+ * des tampons de lot réutilisés : la mémoire consommée ne dépend pas de la
+ * taille du fichier.
+ */
+@Service
+@RequiredArgsConstructor
+public class AmplitudeImportService {
+
+    static final int LONGUEUR_NUMERO = 20;
+    static final int DEBUT_MONTANT = 20;
+    static final int LONGUEUR_MONTANT = 15;
+    static final int DEBUT_TYPE = 35;
+    static final int DEBUT_STATUT = 40;
+    static final int LONGUEUR_ENREGISTREMENT = 41;
+
+    private static final String[] TYPES = { "INTRA", "INTER" };
+    private static final String[] STATUTS = { "INTEGRE", "REJETE", "EN_COURS" };
+
+    private static final String SQL_MERGE =
+            "MERGE INTO AMPLITUDE a " +
+            "USING (SELECT ? AS NUMERO_CHEQUE, ? AS MILLIMES, ? AS TYPE_CHEQUE, ? AS STATUT_TRAITEMENT, " +
+            "? AS ID_USER, ? AS HORODATAGE FROM DUAL) s " +
+            "ON (a.NUMERO_CHEQUE = s.NUMERO_CHEQUE AND ROUND(a.MONTANT * 1000) = s.MILLIMES) " +
+            "WHEN MATCHED THEN UPDATE SET a.TYPE_CHEQUE = s.TYPE_CHEQUE, " +
+            "a.STATUT_TRAITEMENT = s.STATUT_TRAITEMENT, a.UPDATED_AT = s.HORODATAGE " +
+            "WHEN NOT MATCHED THEN INSERT (ID_USER, NUMERO_CHEQUE, MONTANT, TYPE_CHEQUE, STATUT_TRAITEMENT, CREATED_AT) " +
+            "VALUES (s.ID_USER, s.NUMERO_CHEQUE, s.MILLIMES / 1000, s.TYPE_CHEQUE, s.STATUT_TRAITEMENT, s.HORODATAGE)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final UserRepository userRepository;
+
+    @Value("${ruya.amplitude.import-dir:import/amplitude}")
+    private String dossierImport;
+
+    @Value("${ruya.amplitude.taille-lot:1000}")
+    private int tailleLot;
+
+    @Value("${ruya.amplitude.fenetre-mo:64}")
+    private int fenetreMo;
+
+    /**
+     * Importe un fichier du dossier d'import Amplitude.
+     * @param nomFichier nom du fichier, relatif à ruya.amplitude.import-dir
+     * @param userId utilisateur rattaché aux lignes créées
+     */
+    public Map<String, Object> importer(String nomFichier, Long userId) throws IOException {
+        Path dossier = Paths.get(dossierImport).toAbsolutePath().normalize();
+        Path chemin = dossier.resolve(nomFichier).normalize();
+        if (!chemin.startsWith(dossier)) {
+            throw new IllegalArgumentException("Le fichier doit se trouver dans le dossier d'import");
+        }
+        if (!Files.isRegularFile(chemin)) {
+            throw new IllegalArgumentException("Fichier introuvable : " + nomFichier);
+        }
+        if (userId == null || !userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("Utilisateur introuvable : " + userId);
+        }
+
+        long debut = System.nanoTime();
+        Lot lot = new Lot(Math.max(1, tailleLot), userId, Timestamp.valueOf(LocalDateTime.now()));
+        long fenetre = (long) Math.max(1, fenetreMo) * 1024 * 1024;
+        long octets;
+
+        try (FileChannel canal = FileChannel.open(chemin, StandardOpenOption.READ)) {
+            octets = canal.size();
+            long position = 0;
+            while (position < octets) {
+                long longueur = Math.min(fenetre, octets - position);
+                MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, position, longueur);
+                int limite = (int) longueur;
+                boolean derniereFenetre = position + longueur == octets;
+
+                int debutLigne = 0;
+                for (int i = 0; i < limite; i++) {
+                    if (buffer.get(i) == '\n') {
+                        traiterLigne(buffer, debutLigne, i, lot);
+                        debutLigne = i + 1;
+                    }
+                }
+
+                if (derniereFenetre) {
+                    if (debutLigne < limite) {
+                        traiterLigne(buffer, debutLigne, limite, lot);
+                    }
+                    position = octets;
+                } else {
+                    if (debutLigne == 0) {
+                        throw new IllegalStateException("Ligne plus longue que la fenêtre de lecture");
+                    }
+                    // La ligne incomplète est relue au début de la fenêtre suivante
+                    position += debutLigne;
+                }
+            }
+        }
+        lot.envoyer();
+
+        long dureeNanos = System.nanoTime() - debut;
+        long lignes = lot.importees + lot.rejetees;
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("fichier", nomFichier);
+        resultat.put("octets", octets);
+        resultat.put("lignes", lignes);
+        resultat.put("importees", lot.importees);
+        resultat.put("rejetees", lot.rejetees);
+        resultat.put("lots", lot.lots);
+        resultat.put("dureeMs", dureeNanos / 1_000_000);
+        resultat.put("lignesParSeconde", dureeNanos > 0 ? Math.round(lignes * 1e9 / dureeNanos) : lignes);
+        System.out.println("📥 Import Amplitude terminé: " + resultat);
+        return resultat;
+    }
+
+    private void traiterLigne(MappedByteBuffer buffer, int debut, int fin, Lot lot) {
+        if (fin > debut && buffer.get(fin - 1) == '\r') {
+            fin--;
+        }
+        if (fin == debut) {
+            return; // ligne vide
+        }
+        if (fin - debut < LONGUEUR_ENREGISTREMENT || !lot.ajouter(buffer, debut)) {
+            if (lot.rejetees++ < 10) {
+                System.err.println("⚠️ Ligne Amplitude rejetée à l'octet " + debut + " de la fenêtre");
+            }
+        }
+    }
+
+    /**
+     * Tampons d'un lot, réutilisés d'un envoi à l'autre.
+     */
+    private final class Lot implements BatchPreparedStatementSetter {
+
+        private final String[] numeros;
+        private final long[] montants;
+        private final byte[] types;
+        private final byte[] statuts;
+        private final byte[] tamponNumero = new byte[LONGUEUR_NUMERO];
+        private final Long userId;
+        private final Timestamp horodatage;
+        private int taille;
+
+        long importees;
+        long rejetees;
+        int lots;
+
+        Lot(int capacite, Long userId, Timestamp horodatage) {
+            this.numeros = new String[capacite];
+            this.montants = new long[capacite];
+            this.types = new byte[capacite];
+            this.statuts = new byte[capacite];
+            this.userId = userId;
+            this.horodatage = horodatage;
+        }
+
+        boolean ajouter(MappedByteBuffer buffer, int debut) {
+            // Numéro : espaces de tête et de fin ignorés
+            int d = debut;
+            int f = debut + LONGUEUR_NUMERO;
+            while (d < f && buffer.get(d) == ' ') {
+                d++;
+            }
+            while (f > d && buffer.get(f - 1) == ' ') {
+                f--;
+            }
+            if (d == f) {
+                return false;
+            }
+
+            long montant = 0;
+            int chiffres = 0;
+            for (int i = debut + DEBUT_MONTANT; i < debut + DEBUT_MONTANT + LONGUEUR_MONTANT; i++) {
+                byte b = buffer.get(i);
+                if (b == ' ') {
+                    continue;
+                }
+                if (b < '0' || b > '9') {
+                    return false;
+                }
+                montant = montant * 10 + (b - '0');
+                chiffres++;
+            }
+            // Montant absent (zone à blanc) : ligne invalide, et non un chèque de 0
+            if (chiffres == 0) {
+                return false;
+            }
+
+            byte type = typeCheque(buffer, debut + DEBUT_TYPE);
+            byte statut = switch (buffer.get(debut + DEBUT_STATUT)) {
+                case 'I' -> 0;
+                case 'R' -> 1;
+                case 'E' -> 2;
+                default -> -1;
+            };
+            if (type < 0 || statut < 0) {
+                return false;
+            }
+
+            for (int i = d; i < f; i++) {
+                tamponNumero[i - d] = buffer.get(i);
+            }
+            numeros[taille] = new String(tamponNumero, 0, f - d, StandardCharsets.ISO_8859_1);
+            montants[taille] = montant;
+            types[taille] = type;
+            statuts[taille] = statut;
+            taille++;
+            importees++;
+
+            if (taille == numeros.length) {
+                envoyer();
+            }
+            return true;
+        }
+
+        void envoyer() {
+            if (taille == 0) {
+                return;
+            }
+            jdbcTemplate.batchUpdate(SQL_MERGE, this);
+            lots++;
+            taille = 0;
+        }
+
+        @Override
+        public void setValues(PreparedStatement ps, int i) throws SQLException {
+            ps.setString(1, numeros[i]);
+            ps.setLong(2, montants[i]);
+            ps.setString(3, TYPES[types[i]]);
+            ps.setString(4, STATUTS[statuts[i]]);
+            ps.setLong(5, userId);
+            ps.setTimestamp(6, horodatage);
+        }
+
+        @Override
+        public int getBatchSize() {
+            return taille;
+        }
+    }
+
+    // INTRA -> 0, INTER -> 1, sinon -1
+    private static byte typeCheque(MappedByteBuffer buffer, int debut) {
+        if (buffer.get(debut) != 'I' || buffer.get(debut + 1) != 'N' || buffer.get(debut + 2) != 'T') {
+            return -1;
+        }
+        byte b3 = buffer.get(debut + 3);
+        byte b4 = buffer.get(debut + 4);
+        if (b3 == 'R' && b4 == 'A') {
+            return 0;
+        }
+        if (b3 == 'E' && b4 == 'R') {
+            return 1;
+        }
+        return -1;
+    }
+}
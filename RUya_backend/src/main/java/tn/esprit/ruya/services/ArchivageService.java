@@ -0,0 +1,131 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Archivage des sessions clôturées de CARTHAGO et FICHIERS.
+ *
+ * Les tables sont partitionnées par jour sur CREATED_AT (voir
+ * db/oracle/partitionnement.sql). Une partition dont la borne haute est
+ * antérieure à la rétention est déplacée en bloc, compressée, vers le
+ * tablespace d'archive. Les lignes restent dans la même table : les requêtes
+ * par période continuent de fonctionner sans modification.
+ */
+@Service
+@RequiredArgsConstructor
+public class ArchivageService {
+
+    private static final List<String> TABLES_PARTITIONNEES = List.of("CARTHAGO", "FICHIERS");
+
+    // Noms issus du dictionnaire Oracle, revalidés avant concaténation dans le DDL
+    private static final Pattern NOM_ORACLE = Pattern.compile("^[A-Z][A-Z0-9_$#]{0,127}$");
+
+    // HIGH_VALUE d'une partition par intervalle : TIMESTAMP' 2025-01-02 00:00:00'
+    private static final Pattern BORNE_HAUTE = Pattern.compile("(\\d{4}-\\d{2}-\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${ruya.archivage.active:false}")
+    private boolean archivageActive;
+
+    @Value("${ruya.archivage.retention-jours:90}")
+    private int retentionJours;
+
+    @Value("${ruya.archivage.tablespace:RUYA_ARCHIVE}")
+    private String tablespaceArchive;
+
+    @Scheduled(cron = "${ruya.archivage.cron:0 30 2 * * *}")
+    public void archivageProgramme() {
+        if (!archivageActive) {
+            return;
+        }
+        archiverSessionsCloturees();
+    }
+
+    /**
+     * Déplace vers le tablespace d'archive toutes les partitions entièrement
+     * antérieures à (aujourd'hui - rétention).
+     */
+    public Map<String, Object> archiverSessionsCloturees() {
+        long debut = System.currentTimeMillis();
+        LocalDate limite = LocalDate.now().minusDays(retentionJours);
+        String tablespace = tablespaceArchive.toUpperCase();
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("limite", limite.toString());
+        resultat.put("tablespace", tablespace);
+
+        if (!NOM_ORACLE.matcher(tablespace).matches()) {
+            System.err.println("❌ Tablespace d'archive invalide: " + tablespaceArchive);
+            resultat.put("erreur", "Tablespace d'archive invalide");
+            return resultat;
+        }
+
+        for (String table : TABLES_PARTITIONNEES) {
+            resultat.put(table, archiverTable(table, limite, tablespace));
+        }
+
+        resultat.put("dureeMs", System.currentTimeMillis() - debut);
+        System.out.println("🗄️ Archivage terminé: " + resultat);
+        return resultat;
+    }
+
+    private int archiverTable(String table, LocalDate limite, String tablespace) {
+        Integer partitionnee = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM USER_PART_TABLES WHERE TABLE_NAME = ?", Integer.class, table);
+        if (partitionnee == null || partitionnee == 0) {
+            System.out.println("⚠️ Table " + table
+                    + " non partitionnée, exécuter db/oracle/partitionnement.sql avant l'archivage");
+            return 0;
+        }
+
+        // HIGH_VALUE est un LONG : il doit être lu en dernier
+        List<String[]> partitions = jdbcTemplate.query(
+                "SELECT PARTITION_NAME, TABLESPACE_NAME, HIGH_VALUE FROM USER_TAB_PARTITIONS " +
+                        "WHERE TABLE_NAME = ? ORDER BY PARTITION_POSITION",
+                (rs, i) -> new String[] { rs.getString(1), rs.getString(2), rs.getString(3) },
+                table);
+
+        int deplacees = 0;
+        for (String[] partition : partitions) {
+            String nom = partition[0];
+            if (tablespace.equals(partition[1]) || !NOM_ORACLE.matcher(nom).matches()) {
+                continue;
+            }
+
+            LocalDate borneHaute = lireBorneHaute(partition[2]);
+            // Borne haute exclusive : la partition ne contient que des sessions < borneHaute
+            if (borneHaute == null || borneHaute.isAfter(limite)) {
+                continue;
+            }
+
+            try {
+                jdbcTemplate.execute("ALTER TABLE " + table + " MOVE PARTITION " + nom
+                        + " TABLESPACE " + tablespace + " COMPRESS UPDATE INDEXES ONLINE");
+                deplacees++;
+            } catch (Exception e) {
+                System.err.println("❌ Erreur archivage partition " + table + "." + nom + ": " + e.getMessage());
+            }
+        }
+        return deplacees;
+    }
+
+    private LocalDate lireBorneHaute(String highValue) {
+        if (highValue == null) {
+            return null;
+        }
+        Matcher matcher = BORNE_HAUTE.matcher(highValue);
+        return matcher.find() ? LocalDate.parse(matcher.group(1)) : null;
+    }
+}
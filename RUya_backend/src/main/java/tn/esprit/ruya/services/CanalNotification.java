@@ -0,0 +1,16 @@
+package tn.esprit.ruya.services;
+
+import tn.esprit.ruya.models.Notification;
+
+import java.util.List;
+
+/**
+ * Canal de diffusion (push) des notifications distribuées depuis l'outbox.
+ *
+ * Appelé après la validation de la transaction qui a écrit les NOTIFICATIONS :
+ * un canal en échec n'annule rien, la table reste la source de vérité.
+ */
+public interface CanalNotification {
+
+    void publier(List<Notification> notifications);
+}
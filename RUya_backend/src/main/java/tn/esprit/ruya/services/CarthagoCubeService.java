@@ -0,0 +1,136 @@
+package tn.esprit.ruya.services;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Selection;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.Carthago;
+import tn.esprit.ruya.models.CubeRequestDTO;
+import tn.esprit.ruya.models.CubeResultDTO;
+import tn.esprit.ruya.models.Montant;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Agrégation multidimensionnelle sur CARTHAGO : une seule requête GROUP BY
+ * sur les dimensions demandées remplace les combinaisons countByCreatedAtBetweenAndXAndY.
+ */
+@Service
+public class CarthagoCubeService {
+
+    // Dimensions autorisées (noms d'attributs de l'entité Carthago)
+    private static final Set<String> DIMENSIONS = Set.of(
+            "codeValeur", "typeFichier", "natureFichier", "statutCheque", "sens", "statutImage",
+            "avantCTR", "apresCTR", "traiteParCTR", "fichierEnv", "controleEffectue",
+            "aVerifier", "remiseDouble", "valideBodinars", "chequeWebBo");
+
+    private static final List<String> MESURES = List.of("count", "sumMontant", "sumNomber");
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    public CubeResultDTO calculerCube(CubeRequestDTO request) {
+        LocalDateTime start = request.getStart() != null ? request.getStart()
+                : LocalDateTime.now().toLocalDate().atStartOfDay();
+        LocalDateTime end = request.getEnd() != null ? request.getEnd() : start.plusDays(1).minusSeconds(1);
+
+        List<String> dimensions = request.getDimensions() != null ? request.getDimensions() : List.of();
+        List<String> mesures = request.getMesures() != null && !request.getMesures().isEmpty()
+                ? request.getMesures() : MESURES;
+
+        for (String dimension : dimensions) {
+            verifierDimension(dimension);
+        }
+        for (String mesure : mesures) {
+            if (!MESURES.contains(mesure)) {
+                throw new IllegalArgumentException("Mesure inconnue : " + mesure + " (attendu : " + MESURES + ")");
+            }
+        }
+
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Object[]> query = cb.createQuery(Object[].class);
+        Root<Carthago> c = query.from(Carthago.class);
+
+        List<Selection<?>> selections = new ArrayList<>();
+        List<Expression<?>> groupBy = new ArrayList<>();
+        for (String dimension : dimensions) {
+            Path<Object> path = c.get(dimension);
+            selections.add(path);
+            groupBy.add(path);
+        }
+        for (String mesure : mesures) {
+            switch (mesure) {
+                case "count" -> selections.add(cb.count(c));
+                // Somme entière en millimes, rendue en dinars par ligne
+                case "sumMontant" -> selections.add(cb.coalesce(cb.sum(cb.function("ROUND", Double.class,
+                        cb.prod(c.<Double>get("montant"), 1000.0), cb.literal(0))), 0.0));
+                default -> selections.add(cb.coalesce(cb.sum(c.<Integer>get("nomber")), 0));
+            }
+        }
+
+        List<Predicate> predicats = new ArrayList<>();
+        predicats.add(cb.between(c.get("createdAt"), start, end));
+        if (request.getFiltres() != null) {
+            for (Map.Entry<String, String> filtre : request.getFiltres().entrySet()) {
+                verifierDimension(filtre.getKey());
+                Path<Object> path = c.get(filtre.getKey());
+                predicats.add(cb.equal(path, convertirValeur(path.getJavaType(), filtre.getValue())));
+            }
+        }
+
+        query.multiselect(selections).where(predicats.toArray(new Predicate[0]));
+        if (!groupBy.isEmpty()) {
+            query.groupBy(groupBy);
+        }
+
+        List<List<Object>> lignes = new ArrayList<>();
+        for (Object[] row : entityManager.createQuery(query).getResultList()) {
+            List<Object> ligne = new ArrayList<>(row.length);
+            for (int i = 0; i < row.length; i++) {
+                Object valeur = row[i];
+                if (i >= dimensions.size() && "sumMontant".equals(mesures.get(i - dimensions.size()))) {
+                    ligne.add(Montant.versDinars(Montant.millimes((Number) valeur)));
+                } else {
+                    // Format compact : les enums sont transmis par leur nom
+                    ligne.add(valeur instanceof Enum<?> e ? e.name() : valeur);
+                }
+            }
+            lignes.add(ligne);
+        }
+
+        return new CubeResultDTO(start, end, new ArrayList<>(dimensions), new ArrayList<>(mesures), lignes);
+    }
+
+    private void verifierDimension(String dimension) {
+        if (!DIMENSIONS.contains(dimension)) {
+            throw new IllegalArgumentException("Dimension inconnue : " + dimension + " (attendu : " + DIMENSIONS + ")");
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object convertirValeur(Class<?> type, String valeur) {
+        if (valeur == null) {
+            return null;
+        }
+        if (type.isEnum()) {
+            return Enum.valueOf((Class<? extends Enum>) type, valeur.toUpperCase());
+        }
+        if (type == Boolean.class) {
+            return Boolean.parseBoolean(valeur);
+        }
+        if (type == Integer.class) {
+            return Integer.valueOf(valeur);
+        }
+        throw new IllegalArgumentException("Type de filtre non supporté : " + type.getSimpleName());
+    }
+}
@@ -0,0 +1,458 @@
+package tn.esprit.ruya.services;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tn.esprit.ruya.models.Carthago;
+import tn.esprit.ruya.models.Montant;
+import tn.esprit.ruya.models.FamilleValeur;
+import tn.esprit.ruya.repositories.CarthageRepository;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Snapshot colonnaire en mémoire des chèques CARTHAGO de la session du jour.
+ *
+ * Chaque indicateur booléen est stocké sous forme de deux bitsets (vrai / faux,
+ * pour garder la sémantique SQL des NULL), chaque valeur d'enum sous forme d'un
+ * bitset, et le montant en millimes dans un long[]. Une combinaison quelconque de filtres
+ * se résout par des ET bit à bit sur des long[] puis un bitCount, sans requête.
+ *
+ * Le snapshot est tenu à jour par CarthagoSnapshotListener (événements JPA,
+ * appliqués après commit) et rechargé périodiquement pour absorber le changement
+ * de jour. Les événements reçus pendant un rechargement sont journalisés puis
+ * rejoués sur le nouveau snapshot avant la substitution : aucun n'est perdu.
+ *
+ * Les mises à jour JDBC en masse (génération et réception CTR, file de
+ * contrôle, jobs de rattrapage) ne passent pas par l'entité et ne déclenchent
+ * pas le listener : ces traitements appellent demanderRechargementApresCommit().
+ * Les rechargements demandés (mises à jour en masse, chèque inséré hors ordre)
+ * sont faits en arrière-plan et regroupés : au plus un en cours et un en attente.
+ */
+@Service
+@RequiredArgsConstructor
+public class CarthagoSessionSnapshot {
+
+    public enum Indicateur {
+        AVANT_CTR, APRES_CTR, FICHIER_ENV, TRAITE_PAR_CTR, CONTROLE_EFFECTUE, A_VERIFIER, REMISE_DOUBLE
+    }
+
+    public record Resultat(LocalDate session, long nombre, double montant, int lignesSession, long dureeNanos) {
+    }
+
+    private final CarthageRepository carthagoRepository;
+
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+    private Colonnes colonnes = new Colonnes(LocalDate.now(), 0);
+
+    // Événements reçus pendant un rechargement, rejoués sur les nouvelles colonnes (null hors rechargement)
+    private List<Evenement> journal;
+
+    // Rechargements sérialisés : un seul lit la base à la fois
+    private final Object rechargement = new Object();
+
+    // Un rechargement en cours et au plus un en attente : les demandes suivantes sont absorbées
+    private final ThreadPoolExecutor executeur = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), runnable -> {
+                Thread thread = new Thread(runnable, "snapshot-carthago");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialiser() {
+        recharger();
+    }
+
+    @Scheduled(fixedDelayString = "${ruya.snapshot.rechargement-ms:600000}",
+            initialDelayString = "${ruya.snapshot.rechargement-ms:600000}")
+    public void rechargementPeriodique() {
+        recharger();
+    }
+
+    @PreDestroy
+    public void arreter() {
+        executeur.shutdownNow();
+    }
+
+    /**
+     * Reconstruit le snapshot de la session du jour depuis la base (hors verrou),
+     * rejoue les événements reçus entre-temps, puis le substitue à l'ancien.
+     */
+    public void recharger() {
+        synchronized (rechargement) {
+            verrou.writeLock().lock();
+            try {
+                journal = new ArrayList<>();
+            } finally {
+                verrou.writeLock().unlock();
+            }
+            try {
+                LocalDate session = LocalDate.now();
+                List<Object[]> rows = carthagoRepository.findColonnesSnapshotByCreatedAtBetween(
+                        session.atStartOfDay(), session.plusDays(1).atStartOfDay().minusNanos(1));
+
+                Colonnes nouvelles = new Colonnes(session, rows.size());
+                for (Object[] row : rows) {
+                    nouvelles.ajouter(Ligne.depuisProjection(row));
+                }
+
+                boolean incomplet = false;
+                verrou.writeLock().lock();
+                try {
+                    for (Evenement evenement : journal) {
+                        incomplet |= !evenement.rejouer(nouvelles);
+                    }
+                    colonnes = nouvelles;
+                } finally {
+                    journal = null;
+                    verrou.writeLock().unlock();
+                }
+                System.out.println("📸 Snapshot Carthago " + session + " rechargé: " + rows.size() + " chèques");
+                if (incomplet) {
+                    demanderRechargement();
+                }
+            } catch (Exception e) {
+                verrou.writeLock().lock();
+                try {
+                    journal = null;
+                } finally {
+                    verrou.writeLock().unlock();
+                }
+                System.err.println("❌ Erreur rechargement snapshot Carthago: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Demande un rechargement en arrière-plan, regroupé avec les demandes en attente.
+     */
+    public void demanderRechargement() {
+        executeur.execute(this::recharger);
+    }
+
+    /**
+     * Demande un rechargement après la validation de la transaction courante
+     * (mise à jour JDBC en masse des chèques, invisible du listener).
+     */
+    public void demanderRechargementApresCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            demanderRechargement();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                demanderRechargement();
+            }
+        });
+    }
+
+    /**
+     * Applique l'état courant d'un chèque (insertion ou mise à jour)
+     */
+    void appliquer(Ligne ligne, LocalDate dateCreation) {
+        Evenement evenement = c -> !c.session.equals(dateCreation) || c.appliquer(ligne);
+        if (!enregistrer(evenement)) {
+            // Chèque hors ordre : reconstruction complète, sans bloquer le commit appelant
+            demanderRechargement();
+        }
+    }
+
+    void retirer(long id) {
+        enregistrer(c -> {
+            c.supprimer(id);
+            return true;
+        });
+    }
+
+    // Applique l'événement au snapshot courant et le journalise si un rechargement est en cours
+    private boolean enregistrer(Evenement evenement) {
+        verrou.writeLock().lock();
+        try {
+            if (journal != null) {
+                journal.add(evenement);
+            }
+            return evenement.rejouer(colonnes);
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Compte et somme les chèques de la session correspondant à tous les filtres
+     * fournis (un filtre null est ignoré).
+     */
+    public Resultat compter(Map<Indicateur, Boolean> indicateurs,
+                            FamilleValeur codeValeur,
+                            Carthago.TypeFichier typeFichier,
+                            Carthago.StatutCheque statutCheque,
+                            Carthago.Sens sens) {
+        long debut = System.nanoTime();
+        verrou.readLock().lock();
+        try {
+            Colonnes c = colonnes;
+            List<long[]> operandes = new ArrayList<>();
+            operandes.add(c.presentes);
+            if (indicateurs != null) {
+                indicateurs.forEach((indicateur, valeur) -> {
+                    if (valeur != null) {
+                        operandes.add(valeur ? c.vrai[indicateur.ordinal()] : c.faux[indicateur.ordinal()]);
+                    }
+                });
+            }
+            if (codeValeur != null) {
+                operandes.add(c.parCodeValeur[codeValeur.ordinal()]);
+            }
+            if (typeFichier != null) {
+                operandes.add(c.parTypeFichier[typeFichier.ordinal()]);
+            }
+            if (statutCheque != null) {
+                operandes.add(c.parStatutCheque[statutCheque.ordinal()]);
+            }
+            if (sens != null) {
+                operandes.add(c.parSens[sens.ordinal()]);
+            }
+
+            long[][] bitsets = operandes.toArray(new long[0][]);
+            int mots = (c.taille + 63) >>> 6;
+            long nombre = 0;
+            long millimes = 0L;
+            for (int w = 0; w < mots; w++) {
+                long mot = bitsets[0][w];
+                for (int k = 1; k < bitsets.length && mot != 0; k++) {
+                    mot &= bitsets[k][w];
+                }
+                nombre += Long.bitCount(mot);
+                while (mot != 0) {
+                    millimes += c.millimes[(w << 6) + Long.numberOfTrailingZeros(mot)];
+                    mot &= mot - 1;
+                }
+            }
+            return new Resultat(c.session, nombre, Montant.versDinars(millimes), c.lignes, System.nanoTime() - debut);
+        } finally {
+            verrou.readLock().unlock();
+        }
+    }
+
+    // =====================================================================
+
+    /**
+     * Modification d'un chèque, applicable au snapshot courant comme au snapshot en reconstruction
+     * @return false si un rechargement complet est nécessaire
+     */
+    @FunctionalInterface
+    private interface Evenement {
+        boolean rejouer(Colonnes colonnes);
+    }
+
+    /**
+     * Valeurs d'un chèque capturées au moment de l'événement
+     */
+    record Ligne(long id,
+                 FamilleValeur codeValeur,
+                 Carthago.TypeFichier typeFichier,
+                 Carthago.StatutCheque statutCheque,
+                 Carthago.Sens sens,
+                 Double montant,
+                 Boolean[] indicateurs) {
+
+        static Ligne depuisEntite(Carthago c) {
+            return new Ligne(c.getId(), c.getCodeValeur(), c.getTypeFichier(), c.getStatutCheque(), c.getSens(),
+                    c.getMontant(), new Boolean[] {
+                            c.getAvantCTR(), c.getApresCTR(), c.getFichierEnv(), c.getTraiteParCTR(),
+                            c.getControleEffectue(), c.getAVerifier(), c.getRemiseDouble() });
+        }
+
+        // Ordre des colonnes : CarthageRepository.findColonnesSnapshotByCreatedAtBetween
+        static Ligne depuisProjection(Object[] row) {
+            Boolean[] indicateurs = new Boolean[Indicateur.values().length];
+            for (int i = 0; i < indicateurs.length; i++) {
+                indicateurs[i] = (Boolean) row[6 + i];
+            }
+            return new Ligne(((Number) row[0]).longValue(), (FamilleValeur) row[1],
+                    (Carthago.TypeFichier) row[2], (Carthago.StatutCheque) row[3], (Carthago.Sens) row[4],
+                    (Double) row[5], indicateurs);
+        }
+    }
+
+    /**
+     * Stockage colonnaire : une position par chèque, ids triés (identité croissante)
+     */
+    private static final class Colonnes {
+
+        private final LocalDate session;
+        private int taille;  // positions allouées
+        private int lignes;  // positions actives
+        private long[] ids;
+        private long[] millimes;
+        private byte[] codeValeur;   // ordinal + 1, 0 = NULL
+        private byte[] typeFichier;
+        private byte[] statutCheque;
+        private byte[] sens;
+        private long[] presentes;
+        private long[][] vrai;
+        private long[][] faux;
+        private long[][] parCodeValeur;
+        private long[][] parTypeFichier;
+        private long[][] parStatutCheque;
+        private long[][] parSens;
+
+        Colonnes(LocalDate session, int capaciteInitiale) {
+            this.session = session;
+            int capacite = Math.max(1024, capaciteInitiale + 256);
+            int mots = (capacite + 63) >>> 6;
+            capacite = mots << 6;
+            ids = new long[capacite];
+            millimes = new long[capacite];
+            codeValeur = new byte[capacite];
+            typeFichier = new byte[capacite];
+            statutCheque = new byte[capacite];
+            sens = new byte[capacite];
+            presentes = new long[mots];
+            vrai = new long[Indicateur.values().length][mots];
+            faux = new long[Indicateur.values().length][mots];
+            parCodeValeur = new long[FamilleValeur.values().length][mots];
+            parTypeFichier = new long[Carthago.TypeFichier.values().length][mots];
+            parStatutCheque = new long[Carthago.StatutCheque.values().length][mots];
+            parSens = new long[Carthago.Sens.values().length][mots];
+        }
+
+        void ajouter(Ligne ligne) {
+            if (taille == ids.length) {
+                agrandir();
+            }
+            int position = taille++;
+            ids[position] = ligne.id();
+            ecrire(position, ligne);
+            lignes++;
+        }
+
+        /**
+         * @return false si le chèque est inconnu et ne peut pas être ajouté en fin
+         *         (id inférieur au dernier id), auquel cas un rechargement complet est requis
+         */
+        boolean appliquer(Ligne ligne) {
+            int position = rechercher(ligne.id());
+            if (position >= 0) {
+                boolean etaitPresente = estPositionne(presentes, position);
+                effacer(position);
+                ecrire(position, ligne);
+                if (!etaitPresente) {
+                    lignes++;
+                }
+                return true;
+            }
+            if (taille > 0 && ligne.id() < ids[taille - 1]) {
+                return false;
+            }
+            ajouter(ligne);
+            return true;
+        }
+
+        void supprimer(long id) {
+            int position = rechercher(id);
+            if (position >= 0 && estPositionne(presentes, position)) {
+                effacer(position);
+                lignes--;
+            }
+        }
+
+        private int rechercher(long id) {
+            int position = Arrays.binarySearch(ids, 0, taille, id);
+            return position >= 0 ? position : -1;
+        }
+
+        private void ecrire(int position, Ligne ligne) {
+            positionner(presentes, position);
+            millimes[position] = Montant.versMillimes(ligne.montant());
+            codeValeur[position] = coder(ligne.codeValeur(), parCodeValeur, position);
+            typeFichier[position] = coder(ligne.typeFichier(), parTypeFichier, position);
+            statutCheque[position] = coder(ligne.statutCheque(), parStatutCheque, position);
+            sens[position] = coder(ligne.sens(), parSens, position);
+            Boolean[] indicateurs = ligne.indicateurs();
+            for (int i = 0; i < indicateurs.length; i++) {
+                if (indicateurs[i] != null) {
+                    positionner(indicateurs[i] ? vrai[i] : faux[i], position);
+                }
+            }
+        }
+
+        private void effacer(int position) {
+            effacer(presentes, position);
+            millimes[position] = 0L;
+            decoder(codeValeur, parCodeValeur, position);
+            decoder(typeFichier, parTypeFichier, position);
+            decoder(statutCheque, parStatutCheque, position);
+            decoder(sens, parSens, position);
+            for (int i = 0; i < vrai.length; i++) {
+                effacer(vrai[i], position);
+                effacer(faux[i], position);
+            }
+        }
+
+        private static byte coder(Enum<?> valeur, long[][] bitsets, int position) {
+            if (valeur == null) {
+                return 0;
+            }
+            positionner(bitsets[valeur.ordinal()], position);
+            return (byte) (valeur.ordinal() + 1);
+        }
+
+        private static void decoder(byte[] codes, long[][] bitsets, int position) {
+            if (codes[position] != 0) {
+                effacer(bitsets[codes[position] - 1], position);
+                codes[position] = 0;
+            }
+        }
+
+        private void agrandir() {
+            int capacite = ids.length * 2;
+            int mots = capacite >>> 6;
+            ids = Arrays.copyOf(ids, capacite);
+            millimes = Arrays.copyOf(millimes, capacite);
+            codeValeur = Arrays.copyOf(codeValeur, capacite);
+            typeFichier = Arrays.copyOf(typeFichier, capacite);
+            statutCheque = Arrays.copyOf(statutCheque, capacite);
+            sens = Arrays.copyOf(sens, capacite);
+            presentes = Arrays.copyOf(presentes, mots);
+            agrandir(vrai, mots);
+            agrandir(faux, mots);
+            agrandir(parCodeValeur, mots);
+            agrandir(parTypeFichier, mots);
+            agrandir(parStatutCheque, mots);
+            agrandir(parSens, mots);
+        }
+
+        private static void agrandir(long[][] bitsets, int mots) {
+            for (int i = 0; i < bitsets.length; i++) {
+                bitsets[i] = Arrays.copyOf(bitsets[i], mots);
+            }
+        }
+
+        private static boolean estPositionne(long[] bitset, int position) {
+            return (bitset[position >>> 6] & (1L << position)) != 0;
+        }
+
+        private static void positionner(long[] bitset, int position) {
+            bitset[position >>> 6] |= 1L << position;
+        }
+
+        private static void effacer(long[] bitset, int position) {
+            bitset[position >>> 6] &= ~(1L << position);
+        }
+    }
+}
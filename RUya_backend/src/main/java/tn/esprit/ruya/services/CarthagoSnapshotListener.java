@@ -0,0 +1,59 @@
+package tn.esprit.ruya.services;
+
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tn.esprit.ruya.models.Carthago;
+
+/**
+ * Listener JPA de l'entité Carthago : répercute insertions, mises à jour et
+ * suppressions dans le snapshot colonnaire de la session, une fois la
+ * transaction validée.
+ */
+@Component
+public class CarthagoSnapshotListener {
+
+    // Résolution paresseuse : le listener est instancié avec l'EntityManagerFactory
+    private final ObjectProvider<CarthagoSessionSnapshot> snapshot;
+
+    public CarthagoSnapshotListener(ObjectProvider<CarthagoSessionSnapshot> snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @PostPersist
+    @PostUpdate
+    public void apresEcriture(Carthago carthago) {
+        if (carthago.getId() == null || carthago.getCreatedAt() == null) {
+            return;
+        }
+        // Valeurs capturées maintenant : l'entité peut encore être modifiée avant le commit
+        CarthagoSessionSnapshot.Ligne ligne = CarthagoSessionSnapshot.Ligne.depuisEntite(carthago);
+        apresCommit(() -> snapshot.getObject().appliquer(ligne, carthago.getCreatedAt().toLocalDate()));
+    }
+
+    @PostRemove
+    public void apresSuppression(Carthago carthago) {
+        if (carthago.getId() == null) {
+            return;
+        }
+        long id = carthago.getId();
+        apresCommit(() -> snapshot.getObject().retirer(id));
+    }
+
+    private void apresCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
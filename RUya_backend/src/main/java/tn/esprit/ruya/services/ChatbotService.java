@@ -4,6 +4,7 @@ import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
 import tn.esprit.ruya.models.ChatRequest;
 import tn.esprit.ruya.models.ChatResponse;
+import tn.esprit.ruya.models.Montant;
 import tn.esprit.ruya.services.FichierServ;
 import tn.esprit.ruya.models.Fichier;
 
@@ -103,9 +104,7 @@ public class ChatbotService {
                             f -> f.getSens() != null ? f.getSens().name() : "INCONNU",
                             Collectors.counting()));
 
-            double totalAmount = allFiles.stream()
-                    .mapToDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0)
-                    .sum();
+            double totalAmount = Montant.somme(allFiles, Fichier::getMontant);
 
             StringBuilder response = new StringBuilder();
             response.append("📊 **Statistiques Générales RU'ya**\n\n");
@@ -140,9 +139,7 @@ public class ChatbotService {
                             f -> f.getTypeFichier() != null ? f.getTypeFichier().name() : "INCONNU",
                             Collectors.counting()));
 
-            double todayAmount = todayFiles.stream()
-                    .mapToDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0)
-                    .sum();
+            double todayAmount = Montant.somme(todayFiles, Fichier::getMontant);
 
             StringBuilder response = new StringBuilder();
             response.append(String.format(
@@ -181,15 +178,13 @@ public class ChatbotService {
                             f.getCreatedAt().toLocalDate().equals(today))
                     .collect(Collectors.toList());
 
-            double todayAmount = todayFiles.stream()
-                    .mapToDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0)
-                    .sum();
+            double todayAmount = Montant.somme(todayFiles, Fichier::getMontant);
 
             // Calculer par type
             Map<String, Double> amountsByType = todayFiles.stream()
                     .collect(Collectors.groupingBy(
                             f -> f.getTypeFichier() != null ? f.getTypeFichier().name() : "INCONNU",
-                            Collectors.summingDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0)));
+                            Montant.sommant(Fichier::getMontant)));
 
             StringBuilder response = new StringBuilder();
             response.append(String.format(
@@ -228,15 +223,13 @@ public class ChatbotService {
                             !f.getCreatedAt().toLocalDate().isAfter(now))
                     .collect(Collectors.toList());
 
-            double monthAmount = monthFiles.stream()
-                    .mapToDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0)
-                    .sum();
+            double monthAmount = Montant.somme(monthFiles, Fichier::getMontant);
 
             // Calculer par type
             Map<String, Double> amountsByType = monthFiles.stream()
                     .collect(Collectors.groupingBy(
                             f -> f.getTypeFichier() != null ? f.getTypeFichier().name() : "INCONNU",
-                            Collectors.summingDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0)));
+                            Montant.sommant(Fichier::getMontant)));
 
             StringBuilder response = new StringBuilder();
             response.append(String.format(
@@ -267,14 +260,12 @@ public class ChatbotService {
         try {
             List<Fichier> allFiles = fichierServ.getAllFichiers();
 
-            double totalAmount = allFiles.stream()
-                    .mapToDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0)
-                    .sum();
+            double totalAmount = Montant.somme(allFiles, Fichier::getMontant);
 
             Map<String, Double> amountByStatus = allFiles.stream()
                     .collect(Collectors.groupingBy(
                             f -> f.getSens() != null ? f.getSens().name() : "INCONNU",
-                            Collectors.summingDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0)));
+                            Montant.sommant(Fichier::getMontant)));
 
             StringBuilder response = new StringBuilder();
             response.append("💰 **Analyse des Montants**\n\n");
@@ -322,9 +313,7 @@ public class ChatbotService {
                     .filter(f -> f.getSens() != null && f.getSens().name().equalsIgnoreCase("REMIS"))
                     .collect(Collectors.toList());
 
-            double acceptedAmount = acceptedFiles.stream()
-                    .mapToDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0)
-                    .sum();
+            double acceptedAmount = Montant.somme(acceptedFiles, Fichier::getMontant);
 
             String response = String.format(
                     "✅ **Fichiers Remis (Acceptés)**\n\n" +
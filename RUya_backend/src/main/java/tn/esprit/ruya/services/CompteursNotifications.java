@@ -0,0 +1,195 @@
+package tn.esprit.ruya.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tn.esprit.ruya.models.Notification;
+import tn.esprit.ruya.repositories.INotificationRepo;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compteurs en mémoire des notifications non lues (global et par utilisateur).
+ *
+ * Chaque compteur est amorcé depuis la base à la première lecture, puis tenu à
+ * jour à la création (canal de l'outbox et créations directes) et au marquage
+ * comme lu, après validation de la transaction. Une réconciliation périodique
+ * avec la base corrige les écarts (autres nœuds, courses à l'amorçage) en
+ * ajoutant la différence au compteur existant : les mises à jour concurrentes
+ * ne sont pas perdues par un remplacement du compteur.
+ *
+ * Les compteurs par utilisateur non lus depuis un délai sont évincés à la
+ * réconciliation, et leur nombre est borné : au-delà, la valeur est lue en base
+ * sans être conservée.
+ */
+@Component
+@Order(0)
+public class CompteursNotifications implements CanalNotification {
+
+    private final INotificationRepo notificationRepo;
+
+    private final Map<Long, CompteurUser> parUser = new ConcurrentHashMap<>();
+    private volatile LongAdder global; // null = non amorcé
+
+    @Value("${ruya.notifications.compteurs.inactivite-minutes:30}")
+    private long inactiviteMinutes;
+
+    @Value("${ruya.notifications.compteurs.max-utilisateurs:10000}")
+    private int maxUtilisateurs;
+
+    public CompteursNotifications(INotificationRepo notificationRepo) {
+        this.notificationRepo = notificationRepo;
+    }
+
+    public long nonLues() {
+        LongAdder compteur = global;
+        if (compteur == null) {
+            compteur = amorcerGlobal();
+        }
+        return Math.max(0, compteur.sum());
+    }
+
+    public long nonLuesByUser(Long userId) {
+        CompteurUser compteur = parUser.get(userId);
+        if (compteur == null) {
+            compteur = amorcerUser(userId);
+        }
+        compteur.derniereLecture = System.currentTimeMillis();
+        return Math.max(0, compteur.valeur.sum());
+    }
+
+    // Notifications enregistrées et validées par l'outbox
+    @Override
+    public void publier(List<Notification> notifications) {
+        notifications.forEach(this::creee);
+    }
+
+    // Notification créée hors outbox (pris en compte après validation)
+    public void creee(Notification notification) {
+        if (Boolean.TRUE.equals(notification.getLu()) || notification.isRegroupee()) {
+            return;
+        }
+        Long userId = notification.getUserAction() != null ? notification.getUserAction().getId() : null;
+        apresValidation(() -> ajouter(userId, 1));
+    }
+
+    public void lues(Long userId, long nombre) {
+        if (nombre > 0) {
+            apresValidation(() -> ajouter(userId, -nombre));
+        }
+    }
+
+    // Marquage global sans répartition connue par utilisateur : réamorçage à la prochaine lecture
+    public void toutesLues(long nombre) {
+        if (nombre > 0) {
+            apresValidation(() -> {
+                LongAdder compteur = global;
+                if (compteur != null) {
+                    compteur.add(-nombre);
+                }
+                parUser.clear();
+            });
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ruya.notifications.compteurs.reconciliation-ms:60000}",
+            initialDelayString = "${ruya.notifications.compteurs.reconciliation-ms:60000}")
+    public void reconcilier() {
+        try {
+            LongAdder compteur = global;
+            if (compteur != null) {
+                corriger(compteur, notificationRepo.countByLu(false));
+            }
+            long limite = System.currentTimeMillis() - inactiviteMinutes * 60_000;
+            parUser.values().removeIf(compteurUser -> compteurUser.derniereLecture < limite);
+            if (!parUser.isEmpty()) {
+                Map<Long, Long> comptes = new HashMap<>();
+                for (Object[] ligne : notificationRepo.countNonLuesGroupByUser()) {
+                    comptes.put((Long) ligne[0], (Long) ligne[1]);
+                }
+                parUser.forEach((userId, compteurUser) ->
+                        corriger(compteurUser.valeur, comptes.getOrDefault(userId, 0L)));
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Erreur réconciliation compteurs notifications: " + e.getMessage());
+        }
+    }
+
+    private void ajouter(Long userId, long delta) {
+        LongAdder compteur = global;
+        if (compteur != null) {
+            compteur.add(delta);
+        }
+        if (userId != null) {
+            // Compteur non amorcé : il le sera depuis la base, déjà à jour
+            CompteurUser compteurUser = parUser.get(userId);
+            if (compteurUser != null) {
+                compteurUser.valeur.add(delta);
+            }
+        }
+    }
+
+    private synchronized LongAdder amorcerGlobal() {
+        if (global == null) {
+            global = nouveau(notificationRepo.countByLu(false));
+        }
+        return global;
+    }
+
+    private CompteurUser amorcerUser(Long userId) {
+        // Lecture hors verrou de la map ; en cas de course, le premier amorçage l'emporte
+        CompteurUser compteur = new CompteurUser(nouveau(notificationRepo.countByUserActionIdAndLuFalse(userId)));
+        if (parUser.size() >= maxUtilisateurs) {
+            return compteur; // borne atteinte : valeur lue en base, non conservée
+        }
+        CompteurUser existant = parUser.putIfAbsent(userId, compteur);
+        return existant != null ? existant : compteur;
+    }
+
+    // Ajoute l'écart avec la base plutôt que de remplacer le compteur (mises à jour concurrentes conservées)
+    private static void corriger(LongAdder compteur, Long valeurBase) {
+        long ecart = (valeurBase != null ? valeurBase : 0L) - compteur.sum();
+        if (ecart != 0) {
+            compteur.add(ecart);
+        }
+    }
+
+    private static LongAdder nouveau(Long valeur) {
+        LongAdder compteur = new LongAdder();
+        compteur.add(valeur != null ? valeur : 0L);
+        return compteur;
+    }
+
+    private static void apresValidation(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Compteur d'un utilisateur et date de sa dernière lecture (éviction des inactifs).
+     */
+    private static final class CompteurUser {
+
+        private final LongAdder valeur;
+        private volatile long derniereLecture = System.currentTimeMillis();
+
+        private CompteurUser(LongAdder valeur) {
+            this.valeur = valeur;
+        }
+    }
+}
@@ -4,14 +4,22 @@ package tn.esprit.ruya.services;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import tn.esprit.ruya.models.*;
+import tn.esprit.ruya.models.CodeValeur;
+import tn.esprit.ruya.repositories.AmplitudeRepository;
 import tn.esprit.ruya.repositories.CarthageRepository;
 import tn.esprit.ruya.repositories.FichierRepository;
 import tn.esprit.ruya.repositories.CtrRepository;
+import tn.esprit.ruya.repositories.RapprochementAmplitudeRepository;
+import tn.esprit.ruya.services.CarthagoSessionSnapshot.Indicateur;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 
 @Service
 public class DashboardService {
@@ -25,6 +33,15 @@ public class DashboardService {
     @Autowired
     public CtrRepository ctrRepository;
 
+    @Autowired
+    public RapprochementAmplitudeRepository rapprochementAmplitudeRepository;
+
+    @Autowired
+    public AmplitudeRepository amplitudeRepository;
+
+    @Autowired
+    public CarthagoSessionSnapshot carthagoSessionSnapshot;
+
     public DashboardResponseDTO getDashboardDataCorrected() {
         LocalDateTime today = LocalDateTime.now().toLocalDate().atStartOfDay();
         LocalDateTime endOfDay = today.plusDays(1).minusSeconds(1);
@@ -41,8 +58,10 @@ public class DashboardService {
         cardData.add(buildRemisesNonParvenuesCTRCard(start, end)); // 4 - Remises non parvenues CTR
         cardData.add(buildTotalCTRCard(start, end));               // 5 - Total CTR
         cardData.add(buildDepotCTRCard(start, end));               // 6 - Dépôt CTR
-        cardData.add(buildCTRAmplitudeCard(start, end));           // 7 - CTR → Amplitude
+        AmplitudeAgregatDTO amplitude = chargerAgregatsAmplitude(start, end);
+        cardData.add(buildCTRAmplitudeCard(start, end, amplitude)); // 7 - CTR → Amplitude
         cardData.add(buildAmplitudeCard(start, end));              // 8 - Amplitude
+        cardData.add(buildIntegrationAmplitudeCard(amplitude));    // 9 - Intégration Amplitude
 
         response.setCardData(cardData);
         response.setGlobalStats(buildGlobalStats(start, end));
@@ -66,26 +85,24 @@ public class DashboardService {
         try {
             // Nbr Remise = nombre de REMISES dans FICHIER (cherche "CHEQUE" OU "30")
             Long nbRemiseEV = fichierRepository.countByCreatedAtBetweenAndNatureFichierAndCodeValeur(
-                start, end, Fichier.NatureFichier.REMISE, "CHEQUE");
+                start, end, Fichier.NatureFichier.REMISE, CodeValeur.CHEQUE);
 
             // Nbr Chèque = SOMME du champ nomber de toutes les remises CHEQUE dans FICHIER
             Long nbChequesTotal = fichierRepository.sumNomberByCreatedAtBetweenAndNatureFichierAndCodeValeur(
-                start, end, Fichier.NatureFichier.REMISE, "CHEQUE");
+                start, end, Fichier.NatureFichier.REMISE, CodeValeur.CHEQUE);
 
             // Remises non parvenues = compter les CHÈQUES avec fichierEnv=false
-            Long chequesNonParvenus = carthagoRepository.countByCreatedAtBetweenAndFichierEnvAndCodeValeur(
-                start, end, false, Carthago.CodeValeur.CHEQUE);
+            long chequesNonParvenus = chequesParFichierEnv(start, end, false);
 
             // Remises non traitées = compter les CHÈQUES avec avantCTR=true ET traiteParCTR=false
-            Long chequesNonTraites = carthagoRepository.countByCreatedAtBetweenAndAvantCTRAndCodeValeur(
-                start, end, true, Carthago.CodeValeur.CHEQUE);
+            long chequesNonTraites = chequesParAvantCtr(start, end, true);
 
             data.add(new DataRowDTO("Nbr Remise", String.valueOf(nbRemiseEV == null ? 0 : nbRemiseEV), null, "primary"));
             data.add(new DataRowDTO("Nbr Chèque", String.valueOf(nbChequesTotal == null ? 0 : nbChequesTotal), null, null));
             data.add(new DataRowDTO("Nbr Remise EV Non Parvenues CARTHAGO", "0", null, "warning"));
-            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(chequesNonParvenus == null ? 0 : chequesNonParvenus), null, null));
+            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(chequesNonParvenus), null, null));
             data.add(new DataRowDTO("Nbr Remise EV Non Traitée CARTHAGO", "0", null, "warning"));
-            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(chequesNonTraites == null ? 0 : chequesNonTraites), null, null));
+            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(chequesNonTraites), null, null));
 
         } catch (Exception e) {
             System.err.println("❌ Erreur buildEncaisseValeurCard: " + e.getMessage());
@@ -109,17 +126,15 @@ public class DashboardService {
         List<DataRowDTO> data = new ArrayList<>();
         try {
             // Chèques EV (ELECTRONIQUES)
-            Long nbChequesEV = carthagoRepository.countByCreatedAtBetweenAndApresCTRAndTypeFichierAndCodeValeur(
-                start, end, true, Carthago.TypeFichier.ELECTRONIQUE, Carthago.CodeValeur.CHEQUE);
+            long nbChequesEV = chequesApresCtrParType(start, end, Carthago.TypeFichier.ELECTRONIQUE);
 
             // Chèques AGC (MANUELS)
-            Long nbChequesAGC = carthagoRepository.countByCreatedAtBetweenAndApresCTRAndTypeFichierAndCodeValeur(
-                start, end, true, Carthago.TypeFichier.MANUEL, Carthago.CodeValeur.CHEQUE);
+            long nbChequesAGC = chequesApresCtrParType(start, end, Carthago.TypeFichier.MANUEL);
 
             data.add(new DataRowDTO("Nbr Remise EV", "0", null, "success"));
-            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(nbChequesEV == null ? 0 : nbChequesEV), null, null));
+            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(nbChequesEV), null, null));
             data.add(new DataRowDTO("Nbr Remise AGC", "0", null, null));
-            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(nbChequesAGC == null ? 0 : nbChequesAGC), null, null));
+            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(nbChequesAGC), null, null));
 
         } catch (Exception e) {
             System.err.println("❌ Erreur buildTotalCarthageCard: " + e.getMessage());
@@ -142,17 +157,15 @@ public class DashboardService {
         List<DataRowDTO> data = new ArrayList<>();
         try {
             // Chèques EV transférés (apresCTR=true, typeFichier=ELECTRONIQUE)
-            Long nbChequesEV = carthagoRepository.countByCreatedAtBetweenAndApresCTRAndTypeFichierAndCodeValeur(
-                start, end, true, Carthago.TypeFichier.ELECTRONIQUE, Carthago.CodeValeur.CHEQUE);
+            long nbChequesEV = chequesApresCtrParType(start, end, Carthago.TypeFichier.ELECTRONIQUE);
 
             // Chèques AGC transférés (apresCTR=true, typeFichier=MANUEL)
-            Long nbChequesAGC = carthagoRepository.countByCreatedAtBetweenAndApresCTRAndTypeFichierAndCodeValeur(
-                start, end, true, Carthago.TypeFichier.MANUEL, Carthago.CodeValeur.CHEQUE);
+            long nbChequesAGC = chequesApresCtrParType(start, end, Carthago.TypeFichier.MANUEL);
 
             data.add(new DataRowDTO("Nbr Remise EV", "0", null, "success"));
-            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(nbChequesEV == null ? 0 : nbChequesEV), null, null));
+            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(nbChequesEV), null, null));
             data.add(new DataRowDTO("Nbr Remise AGC", "0", null, null));
-            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(nbChequesAGC == null ? 0 : nbChequesAGC), null, null));
+            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(nbChequesAGC), null, null));
 
         } catch (Exception e) {
             System.err.println("❌ Erreur buildCarthagoCTRCard: " + e.getMessage());
@@ -174,14 +187,28 @@ public class DashboardService {
 
         List<DataRowDTO> data = new ArrayList<>();
         try {
-            // Chèques AG non parvenus (fichierEnv=false)
-            Long chequesAgNonParvenus = carthagoRepository.countByCreatedAtBetweenAndFichierEnvAndCodeValeur(
-                start, end, false, Carthago.CodeValeur.CHEQUE);
-
-            data.add(new DataRowDTO("Nbr Remise EV non parvenues CTR", "0", null, "warning"));
-            data.add(new DataRowDTO("Nbr Chèque", "0", null, null));
-            data.add(new DataRowDTO("Nbr Remise AG non parvenues CTR", "0", null, "warning"));
-            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(chequesAgNonParvenus == null ? 0 : chequesAgNonParvenus), null, null));
+            // Chèques d'un envoi acquitté par CTR mais absents de l'accusé (ReceptionCtrService)
+            // EV = chèques électroniques, AG = chèques manuels / web ; une remise = un envoi
+            Set<String> remisesEV = new HashSet<>();
+            Set<String> remisesAG = new HashSet<>();
+            long chequesEV = 0;
+            long chequesAG = 0;
+            for (Object[] ligne : carthagoRepository.countNonParvenusByCreatedAtBetween(
+                    start, end, CodeValeur.CHEQUE)) {
+                long nombre = (Long) ligne[2];
+                if (ligne[0] == Carthago.TypeFichier.ELECTRONIQUE) {
+                    remisesEV.add((String) ligne[1]);
+                    chequesEV += nombre;
+                } else {
+                    remisesAG.add((String) ligne[1]);
+                    chequesAG += nombre;
+                }
+            }
+
+            data.add(new DataRowDTO("Nbr Remise EV non parvenues CTR", String.valueOf(remisesEV.size()), null, "warning"));
+            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(chequesEV), null, null));
+            data.add(new DataRowDTO("Nbr Remise AG non parvenues CTR", String.valueOf(remisesAG.size()), null, "warning"));
+            data.add(new DataRowDTO("Nbr Chèque", String.valueOf(chequesAG), null, null));
 
         } catch (Exception e) {
             System.err.println("❌ Erreur buildRemisesNonParvenuesCTRCard: " + e.getMessage());
@@ -204,7 +231,7 @@ public class DashboardService {
         List<DataRowDTO> data = new ArrayList<>();
         try {
             // Total des remises validées dans CTR
-            Long nbRemiseCTR = ctrRepository.countByCreatedAtBetweenAndCodeValeur(start, end, "CHEQUE");
+            Long nbRemiseCTR = ctrRepository.countByCreatedAtBetweenAndCodeValeur(start, end, CodeValeur.CHEQUE);
 
             // Chèques manuels dans CTR
             Long nbChequeManu = ctrRepository.countByCreatedAtBetweenAndChequeElectroniqueCtr(start, end, false);
@@ -233,24 +260,20 @@ public class DashboardService {
         List<DataRowDTO> data = new ArrayList<>();
         try {
             // Chèques INTRA (électroniques, après CTR)
-            Long nbChequeINTRA = carthagoRepository.countByCreatedAtBetweenAndApresCTRAndTypeFichierAndCodeValeur(
-                start, end, true, Carthago.TypeFichier.ELECTRONIQUE, Carthago.CodeValeur.CHEQUE);
+            long nbChequeINTRA = chequesApresCtrParType(start, end, Carthago.TypeFichier.ELECTRONIQUE);
 
             // Chèques INTER (manuels, après CTR)
-            Long nbChequeINTER = carthagoRepository.countByCreatedAtBetweenAndApresCTRAndTypeFichierAndCodeValeur(
-                start, end, true, Carthago.TypeFichier.MANUEL, Carthago.CodeValeur.CHEQUE);
+            long nbChequeINTER = chequesApresCtrParType(start, end, Carthago.TypeFichier.MANUEL);
 
             // Chèques Manuel (fichiers envoyés)
-            Long nbChequeManuel = carthagoRepository.countByCreatedAtBetweenAndFichierEnvAndCodeValeur(
-                start, end, true, Carthago.CodeValeur.CHEQUE);
+            long nbChequeManuel = chequesParFichierEnv(start, end, true);
 
             // Total
-            long nbChequeTotal = (nbChequeINTRA == null ? 0 : nbChequeINTRA) + 
-                                (nbChequeINTER == null ? 0 : nbChequeINTER);
+            long nbChequeTotal = nbChequeINTRA + nbChequeINTER;
 
-            data.add(new DataRowDTO("Nbr Chèque INTRA", String.valueOf(nbChequeINTRA == null ? 0 : nbChequeINTRA), null, null));
-            data.add(new DataRowDTO("Nbr Chèque INTER", String.valueOf(nbChequeINTER == null ? 0 : nbChequeINTER), null, null));
-            data.add(new DataRowDTO("Nbr Chèque Manuel", String.valueOf(nbChequeManuel == null ? 0 : nbChequeManuel), null, null));
+            data.add(new DataRowDTO("Nbr Chèque INTRA", String.valueOf(nbChequeINTRA), null, null));
+            data.add(new DataRowDTO("Nbr Chèque INTER", String.valueOf(nbChequeINTER), null, null));
+            data.add(new DataRowDTO("Nbr Chèque Manuel", String.valueOf(nbChequeManuel), null, null));
             data.add(new DataRowDTO("Nbr Chèque Total", String.valueOf(nbChequeTotal), null, "success"));
 
         } catch (Exception e) {
@@ -265,7 +288,7 @@ public class DashboardService {
      * 7️⃣ CTR → AMPLITUDE
      * Flux vers la plateforme Amplitude
      */
-    private CardDataDTO buildCTRAmplitudeCard(LocalDateTime start, LocalDateTime end) {
+    private CardDataDTO buildCTRAmplitudeCard(LocalDateTime start, LocalDateTime end, AmplitudeAgregatDTO amplitude) {
         CardDataDTO card = new CardDataDTO();
         card.setTitle("CTR → Amplitude - CHEQUES");
         card.setIcon("fas fa-chart-line");
@@ -274,21 +297,26 @@ public class DashboardService {
         List<DataRowDTO> data = new ArrayList<>();
         try {
             // Chèques INTRA (électroniques, après CTR)
-            Long nbChequeINTRA = carthagoRepository.countByCreatedAtBetweenAndApresCTRAndTypeFichierAndCodeValeur(
-                start, end, true, Carthago.TypeFichier.ELECTRONIQUE, Carthago.CodeValeur.CHEQUE);
+            long nbChequeINTRA = chequesApresCtrParType(start, end, Carthago.TypeFichier.ELECTRONIQUE);
 
             // Chèques INTER (manuels, après CTR)
-            Long nbChequeINTER = carthagoRepository.countByCreatedAtBetweenAndApresCTRAndTypeFichierAndCodeValeur(
-                start, end, true, Carthago.TypeFichier.MANUEL, Carthago.CodeValeur.CHEQUE);
+            long nbChequeINTER = chequesApresCtrParType(start, end, Carthago.TypeFichier.MANUEL);
 
             // Total
-            long nbChequeTotal = (nbChequeINTRA == null ? 0 : nbChequeINTRA) + 
-                                (nbChequeINTER == null ? 0 : nbChequeINTER);
+            long nbChequeTotal = nbChequeINTRA + nbChequeINTER;
 
-            data.add(new DataRowDTO("Nbr Chèque INTRA", String.valueOf(nbChequeINTRA == null ? 0 : nbChequeINTRA), null, null));
-            data.add(new DataRowDTO("Nbr Chèque INTER", String.valueOf(nbChequeINTER == null ? 0 : nbChequeINTER), null, null));
+            data.add(new DataRowDTO("Nbr Chèque INTRA", String.valueOf(nbChequeINTRA), null, null));
+            data.add(new DataRowDTO("Nbr Chèque INTER", String.valueOf(nbChequeINTER), null, null));
             data.add(new DataRowDTO("Nbr Chèque Total", String.valueOf(nbChequeTotal), null, "success"));
 
+            // Réception réelle côté Amplitude : l'écart matérialise la perte CTR → Amplitude
+            if (amplitude != null) {
+                long ecart = nbChequeTotal - amplitude.getTotal();
+                data.add(new DataRowDTO("Reçus Amplitude", String.valueOf(amplitude.getTotal()), null, null));
+                data.add(new DataRowDTO("Écart CTR → Amplitude", String.valueOf(ecart), null,
+                    ecart > 0 ? "warning" : "success"));
+            }
+
         } catch (Exception e) {
             System.err.println("❌ Erreur buildCTRAmplitudeCard: " + e.getMessage());
             data.add(new DataRowDTO("Erreur", "Données indisponibles", null, "danger"));
@@ -309,36 +337,185 @@ public class DashboardService {
 
         List<DataRowDTO> data = new ArrayList<>();
         try {
-            // Chèques INTRA dans Amplitude (contrôle effectué, électroniques)
-            Long nbChequeINTRA = carthagoRepository.countByCreatedAtBetweenAndControleEffectueAndTypeFichierAndCodeValeur(
-                start, end, true, Carthago.TypeFichier.ELECTRONIQUE, Carthago.CodeValeur.CHEQUE);
+            // Résultat du rapprochement Carthago / Amplitude (RapprochementAmplitudeService)
+            List<Object[]> synthese = rapprochementAmplitudeRepository.syntheseBySessionDateBetween(
+                start.toLocalDate(), end.toLocalDate());
+            if (synthese.isEmpty()) {
+                // Session pas encore rapprochée : estimation à partir de Carthago
+                ajouterEstimationAmplitude(data, start, end);
+            } else {
+                long nbChequeINTRA = 0;
+                long nbChequeINTER = 0;
+                long rejetIntegration = 0;
+                long enCours = 0;
+                long absentsAmplitude = 0;
+                long orphelinsAmplitude = 0;
+                for (Object[] ligne : synthese) {
+                    RapprochementAmplitude.Resultat resultat = (RapprochementAmplitude.Resultat) ligne[0];
+                    long nombre = (Long) ligne[2];
+                    switch (resultat) {
+                        case INTEGRE -> {
+                            if (ligne[1] == Amplitude.TypeCheque.INTER) {
+                                nbChequeINTER += nombre;
+                            } else {
+                                nbChequeINTRA += nombre;
+                            }
+                        }
+                        case REJETE -> rejetIntegration += nombre;
+                        case EN_COURS -> enCours += nombre;
+                        case ABSENT_AMPLITUDE -> absentsAmplitude += nombre;
+                        case ORPHELIN_AMPLITUDE -> orphelinsAmplitude += nombre;
+                    }
+                }
+
+                data.add(new DataRowDTO("Nbr Chèque INTRA", String.valueOf(nbChequeINTRA), null, "success"));
+                data.add(new DataRowDTO("Nbr Chèque INTER", String.valueOf(nbChequeINTER), null, "success"));
+                data.add(new DataRowDTO("Nbr Chèque Total", String.valueOf(nbChequeINTRA + nbChequeINTER), null, "success"));
+                data.add(new DataRowDTO("Rejet d'intégration", String.valueOf(rejetIntegration), null,
+                    rejetIntegration > 0 ? "danger" : "success"));
+                data.add(new DataRowDTO("En cours d'intégration", String.valueOf(enCours), null,
+                    enCours > 0 ? "warning" : "success"));
+                data.add(new DataRowDTO("Absents d'Amplitude", String.valueOf(absentsAmplitude), null,
+                    absentsAmplitude > 0 ? "warning" : "success"));
+                data.add(new DataRowDTO("Orphelins Amplitude", String.valueOf(orphelinsAmplitude), null,
+                    orphelinsAmplitude > 0 ? "warning" : "success"));
+            }
+
+        } catch (Exception e) {
+            System.err.println("❌ Erreur buildAmplitudeCard: " + e.getMessage());
+            data.add(new DataRowDTO("Erreur", "Données indisponibles", null, "danger"));
+        }
+        card.setData(data);
+        return card;
+    }
 
-            // Chèques INTER dans Amplitude (contrôle effectué, manuels)
-            Long nbChequeINTER = carthagoRepository.countByCreatedAtBetweenAndControleEffectueAndTypeFichierAndCodeValeur(
-                start, end, true, Carthago.TypeFichier.MANUEL, Carthago.CodeValeur.CHEQUE);
+    /**
+     * Estimation de la carte Amplitude à partir des indicateurs Carthago,
+     * utilisée tant que la session n'a pas été rapprochée.
+     */
+    private void ajouterEstimationAmplitude(List<DataRowDTO> data, LocalDateTime start, LocalDateTime end) {
+        // Chèques INTRA dans Amplitude (contrôle effectué, électroniques)
+        long nbChequeINTRA = chequesControlesParType(start, end, Carthago.TypeFichier.ELECTRONIQUE);
 
-            // Total
-            long nbChequeTotal = (nbChequeINTRA == null ? 0 : nbChequeINTRA) + 
-                                (nbChequeINTER == null ? 0 : nbChequeINTER);
+        // Chèques INTER dans Amplitude (contrôle effectué, manuels)
+        long nbChequeINTER = chequesControlesParType(start, end, Carthago.TypeFichier.MANUEL);
 
-            // Rejet d'intégration
-            Long rejetIntegration = carthagoRepository.countByCreatedAtBetweenAndApresCTRAndStatutChequeAndCodeValeur(
-                start, end, Carthago.StatutCheque.REJETE, Carthago.CodeValeur.CHEQUE);
+        // Total
+        long nbChequeTotal = nbChequeINTRA + nbChequeINTER;
 
-            data.add(new DataRowDTO("Nbr Chèque INTRA", String.valueOf(nbChequeINTRA == null ? 0 : nbChequeINTRA), null, "success"));
-            data.add(new DataRowDTO("Nbr Chèque INTER", String.valueOf(nbChequeINTER == null ? 0 : nbChequeINTER), null, "success"));
-            data.add(new DataRowDTO("Nbr Chèque Total", String.valueOf(nbChequeTotal), null, "success"));
-            data.add(new DataRowDTO("Rejet d'intégration", String.valueOf(rejetIntegration == null ? 0 : rejetIntegration), null, 
-                rejetIntegration != null && rejetIntegration > 0 ? "danger" : "success"));
+        // Rejet d'intégration
+        long rejetIntegration = chequesApresCtrParStatut(start, end, Carthago.StatutCheque.REJETE);
 
+        data.add(new DataRowDTO("Nbr Chèque INTRA", String.valueOf(nbChequeINTRA), null, "success"));
+        data.add(new DataRowDTO("Nbr Chèque INTER", String.valueOf(nbChequeINTER), null, "success"));
+        data.add(new DataRowDTO("Nbr Chèque Total", String.valueOf(nbChequeTotal), null, "success"));
+        data.add(new DataRowDTO("Rejet d'intégration", String.valueOf(rejetIntegration), null, 
+            rejetIntegration > 0 ? "danger" : "success"));
+    }
+
+    /**
+     * Agrégats réels de la table AMPLITUDE (une seule requête groupée)
+     */
+    private AmplitudeAgregatDTO chargerAgregatsAmplitude(LocalDateTime start, LocalDateTime end) {
+        try {
+            return AmplitudeAgregatDTO.depuisLignes(amplitudeRepository.agregatsByCreatedAtBetween(start, end));
         } catch (Exception e) {
-            System.err.println("❌ Erreur buildAmplitudeCard: " + e.getMessage());
+            System.err.println("❌ Erreur chargerAgregatsAmplitude: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 9️⃣ INTÉGRATION AMPLITUDE
+     * Volumes, montants et latence d'intégration lus dans AMPLITUDE
+     */
+    private CardDataDTO buildIntegrationAmplitudeCard(AmplitudeAgregatDTO amplitude) {
+        CardDataDTO card = new CardDataDTO();
+        card.setTitle("Intégration Amplitude - CHEQUES");
+        card.setIcon("fas fa-database");
+        card.setType("info");
+
+        List<DataRowDTO> data = new ArrayList<>();
+        if (amplitude == null) {
             data.add(new DataRowDTO("Erreur", "Données indisponibles", null, "danger"));
+        } else {
+            double tauxIntegration = amplitude.getTotal() > 0
+                ? amplitude.getNbIntegre() * 100.0 / amplitude.getTotal() : 0.0;
+
+            data.add(new DataRowDTO("Nbr Chèque INTRA", String.valueOf(amplitude.getNbChequeINTRA()), null, null));
+            data.add(new DataRowDTO("Nbr Chèque INTER", String.valueOf(amplitude.getNbChequeINTER()), null, null));
+            data.add(new DataRowDTO("Intégrés", String.valueOf(amplitude.getNbIntegre()),
+                String.format("%.3f", amplitude.getMontantIntegre()), "success"));
+            data.add(new DataRowDTO("Rejetés", String.valueOf(amplitude.getNbRejete()),
+                String.format("%.3f", amplitude.getMontantRejete()), amplitude.getNbRejete() > 0 ? "danger" : "success"));
+            data.add(new DataRowDTO("En cours", String.valueOf(amplitude.getNbEnCours()), null,
+                amplitude.getNbEnCours() > 0 ? "warning" : "success"));
+            data.add(new DataRowDTO("Montant total", String.valueOf(amplitude.getTotal()),
+                String.format("%.3f", amplitude.getMontantTotal()), "primary"));
+            data.add(new DataRowDTO("Taux d'intégration", String.format("%.1f%%", tauxIntegration), null,
+                tauxIntegration >= 85.0 ? "success" : "warning"));
+            data.add(new DataRowDTO("Latence moyenne",
+                amplitude.getLatenceMoyenneSecondes() == null ? "-"
+                    : String.format("%.0f s", amplitude.getLatenceMoyenneSecondes()), null, null));
         }
         card.setData(data);
         return card;
     }
 
+    // === COMPTAGES DES CHÈQUES CARTHAGO ===
+    // Session du jour : lus dans le snapshot en mémoire ; autre période : requête sur CARTHAGO
+
+    private long chequesParFichierEnv(LocalDateTime start, LocalDateTime end, boolean fichierEnv) {
+        return compterCheques(start, end, Map.of(Indicateur.FICHIER_ENV, fichierEnv), null, null,
+            () -> carthagoRepository.countByCreatedAtBetweenAndFichierEnvAndCodeValeurRef(
+                start, end, fichierEnv, CodeValeur.CHEQUE));
+    }
+
+    private long chequesParAvantCtr(LocalDateTime start, LocalDateTime end, boolean avantCTR) {
+        return compterCheques(start, end, Map.of(Indicateur.AVANT_CTR, avantCTR), null, null,
+            () -> carthagoRepository.countByCreatedAtBetweenAndAvantCTRAndCodeValeurRef(
+                start, end, avantCTR, CodeValeur.CHEQUE));
+    }
+
+    private long chequesApresCtrParType(LocalDateTime start, LocalDateTime end, Carthago.TypeFichier type) {
+        return compterCheques(start, end, Map.of(Indicateur.APRES_CTR, true), type, null,
+            () -> carthagoRepository.countByCreatedAtBetweenAndApresCTRAndTypeFichierAndCodeValeur(
+                start, end, true, type, CodeValeur.CHEQUE));
+    }
+
+    private long chequesControlesParType(LocalDateTime start, LocalDateTime end, Carthago.TypeFichier type) {
+        return compterCheques(start, end, Map.of(Indicateur.CONTROLE_EFFECTUE, true), type, null,
+            () -> carthagoRepository.countByCreatedAtBetweenAndControleEffectueAndTypeFichierAndCodeValeur(
+                start, end, true, type, CodeValeur.CHEQUE));
+    }
+
+    private long chequesApresCtrParStatut(LocalDateTime start, LocalDateTime end, Carthago.StatutCheque statut) {
+        return compterCheques(start, end, Map.of(Indicateur.APRES_CTR, true), null, statut,
+            () -> carthagoRepository.countByCreatedAtBetweenAndApresCTRAndStatutChequeAndCodeValeur(
+                start, end, statut, CodeValeur.CHEQUE));
+    }
+
+    private long compterCheques(LocalDateTime start, LocalDateTime end, Map<Indicateur, Boolean> indicateurs,
+                                Carthago.TypeFichier type, Carthago.StatutCheque statut, Supplier<Long> requete) {
+        if (couvreUneSession(start, end)) {
+            CarthagoSessionSnapshot.Resultat resultat = carthagoSessionSnapshot.compter(
+                indicateurs, FamilleValeur.CHEQUE, type, statut, null);
+            // Snapshot d'une autre session (changement de jour pas encore rechargé) : requête
+            if (resultat.session().equals(start.toLocalDate())) {
+                return resultat.nombre();
+            }
+        }
+        Long nombre = requete.get();
+        return nombre == null ? 0 : nombre;
+    }
+
+    // Période d'une journée entière (getDashboardDataCorrected : 00:00:00 - 23:59:59)
+    private static boolean couvreUneSession(LocalDateTime start, LocalDateTime end) {
+        LocalDateTime lendemain = start.toLocalDate().plusDays(1).atStartOfDay();
+        return start.equals(start.toLocalDate().atStartOfDay())
+            && !end.isBefore(lendemain.minusSeconds(1)) && end.isBefore(lendemain);
+    }
+
     /**
      * Statistiques globales
      */
@@ -347,12 +524,9 @@ public class DashboardService {
 
         try {
             // Alertes détectées
-            Long rejets = carthagoRepository.countByCreatedAtBetweenAndApresCTRAndStatutChequeAndCodeValeur(
-                start, end, Carthago.StatutCheque.REJETE, Carthago.CodeValeur.CHEQUE);
-            Long evNonParvenus = carthagoRepository.countByCreatedAtBetweenAndFichierEnvAndCodeValeur(
-                start, end, false, Carthago.CodeValeur.CHEQUE);
-            int totalAlertes = (rejets == null ? 0 : rejets.intValue()) + 
-                              (evNonParvenus == null ? 0 : evNonParvenus.intValue());
+            long rejets = chequesApresCtrParStatut(start, end, Carthago.StatutCheque.REJETE);
+            long evNonParvenus = chequesParFichierEnv(start, end, false);
+            int totalAlertes = (int) (rejets + evNonParvenus);
 
             // Statut global
             String statutGlobal = totalAlertes == 0 ? "OK" : "NOT OK";
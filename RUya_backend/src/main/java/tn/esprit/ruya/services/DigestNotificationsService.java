@@ -0,0 +1,133 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.AbonnementDigest;
+import tn.esprit.ruya.models.NotificationFluxDTO;
+import tn.esprit.ruya.models.User;
+import tn.esprit.ruya.repositories.AbonnementDigestRepository;
+import tn.esprit.ruya.repositories.INotificationRepo;
+import tn.esprit.ruya.repositories.IUserRepo;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Récapitulatif périodique des notifications par email, sur inscription :
+ * un seul email par utilisateur et par période plutôt qu'un par événement.
+ *
+ * Chaque période est réservée par une mise à jour conditionnelle de
+ * DERNIER_ENVOI avant la mise en file : lorsque plusieurs nœuds (ou un envoi
+ * manuel) traitent le même abonné, un seul récapitulatif part.
+ */
+@Service
+@RequiredArgsConstructor
+public class DigestNotificationsService {
+
+    private final AbonnementDigestRepository abonnementRepository;
+    private final INotificationRepo notificationRepo;
+    private final IUserRepo userRepo;
+    private final MailService mailService;
+
+    @Value("${ruya.mail.digest.active:true}")
+    private boolean digestActif;
+
+    // Notifications détaillées dans l'email, les suivantes sont seulement comptées
+    @Value("${ruya.mail.digest.max-notifications:20}")
+    private int maxNotifications;
+
+    @Scheduled(cron = "${ruya.mail.digest.cron:0 0 7 * * *}")
+    public void digestProgramme() {
+        if (!digestActif) {
+            return;
+        }
+        envoyerDigests();
+    }
+
+    public AbonnementDigest abonner(Long userId, boolean actif) {
+        AbonnementDigest abonnement = abonnementRepository.findById(userId).orElseGet(() -> {
+            AbonnementDigest nouveau = new AbonnementDigest(userId);
+            nouveau.setDernierEnvoi(LocalDateTime.now()); // pas de rattrapage de l'historique
+            return nouveau;
+        });
+        abonnement.setActif(actif);
+        return abonnementRepository.save(abonnement);
+    }
+
+    public AbonnementDigest getAbonnement(Long userId) {
+        return abonnementRepository.findById(userId).orElse(null);
+    }
+
+    /**
+     * Place dans la file d'envoi un récapitulatif pour chaque abonné ayant de nouvelles notifications.
+     * @return nombre d'emails mis en file
+     */
+    public int envoyerDigests() {
+        int emails = 0;
+        for (AbonnementDigest abonnement : abonnementRepository.findByActifTrue()) {
+            try {
+                if (envoyerDigest(abonnement)) {
+                    emails++;
+                }
+            } catch (Exception e) {
+                System.err.println("❌ Erreur récapitulatif notifications (user " + abonnement.getIdUser() + "): "
+                        + e.getMessage());
+            }
+        }
+        System.out.println("📬 Récapitulatifs de notifications mis en file: " + emails);
+        return emails;
+    }
+
+    private boolean envoyerDigest(AbonnementDigest abonnement) {
+        User user = userRepo.findById(abonnement.getIdUser()).orElse(null);
+        if (user == null || user.getEmail() == null) {
+            return false;
+        }
+        LocalDateTime ancien = abonnement.getDernierEnvoi();
+        // Précision milliseconde : la valeur relue en base reste égale à celle écrite
+        LocalDateTime jusqua = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        LocalDateTime depuis = ancien != null ? ancien : jusqua.minusDays(1);
+
+        int reserve = ancien != null
+                ? abonnementRepository.reserverPeriode(abonnement.getIdUser(), ancien, jusqua)
+                : abonnementRepository.reserverPremierePeriode(abonnement.getIdUser(), jusqua);
+        if (reserve == 0) {
+            return false; // période déjà traitée ailleurs, ou désinscription entre-temps
+        }
+        try {
+            return mettreEnFile(user, depuis, jusqua);
+        } catch (RuntimeException e) {
+            abonnementRepository.annulerReservation(abonnement.getIdUser(), jusqua, ancien);
+            throw e;
+        }
+    }
+
+    private boolean mettreEnFile(User user, LocalDateTime depuis, LocalDateTime jusqua) {
+        Map<String, Long> parType = new LinkedHashMap<>();
+        long total = 0;
+        for (Object[] ligne : notificationRepo.countByTypeBetween(depuis, jusqua)) {
+            parType.put(String.valueOf(ligne[0]), (Long) ligne[1]);
+            total += (Long) ligne[1];
+        }
+
+        if (total > 0) {
+            List<NotificationFluxDTO> notifications = notificationRepo.findRecentesBetween(depuis, jusqua,
+                    PageRequest.of(0, maxNotifications));
+            Map<String, Object> variables = new LinkedHashMap<>();
+            variables.put("username", user.getUsername());
+            variables.put("depuis", depuis);
+            variables.put("total", total);
+            variables.put("parType", parType);
+            variables.put("notifications", notifications);
+            mailService.mettreEnFile(user.getEmail(), "Récapitulatif de vos notifications RU'ya",
+                    "digest-notifications", variables);
+        }
+        return total > 0;
+    }
+}
@@ -0,0 +1,51 @@
+package tn.esprit.ruya.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+
+/**
+ * Empreinte HMAC-SHA256 (clé serveur) d'un code de réinitialisation, liée à l'email.
+ *
+ * Sans la clé, l'empreinte stockée ne permet pas de retrouver le code en
+ * parcourant le million de valeurs possibles. La clé est lue dans
+ * ruya.reset.secret ; obligatoire avec le stockage en base (partagée entre les
+ * nœuds), générée au démarrage sinon.
+ */
+@Component
+public class EmpreinteCodes {
+
+    private static final String ALGORITHME = "HmacSHA256";
+
+    private final SecretKeySpec cle;
+
+    public EmpreinteCodes(@Value("${ruya.reset.secret:}") String secret,
+                          @Value("${ruya.reset.stockage:memoire}") String stockage) {
+        byte[] octets;
+        if (secret != null && !secret.isBlank()) {
+            octets = secret.getBytes(StandardCharsets.UTF_8);
+        } else if ("base".equals(stockage)) {
+            throw new IllegalStateException("ruya.reset.secret est obligatoire avec ruya.reset.stockage=base");
+        } else {
+            octets = new byte[32];
+            new SecureRandom().nextBytes(octets);
+        }
+        this.cle = new SecretKeySpec(octets, ALGORITHME);
+    }
+
+    public String empreinte(String email, String code) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHME);
+            mac.init(cle);
+            return HexFormat.of().formatHex(mac.doFinal((email + ":" + code).getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
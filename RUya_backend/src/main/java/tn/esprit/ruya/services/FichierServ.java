@@ -2,12 +2,15 @@ package tn.esprit.ruya.services;
 
 import lombok.AllArgsConstructor;
 import tn.esprit.ruya.repositories.IFichierrepo;
+import tn.esprit.ruya.models.CodeValeur;
 import tn.esprit.ruya.models.Dto;
 import tn.esprit.ruya.models.Fichier;
 import tn.esprit.ruya.models.User;
+import tn.esprit.ruya.models.Montant;
+import tn.esprit.ruya.models.Notification;
 import tn.esprit.ruya.repositories.IUserRepo;
-import tn.esprit.ruya.services.NotificationService;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
@@ -26,7 +29,7 @@ public class FichierServ implements IFichierser {
 
     private IFichierrepo fichierRepo;
     private IUserRepo userRepository;
-    private NotificationService notificationService;
+    private NotificationOutboxService notificationOutbox;
 
     @PersistenceContext
     private EntityManager entityManager;
@@ -52,10 +55,9 @@ public class FichierServ implements IFichierser {
     }
 
     @Override
+    @Transactional
     public Fichier createFichier(Fichier fichier) {
         try {
-            System.out.println("🔍 DEBUG - Création de fichier avec données: " + fichier);
-
             // Validation des données requises
             if (fichier.getNomFichier() == null || fichier.getNomFichier().trim().isEmpty()) {
                 throw new RuntimeException("Le nom du fichier est requis.");
@@ -75,8 +77,6 @@ public class FichierServ implements IFichierser {
                 throw new RuntimeException("L'utilisateur avec l'ID " + user.getId() + " n'est pas actif.");
             }
 
-            System.out.println(
-                    "🔍 DEBUG - Utilisateur trouvé et actif: " + user.getUsername() + " (ID: " + user.getId() + ")");
             fichier.setUser(user);
 
             // Initialisation des valeurs par défaut
@@ -110,16 +110,9 @@ public class FichierServ implements IFichierser {
 
             // Sauvegarde du fichier
             Fichier savedFichier = fichierRepo.save(fichier);
-            System.out.println("🔍 DEBUG - Fichier sauvegardé avec succès: " + savedFichier.getNomFichier());
-
-            // Créer automatiquement une notification pour l'ajout du fichier
-            try {
-                notificationService.creerNotificationAjout(savedFichier, user);
-                System.out.println("🔍 DEBUG - Notification créée automatiquement pour le fichier: "
-                        + savedFichier.getNomFichier());
-            } catch (Exception e) {
-                System.err.println("❌ Erreur lors de la création de la notification: " + e.getMessage());
-            }
+
+            // Notification d'ajout : événement outbox dans la même transaction, distribué en arrière-plan
+            notificationOutbox.publier(Notification.NotificationType.AJOUT, savedFichier, user);
 
             return savedFichier;
 
@@ -212,7 +205,7 @@ public class FichierServ implements IFichierser {
             dto.setFichierRenduvirment(3L);
 
             dto.setTotalMontant(
-                    fichiers.stream().mapToDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0).sum());
+                    Montant.somme(fichiers, Fichier::getMontant));
             dto.setTotalNomber(fichiers.stream().mapToInt(f -> f.getNomber() != null ? f.getNomber() : 0).sum());
 
             return dto;
@@ -227,52 +220,38 @@ public class FichierServ implements IFichierser {
     /**
      * Statistiques par statut (REMIS, REJET, RENDU, EN_ATTENTE)
      */
-    // Méthodes helper pour vérifier les codes (supporte format texte ET numérique)
-    private boolean isCodeChequeRemis(String code) {
-        if (code == null) return false;
-        String upper = code.toUpperCase();
-        return upper.equals("CHEQUE") || code.equals("30") || code.equals("31");
-    }
-    
-    private boolean isCodeChequeRejet(String code) {
-        if (code == null) return false;
-        return code.equals("32") || code.equals("33");
-    }
-    
-    private boolean isCodeChequeRendu(String code) {
-        if (code == null) return false;
-        return code.equals("34");
+    // Statut porté par le code valeur (dictionnaire partagé, texte OU numérique), null = en attente
+    private CodeValeur.Statut statutCode(String code) {
+        CodeValeur entree = CodeValeur.parCode(code);
+        return entree != null ? entree.getStatut() : null;
     }
 
     public Map<String, Object> getStatsByStatus() {
         try {
-            List<Fichier> fichiers = fichierRepo.findAll();
             Map<String, Object> stats = new HashMap<>();
 
-            // Calcul des statuts basés sur les codes (texte OU numérique)
-            long remis = fichiers.stream()
-                    .filter(f -> isCodeChequeRemis(f.getCodeValeur()))
-                    .count();
-
-            long rejet = fichiers.stream()
-                    .filter(f -> isCodeChequeRejet(f.getCodeValeur()))
-                    .count();
-
-            long rendu = fichiers.stream()
-                    .filter(f -> isCodeChequeRendu(f.getCodeValeur()))
-                    .count();
-
-            long enAttente = fichiers.stream()
-                    .filter(f -> !isCodeChequeRemis(f.getCodeValeur()) &&
-                                 !isCodeChequeRejet(f.getCodeValeur()) &&
-                                 !isCodeChequeRendu(f.getCodeValeur()))
-                    .count();
+            // Une ligne par entrée du dictionnaire, classée par son statut
+            long remis = 0, rejet = 0, rendu = 0, enAttente = 0;
+            for (Object[] ligne : fichierRepo.countGroupByCodeValeurRef()) {
+                CodeValeur code = (CodeValeur) ligne[0];
+                long nombre = ((Number) ligne[1]).longValue();
+                CodeValeur.Statut statut = code != null ? code.getStatut() : null;
+                if (statut == CodeValeur.Statut.REMIS) {
+                    remis += nombre;
+                } else if (statut == CodeValeur.Statut.REJETE) {
+                    rejet += nombre;
+                } else if (statut == CodeValeur.Statut.RENDU) {
+                    rendu += nombre;
+                } else {
+                    enAttente += nombre;
+                }
+            }
 
             stats.put("REMIS", remis);
             stats.put("REJET", rejet);
             stats.put("RENDU", rendu);
             stats.put("EN_ATTENTE", enAttente);
-            stats.put("TOTAL", fichiers.size());
+            stats.put("TOTAL", remis + rejet + rendu + enAttente);
 
             return stats;
         } catch (Exception e) {
@@ -376,27 +355,25 @@ public class FichierServ implements IFichierser {
 
                         // Filtre par statut (basé sur codeValeur)
                         if (statut != null && !statut.isEmpty()) {
-                            String codeValeur = fichier.getCodeValeur();
+                            CodeValeur.Statut statutFichier = statutCode(fichier.getCodeValeur());
                             switch (statut) {
                                 case "REMIS":
-                                    if (!isCodeChequeRemis(codeValeur)) {
+                                    if (statutFichier != CodeValeur.Statut.REMIS) {
                                         return false;
                                     }
                                     break;
                                 case "REJET":
-                                    if (!isCodeChequeRejet(codeValeur)) {
+                                    if (statutFichier != CodeValeur.Statut.REJETE) {
                                         return false;
                                     }
                                     break;
                                 case "RENDU":
-                                    if (!isCodeChequeRendu(codeValeur)) {
+                                    if (statutFichier != CodeValeur.Statut.RENDU) {
                                         return false;
                                     }
                                     break;
                                 case "EN_ATTENTE":
-                                    if (isCodeChequeRemis(codeValeur) ||
-                                        isCodeChequeRejet(codeValeur) ||
-                                        isCodeChequeRendu(codeValeur)) {
+                                    if (statutFichier != null) {
                                         return false;
                                     }
                                     break;
@@ -458,7 +435,7 @@ public class FichierServ implements IFichierser {
                     .filter(f -> f.getMontant() != null && f.getTypeFichier() != null)
                     .collect(Collectors.groupingBy(
                             f -> f.getTypeFichier().name(),
-                            Collectors.summingDouble(Fichier::getMontant)));
+                            Montant.sommant(Fichier::getMontant)));
         } catch (Exception e) {
             System.err.println("❌ Erreur lors de la récupération des montants par type: " + e.getMessage());
             return new HashMap<>();
@@ -470,11 +447,7 @@ public class FichierServ implements IFichierser {
      */
     public List<Fichier> getPendingFichiers() {
         try {
-            return fichierRepo.findAll().stream()
-                    .filter(f -> !isCodeChequeRemis(f.getCodeValeur()) &&
-                                 !isCodeChequeRejet(f.getCodeValeur()) &&
-                                 !isCodeChequeRendu(f.getCodeValeur()))
-                    .collect(Collectors.toList());
+            return fichierRepo.findByCodeValeurRefNotIn(CodeValeur.avecUnStatut());
         } catch (Exception e) {
             System.err.println("❌ Erreur lors de la récupération des fichiers en attente: " + e.getMessage());
             return new ArrayList<>();
@@ -508,9 +481,7 @@ public class FichierServ implements IFichierser {
 
             Map<String, Object> stats = new HashMap<>();
             stats.put("totalFichiers", userFichiers.size());
-            stats.put("totalMontant", userFichiers.stream()
-                    .mapToDouble(f -> f.getMontant() != null ? f.getMontant() : 0.0)
-                    .sum());
+            stats.put("totalMontant", Montant.somme(userFichiers, Fichier::getMontant));
             stats.put("fichiersParType", userFichiers.stream()
                     .collect(Collectors.groupingBy(Fichier::getTypeFichier, Collectors.counting())));
 
@@ -527,13 +498,9 @@ public class FichierServ implements IFichierser {
     public List<Fichier> getAlerts() {
         try {
             LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-            return fichierRepo.findAll().stream()
-                    .filter(f -> f.getCodeValeur() != null &&
-                            (f.getCodeValeur().equals("32") || f.getCodeValeur().equals("33")))
-                    .filter(f -> f.getCreatedAt() != null && f.getCreatedAt().isAfter(thirtyDaysAgo))
-                    .sorted(Comparator.comparing(Fichier::getCreatedAt).reversed())
-                    .limit(10) // Limiter à 10 alertes
-                    .collect(Collectors.toList());
+            // 10 alertes au plus
+            return fichierRepo.findTop10ByCodeValeurRefInAndCreatedAtAfterOrderByCreatedAtDesc(
+                    CodeValeur.avecStatut(CodeValeur.Statut.REJETE), thirtyDaysAgo);
         } catch (Exception e) {
             System.err.println("❌ Erreur lors de la récupération des alertes: " + e.getMessage());
             return new ArrayList<>();
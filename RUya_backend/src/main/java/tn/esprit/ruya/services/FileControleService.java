@@ -0,0 +1,151 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import tn.esprit.ruya.models.ChequeAControlerDTO;
+import tn.esprit.ruya.repositories.CarthageRepository;
+import tn.esprit.ruya.repositories.UserRepository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * File de contrôle manuel des chèques Carthago (aVerifier = true ou statutImage = 3).
+ *
+ * Un opérateur réserve un lot par SELECT ... FOR UPDATE SKIP LOCKED : les lignes
+ * en cours de réservation par un autre opérateur sont ignorées au lieu d'être
+ * attendues. La réservation est un bail (RESERVE_PAR / RESERVE_JUSQUA) : un
+ * chèque dont le bail a expiré redevient disponible, et seul le détenteur
+ * d'un bail valide peut valider le contrôle.
+ */
+@Service
+@RequiredArgsConstructor
+public class FileControleService {
+
+    private static final String SQL_DISPONIBLES =
+            "SELECT ID_CARTHAGO FROM CARTHAGO " +
+            "WHERE (CONTROLE_EFFECTUE = ? OR CONTROLE_EFFECTUE IS NULL) " +
+            "AND (A_VERIFIER = ? OR STATUT_IMAGE = 3) " +
+            "AND (RESERVE_JUSQUA IS NULL OR RESERVE_JUSQUA < ?) " +
+            "FOR UPDATE SKIP LOCKED";
+
+    private static final String SQL_RESERVER =
+            "UPDATE CARTHAGO SET RESERVE_PAR = ?, RESERVE_JUSQUA = ? WHERE ID_CARTHAGO = ?";
+
+    private static final String SQL_CONTROLER =
+            "UPDATE CARTHAGO SET CONTROLE_EFFECTUE = ?, DATE_CONTROLE = ?, A_VERIFIER = ?, " +
+            "RESERVE_PAR = NULL, RESERVE_JUSQUA = NULL, UPDATED_AT = ? " +
+            "WHERE ID_CARTHAGO = ? AND RESERVE_PAR = ? AND RESERVE_JUSQUA >= ?";
+
+    private static final String SQL_LIBERER =
+            "UPDATE CARTHAGO SET RESERVE_PAR = NULL, RESERVE_JUSQUA = NULL " +
+            "WHERE ID_CARTHAGO = ? AND RESERVE_PAR = ?";
+
+    private static final int TAILLE_MAX = 200;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CarthageRepository carthagoRepository;
+    private final UserRepository userRepository;
+    private final CarthagoSessionSnapshot snapshot;
+
+    @Value("${ruya.controle.bail-minutes:15}")
+    private long bailMinutes;
+
+    /**
+     * Réserve jusqu'à {@code taille} chèques disponibles pour un opérateur.
+     */
+    @Transactional
+    public List<ChequeAControlerDTO> reserver(Long userId, int taille) {
+        verifierUtilisateur(userId);
+        int nombre = Math.max(1, Math.min(taille, TAILLE_MAX));
+        LocalDateTime maintenant = LocalDateTime.now();
+        Timestamp expiration = Timestamp.valueOf(maintenant.plusMinutes(bailMinutes));
+
+        // maxRows limite la lecture (et donc le verrouillage) aux premières lignes libres
+        List<Long> ids = jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_DISPONIBLES,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setMaxRows(nombre);
+            ps.setFetchSize(nombre);
+            ps.setBoolean(1, false);
+            ps.setBoolean(2, true);
+            ps.setTimestamp(3, Timestamp.valueOf(maintenant));
+            return ps;
+        }, (rs, i) -> rs.getLong(1));
+
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        List<Object[]> lots = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            lots.add(new Object[] { userId, expiration, id });
+        }
+        jdbcTemplate.batchUpdate(SQL_RESERVER, lots);
+        return carthagoRepository.findChequesAControlerByIdIn(ids);
+    }
+
+    /**
+     * Valide le contrôle des chèques réservés par l'opérateur.
+     * Les chèques dont le bail a expiré ou a été repris sont renvoyés dans "refuses".
+     */
+    @Transactional
+    public Map<String, Object> controler(Long userId, List<Long> ids) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        Timestamp horodatage = Timestamp.valueOf(maintenant);
+
+        List<Object[]> lots = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            lots.add(new Object[] { true, horodatage, false, horodatage, id, userId, horodatage });
+        }
+        int[] resultats = jdbcTemplate.batchUpdate(SQL_CONTROLER, lots);
+        snapshot.demanderRechargementApresCommit(); // CONTROLE_EFFECTUE / A_VERIFIER hors listener
+
+        List<Long> controles = new ArrayList<>();
+        List<Long> refuses = new ArrayList<>();
+        for (int i = 0; i < ids.size(); i++) {
+            // Oracle peut renvoyer SUCCESS_NO_INFO (-2) en mode batch : considéré comme appliqué
+            if (resultats[i] == 0) {
+                refuses.add(ids.get(i));
+            } else {
+                controles.add(ids.get(i));
+            }
+        }
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("controles", controles);
+        resultat.put("refuses", refuses);
+        return resultat;
+    }
+
+    /**
+     * Rend à la file les chèques réservés par l'opérateur sans les contrôler.
+     */
+    @Transactional
+    public int liberer(Long userId, List<Long> ids) {
+        List<Object[]> lots = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            lots.add(new Object[] { id, userId });
+        }
+        int liberes = 0;
+        for (int n : jdbcTemplate.batchUpdate(SQL_LIBERER, lots)) {
+            liberes += Math.max(n, 0);
+        }
+        return liberes;
+    }
+
+    private void verifierUtilisateur(Long userId) {
+        if (userId == null || !userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("Utilisateur introuvable : " + userId);
+        }
+    }
+}
@@ -0,0 +1,349 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tn.esprit.ruya.models.CTR;
+import tn.esprit.ruya.models.CodeValeur;
+import tn.esprit.ruya.repositories.CtrRepository;
+import tn.esprit.ruya.repositories.UserRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Génération du fichier aller vers CTR à partir des chèques Carthago de la session
+ * (avantCTR = true, fichierEnv = false).
+ *
+ * Format (ISO-8859-1, une ligne par enregistrement, terminée par LF) :
+ * <pre>
+ *  En-tête  : 'E' + code envoi (20) + date session AAAAMMJJ (8)
+ *  Détail   : 'D' + numéro chèque (20) + banque émettrice (10) + montant en millimes (15, positif)
+ *             + date session AAAAMMJJ (8) + type fichier E/M/W (1)
+ *  Fin      : 'T' + nombre de chèques (10) + montant total en millimes (18)
+ * </pre>
+ *
+ * Les chèques sont lus par curseur (verrouillés avec SKIP LOCKED), encodés dans
+ * un ByteBuffer direct de taille fixe et écrits dans un fichier temporaire. Les
+ * lignes sont marquées fichierEnv/codeEnv par lots dans la même transaction ; le
+ * fichier n'est publié (renommage atomique) qu'après la validation de celle-ci,
+ * et supprimé sinon.
+ *
+ * Le code envoi (et le nom du fichier) est dérivé de l'identifiant du CTR
+ * d'envoi, enregistré en début de génération : deux générations dans la même
+ * seconde ne partagent ni NUMERO_CTR ni fichier. Un chèque de montant négatif
+ * n'est pas encodable : il est écarté (et laissé non envoyé) puis signalé.
+ */
+@Service
+@RequiredArgsConstructor
+public class GenerationCtrService {
+
+    private static final String SQL_CHEQUES_ELIGIBLES =
+            "SELECT ID_CARTHAGO, NUMERO_CHEQUE, BANQUE_EMETTRICE, MONTANT, TYPE_FICHIER FROM CARTHAGO " +
+            "WHERE CREATED_AT >= ? AND CREATED_AT < ? AND CODE_VALEUR_ID = " + CodeValeur.CHEQUE.getId() + " " +
+            "AND AVANT_CTR = ? AND (FICHIER_ENV = ? OR FICHIER_ENV IS NULL) " +
+            "FOR UPDATE SKIP LOCKED";
+
+    private static final String SQL_MARQUER_ENVOYE =
+            "UPDATE CARTHAGO SET FICHIER_ENV = ?, CODE_ENV = ?, UPDATED_AT = ? WHERE ID_CARTHAGO = ?";
+
+    // Code envoi : ENV + AAAAMMJJ + identifiant du CTR d'envoi sur 9 chiffres (20 caractères)
+    private static final String FORMAT_CODE_ENV = "ENV%s%09d";
+
+    static final int LONGUEUR_DETAIL = 1 + 20 + 10 + 15 + 8 + 1 + 1;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CtrRepository ctrRepository;
+    private final UserRepository userRepository;
+    private final CarthagoSessionSnapshot snapshot;
+
+    @Value("${ruya.ctr.export-dir:export/ctr}")
+    private String dossierExport;
+
+    @Value("${ruya.ctr.taille-lot:1000}")
+    private int tailleLot;
+
+    @Value("${ruya.ctr.taille-tampon-ko:256}")
+    private int tailleTamponKo;
+
+    /**
+     * Génère le fichier CTR d'une session et enregistre le CTR d'envoi correspondant.
+     */
+    @Transactional
+    public Map<String, Object> generer(LocalDate session, Long userId) throws IOException {
+        if (userId == null || !userRepository.existsById(userId)) {
+            throw new IllegalArgumentException("Utilisateur introuvable : " + userId);
+        }
+
+        long debut = System.currentTimeMillis();
+        LocalDateTime maintenant = LocalDateTime.now();
+        byte[] dateSession = session.format(DateTimeFormatter.BASIC_ISO_DATE).getBytes(StandardCharsets.US_ASCII);
+
+        // CTR d'envoi créé d'abord : son identifiant rend le code envoi unique
+        CTR ctr = new CTR();
+        ctr.setUser(userRepository.getReferenceById(userId));
+        ctr.setNumeroCtr("ENV");
+        ctr.setTypeOperation("ENVOI");
+        ctr.setStatutCtr("EN_COURS");
+        ctr.setCodeValeur("CHEQUE");
+        ctr.setGenereVersCtr(true);
+        ctr.setDateGeneration(maintenant);
+        ctr.setFichierEnvCtr(true);
+        ctr.setSessionCtr(session.toString());
+        ctr = ctrRepository.save(ctr);
+        String codeEnv = String.format(FORMAT_CODE_ENV,
+                maintenant.format(DateTimeFormatter.BASIC_ISO_DATE), ctr.getId() % 1_000_000_000L);
+
+        Path dossier = Paths.get(dossierExport).toAbsolutePath().normalize();
+        Files.createDirectories(dossier);
+        Path fichierFinal = dossier.resolve("CTR_" + codeEnv + ".dat");
+        Path fichierTemporaire = Files.createTempFile(dossier, "CTR_", ".tmp");
+
+        Ecriture ecriture;
+        try (FileChannel canal = FileChannel.open(fichierTemporaire, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ecriture = new Ecriture(canal, Math.max(LONGUEUR_DETAIL, tailleTamponKo * 1024),
+                    Math.max(1, tailleLot), codeEnv, Timestamp.valueOf(maintenant));
+
+            ecriture.entete(codeEnv, dateSession);
+            jdbcTemplate.query(con -> {
+                PreparedStatement ps = con.prepareStatement(SQL_CHEQUES_ELIGIBLES,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                ps.setFetchSize(Math.max(1, tailleLot));
+                ps.setTimestamp(1, Timestamp.valueOf(session.atStartOfDay()));
+                ps.setTimestamp(2, Timestamp.valueOf(session.plusDays(1).atStartOfDay()));
+                ps.setBoolean(3, true);
+                ps.setBoolean(4, false);
+                return ps;
+            }, rs -> {
+                long montantMillimes = Math.round(rs.getDouble(4) * 1000);
+                if (montantMillimes < 0) {
+                    ecriture.rejetes++;
+                    System.err.println("⚠️ Chèque Carthago " + rs.getLong(1) + " écarté: montant négatif");
+                    return;
+                }
+                ecriture.detail(rs.getLong(1), rs.getString(2), rs.getString(3),
+                        montantMillimes, dateSession, rs.getString(5));
+            });
+            ecriture.fin();
+            canal.force(false);
+        } catch (RuntimeException | IOException e) {
+            Files.deleteIfExists(fichierTemporaire);
+            throw e;
+        }
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("session", session.toString());
+        resultat.put("cheques", ecriture.nombre);
+        if (ecriture.rejetes > 0) {
+            resultat.put("rejetes", ecriture.rejetes);
+        }
+
+        if (ecriture.nombre == 0) {
+            Files.deleteIfExists(fichierTemporaire);
+            ctrRepository.delete(ctr);
+            resultat.put("dureeMs", System.currentTimeMillis() - debut);
+            return resultat;
+        }
+
+        ctr.setNumeroCtr(codeEnv);
+        snapshot.demanderRechargementApresCommit(); // FICHIER_ENV écrit en JDBC, hors listener
+        ctr.setMontant(ecriture.totalMillimes / 1000.0);
+        ctr.setNombreElements((int) ecriture.nombre);
+        long octets = Files.size(fichierTemporaire);
+        publierApresValidation(fichierTemporaire, fichierFinal);
+
+        resultat.put("fichier", fichierFinal.getFileName().toString());
+        resultat.put("codeEnv", codeEnv);
+        resultat.put("montantTotal", ecriture.totalMillimes / 1000.0);
+        resultat.put("octets", octets);
+        resultat.put("idCtr", ctr.getId());
+        resultat.put("dureeMs", System.currentTimeMillis() - debut);
+        System.out.println("📤 Fichier CTR généré: " + resultat);
+        return resultat;
+    }
+
+    // Le fichier n'est visible sous son nom définitif qu'une fois les chèques marqués en base
+    private void publierApresValidation(Path temporaire, Path fichier) throws IOException {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            Files.move(temporaire, fichier, StandardCopyOption.ATOMIC_MOVE);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                try {
+                    Files.move(temporaire, fichier, StandardCopyOption.ATOMIC_MOVE);
+                } catch (IOException e) {
+                    // Chèques déjà marqués : le fichier temporaire est conservé pour une publication manuelle
+                    System.err.println("❌ Publication de " + fichier.getFileName() + " impossible (fichier conservé: "
+                            + temporaire.getFileName() + "): " + e.getMessage());
+                }
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    try {
+                        Files.deleteIfExists(temporaire);
+                        System.err.println("❌ Génération CTR annulée, fichier supprimé: " + fichier.getFileName());
+                    } catch (IOException e) {
+                        System.err.println("❌ Impossible de supprimer " + temporaire + ": " + e.getMessage());
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Encodage des enregistrements dans un tampon direct et marquage des lignes par lots.
+     */
+    private final class Ecriture {
+
+        private final FileChannel canal;
+        private final ByteBuffer tampon;
+        private final long[] idsLot;
+        private final String codeEnv;
+        private final Timestamp horodatage;
+        private int tailleLotCourant;
+
+        long nombre;
+        long totalMillimes;
+        long rejetes;
+
+        Ecriture(FileChannel canal, int capacite, int tailleLot, String codeEnv, Timestamp horodatage) {
+            this.canal = canal;
+            this.tampon = ByteBuffer.allocateDirect(capacite);
+            this.idsLot = new long[tailleLot];
+            this.codeEnv = codeEnv;
+            this.horodatage = horodatage;
+        }
+
+        void entete(String code, byte[] dateSession) {
+            reserver(1 + 20 + 8 + 1);
+            tampon.put((byte) 'E');
+            ecrireTexte(code, 20);
+            tampon.put(dateSession);
+            tampon.put((byte) '\n');
+        }
+
+        void detail(long id, String numero, String banque, long montantMillimes, byte[] dateSession, String typeFichier) {
+            reserver(LONGUEUR_DETAIL);
+            tampon.put((byte) 'D');
+            ecrireTexte(numero, 20);
+            ecrireTexte(banque, 10);
+            ecrireNombre(montantMillimes, 15);
+            tampon.put(dateSession);
+            tampon.put(typeFichier != null && !typeFichier.isEmpty() ? (byte) typeFichier.charAt(0) : (byte) ' ');
+            tampon.put((byte) '\n');
+
+            nombre++;
+            totalMillimes += montantMillimes;
+            idsLot[tailleLotCourant++] = id;
+            if (tailleLotCourant == idsLot.length) {
+                marquerLot();
+            }
+        }
+
+        void fin() throws IOException {
+            reserver(1 + 10 + 18 + 1);
+            tampon.put((byte) 'T');
+            ecrireNombre(nombre, 10);
+            ecrireNombre(totalMillimes, 18);
+            tampon.put((byte) '\n');
+            vider();
+            marquerLot();
+        }
+
+        private void reserver(int octets) {
+            if (tampon.remaining() < octets) {
+                try {
+                    vider();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        private void vider() throws IOException {
+            tampon.flip();
+            while (tampon.hasRemaining()) {
+                canal.write(tampon);
+            }
+            tampon.clear();
+        }
+
+        private void marquerLot() {
+            if (tailleLotCourant == 0) {
+                return;
+            }
+            int taille = tailleLotCourant;
+            jdbcTemplate.batchUpdate(SQL_MARQUER_ENVOYE, new BatchPreparedStatementSetter() {
+                @Override
+                public void setValues(PreparedStatement ps, int i) throws SQLException {
+                    ps.setBoolean(1, true);
+                    ps.setString(2, codeEnv);
+                    ps.setTimestamp(3, horodatage);
+                    ps.setLong(4, idsLot[i]);
+                }
+
+                @Override
+                public int getBatchSize() {
+                    return taille;
+                }
+            });
+            tailleLotCourant = 0;
+        }
+
+        // Texte cadré à gauche, complété par des espaces, caractères hors Latin-1 remplacés par '?'
+        private void ecrireTexte(String valeur, int largeur) {
+            int longueur = valeur == null ? 0 : Math.min(valeur.length(), largeur);
+            for (int i = 0; i < longueur; i++) {
+                char c = valeur.charAt(i);
+                tampon.put(c < 256 ? (byte) c : (byte) '?');
+            }
+            for (int i = longueur; i < largeur; i++) {
+                tampon.put((byte) ' ');
+            }
+        }
+
+        // Nombre positif cadré à droite, complété par des zéros ; jamais tronqué
+        private void ecrireNombre(long valeur, int largeur) {
+            if (valeur < 0) {
+                throw new IllegalStateException("Valeur négative non encodable: " + valeur);
+            }
+            int position = tampon.position();
+            long reste = valeur;
+            for (int i = largeur - 1; i >= 0; i--) {
+                tampon.put(position + i, (byte) ('0' + (reste % 10)));
+                reste /= 10;
+            }
+            if (reste != 0) {
+                throw new IllegalStateException("Valeur trop grande pour " + largeur + " chiffres: " + valeur);
+            }
+            tampon.position(position + largeur);
+        }
+    }
+}
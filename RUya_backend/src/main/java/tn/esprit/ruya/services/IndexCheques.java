@@ -0,0 +1,132 @@
+package tn.esprit.ruya.services;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Table de hachage à adressage ouvert (sondage linéaire) sur la clé
+ * numéro de chèque + montant en millimes.
+ *
+ * Les numéros sont stockés en octets : la recherche se fait directement sur
+ * une zone d'un ByteBuffer (fichier projeté en mémoire) sans créer de chaîne.
+ *
+ * Chaque chèque ajouté a sa propre entrée. Les chèques de même clé (même
+ * numéro et même montant, remis plusieurs fois) sont chaînés dans l'ordre
+ * d'ajout à partir de la première entrée, seule référencée par la table.
+ */
+final class IndexCheques {
+
+    private final long[] ids;
+    private final byte[][] numeros;
+    private final long[] montants;
+    private final int[] suivants; // entrée suivante de même clé, -1 en fin de chaîne
+    private final int[] cases; // indice + 1 de l'entrée, 0 si vide
+    private final int masque;
+    private int taille;
+
+    IndexCheques(int capacite) {
+        int n = Math.max(1, capacite);
+        this.ids = new long[n];
+        this.numeros = new byte[n][];
+        this.montants = new long[n];
+        this.suivants = new int[n];
+        int tailleTable = Integer.highestOneBit(Math.max(2, n * 2 - 1)) << 1;
+        this.cases = new int[tailleTable];
+        this.masque = tailleTable - 1;
+    }
+
+    int taille() {
+        return taille;
+    }
+
+    long id(int entree) {
+        return ids[entree];
+    }
+
+    /**
+     * @return entrée suivante de même clé, -1 s'il n'y en a plus
+     */
+    int suivant(int entree) {
+        return suivants[entree];
+    }
+
+    /**
+     * Ajoute une entrée ; une clé déjà présente est chaînée après ses occurrences précédentes.
+     * @return indice de l'entrée
+     */
+    int ajouter(long id, String numero, long montantMillimes) {
+        byte[] cle = numero.trim().getBytes(StandardCharsets.ISO_8859_1);
+        int nouvelle = taille++;
+        ids[nouvelle] = id;
+        montants[nouvelle] = montantMillimes;
+        suivants[nouvelle] = -1;
+
+        int position = hacher(cle, 0, cle.length, montantMillimes) & masque;
+        while (cases[position] != 0) {
+            int entree = cases[position] - 1;
+            if (montants[entree] == montantMillimes && Arrays.equals(numeros[entree], cle)) {
+                numeros[nouvelle] = numeros[entree];
+                while (suivants[entree] >= 0) {
+                    entree = suivants[entree];
+                }
+                suivants[entree] = nouvelle;
+                return nouvelle;
+            }
+            position = (position + 1) & masque;
+        }
+        numeros[nouvelle] = cle;
+        cases[position] = nouvelle + 1;
+        return nouvelle;
+    }
+
+    /**
+     * Recherche la clé lue dans buffer[debut, fin).
+     * @return première entrée de la clé (les suivantes par suivant()), -1 si absente
+     */
+    int chercher(ByteBuffer buffer, int debut, int fin, long montantMillimes) {
+        int position = hacher(buffer, debut, fin, montantMillimes) & masque;
+        while (cases[position] != 0) {
+            int entree = cases[position] - 1;
+            if (montants[entree] == montantMillimes && egal(numeros[entree], buffer, debut, fin)) {
+                return entree;
+            }
+            position = (position + 1) & masque;
+        }
+        return -1;
+    }
+
+    private static boolean egal(byte[] cle, ByteBuffer buffer, int debut, int fin) {
+        if (cle.length != fin - debut) {
+            return false;
+        }
+        for (int i = 0; i < cle.length; i++) {
+            if (cle[i] != buffer.get(debut + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // FNV-1a sur les octets du numéro, mélangé avec le montant
+    private static int hacher(byte[] octets, int debut, int fin, long montant) {
+        int h = 0x811C9DC5;
+        for (int i = debut; i < fin; i++) {
+            h = (h ^ (octets[i] & 0xFF)) * 0x01000193;
+        }
+        return melanger(h, montant);
+    }
+
+    private static int hacher(ByteBuffer buffer, int debut, int fin, long montant) {
+        int h = 0x811C9DC5;
+        for (int i = debut; i < fin; i++) {
+            h = (h ^ (buffer.get(i) & 0xFF)) * 0x01000193;
+        }
+        return melanger(h, montant);
+    }
+
+    private static int melanger(int h, long montant) {
+        h ^= Long.hashCode(montant * 0x9E3779B97F4A7C15L);
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,72 @@
+package tn.esprit.ruya.services;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import tn.esprit.ruya.models.CodeValeur;
+
+/**
+ * Renseigne CODE_VALEUR_ID (dictionnaire CodeValeur) à partir du code texte
+ * sur les lignes antérieures au dictionnaire. Un traitement par table.
+ */
+public abstract class JobCodeValeur implements JobTraitement {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String table;
+    private final String colonneId;
+    private final String sql;
+
+    protected JobCodeValeur(JdbcTemplate jdbcTemplate, String table, String colonneId) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.table = table;
+        this.colonneId = colonneId;
+        this.sql = "UPDATE " + table + " SET CODE_VALEUR_ID = " + CodeValeur.expressionSql("CODE_VALEUR") +
+                " WHERE " + colonneId + " > ? AND " + colonneId + " <= ? " +
+                "AND CODE_VALEUR_ID IS NULL AND CODE_VALEUR IS NOT NULL";
+    }
+
+    @Override
+    public String nom() {
+        return table + "_CODE_VALEUR_ID";
+    }
+
+    @Override
+    public String description() {
+        return "Renseigne CODE_VALEUR_ID depuis CODE_VALEUR sur " + table;
+    }
+
+    @Override
+    public String table() {
+        return table;
+    }
+
+    @Override
+    public String colonneId() {
+        return colonneId;
+    }
+
+    @Override
+    public int traiterChunk(long debutExclu, long finInclus) {
+        return jdbcTemplate.update(sql, debutExclu, finInclus);
+    }
+
+    @Component
+    static class Carthago extends JobCodeValeur {
+        Carthago(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate, "CARTHAGO", "ID_CARTHAGO");
+        }
+    }
+
+    @Component
+    static class Fichiers extends JobCodeValeur {
+        Fichiers(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate, "FICHIERS", "ID_FICHIER");
+        }
+    }
+
+    @Component
+    static class Ctr extends JobCodeValeur {
+        Ctr(JdbcTemplate jdbcTemplate) {
+            super(jdbcTemplate, "CTR", "ID_CTR");
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Recalcule REMISE_DOUBLE sur CARTHAGO : un chèque est en double lorsqu'une
+ * autre ligne porte le même numéro, la même banque émettrice et le même montant.
+ */
+@Component
+@RequiredArgsConstructor
+public class JobRemiseDoubleCarthago implements JobTraitement {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CarthagoSessionSnapshot snapshot;
+
+    @Override
+    public String nom() {
+        return "CARTHAGO_REMISE_DOUBLE";
+    }
+
+    @Override
+    public String description() {
+        return "Recalcule REMISE_DOUBLE (numéro + banque + montant) sur CARTHAGO";
+    }
+
+    @Override
+    public String table() {
+        return "CARTHAGO";
+    }
+
+    @Override
+    public String colonneId() {
+        return "ID_CARTHAGO";
+    }
+
+    @Override
+    public int traiterChunk(long debutExclu, long finInclus) {
+        // Seules les lignes dont l'indicateur change sont écrites
+        int modifiees = jdbcTemplate.update(
+                "UPDATE CARTHAGO c SET REMISE_DOUBLE = ? " +
+                "WHERE c.ID_CARTHAGO > ? AND c.ID_CARTHAGO <= ? AND c.NUMERO_CHEQUE IS NOT NULL " +
+                "AND (c.REMISE_DOUBLE IS NULL OR c.REMISE_DOUBLE <> ?) " +
+                "AND EXISTS (SELECT 1 FROM CARTHAGO d WHERE d.NUMERO_CHEQUE = c.NUMERO_CHEQUE " +
+                "AND (d.BANQUE_EMETTRICE = c.BANQUE_EMETTRICE OR (d.BANQUE_EMETTRICE IS NULL AND c.BANQUE_EMETTRICE IS NULL)) " +
+                "AND d.MONTANT = c.MONTANT AND d.ID_CARTHAGO <> c.ID_CARTHAGO)",
+                true, debutExclu, finInclus, true)
+                + jdbcTemplate.update(
+                "UPDATE CARTHAGO c SET REMISE_DOUBLE = ? " +
+                "WHERE c.ID_CARTHAGO > ? AND c.ID_CARTHAGO <= ? " +
+                "AND (c.REMISE_DOUBLE IS NULL OR c.REMISE_DOUBLE <> ?) " +
+                "AND NOT EXISTS (SELECT 1 FROM CARTHAGO d WHERE d.NUMERO_CHEQUE = c.NUMERO_CHEQUE " +
+                "AND (d.BANQUE_EMETTRICE = c.BANQUE_EMETTRICE OR (d.BANQUE_EMETTRICE IS NULL AND c.BANQUE_EMETTRICE IS NULL)) " +
+                "AND d.MONTANT = c.MONTANT AND d.ID_CARTHAGO <> c.ID_CARTHAGO)",
+                false, debutExclu, finInclus, false);
+        if (modifiees > 0) {
+            snapshot.demanderRechargementApresCommit(); // REMISE_DOUBLE hors listener, rechargements regroupés
+        }
+        return modifiees;
+    }
+}
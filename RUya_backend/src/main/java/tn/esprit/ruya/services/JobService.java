@@ -0,0 +1,429 @@
+package tn.esprit.ruya.services;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tn.esprit.ruya.models.Job;
+import tn.esprit.ruya.models.JobTranche;
+import tn.esprit.ruya.repositories.JobRepository;
+import tn.esprit.ruya.repositories.JobTrancheRepository;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Exécution des traitements de masse (JobTraitement) sur les tables historiques.
+ *
+ * La plage d'identifiants de la table est découpée en tranches disjointes, une
+ * par worker. Chaque worker parcourt sa tranche par morceaux de taille fixe
+ * (keyset sur l'identifiant) ; chaque morceau est validé dans sa propre
+ * transaction avec le curseur de la tranche (JOB_TRANCHES), ce qui permet de
+ * reprendre un job en pause ou interrompu par un arrêt de l'application.
+ *
+ * Un job n'est exécuté que par le nœud qui détient son bail (VERROU_TRAITEMENT,
+ * nom JOB_<id>), prolongé périodiquement tant que des workers tournent. Un job
+ * resté EN_COURS n'est repris (au démarrage puis périodiquement) qu'une fois son
+ * bail expiré, c'est-à-dire quand le nœud qui l'exécutait s'est arrêté. Le même
+ * battement relit le statut du job : une pause demandée depuis un autre nœud
+ * arrête les workers. Les changements de statut sont des UPDATE ciblés, sans
+ * réécrire la ligne entière.
+ */
+@Service
+public class JobService {
+
+    private final JobRepository jobRepository;
+    private final JobTrancheRepository trancheRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final Map<String, JobTraitement> traitements;
+    private final VerrouService verrouService;
+    private final ExecutorService executeur;
+
+    // Prolongation des baux des jobs exécutés sur ce nœud
+    private final ScheduledExecutorService battement = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "jobs-battement");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Jobs dont l'arrêt est demandé (pause ou échec d'un worker)
+    private final Set<Long> arrets = ConcurrentHashMap.newKeySet();
+
+    // Workers actifs par job sur ce nœud
+    private final Map<Long, AtomicInteger> workersActifs = new ConcurrentHashMap<>();
+
+    @Value("${ruya.jobs.taille-chunk:5000}")
+    private int tailleChunkDefaut;
+
+    @Value("${ruya.jobs.reprise-auto:true}")
+    private boolean repriseAuto;
+
+    @Value("${ruya.jobs.bail-secondes:120}")
+    private long bailSecondes;
+
+    // Attente de la fin des morceaux en cours à l'arrêt de l'application
+    @Value("${ruya.jobs.arret-secondes:30}")
+    private long arretSecondes;
+
+    public JobService(JobRepository jobRepository,
+                      JobTrancheRepository trancheRepository,
+                      JdbcTemplate jdbcTemplate,
+                      TransactionTemplate transactionTemplate,
+                      List<JobTraitement> traitements,
+                      VerrouService verrouService,
+                      @Value("${ruya.jobs.max-workers:4}") int maxWorkers) {
+        this.jobRepository = jobRepository;
+        this.trancheRepository = trancheRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.traitements = traitements.stream()
+                .collect(Collectors.toMap(JobTraitement::nom, Function.identity(), (a, b) -> a, LinkedHashMap::new));
+        this.verrouService = verrouService;
+        this.executeur = Executors.newFixedThreadPool(Math.max(1, maxWorkers));
+    }
+
+    @PostConstruct
+    public void initialiser() {
+        long periode = Math.max(1, bailSecondes / 3);
+        battement.scheduleWithFixedDelay(this::prolongerBaux, periode, periode, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Arrêt propre : les workers terminent leur morceau en cours (curseur validé)
+     * puis libèrent le bail, le job reste EN_COURS et sera repris.
+     */
+    @PreDestroy
+    public void arreter() {
+        arrets.addAll(workersActifs.keySet());
+        executeur.shutdown();
+        try {
+            if (!executeur.awaitTermination(arretSecondes, TimeUnit.SECONDS)) {
+                System.err.println("⚠️ Jobs encore actifs après " + arretSecondes + " s, arrêt forcé");
+                executeur.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executeur.shutdownNow();
+            Thread.currentThread().interrupt();
+        } finally {
+            battement.shutdownNow();
+        }
+    }
+
+    /**
+     * Reprend les jobs restés EN_COURS dont le bail a expiré (nœud arrêté ou
+     * tombé), au démarrage puis périodiquement.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${ruya.jobs.reprise-ms:60000}", initialDelayString = "${ruya.jobs.reprise-ms:60000}")
+    public void reprendreJobsInterrompus() {
+        if (!repriseAuto) {
+            return;
+        }
+        for (Job job : jobRepository.findByStatut(Job.Statut.EN_COURS)) {
+            AtomicInteger actifs = workersActifs.get(job.getId());
+            if (actifs != null && actifs.get() > 0) {
+                continue; // exécuté sur ce nœud
+            }
+            try {
+                if (demarrerSiLibre(job.getId())) {
+                    System.out.println("🔁 Reprise du job " + job.getId() + " (" + job.getType() + ")");
+                }
+            } catch (Exception e) {
+                System.err.println("❌ Erreur reprise du job " + job.getId() + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public List<Map<String, String>> listerTypes() {
+        List<Map<String, String>> types = new ArrayList<>();
+        for (JobTraitement traitement : traitements.values()) {
+            types.add(Map.of("nom", traitement.nom(), "description", traitement.description(),
+                    "table", traitement.table()));
+        }
+        return types;
+    }
+
+    /**
+     * Crée un job, découpe la table en tranches et le démarre.
+     */
+    public Map<String, Object> creer(String type, Integer workers, Integer tailleChunk) {
+        JobTraitement traitement = traitement(type);
+        int nombreWorkers = workers != null && workers > 0 ? workers : 1;
+        int chunk = tailleChunk != null && tailleChunk > 0 ? tailleChunk : tailleChunkDefaut;
+
+        Map<String, Object> bornes = jdbcTemplate.queryForMap("SELECT MIN(" + traitement.colonneId() + ") MIN_ID, MAX("
+                + traitement.colonneId() + ") MAX_ID FROM " + traitement.table());
+        Long idMin = bornes.get("MIN_ID") != null ? ((Number) bornes.get("MIN_ID")).longValue() : null;
+        Long idMax = bornes.get("MAX_ID") != null ? ((Number) bornes.get("MAX_ID")).longValue() : null;
+
+        Job job = new Job();
+        job.setType(traitement.nom());
+        job.setTableCible(traitement.table());
+        job.setStatut(Job.Statut.EN_ATTENTE);
+        job.setIdMin(idMin);
+        job.setIdMax(idMax);
+        job.setTailleChunk(chunk);
+        job.setNombreWorkers(nombreWorkers);
+        job = jobRepository.save(job);
+
+        if (idMin != null) {
+            long etendue = idMax - idMin + 1;
+            int nombreTranches = (int) Math.min(nombreWorkers, etendue);
+            long pas = (etendue + nombreTranches - 1) / nombreTranches;
+            List<JobTranche> tranches = new ArrayList<>();
+            for (int i = 0; i < nombreTranches; i++) {
+                JobTranche tranche = new JobTranche();
+                tranche.setJobId(job.getId());
+                tranche.setNumero(i);
+                tranche.setDebut(idMin - 1 + i * pas);
+                tranche.setFin(i == nombreTranches - 1 ? idMax : idMin - 1 + (i + 1) * pas);
+                tranche.setCurseur(tranche.getDebut());
+                tranche.setStatut(Job.Statut.EN_ATTENTE);
+                tranche.setUpdatedAt(LocalDateTime.now());
+                tranches.add(tranche);
+            }
+            trancheRepository.saveAll(tranches);
+        }
+
+        return demarrer(job.getId());
+    }
+
+    /**
+     * Démarre ou reprend un job à partir des curseurs de ses tranches.
+     */
+    public synchronized Map<String, Object> demarrer(Long jobId) {
+        Job job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Job introuvable : " + jobId));
+        if (job.getStatut() == Job.Statut.TERMINE) {
+            return suivre(jobId);
+        }
+        if (!demarrerSiLibre(jobId)) {
+            throw new IllegalStateException("Le job " + jobId + " est déjà en cours d'exécution");
+        }
+        return suivre(jobId);
+    }
+
+    // Démarre le job si son bail est libre ou expiré ; false s'il est exécuté ailleurs (ou ici)
+    private synchronized boolean demarrerSiLibre(Long jobId) {
+        Job job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Job introuvable : " + jobId));
+        if (job.getStatut() == Job.Statut.TERMINE) {
+            return false;
+        }
+        AtomicInteger actifs = workersActifs.computeIfAbsent(jobId, k -> new AtomicInteger());
+        if (actifs.get() > 0 || !verrouService.acquerir(nomVerrou(jobId), bailSecondes)) {
+            return false;
+        }
+        JobTraitement traitement;
+        try {
+            traitement = traitement(job.getType());
+        } catch (RuntimeException e) {
+            verrouService.liberer(nomVerrou(jobId));
+            throw e;
+        }
+
+        arrets.remove(jobId);
+        job.setStatut(Job.Statut.EN_COURS);
+        job.setDerniereErreur(null);
+        if (job.getStartedAt() == null) {
+            job.setStartedAt(LocalDateTime.now());
+        }
+        jobRepository.save(job);
+
+        List<JobTranche> aTraiter = trancheRepository.findByJobIdOrderByNumero(jobId).stream()
+                .filter(t -> t.getStatut() != Job.Statut.TERMINE)
+                .toList();
+        if (aTraiter.isEmpty()) {
+            terminer(jobId);
+            verrouService.liberer(nomVerrou(jobId));
+            return true;
+        }
+
+        actifs.set(aTraiter.size());
+        int tailleChunk = job.getTailleChunk();
+        for (JobTranche tranche : aTraiter) {
+            executeur.submit(() -> executerTranche(jobId, traitement, tranche, tailleChunk));
+        }
+        System.out.println("▶️ Job " + jobId + " (" + job.getType() + ") démarré sur " + aTraiter.size() + " tranche(s)");
+        return true;
+    }
+
+    /**
+     * Demande la pause d'un job : chaque worker s'arrête après son morceau en cours.
+     */
+    public Map<String, Object> mettreEnPause(Long jobId) {
+        Job job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Job introuvable : " + jobId));
+        if (jobRepository.mettreEnPause(jobId, LocalDateTime.now()) > 0) {
+            arrets.add(jobId); // sur un autre nœud, le battement relit le statut
+        }
+        return suivre(jobId);
+    }
+
+    /**
+     * État du job et progression de chaque tranche.
+     */
+    public Map<String, Object> suivre(Long jobId) {
+        Job job = jobRepository.findById(jobId)
+                .orElseThrow(() -> new IllegalArgumentException("Job introuvable : " + jobId));
+        List<JobTranche> tranches = trancheRepository.findByJobIdOrderByNumero(jobId);
+
+        long lignes = 0;
+        long chunks = 0;
+        long etendue = 0;
+        long parcouru = 0;
+        List<Map<String, Object>> detailTranches = new ArrayList<>();
+        for (JobTranche tranche : tranches) {
+            lignes += tranche.getLignesTraitees();
+            chunks += tranche.getChunksTraites();
+            etendue += tranche.getFin() - tranche.getDebut();
+            parcouru += tranche.getStatut() == Job.Statut.TERMINE
+                    ? tranche.getFin() - tranche.getDebut() : tranche.getCurseur() - tranche.getDebut();
+
+            Map<String, Object> detail = new LinkedHashMap<>();
+            detail.put("numero", tranche.getNumero());
+            detail.put("debut", tranche.getDebut());
+            detail.put("fin", tranche.getFin());
+            detail.put("curseur", tranche.getCurseur());
+            detail.put("statut", tranche.getStatut());
+            detail.put("lignesTraitees", tranche.getLignesTraitees());
+            detail.put("chunksTraites", tranche.getChunksTraites());
+            detailTranches.add(detail);
+        }
+
+        Map<String, Object> vue = new LinkedHashMap<>();
+        vue.put("id", job.getId());
+        vue.put("type", job.getType());
+        vue.put("table", job.getTableCible());
+        vue.put("statut", job.getStatut());
+        vue.put("idMin", job.getIdMin());
+        vue.put("idMax", job.getIdMax());
+        vue.put("tailleChunk", job.getTailleChunk());
+        vue.put("workers", job.getNombreWorkers());
+        vue.put("lignesTraitees", lignes);
+        vue.put("chunksTraites", chunks);
+        vue.put("progression", etendue > 0 ? Math.round(parcouru * 1000.0 / etendue) / 10.0 : 100.0);
+        vue.put("createdAt", job.getCreatedAt());
+        vue.put("startedAt", job.getStartedAt());
+        vue.put("finishedAt", job.getFinishedAt());
+        vue.put("derniereErreur", job.getDerniereErreur());
+        vue.put("tranches", detailTranches);
+        return vue;
+    }
+
+    public List<Map<String, Object>> lister() {
+        List<Map<String, Object>> jobs = new ArrayList<>();
+        for (Job job : jobRepository.findTop50ByOrderByIdDesc()) {
+            Map<String, Object> resume = new LinkedHashMap<>();
+            resume.put("id", job.getId());
+            resume.put("type", job.getType());
+            resume.put("statut", job.getStatut());
+            resume.put("createdAt", job.getCreatedAt());
+            resume.put("finishedAt", job.getFinishedAt());
+            jobs.add(resume);
+        }
+        return jobs;
+    }
+
+    private void executerTranche(Long jobId, JobTraitement traitement, JobTranche tranche, int tailleChunk) {
+        String sqlFinChunk = "SELECT MAX(" + traitement.colonneId() + ") FROM (SELECT " + traitement.colonneId()
+                + " FROM " + traitement.table() + " WHERE " + traitement.colonneId() + " > ? AND "
+                + traitement.colonneId() + " <= ? ORDER BY " + traitement.colonneId()
+                + " FETCH FIRST ? ROWS ONLY)";
+        long curseur = tranche.getCurseur();
+        try {
+            trancheRepository.changerStatut(tranche.getId(), Job.Statut.EN_COURS, LocalDateTime.now());
+            while (!arrets.contains(jobId)) {
+                Long finChunk = jdbcTemplate.queryForObject(sqlFinChunk, Long.class,
+                        curseur, tranche.getFin(), tailleChunk);
+                if (finChunk == null) {
+                    trancheRepository.changerStatut(tranche.getId(), Job.Statut.TERMINE, LocalDateTime.now());
+                    break;
+                }
+                long debutChunk = curseur;
+                transactionTemplate.executeWithoutResult(statut -> {
+                    int lignes = traitement.traiterChunk(debutChunk, finChunk);
+                    trancheRepository.avancer(tranche.getId(), finChunk, lignes, LocalDateTime.now());
+                });
+                curseur = finChunk;
+            }
+        } catch (Exception e) {
+            System.err.println("❌ Job " + jobId + " tranche " + tranche.getNumero() + " en échec: " + e.getMessage());
+            arrets.add(jobId);
+            trancheRepository.changerStatut(tranche.getId(), Job.Statut.ECHEC, LocalDateTime.now());
+            jobRepository.marquerEchec(jobId, tronquer(e.getMessage()), LocalDateTime.now());
+        } finally {
+            if (workersActifs.get(jobId).decrementAndGet() == 0) {
+                terminer(jobId);
+                verrouService.liberer(nomVerrou(jobId));
+            }
+        }
+    }
+
+    // Dernier worker arrêté : le job est terminé si toutes ses tranches le sont
+    private synchronized void terminer(Long jobId) {
+        if (trancheRepository.countByJobIdAndStatutNot(jobId, Job.Statut.TERMINE) > 0) {
+            return;
+        }
+        LocalDateTime maintenant = LocalDateTime.now();
+        if (jobRepository.terminer(jobId, maintenant, maintenant) > 0) {
+            System.out.println("✅ Job " + jobId + " terminé");
+        }
+    }
+
+    // Battement : prolonge le bail des jobs actifs ici, arrête ceux mis en pause ou repris ailleurs
+    private void prolongerBaux() {
+        workersActifs.forEach((jobId, actifs) -> {
+            if (actifs.get() == 0 || arrets.contains(jobId)) {
+                return;
+            }
+            try {
+                if (!verrouService.prolonger(nomVerrou(jobId), bailSecondes)) {
+                    System.err.println("⚠️ Bail du job " + jobId + " perdu, arrêt des workers de ce nœud");
+                    arrets.add(jobId);
+                } else if (jobRepository.findStatut(jobId) != Job.Statut.EN_COURS) {
+                    arrets.add(jobId);
+                }
+            } catch (Exception e) {
+                System.err.println("❌ Erreur prolongation du bail du job " + jobId + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private static String nomVerrou(Long jobId) {
+        return "JOB_" + jobId;
+    }
+
+    private JobTraitement traitement(String type) {
+        JobTraitement traitement = traitements.get(type);
+        if (traitement == null) {
+            throw new IllegalArgumentException("Type de job inconnu : " + type + " (attendu : " + traitements.keySet() + ")");
+        }
+        return traitement;
+    }
+
+    private static String tronquer(String message) {
+        if (message == null) {
+            return null;
+        }
+        return message.length() > 1000 ? message.substring(0, 1000) : message;
+    }
+}
@@ -0,0 +1,43 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Renseigne SESSION_DATE à partir de CREATED_AT pour les chèques historiques.
+ */
+@Component
+@RequiredArgsConstructor
+public class JobSessionDateCarthago implements JobTraitement {
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public String nom() {
+        return "CARTHAGO_SESSION_DATE";
+    }
+
+    @Override
+    public String description() {
+        return "Renseigne SESSION_DATE = TRUNC(CREATED_AT) sur CARTHAGO";
+    }
+
+    @Override
+    public String table() {
+        return "CARTHAGO";
+    }
+
+    @Override
+    public String colonneId() {
+        return "ID_CARTHAGO";
+    }
+
+    @Override
+    public int traiterChunk(long debutExclu, long finInclus) {
+        return jdbcTemplate.update(
+                "UPDATE CARTHAGO SET SESSION_DATE = TRUNC(CREATED_AT) " +
+                "WHERE ID_CARTHAGO > ? AND ID_CARTHAGO <= ? AND SESSION_DATE IS NULL AND CREATED_AT IS NOT NULL",
+                debutExclu, finInclus);
+    }
+}
@@ -0,0 +1,26 @@
+package tn.esprit.ruya.services;
+
+/**
+ * Traitement de masse exécutable par JobService.
+ *
+ * Chaque implémentation (bean Spring) décrit la table parcourue et traite un
+ * morceau d'identifiants ]debutExclu, finInclus] ; l'appel a lieu dans la
+ * transaction qui enregistre aussi le point de reprise. Le traitement doit
+ * être idempotent : un morceau interrompu est rejoué à la reprise.
+ */
+public interface JobTraitement {
+
+    /** Identifiant du traitement, utilisé par l'API /api/jobs */
+    String nom();
+
+    String description();
+
+    /** Table parcourue (nom Oracle) */
+    String table();
+
+    /** Colonne d'identifiant numérique croissant de la table */
+    String colonneId();
+
+    /** @return nombre de lignes modifiées */
+    int traiterChunk(long debutExclu, long finInclus);
+}
@@ -0,0 +1,24 @@
+package tn.esprit.ruya.services;
+
+import tn.esprit.ruya.models.NotificationFluxDTO;
+
+import java.util.List;
+
+/**
+ * Consommateur local (à chaque nœud) des notifications créées ou regroupées,
+ * relues en base par SuiviNotificationsService dans l'ordre de VERSION_FLUX.
+ *
+ * Contrairement à CanalNotification (appelé sur le seul nœud qui distribue
+ * l'outbox), chaque nœud reçoit toutes les modifications : les états en
+ * mémoire (flux temps réel, index de recherche) restent cohérents entre nœuds.
+ * Les suppressions de la rétention (journal NOTIFICATIONS_SUPPRESSIONS) sont
+ * transmises de la même façon.
+ */
+public interface LecteurNotifications {
+
+    void recevoir(List<NotificationFluxDTO> modifiees);
+
+    /** Notifications supprimées (ids) ; sans effet par défaut */
+    default void supprimer(List<Long> ids) {
+    }
+}
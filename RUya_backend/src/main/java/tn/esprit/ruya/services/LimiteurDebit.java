@@ -0,0 +1,68 @@
+package tn.esprit.ruya.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Limitation du nombre de requêtes de réinitialisation par adresse IP (fenêtre fixe).
+ *
+ * Le nombre d'adresses suivies est borné : au-delà, les nouvelles adresses sont
+ * refusées jusqu'au prochain balayage, pour que la mémoire reste bornée sous attaque.
+ * Compteurs propres à chaque nœud.
+ */
+@Component
+public class LimiteurDebit {
+
+    private final Map<String, Fenetre> parCle = new ConcurrentHashMap<>();
+
+    @Value("${ruya.reset.max-requetes-ip:20}")
+    private int maxRequetes;
+
+    @Value("${ruya.reset.fenetre-minutes:15}")
+    private long fenetreMinutes;
+
+    @Value("${ruya.reset.max-ip-suivies:10000}")
+    private int maxCles;
+
+    /**
+     * Compte une requête pour la clé.
+     * @return false si la limite est atteinte
+     */
+    public boolean autoriser(String cle) {
+        if (cle == null) {
+            cle = "inconnue";
+        }
+        if (parCle.size() >= maxCles && !parCle.containsKey(cle)) {
+            purger();
+            if (parCle.size() >= maxCles) {
+                return false;
+            }
+        }
+        long maintenant = System.currentTimeMillis();
+        long duree = fenetreMinutes * 60_000;
+        Fenetre fenetre = parCle.compute(cle, (k, f) ->
+                f == null || maintenant - f.debut >= duree ? new Fenetre(maintenant) : f);
+        synchronized (fenetre) {
+            return ++fenetre.requetes <= maxRequetes;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ruya.reset.purge-ms:60000}")
+    public void purger() {
+        long limite = System.currentTimeMillis() - fenetreMinutes * 60_000;
+        parCle.values().removeIf(fenetre -> fenetre.debut < limite);
+    }
+
+    private static final class Fenetre {
+        private final long debut;
+        private int requetes;
+
+        private Fenetre(long debut) {
+            this.debut = debut;
+        }
+    }
+}
@@ -0,0 +1,252 @@
+package tn.esprit.ruya.services;
+
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.internet.MimeMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.javamail.JavaMailSender;
+import org.springframework.mail.javamail.MimeMessageHelper;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thymeleaf.ITemplateEngine;
+import org.thymeleaf.context.Context;
+import tn.esprit.ruya.models.OutboxMail;
+import tn.esprit.ruya.repositories.OutboxMailRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Envoi asynchrone des emails.
+ *
+ * Un email est rendu depuis un template Thymeleaf (templates/mail, compilés une
+ * fois puis mis en cache par le moteur) et enregistré dans OUTBOX_MAILS ; la
+ * requête HTTP rend la main sans attendre le serveur SMTP. Un exécuteur borné
+ * vide ensuite la file par lots, chaque lot partageant une seule session SMTP.
+ * Les échecs sont reprogrammés avec un délai croissant, et la file est relue
+ * périodiquement (reprise après redémarrage). Un seul nœud envoie à la fois
+ * (VERROU_TRAITEMENT).
+ *
+ * Un email portant un secret (code de réinitialisation) est mis en file avec une
+ * validité : passé ce délai il n'est plus envoyé et il est supprimé. Le corps
+ * d'un email abandonné (ECHEC) est effacé, la ligne n'est gardée que pour le
+ * diagnostic puis purgée.
+ *
+ * Le serveur SMTP est celui de spring.mail.* : un serveur SMTP local en mémoire
+ * suffit pour les essais (spring.mail.host=localhost, port du serveur de test).
+ */
+@Service
+public class MailService {
+
+    static final String TRAITEMENT = "OUTBOX_MAILS";
+
+    private static final long DELAI_MAX_SECONDES = 3600;
+
+    private static final String CORPS_EFFACE = "(contenu effacé)";
+
+    private final JavaMailSender mailSender;
+    private final ITemplateEngine templateEngine;
+    private final OutboxMailRepository outboxRepository;
+    private final VerrouService verrouService;
+
+    // Un envoi en cours et au plus un déclenchement en attente : les suivants sont absorbés
+    private final ThreadPoolExecutor executeur = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(1), new ThreadPoolExecutor.DiscardPolicy());
+
+    @Value("${ruya.mail.active:true}")
+    private boolean mailActif;
+
+    @Value("${ruya.mail.expediteur:${spring.mail.username:}}")
+    private String expediteur;
+
+    @Value("${ruya.mail.taille-lot:50}")
+    private int tailleLot;
+
+    @Value("${ruya.mail.max-tentatives:8}")
+    private int maxTentatives;
+
+    @Value("${ruya.mail.bail-secondes:120}")
+    private long bailSecondes;
+
+    @Value("${ruya.mail.retention-echecs-jours:7}")
+    private int retentionEchecsJours;
+
+    public MailService(JavaMailSender mailSender,
+                       ITemplateEngine templateEngine,
+                       OutboxMailRepository outboxRepository,
+                       VerrouService verrouService) {
+        this.mailSender = mailSender;
+        this.templateEngine = templateEngine;
+        this.outboxRepository = outboxRepository;
+        this.verrouService = verrouService;
+    }
+
+    @PreDestroy
+    public void arreter() {
+        executeur.shutdown();
+    }
+
+    /**
+     * Rend le template et place l'email dans la file, puis déclenche l'envoi en arrière-plan.
+     * @param template nom sous templates/mail (sans extension)
+     */
+    public OutboxMail mettreEnFile(String destinataire, String sujet, String template, Map<String, Object> variables) {
+        return mettreEnFile(destinataire, sujet, template, variables, null);
+    }
+
+    /**
+     * Comme {@link #mettreEnFile(String, String, String, Map)}, pour un email qui
+     * n'a plus de sens (ni ne doit rester stocké) au-delà de sa validité.
+     * @param validite durée pendant laquelle l'envoi reste utile, null = sans limite
+     */
+    public OutboxMail mettreEnFile(String destinataire, String sujet, String template, Map<String, Object> variables,
+                                   Duration validite) {
+        String corps = templateEngine.process("mail/" + template, new Context(null, variables));
+        OutboxMail mail = new OutboxMail(destinataire, sujet, corps);
+        if (validite != null) {
+            mail.setExpiration(LocalDateTime.now().plus(validite));
+        }
+        mail = outboxRepository.save(mail);
+        declencher();
+        return mail;
+    }
+
+    public void declencher() {
+        if (mailActif) {
+            executeur.execute(this::envoyer);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${ruya.mail.intervalle-ms:30000}",
+            initialDelayString = "${ruya.mail.intervalle-ms:30000}")
+    public void envoiProgramme() {
+        declencher();
+    }
+
+    /**
+     * Envoie les emails prêts, par lots.
+     * @return nombre d'emails envoyés, 0 si un autre nœud détient le verrou
+     */
+    public int envoyer() {
+        if (!verrouService.acquerir(TRAITEMENT, bailSecondes)) {
+            return 0;
+        }
+        int envoyes = 0;
+        try {
+            List<OutboxMail> lot;
+            do {
+                lot = outboxRepository.findPrets(OutboxMail.Statut.EN_ATTENTE, LocalDateTime.now(),
+                        PageRequest.of(0, tailleLot));
+                if (!lot.isEmpty()) {
+                    envoyes += envoyerLot(lot);
+                }
+                // Bail prolongé entre deux lots : s'il est perdu, un autre nœud a repris l'envoi
+            } while (lot.size() == tailleLot && verrouService.prolonger(TRAITEMENT, bailSecondes));
+        } catch (Exception e) {
+            System.err.println("❌ Erreur envoi des emails: " + e.getMessage());
+        } finally {
+            verrouService.liberer(TRAITEMENT);
+        }
+        if (envoyes > 0) {
+            System.out.println("📧 " + envoyes + " email(s) envoyé(s)");
+        }
+        return envoyes;
+    }
+
+    // Suppression des emails expirés et des échecs trop anciens
+    @Scheduled(fixedDelayString = "${ruya.mail.purge-ms:300000}", initialDelayString = "${ruya.mail.purge-ms:300000}")
+    public void purger() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        int expires = outboxRepository.supprimerExpires(maintenant);
+        int echecs = outboxRepository.supprimerEchecsAvant(OutboxMail.Statut.ECHEC,
+                maintenant.minusDays(retentionEchecsJours));
+        if (expires + echecs > 0) {
+            System.out.println("🧹 Emails purgés: " + expires + " expiré(s), " + echecs + " échec(s)");
+        }
+    }
+
+    public Map<String, Object> statut() {
+        Map<String, Object> statut = new LinkedHashMap<>();
+        statut.put("actif", mailActif);
+        statut.put("enAttente", outboxRepository.countByStatut(OutboxMail.Statut.EN_ATTENTE));
+        statut.put("echecs", outboxRepository.countByStatut(OutboxMail.Statut.ECHEC));
+        statut.put("declenchementEnAttente", executeur.getQueue().size());
+        return statut;
+    }
+
+    // Un lot = une connexion SMTP ; les messages refusés sont reprogrammés individuellement
+    private int envoyerLot(List<OutboxMail> lot) {
+        Map<MimeMessage, OutboxMail> messages = new IdentityHashMap<>();
+        List<OutboxMail> envoyes = new ArrayList<>();
+        for (OutboxMail mail : lot) {
+            try {
+                messages.put(construire(mail), mail);
+            } catch (Exception e) {
+                reprogrammer(mail, e);
+            }
+        }
+        if (messages.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            mailSender.send(messages.keySet().toArray(new MimeMessage[0]));
+            envoyes.addAll(messages.values());
+        } catch (MailSendException e) {
+            // Échecs partiels : seuls les messages en erreur restent dans la file
+            Map<Object, Exception> echecs = e.getFailedMessages();
+            messages.forEach((message, mail) -> {
+                if (echecs.containsKey(message)) {
+                    reprogrammer(mail, echecs.get(message));
+                } else if (!echecs.isEmpty()) {
+                    envoyes.add(mail);
+                } else {
+                    reprogrammer(mail, e); // connexion impossible : rien n'est parti
+                }
+            });
+        } catch (Exception e) {
+            messages.values().forEach(mail -> reprogrammer(mail, e));
+        }
+        outboxRepository.deleteAllInBatch(envoyes);
+        return envoyes.size();
+    }
+
+    private MimeMessage construire(OutboxMail mail) throws Exception {
+        MimeMessage message = mailSender.createMimeMessage();
+        MimeMessageHelper helper = new MimeMessageHelper(message, true, "UTF-8");
+        if (expediteur != null && !expediteur.isBlank()) {
+            helper.setFrom(expediteur);
+        }
+        helper.setTo(mail.getDestinataire());
+        helper.setSubject(mail.getSujet());
+        helper.setText(mail.getCorps(), true);
+        return message;
+    }
+
+    private void reprogrammer(OutboxMail mail, Exception e) {
+        int tentatives = mail.getTentatives() + 1;
+        mail.setTentatives(tentatives);
+        mail.setDerniereErreur(e.getMessage() != null && e.getMessage().length() > 500
+                ? e.getMessage().substring(0, 500) : e.getMessage());
+        // Délai exponentiel : 2, 4, 8 ... minutes, plafonné
+        long delai = Math.min(60L << Math.min(tentatives, 16), DELAI_MAX_SECONDES);
+        mail.setProchainEssai(LocalDateTime.now().plusSeconds(delai));
+        if (tentatives >= maxTentatives) {
+            mail.setStatut(OutboxMail.Statut.ECHEC);
+            mail.setCorps(CORPS_EFFACE); // plus d'envoi : le contenu (éventuel secret) n'est pas conservé
+            System.err.println("❌ Email " + mail.getId() + " abandonné après " + tentatives + " tentatives: "
+                    + e.getMessage());
+        }
+        outboxRepository.save(mail);
+    }
+
+}
@@ -0,0 +1,334 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import tn.esprit.ruya.models.Fichier;
+import tn.esprit.ruya.models.Notification;
+import tn.esprit.ruya.models.OutboxNotification;
+import tn.esprit.ruya.models.User;
+import tn.esprit.ruya.repositories.IFichierrepo;
+import tn.esprit.ruya.repositories.INotificationRepo;
+import tn.esprit.ruya.repositories.IUserRepo;
+import tn.esprit.ruya.repositories.OutboxNotificationRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Outbox transactionnelle des notifications.
+ *
+ * L'opération métier n'écrit qu'un événement compact (type, fichier, utilisateur)
+ * dans sa propre transaction. Un distributeur planifié, unique entre les nœuds
+ * (VERROU_TRAITEMENT), transforme les événements par lots en NOTIFICATIONS,
+ * dans l'ordre d'écriture, puis les pousse vers les canaux (CanalNotification).
+ * Chaque écriture est numérotée (VERSION_FLUX) : les autres nœuds la relisent
+ * par SuiviNotificationsService (flux temps réel).
+ *
+ * Les événements d'un même (type, utilisateur) rapprochés dans le temps sont
+ * regroupés en une seule notification ("N fichiers ajoutés par X"), complétée
+ * par les lots suivants tant que la rafale dure et qu'elle n'est pas lue.
+ *
+ * Un lot en erreur est rejoué événement par événement ; l'événement fautif est
+ * reprogrammé avec un délai croissant et bloque les suivants pour préserver
+ * l'ordre, jusqu'à épuisement des tentatives (statut ECHEC).
+ */
+@Service
+@RequiredArgsConstructor
+public class NotificationOutboxService {
+
+    static final String TRAITEMENT = "OUTBOX_NOTIFICATIONS";
+
+    private static final long DELAI_MAX_SECONDES = 300;
+
+    private static final String SQL_TRACE_FICHIER =
+            "INSERT INTO NOTIFICATIONS_FICHIERS (ID_NOTIFICATION, ID_FICHIER) VALUES (?, ?)";
+
+    private final OutboxNotificationRepository outboxRepository;
+    private final INotificationRepo notificationRepo;
+    private final IFichierrepo fichierRepo;
+    private final IUserRepo userRepo;
+    private final NotificationService notificationService;
+    private final VerrouService verrouService;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectProvider<CanalNotification> canaux;
+
+    @Value("${ruya.outbox.active:true}")
+    private boolean outboxActive;
+
+    @Value("${ruya.outbox.taille-lot:200}")
+    private int tailleLot;
+
+    @Value("${ruya.outbox.max-tentatives:10}")
+    private int maxTentatives;
+
+    @Value("${ruya.outbox.bail-secondes:60}")
+    private long bailSecondes;
+
+    @Value("${ruya.notifications.regroupement.active:true}")
+    private boolean regroupementActif;
+
+    // Écart maximal entre deux actions d'une même rafale
+    @Value("${ruya.notifications.regroupement.fenetre-secondes:30}")
+    private long fenetreSecondes;
+
+    /**
+     * Enregistre l'événement dans la transaction de l'appelant (obligatoire) :
+     * il est validé ou annulé avec l'opération métier.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void publier(Notification.NotificationType type, Fichier fichier, User userAction) {
+        outboxRepository.save(new OutboxNotification(type, fichier.getId(), userAction.getId()));
+    }
+
+    @Scheduled(fixedDelayString = "${ruya.outbox.intervalle-ms:2000}",
+            initialDelayString = "${ruya.outbox.delai-initial-ms:10000}")
+    public void distributionProgrammee() {
+        if (!outboxActive) {
+            return;
+        }
+        distribuer();
+    }
+
+    /**
+     * Vide l'outbox par lots tant que des événements sont prêts.
+     * @return nombre d'événements distribués, 0 si un autre nœud détient le verrou
+     */
+    public int distribuer() {
+        if (!verrouService.acquerir(TRAITEMENT, bailSecondes)) {
+            return 0;
+        }
+        int distribues = 0;
+        try {
+            int lot;
+            do {
+                lot = distribuerLot();
+                distribues += lot;
+                // Bail prolongé à chaque lot ; perdu (expiré, repris ailleurs) : arrêt de la boucle
+            } while (lot == tailleLot && bailProlonge());
+        } catch (Exception e) {
+            System.err.println("❌ Erreur distribution outbox notifications: " + e.getMessage());
+        } finally {
+            verrouService.liberer(TRAITEMENT);
+        }
+        if (distribues > 0) {
+            System.out.println("📨 Outbox notifications: " + distribues + " événement(s) distribué(s)");
+        }
+        return distribues;
+    }
+
+    public Map<String, Object> statut() {
+        Map<String, Object> statut = new LinkedHashMap<>();
+        statut.put("actif", outboxActive);
+        statut.put("enAttente", outboxRepository.countByStatut(OutboxNotification.Statut.EN_ATTENTE));
+        statut.put("echecs", outboxRepository.countByStatut(OutboxNotification.Statut.ECHEC));
+        return statut;
+    }
+
+    private int distribuerLot() {
+        List<OutboxNotification> lot = outboxRepository.findByStatutOrderByIdAsc(
+                OutboxNotification.Statut.EN_ATTENTE, PageRequest.of(0, tailleLot));
+        if (lot.isEmpty() || enAttenteDeReessai(lot.get(0))) {
+            return 0;
+        }
+
+        try {
+            pousser(transactionTemplate.execute(status -> livrer(lot)));
+            return lot.size();
+        } catch (Exception e) {
+            System.err.println("⚠️ Lot outbox rejeté, reprise unitaire: " + e.getMessage());
+        }
+
+        int livres = 0;
+        for (OutboxNotification evenement : lot) {
+            try {
+                pousser(transactionTemplate.execute(status -> livrer(List.of(evenement))));
+                livres++;
+            } catch (Exception e) {
+                reprogrammer(evenement, e);
+                break; // les événements suivants attendent : ordre préservé
+            }
+        }
+        return livres;
+    }
+
+    /**
+     * Transforme les événements en NOTIFICATIONS (regroupées par rafale) et les
+     * retire de l'outbox, dans la même transaction.
+     */
+    private List<Notification> livrer(List<OutboxNotification> lot) {
+        Map<Long, Fichier> fichiers = fichierRepo.findAllById(
+                        lot.stream().map(OutboxNotification::getIdFichier).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(Fichier::getId, Function.identity()));
+        Map<Long, User> users = userRepo.findAllById(
+                        lot.stream().map(OutboxNotification::getIdUserAction).collect(Collectors.toSet()))
+                .stream().collect(Collectors.toMap(User::getId, Function.identity()));
+
+        List<Notification> notifications = new ArrayList<>();
+        Map<Notification, List<Long>> traces = new IdentityHashMap<>();
+        Set<String> clesVues = new HashSet<>();
+        for (List<OutboxNotification> rafale : rafales(lot)) {
+            OutboxNotification premier = rafale.get(0);
+            User user = users.get(premier.getIdUserAction());
+            List<Fichier> fichiersRafale = new ArrayList<>(rafale.size());
+            for (OutboxNotification evenement : rafale) {
+                Fichier fichier = fichiers.get(evenement.getIdFichier());
+                if (fichier == null || user == null) {
+                    // Fichier ou utilisateur supprimé entre-temps : rien à notifier
+                    System.out.println("⚠️ Événement outbox " + evenement.getId() + " ignoré (fichier ou utilisateur absent)");
+                    continue;
+                }
+                fichiersRafale.add(fichier);
+            }
+            if (fichiersRafale.isEmpty()) {
+                continue;
+            }
+
+            // Seule la première rafale d'une clé dans le lot peut prolonger une notification existante
+            boolean premiere = clesVues.add(cle(premier));
+            Notification notification = regroupementActif && premiere ? rafaleEnCours(premier) : null;
+            if (notification != null) {
+                // Complète la notification de la rafale en cours
+                int avant = notification.getNombre() != null ? notification.getNombre() : 1;
+                if (avant == 1 && notification.getFichier() != null) {
+                    traces.computeIfAbsent(notification, n -> new ArrayList<>()).add(notification.getFichier().getId());
+                }
+                notificationService.appliquerRegroupement(notification, avant + fichiersRafale.size(), user);
+                notification.setTimestamp(LocalDateTime.now());
+                notification.setRegroupee(true);
+            } else {
+                notification = notificationService.preparer(premier.getType(), fichiersRafale.get(0), user);
+                if (fichiersRafale.size() > 1) {
+                    notificationService.appliquerRegroupement(notification, fichiersRafale.size(), user);
+                }
+            }
+            if (notification.getNombre() != null && notification.getNombre() > 1) {
+                List<Long> trace = traces.computeIfAbsent(notification, n -> new ArrayList<>());
+                fichiersRafale.forEach(fichier -> trace.add(fichier.getId()));
+            }
+            if (!notifications.contains(notification)) {
+                notifications.add(notification);
+            }
+        }
+
+        // Numérotation des écritures, suivie par chaque nœud (SuiviNotificationsService) ; unique en base,
+        // une numérotation concurrente (bail perdu) fait échouer la transaction, reprise au lot suivant
+        Long derniere = notificationRepo.findMaxVersionFlux();
+        long version = derniere != null ? derniere : 0L;
+        for (Notification notification : notifications) {
+            notification.setVersionFlux(++version);
+        }
+        List<Notification> enregistrees = notificationRepo.saveAll(notifications);
+        // Trace fichier par fichier, lue par getFichiersRegroupes
+        if (!traces.isEmpty()) {
+            List<Object[]> lignes = new ArrayList<>();
+            traces.forEach((notification, ids) -> ids.forEach(id -> lignes.add(new Object[] { notification.getId(), id })));
+            jdbcTemplate.batchUpdate(SQL_TRACE_FICHIER, lignes);
+        }
+        outboxRepository.deleteAllInBatch(lot);
+        return enregistrees;
+    }
+
+    /**
+     * Découpe le lot en rafales : événements d'un même (type, utilisateur) séparés
+     * de moins de la fenêtre. Sans regroupement, un événement par rafale.
+     */
+    private List<List<OutboxNotification>> rafales(List<OutboxNotification> lot) {
+        List<List<OutboxNotification>> rafales = new ArrayList<>();
+        Map<String, List<OutboxNotification>> enCours = new HashMap<>();
+        for (OutboxNotification evenement : lot) {
+            if (!regroupementActif) {
+                rafales.add(List.of(evenement));
+                continue;
+            }
+            List<OutboxNotification> rafale = enCours.get(cle(evenement));
+            if (rafale == null || ecartSecondes(rafale.get(rafale.size() - 1), evenement) > fenetreSecondes) {
+                rafale = new ArrayList<>();
+                enCours.put(cle(evenement), rafale);
+                rafales.add(rafale);
+            }
+            rafale.add(evenement);
+        }
+        return rafales;
+    }
+
+    // Notification non lue du même (type, utilisateur) encore dans la fenêtre de la rafale
+    private Notification rafaleEnCours(OutboxNotification evenement) {
+        Notification derniere = notificationRepo.findFirstByTypeAndUserActionIdAndLuFalseOrderByIdDesc(
+                evenement.getType(), evenement.getIdUserAction());
+        if (derniere == null || derniere.getTimestamp() == null) {
+            return null;
+        }
+        return derniere.getTimestamp().isBefore(evenement.getCreatedAt().minusSeconds(fenetreSecondes))
+                ? null : derniere;
+    }
+
+    private static String cle(OutboxNotification evenement) {
+        return evenement.getType() + ":" + evenement.getIdUserAction();
+    }
+
+    private static long ecartSecondes(OutboxNotification precedent, OutboxNotification suivant) {
+        return Duration.between(precedent.getCreatedAt(), suivant.getCreatedAt()).getSeconds();
+    }
+
+    private void pousser(List<Notification> notifications) {
+        if (notifications == null || notifications.isEmpty()) {
+            return;
+        }
+        canaux.orderedStream().forEach(canal -> {
+            try {
+                canal.publier(notifications);
+            } catch (Exception e) {
+                System.err.println("❌ Erreur canal de notification " + canal.getClass().getSimpleName()
+                        + ": " + e.getMessage());
+            }
+        });
+    }
+
+    private void reprogrammer(OutboxNotification evenement, Exception e) {
+        int tentatives = evenement.getTentatives() + 1;
+        evenement.setTentatives(tentatives);
+        evenement.setDerniereErreur(e.getMessage() != null && e.getMessage().length() > 500
+                ? e.getMessage().substring(0, 500) : e.getMessage());
+        // Délai exponentiel : 2, 4, 8 ... secondes, plafonné
+        long delai = Math.min(1L << Math.min(tentatives, 20), DELAI_MAX_SECONDES);
+        evenement.setProchainEssai(LocalDateTime.now().plusSeconds(delai));
+        if (tentatives >= maxTentatives) {
+            evenement.setStatut(OutboxNotification.Statut.ECHEC);
+            System.err.println("❌ Événement outbox " + evenement.getId() + " abandonné après " + tentatives
+                    + " tentatives: " + e.getMessage());
+        }
+        outboxRepository.save(evenement);
+    }
+
+    private boolean bailProlonge() {
+        if (verrouService.prolonger(TRAITEMENT, bailSecondes)) {
+            return true;
+        }
+        System.out.println("⚠️ Bail de distribution de l'outbox perdu, reprise au prochain passage");
+        return false;
+    }
+
+    private boolean enAttenteDeReessai(OutboxNotification evenement) {
+        return evenement.getProchainEssai() != null && evenement.getProchainEssai().isAfter(LocalDateTime.now());
+    }
+
+}
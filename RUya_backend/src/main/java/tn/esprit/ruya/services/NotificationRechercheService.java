@@ -0,0 +1,517 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.NotificationFluxDTO;
+import tn.esprit.ruya.models.NotificationRechercheDTO;
+import tn.esprit.ruya.repositories.INotificationRepo;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Index inversé en mémoire des notifications (titre, message, nom du fichier).
+ *
+ * Les textes sont découpés en termes sans accents ni casse ("reçu" = "recu").
+ * Chaque terme pointe vers la liste triée des notifications qui le contiennent ;
+ * chaque entrée porte aussi les champs où le terme apparaît (titre, fichier,
+ * message) pour le classement. Une recherche intersecte les listes des termes,
+ * le dernier terme étant traité comme un préfixe. Les termes de chaque
+ * notification sont aussi conservés : une notification regroupée réindexée
+ * remplace ses anciens termes, et une notification supprimée est retirée.
+ *
+ * L'index est construit depuis la base au démarrage et reconstruit
+ * périodiquement (suppressions de la rétention, textes des notifications
+ * regroupées). Il est tenu à jour au fil de l'eau par SuiviNotificationsService
+ * (notifications créées ou regroupées, suppressions de la rétention) : chaque
+ * nœud tient son propre index à jour, quel que soit le nœud qui distribue
+ * l'outbox ou purge les notifications. Tant qu'il n'est pas prêt, la
+ * recherche se rabat sur un LIKE en base.
+ */
+@Service
+@Order(2)
+@RequiredArgsConstructor
+public class NotificationRechercheService implements LecteurNotifications {
+
+    // Poids par champ (bits de l'entrée) : titre > fichier > message
+    private static final int CHAMP_MESSAGE = 1;
+    private static final int CHAMP_FICHIER = 2;
+    private static final int CHAMP_TITRE = 4;
+
+    private static final Pattern ACCENTS = Pattern.compile("\\p{M}+");
+    private static final Pattern SEPARATEURS = Pattern.compile("[^a-z0-9]+");
+
+    // Mots présents dans presque toutes les notifications : sans valeur pour la recherche
+    private static final Set<String> MOTS_VIDES = Set.of("le", "la", "les", "de", "du", "des", "un", "une", "et",
+            "a", "au", "aux", "en", "par", "ete", "ont", "fichier", "fichiers");
+
+    private static final String SQL_CHARGEMENT =
+            "SELECT n.ID_NOTIFICATION, n.TITRE, n.MESSAGE, f.NOM_FICHIER FROM NOTIFICATIONS n " +
+                    "LEFT JOIN FICHIERS f ON f.ID_FICHIER = n.ID_FICHIER ORDER BY n.ID_NOTIFICATION";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final INotificationRepo notificationRepo;
+
+    private final ReentrantReadWriteLock verrou = new ReentrantReadWriteLock();
+    private Index index = new Index();
+    private boolean pret;
+
+    // Notifications reçues pendant une reconstruction, rejouées sur le nouvel index (sous verrou d'écriture)
+    private final AtomicBoolean reconstruction = new AtomicBoolean();
+    // Le chargement voit tout ce que le suivi a déjà transmis ; ce qui arrive pendant le chargement est rejoué
+    private final List<NotificationFluxDTO> enAttente = new ArrayList<>();
+    private final List<Long> suppressionsEnAttente = new ArrayList<>();
+
+    @Value("${ruya.notifications.recherche.active:true}")
+    private boolean rechercheActive;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialiser() {
+        if (rechercheActive) {
+            Thread thread = new Thread(this::reconstruire, "index-notifications");
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    @Scheduled(cron = "${ruya.notifications.recherche.reconstruction-cron:0 45 3 * * *}")
+    public void reconstructionProgrammee() {
+        if (rechercheActive) {
+            reconstruire();
+        }
+    }
+
+    /**
+     * Reconstruit l'index depuis la base (hors verrou) puis le substitue à l'ancien.
+     */
+    public Map<String, Object> reconstruire() {
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        if (!reconstruction.compareAndSet(false, true)) {
+            resultat.put("statut", "EN_COURS");
+            return resultat;
+        }
+        long debut = System.currentTimeMillis();
+        try {
+            Index nouveau = new Index();
+            jdbcTemplate.query(con -> {
+                var ps = con.prepareStatement(SQL_CHARGEMENT);
+                ps.setFetchSize(1000);
+                return ps;
+            }, (RowCallbackHandler) rs ->
+                    nouveau.indexer(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+
+            verrou.writeLock().lock();
+            try {
+                enAttente.forEach(nouveau::indexer);
+                nouveau.supprimer(suppressionsEnAttente);
+                enAttente.clear();
+                suppressionsEnAttente.clear();
+                reconstruction.set(false);
+                index = nouveau;
+                pret = true;
+            } finally {
+                verrou.writeLock().unlock();
+            }
+
+            resultat.put("statut", "OK");
+            resultat.put("notifications", nouveau.documents.size());
+            resultat.put("termes", nouveau.termes.size());
+            resultat.put("dureeMs", System.currentTimeMillis() - debut);
+            System.out.println("🔎 Index des notifications reconstruit: " + resultat);
+        } catch (Exception e) {
+            verrou.writeLock().lock();
+            try {
+                enAttente.clear();
+                suppressionsEnAttente.clear();
+                reconstruction.set(false);
+            } finally {
+                verrou.writeLock().unlock();
+            }
+            resultat.put("statut", "ERREUR");
+            resultat.put("erreur", e.getMessage());
+            System.err.println("❌ Erreur reconstruction index notifications: " + e.getMessage());
+        }
+        return resultat;
+    }
+
+    // Notifications créées ou regroupées (tous nœuds) : indexation incrémentale
+    @Override
+    public void recevoir(List<NotificationFluxDTO> modifiees) {
+        if (!rechercheActive) {
+            return;
+        }
+        verrou.writeLock().lock();
+        try {
+            modifiees.forEach(index::indexer);
+            if (reconstruction.get()) {
+                enAttente.addAll(modifiees);
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    // Suppressions de la rétention (tous nœuds) : retrait des ids de l'index
+    @Override
+    public void supprimer(List<Long> ids) {
+        if (!rechercheActive || ids.isEmpty()) {
+            return;
+        }
+        verrou.writeLock().lock();
+        try {
+            index.supprimer(ids);
+            if (reconstruction.get()) {
+                suppressionsEnAttente.addAll(ids);
+            }
+        } finally {
+            verrou.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Recherche classée (pertinence puis récence) et paginée.
+     */
+    public NotificationRechercheDTO rechercher(String texte, int page, int taille) {
+        long debut = System.currentTimeMillis();
+        List<String> termes = termes(texte);
+        if (termes.isEmpty()) {
+            return new NotificationRechercheDTO(List.of(), 0, page, taille, pret, 0);
+        }
+
+        boolean indexee;
+        List<Long> ids;
+        long total;
+        verrou.readLock().lock();
+        try {
+            indexee = pret && rechercheActive;
+            if (indexee) {
+                Map.Entry<Long, List<Long>> resultat = index.rechercher(termes, page * taille, taille);
+                total = resultat.getKey();
+                ids = resultat.getValue();
+            } else {
+                total = -1;
+                ids = null;
+            }
+        } finally {
+            verrou.readLock().unlock();
+        }
+
+        List<NotificationFluxDTO> elements;
+        if (indexee) {
+            // Ordre du classement ; les notifications supprimées depuis l'indexation sont écartées
+            Map<Long, NotificationFluxDTO> parId = ids.isEmpty() ? Map.of()
+                    : notificationRepo.findFluxByIdIn(ids).stream()
+                    .collect(Collectors.toMap(NotificationFluxDTO::getId, Function.identity()));
+            elements = ids.stream().map(parId::get).filter(e -> e != null).toList();
+        } else {
+            String motif = "%" + texte.trim().toLowerCase() + "%";
+            elements = notificationRepo.findFluxByTexte(motif, PageRequest.of(page, taille));
+            total = page == 0 && elements.size() < taille ? elements.size()
+                    : notificationRepo.countByTexte(motif);
+        }
+        return new NotificationRechercheDTO(elements, total, page, taille, indexee,
+                System.currentTimeMillis() - debut);
+    }
+
+    public Map<String, Object> statut() {
+        Map<String, Object> statut = new LinkedHashMap<>();
+        verrou.readLock().lock();
+        try {
+            statut.put("actif", rechercheActive);
+            statut.put("pret", pret);
+            statut.put("reconstructionEnCours", reconstruction.get());
+            statut.put("notifications", index.documents.size());
+            statut.put("termes", index.termes.size());
+            statut.put("entrees", index.entrees);
+        } finally {
+            verrou.readLock().unlock();
+        }
+        return statut;
+    }
+
+    /**
+     * Découpe un texte en termes normalisés : minuscules, sans accents, hors mots vides.
+     */
+    static List<String> termes(String texte) {
+        if (texte == null || texte.isBlank()) {
+            return List.of();
+        }
+        String normalise = ACCENTS.matcher(Normalizer.normalize(texte.toLowerCase(), Normalizer.Form.NFD))
+                .replaceAll("");
+        Set<String> termes = new LinkedHashSet<>();
+        for (String terme : SEPARATEURS.split(normalise)) {
+            if (!terme.isEmpty() && !MOTS_VIDES.contains(terme)) {
+                termes.add(terme);
+            }
+        }
+        return new ArrayList<>(termes);
+    }
+
+    /**
+     * Index : terme -> entrées triées par id, chacune codée (id << 3 | champs),
+     * et notification -> listes où elle figure (remplacement et suppression).
+     */
+    private static final class Index {
+
+        private static final Entrees[] AUCUNE = new Entrees[0];
+
+        private final TreeMap<String, Entrees> termes = new TreeMap<>();
+        private final Map<Long, Entrees[]> documents = new HashMap<>();
+        private long entrees;
+
+        private void indexer(NotificationFluxDTO notification) {
+            indexer(notification.getId(), notification.getTitre(), notification.getMessage(),
+                    notification.getNomFichier());
+        }
+
+        private void indexer(Long id, String titre, String message, String nomFichier) {
+            if (id == null) {
+                return;
+            }
+            // Notification regroupée réindexée : ses anciens termes sont remplacés
+            if (documents.containsKey(id)) {
+                supprimer(List.of(id));
+            }
+            Map<String, Integer> champs = new HashMap<>();
+            termes(message).forEach(t -> champs.merge(t, CHAMP_MESSAGE, (a, b) -> a | b));
+            termes(nomFichier).forEach(t -> champs.merge(t, CHAMP_FICHIER, (a, b) -> a | b));
+            termes(titre).forEach(t -> champs.merge(t, CHAMP_TITRE, (a, b) -> a | b));
+            Entrees[] listes = champs.isEmpty() ? AUCUNE : new Entrees[champs.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> terme : champs.entrySet()) {
+                Entrees liste = termes.computeIfAbsent(terme.getKey(), Entrees::new);
+                if (liste.ajouter(id, terme.getValue())) {
+                    entrees++;
+                }
+                listes[i++] = liste;
+            }
+            documents.put(id, listes);
+        }
+
+        /**
+         * Retire des notifications : chaque liste concernée est compactée une seule fois.
+         */
+        private void supprimer(List<Long> ids) {
+            long[] retires = new long[ids.size()];
+            int nombre = 0;
+            Set<Entrees> concernees = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Long id : ids) {
+                Entrees[] listes = id != null ? documents.remove(id) : null;
+                if (listes != null) {
+                    retires[nombre++] = id;
+                    concernees.addAll(Arrays.asList(listes));
+                }
+            }
+            if (nombre == 0) {
+                return;
+            }
+            Arrays.sort(retires, 0, nombre);
+            for (Entrees liste : concernees) {
+                entrees -= liste.retirer(retires, nombre);
+                if (liste.taille == 0) {
+                    termes.remove(liste.terme);
+                }
+            }
+        }
+
+        /**
+         * @return nombre total de résultats et ids de la page demandée
+         */
+        private Map.Entry<Long, List<Long>> rechercher(List<String> requete, int decalage, int taille) {
+            List<Entrees> listes = new ArrayList<>(requete.size());
+            for (int i = 0; i < requete.size(); i++) {
+                boolean dernier = i == requete.size() - 1;
+                Entrees entrees = dernier && requete.get(i).length() >= 3
+                        ? prefixe(requete.get(i)) : termes.get(requete.get(i));
+                if (entrees == null || entrees.taille == 0) {
+                    return Map.entry(0L, List.of());
+                }
+                listes.add(entrees);
+            }
+            // Parcours de la plus courte liste, des plus récentes aux plus anciennes
+            listes.sort((a, b) -> Integer.compare(a.taille, b.taille));
+            Entrees pivot = listes.get(0);
+
+            // Répartition par score : chaque compartiment reste trié par récence
+            List<List<Long>> parScore = new ArrayList<>();
+            long total = 0;
+            for (int i = pivot.taille - 1; i >= 0; i--) {
+                long id = pivot.valeurs[i] >>> 3;
+                int score = (int) (pivot.valeurs[i] & 7);
+                boolean trouve = true;
+                for (int j = 1; j < listes.size() && trouve; j++) {
+                    int champs = listes.get(j).champs(id);
+                    trouve = champs != 0;
+                    score += champs;
+                }
+                if (trouve) {
+                    while (parScore.size() <= score) {
+                        parScore.add(new ArrayList<>());
+                    }
+                    parScore.get(score).add(id);
+                    total++;
+                }
+            }
+
+            List<Long> page = new ArrayList<>(taille);
+            int aSauter = decalage;
+            for (int score = parScore.size() - 1; score >= 0 && page.size() < taille; score--) {
+                List<Long> ids = parScore.get(score);
+                if (aSauter >= ids.size()) {
+                    aSauter -= ids.size();
+                    continue;
+                }
+                int fin = Math.min(ids.size(), aSauter + taille - page.size());
+                page.addAll(ids.subList(aSauter, fin));
+                aSauter = 0;
+            }
+            return Map.entry(total, page);
+        }
+
+        // Union des entrées des termes commençant par le préfixe : fusions deux à deux des listes déjà triées
+        private Entrees prefixe(String prefixe) {
+            List<Entrees> listes = new ArrayList<>(termes.subMap(prefixe, prefixe + Character.MAX_VALUE).values());
+            if (listes.isEmpty()) {
+                return null;
+            }
+            while (listes.size() > 1) {
+                List<Entrees> fusionnees = new ArrayList<>((listes.size() + 1) / 2);
+                for (int i = 0; i + 1 < listes.size(); i += 2) {
+                    fusionnees.add(Entrees.fusionner(listes.get(i), listes.get(i + 1)));
+                }
+                if (listes.size() % 2 == 1) {
+                    fusionnees.add(listes.get(listes.size() - 1));
+                }
+                listes = fusionnees;
+            }
+            return listes.get(0);
+        }
+    }
+
+    /**
+     * Liste d'entrées (id << 3 | champs) triée par id, sans doublon.
+     */
+    private static final class Entrees {
+
+        private final String terme; // null pour une union de préfixe
+        private long[] valeurs = new long[4];
+        private int taille;
+
+        private Entrees(String terme) {
+            this.terme = terme;
+        }
+
+        /**
+         * @return true si l'id est nouveau pour ce terme
+         */
+        private boolean ajouter(long id, int champs) {
+            // Cas courant : id croissant, ajout en fin
+            if (taille == 0 || (valeurs[taille - 1] >>> 3) < id) {
+                if (taille == valeurs.length) {
+                    valeurs = Arrays.copyOf(valeurs, taille * 2);
+                }
+                valeurs[taille++] = id << 3 | champs;
+                return true;
+            }
+            int position = position(id);
+            if (position >= 0) {
+                valeurs[position] |= champs;
+                return false;
+            }
+            int insertion = -position - 1;
+            if (taille == valeurs.length) {
+                valeurs = Arrays.copyOf(valeurs, taille * 2);
+            }
+            System.arraycopy(valeurs, insertion, valeurs, insertion + 1, taille - insertion);
+            valeurs[insertion] = id << 3 | champs;
+            taille++;
+            return true;
+        }
+
+        /**
+         * Fusion linéaire de deux listes triées ; les champs d'un id présent dans les deux sont cumulés.
+         */
+        private static Entrees fusionner(Entrees a, Entrees b) {
+            Entrees union = new Entrees(null);
+            union.valeurs = new long[Math.max(4, a.taille + b.taille)];
+            int i = 0;
+            int j = 0;
+            while (i < a.taille || j < b.taille) {
+                long idA = i < a.taille ? a.valeurs[i] >>> 3 : Long.MAX_VALUE;
+                long idB = j < b.taille ? b.valeurs[j] >>> 3 : Long.MAX_VALUE;
+                long valeur;
+                if (idA < idB) {
+                    valeur = a.valeurs[i++];
+                } else if (idB < idA) {
+                    valeur = b.valeurs[j++];
+                } else {
+                    valeur = a.valeurs[i++] | b.valeurs[j++];
+                }
+                union.valeurs[union.taille++] = valeur;
+            }
+            return union;
+        }
+
+        /**
+         * Retire les ids présents dans retires[0, nombre) (triés).
+         * @return nombre d'entrées retirées
+         */
+        private int retirer(long[] retires, int nombre) {
+            int conservees = 0;
+            for (int i = 0; i < taille; i++) {
+                if (Arrays.binarySearch(retires, 0, nombre, valeurs[i] >>> 3) < 0) {
+                    valeurs[conservees++] = valeurs[i];
+                }
+            }
+            int retirees = taille - conservees;
+            taille = conservees;
+            return retirees;
+        }
+
+        private int champs(long id) {
+            int position = position(id);
+            return position >= 0 ? (int) (valeurs[position] & 7) : 0;
+        }
+
+        // Recherche dichotomique sur l'id (bits de poids fort)
+        private int position(long id) {
+            int bas = 0;
+            int haut = taille - 1;
+            while (bas <= haut) {
+                int milieu = (bas + haut) >>> 1;
+                long courant = valeurs[milieu] >>> 3;
+                if (courant < id) {
+                    bas = milieu + 1;
+                } else if (courant > id) {
+                    haut = milieu - 1;
+                } else {
+                    return milieu;
+                }
+            }
+            return -(bas + 1);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tn.esprit.ruya.models.VerrouTraitement;
+import tn.esprit.ruya.repositories.VerrouTraitementRepository;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Rétention des NOTIFICATIONS : les lues sont conservées N jours, les non lues M jours.
+ *
+ * Les lignes expirées sont supprimées par lots ensemblistes (bornés par
+ * ID_NOTIFICATION), chacun dans sa propre transaction et suivi d'une pause pour
+ * ne pas tenir de verrous longs. Si la synthèse est active, chaque lot est
+ * d'abord cumulé par jour / type / utilisateur dans NOTIFICATIONS_SYNTHESE.
+ * Un seul nœud exécute la purge (VERROU_TRAITEMENT), son bail est prolongé
+ * après chaque lot et la purge s'arrête s'il a été perdu. Les ids supprimés sont
+ * journalisés dans NOTIFICATIONS_SUPPRESSIONS, relu sur chaque nœud par
+ * SuiviNotificationsService (index de recherche).
+ */
+@Service
+@RequiredArgsConstructor
+public class NotificationRetentionService {
+
+    static final String TRAITEMENT = "RETENTION_NOTIFICATIONS";
+
+    // Dernier id du lot : les TAILLE premières lignes expirées dans l'ordre des id
+    private static final String SQL_BORNE =
+            "SELECT MAX(ID_NOTIFICATION) FROM (SELECT ID_NOTIFICATION FROM NOTIFICATIONS " +
+                    "WHERE LU = ? AND TIMESTAMP < ? ORDER BY ID_NOTIFICATION FETCH FIRST ? ROWS ONLY)";
+
+    private static final String SQL_SYNTHESE =
+            "MERGE INTO NOTIFICATIONS_SYNTHESE s USING (" +
+                    "SELECT TRUNC(TIMESTAMP) JOUR, TYPE, ID_USER_ACTION, COUNT(*) NB, " +
+                    "SUM(CASE WHEN LU = 1 THEN 1 ELSE 0 END) NB_LUES FROM NOTIFICATIONS " +
+                    "WHERE ID_NOTIFICATION <= ? AND LU = ? AND TIMESTAMP < ? " +
+                    "GROUP BY TRUNC(TIMESTAMP), TYPE, ID_USER_ACTION) a " +
+                    "ON (s.JOUR = a.JOUR AND s.TYPE = a.TYPE AND DECODE(s.ID_USER_ACTION, a.ID_USER_ACTION, 1, 0) = 1) " +
+                    "WHEN MATCHED THEN UPDATE SET s.NB_TOTAL = s.NB_TOTAL + a.NB, s.NB_LUES = s.NB_LUES + a.NB_LUES " +
+                    "WHEN NOT MATCHED THEN INSERT (JOUR, TYPE, ID_USER_ACTION, NB_TOTAL, NB_LUES) " +
+                    "VALUES (a.JOUR, a.TYPE, a.ID_USER_ACTION, a.NB, a.NB_LUES)";
+
+    private static final String SQL_SUPPRESSION_TRACES =
+            "DELETE FROM NOTIFICATIONS_FICHIERS WHERE ID_NOTIFICATION IN (SELECT ID_NOTIFICATION FROM NOTIFICATIONS " +
+                    "WHERE ID_NOTIFICATION <= ? AND LU = ? AND TIMESTAMP < ?)";
+
+    private static final String SQL_JOURNAL =
+            "INSERT INTO NOTIFICATIONS_SUPPRESSIONS (ID_NOTIFICATION, DATE_SUPPRESSION) " +
+                    "SELECT ID_NOTIFICATION, ? FROM NOTIFICATIONS WHERE ID_NOTIFICATION <= ? AND LU = ? AND TIMESTAMP < ?";
+
+    private static final String SQL_PURGE_JOURNAL =
+            "DELETE FROM NOTIFICATIONS_SUPPRESSIONS WHERE DATE_SUPPRESSION < ?";
+
+    private static final String SQL_SUPPRESSION =
+            "DELETE FROM NOTIFICATIONS WHERE ID_NOTIFICATION <= ? AND LU = ? AND TIMESTAMP < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final VerrouTraitementRepository verrouRepository;
+    private final VerrouService verrouService;
+    private final CompteursNotifications compteurs;
+
+    @Value("${ruya.notifications.retention.active:false}")
+    private boolean retentionActive;
+
+    @Value("${ruya.notifications.retention.lues-jours:30}")
+    private int joursLues;
+
+    @Value("${ruya.notifications.retention.non-lues-jours:90}")
+    private int joursNonLues;
+
+    @Value("${ruya.notifications.retention.taille-lot:5000}")
+    private int tailleLot;
+
+    @Value("${ruya.notifications.retention.pause-ms:200}")
+    private long pauseMs;
+
+    @Value("${ruya.notifications.retention.synthese:true}")
+    private boolean synthese;
+
+    // Conservation du journal des suppressions (relu en continu par chaque nœud)
+    @Value("${ruya.notifications.retention.journal-jours:2}")
+    private int joursJournal;
+
+    // Prolongé après chaque lot : doit seulement couvrir un lot et sa pause
+    @Value("${ruya.notifications.retention.bail-secondes:300}")
+    private long bailSecondes;
+
+    @Scheduled(cron = "${ruya.notifications.retention.cron:0 15 3 * * *}")
+    public void retentionProgrammee() {
+        if (!retentionActive) {
+            return;
+        }
+        purger();
+    }
+
+    /**
+     * Supprime les notifications expirées. Sans effet si un autre nœud détient le verrou.
+     */
+    public Map<String, Object> purger() {
+        LocalDateTime debut = LocalDateTime.now();
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("noeud", verrouService.noeud());
+
+        if (!verrouService.acquerir(TRAITEMENT, bailSecondes)) {
+            resultat.put("statut", "VERROUILLE");
+            return resultat;
+        }
+
+        long[] lues = {0, 0};
+        long[] nonLues = {0, 0};
+        String erreur = null;
+        try {
+            lues = purger(true, debut.minusDays(joursLues));
+            nonLues = purger(false, debut.minusDays(joursNonLues));
+            jdbcTemplate.update(SQL_PURGE_JOURNAL, Timestamp.valueOf(debut.minusDays(joursJournal)));
+        } catch (Exception e) {
+            erreur = e.getMessage();
+            System.err.println("❌ Erreur rétention notifications: " + e.getMessage());
+        } finally {
+            if (lues[0] + nonLues[0] > 0) {
+                compteurs.reconcilier();
+            }
+        }
+
+        LocalDateTime fin = LocalDateTime.now();
+        long dureeMs = Duration.between(debut, fin).toMillis();
+
+        // Lots et lignes supprimées, écrits seulement si ce nœud détient encore le bail
+        if (!verrouService.terminer(TRAITEMENT, null, debut, fin,
+                (int) (lues[1] + nonLues[1]), (int) (lues[0] + nonLues[0]), erreur)) {
+            System.out.println("⚠️ Bail de rétention perdu pendant la purge");
+        }
+
+        resultat.put("statut", erreur == null ? "OK" : "ERREUR");
+        resultat.put("luesSupprimees", lues[0]);
+        resultat.put("nonLuesSupprimees", nonLues[0]);
+        resultat.put("lots", lues[1] + nonLues[1]);
+        resultat.put("synthese", synthese);
+        resultat.put("dureeMs", dureeMs);
+        if (erreur != null) {
+            resultat.put("erreur", erreur);
+        }
+        System.out.println("🧹 Rétention notifications: " + resultat);
+        return resultat;
+    }
+
+    /**
+     * Métriques du dernier passage, tous nœuds confondus.
+     */
+    public Map<String, Object> statut() {
+        Map<String, Object> statut = new LinkedHashMap<>();
+        statut.put("actif", retentionActive);
+        statut.put("luesJours", joursLues);
+        statut.put("nonLuesJours", joursNonLues);
+        statut.put("synthese", synthese);
+
+        VerrouTraitement verrou = verrouRepository.findById(TRAITEMENT).orElse(null);
+        if (verrou == null) {
+            statut.put("statut", "JAMAIS_EXECUTE");
+            return statut;
+        }
+        boolean enCours = verrou.getVerrouilleJusqua() != null
+                && verrou.getVerrouilleJusqua().isAfter(LocalDateTime.now());
+        statut.put("statut", enCours ? "EN_COURS" : "INACTIF");
+        statut.put("dernierDebut", verrou.getDernierDebut());
+        statut.put("derniereFin", verrou.getDerniereFin());
+        statut.put("derniereDureeMs", verrou.getDerniereDureeMs());
+        statut.put("derniersLots", verrou.getDernieresSessions());
+        statut.put("dernieresSuppressions", verrou.getDernieresMisesAJour());
+        statut.put("derniereErreur", verrou.getDerniereErreur());
+        return statut;
+    }
+
+    /**
+     * @return {lignes supprimées, lots}
+     */
+    private long[] purger(boolean lu, LocalDateTime limite) throws InterruptedException {
+        long supprimees = 0;
+        long lots = 0;
+        while (true) {
+            Long borne = jdbcTemplate.queryForObject(SQL_BORNE, Long.class, lu, limite, tailleLot);
+            if (borne == null) {
+                break;
+            }
+            Integer lot = transactionTemplate.execute(status -> {
+                if (synthese) {
+                    jdbcTemplate.update(SQL_SYNTHESE, borne, lu, limite);
+                }
+                jdbcTemplate.update(SQL_SUPPRESSION_TRACES, borne, lu, limite);
+                jdbcTemplate.update(SQL_JOURNAL, Timestamp.valueOf(LocalDateTime.now()), borne, lu, limite);
+                return jdbcTemplate.update(SQL_SUPPRESSION, borne, lu, limite);
+            });
+            supprimees += lot != null ? lot : 0;
+            lots++;
+            if (lot == null || lot < tailleLot) {
+                break;
+            }
+            if (!verrouService.prolonger(TRAITEMENT, bailSecondes)) {
+                throw new IllegalStateException("bail " + TRAITEMENT + " perdu après " + lots + " lots");
+            }
+            // Laisse respirer les transactions concurrentes entre deux lots
+            Thread.sleep(pauseMs);
+        }
+        return new long[] {supprimees, lots};
+    }
+
+}
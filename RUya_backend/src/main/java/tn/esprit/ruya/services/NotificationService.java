@@ -1,43 +1,58 @@
 package tn.esprit.ruya.services;
 
 import lombok.AllArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import tn.esprit.ruya.models.Fichier;
 import tn.esprit.ruya.models.Notification;
+import tn.esprit.ruya.models.NotificationFluxDTO;
+import tn.esprit.ruya.models.NotificationPageDTO;
 import tn.esprit.ruya.models.User;
 import tn.esprit.ruya.repositories.INotificationRepo;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 @AllArgsConstructor
 @Service
 public class NotificationService {
 
-    private INotificationRepo notificationRepo;
+    // Curseur de la première page du fil : borne supérieure des timestamps
+    private static final LocalDateTime FIN_DES_TEMPS = LocalDateTime.of(9999, 12, 31, 23, 59, 59);
 
-    // Créer une notification pour l'ajout d'un fichier
-    public Notification creerNotificationAjout(Fichier fichier, User userAction) {
-        System.out.println("🔍 DEBUG - Création de notification d'ajout pour fichier: " + fichier.getNomFichier());
-        System.out.println("🔍 DEBUG - Utilisateur qui a ajouté: " + userAction.getUsername());
+    private INotificationRepo notificationRepo;
+    private CompteursNotifications compteurs;
 
-        String titre = "Nouveau fichier ajouté";
-        String message = "Le fichier \"" + fichier.getNomFichier() + "\" a été ajouté par " + userAction.getUsername()
-                + ".";
-        String icon = getNotificationIcon(Notification.NotificationType.AJOUT);
+    // Construire (sans l'enregistrer) la notification d'une action sur un fichier
+    public Notification preparer(Notification.NotificationType type, Fichier fichier, User userAction) {
+        String titre;
+        String action;
+        switch (type) {
+            case ENVOI:
+                titre = "Fichier envoyé";
+                action = "envoyé";
+                break;
+            case RECEPTION:
+                titre = "Fichier reçu";
+                action = "reçu";
+                break;
+            default:
+                titre = "Nouveau fichier ajouté";
+                action = "ajouté";
+        }
 
         Notification notification = new Notification();
-        notification.setType(Notification.NotificationType.AJOUT);
+        notification.setType(type);
         notification.setTitre(titre);
-        notification.setMessage(message);
+        notification.setMessage("Le fichier \"" + fichier.getNomFichier() + "\" a été " + action + " par "
+                + userAction.getUsername() + ".");
         notification.setFichier(fichier);
         notification.setUserAction(userAction);
-        notification.setIcon(icon);
+        notification.setIcon(getNotificationIcon(type));
         notification.setLu(false);
-
-        Notification savedNotification = notificationRepo.save(notification);
-        System.out.println("🔍 DEBUG - Notification créée avec ID: " + savedNotification.getId());
-
-        return savedNotification;
+        return notification;
     }
 
     // Récupérer toutes les notifications
@@ -60,31 +75,120 @@ public class NotificationService {
         return notificationRepo.findByUserActionIdAndLuFalseOrderByTimestampDesc(userId);
     }
 
+    // Libellés d'une notification regroupant une rafale de fichiers d'un même utilisateur
+    public void appliquerRegroupement(Notification notification, int nombre, User userAction) {
+        String action;
+        switch (notification.getType()) {
+            case ENVOI:
+                action = "envoyés";
+                break;
+            case RECEPTION:
+                action = "reçus";
+                break;
+            default:
+                action = "ajoutés";
+        }
+        notification.setNombre(nombre);
+        notification.setTitre(nombre + " fichiers " + action);
+        notification.setMessage(nombre + " fichiers ont été " + action + " par " + userAction.getUsername() + ".");
+    }
+
+    // Fichiers d'une notification regroupée (trace fichier par fichier)
+    public List<Fichier> getFichiersRegroupes(Long notificationId) {
+        return notificationRepo.findFichiersRegroupes(notificationId);
+    }
+
     // Marquer une notification comme lue
     public Notification marquerCommeLue(Long notificationId) {
         return notificationRepo.findById(notificationId).map(notification -> {
+            boolean nonLue = !Boolean.TRUE.equals(notification.getLu());
             notification.setLu(true);
-            return notificationRepo.save(notification);
+            Notification savedNotification = notificationRepo.save(notification);
+            if (nonLue) {
+                compteurs.lues(notification.getUserAction() != null ? notification.getUserAction().getId() : null, 1);
+            }
+            return savedNotification;
         }).orElse(null);
     }
 
-    // Marquer toutes les notifications comme lues
-    public void marquerToutesCommeLues() {
-        List<Notification> notificationsNonLues = getNotificationsNonLues();
-        notificationsNonLues.forEach(notification -> {
-            notification.setLu(true);
-            notificationRepo.save(notification);
-        });
+    // Marquer toutes les notifications comme lues (jusqu'à un id et/ou une date, optionnels)
+    public int marquerToutesCommeLues(Long jusquaId, LocalDateTime jusqua) {
+        int marquees = notificationRepo.marquerLues(jusquaId, jusqua);
+        compteurs.toutesLues(marquees);
+        return marquees;
     }
 
-    // Compter les notifications non lues
+    // Marquer toutes les notifications d'un utilisateur comme lues (mêmes bornes optionnelles)
+    public int marquerToutesCommeLuesByUser(Long userId, Long jusquaId, LocalDateTime jusqua) {
+        int marquees = notificationRepo.marquerLuesByUser(userId, jusquaId, jusqua);
+        compteurs.lues(userId, marquees);
+        return marquees;
+    }
+
+    /**
+     * Fil de notifications paginé par curseur (timestamp + id), toujours du plus récent au plus ancien.
+     * Sans curseur : première page. Avec (avantTs, avantId) : page plus ancienne ; avec
+     * (apresTs, apresId) : notifications arrivées depuis, au plus taille.
+     * Le curseur renvoyé se repasse dans le même sens que la requête.
+     */
+    public NotificationPageDTO getFlux(Long userId, Boolean lu, LocalDateTime avantTs, Long avantId,
+                                       LocalDateTime apresTs, Long apresId, int taille) {
+        // Un élément de plus pour savoir s'il existe une page suivante
+        PageRequest page = PageRequest.of(0, taille + 1);
+        if (apresTs != null) {
+            List<NotificationFluxDTO> elements = fluxApres(userId, lu, apresTs, apresId != null ? apresId : 0L, page);
+            boolean suivant = elements.size() > taille;
+            elements = new ArrayList<>(suivant ? elements.subList(0, taille) : elements);
+            // Curseur sur la plus récente renvoyée, pour la requête "après" suivante
+            NotificationFluxDTO dernier = elements.isEmpty() ? null : elements.get(elements.size() - 1);
+            Collections.reverse(elements);
+            return new NotificationPageDTO(elements, elements.size(), suivant,
+                    dernier != null ? dernier.getTimestamp() : apresTs,
+                    dernier != null ? dernier.getId() : apresId);
+        }
+
+        List<NotificationFluxDTO> elements = avantTs != null
+                ? fluxAvant(userId, lu, avantTs, avantId != null ? avantId : Long.MAX_VALUE, page)
+                : fluxAvant(userId, lu, FIN_DES_TEMPS, Long.MAX_VALUE, page);
+        boolean suivant = elements.size() > taille;
+        if (suivant) {
+            elements = elements.subList(0, taille);
+        }
+        NotificationFluxDTO dernier = suivant ? elements.get(elements.size() - 1) : null;
+        return new NotificationPageDTO(elements, elements.size(), suivant,
+                dernier != null ? dernier.getTimestamp() : null,
+                dernier != null ? dernier.getId() : null);
+    }
+
+    // Une requête par combinaison de filtres : chacune a son index dans l'ordre du fil
+    private List<NotificationFluxDTO> fluxAvant(Long userId, Boolean lu, LocalDateTime avantTs, Long avantId,
+                                                PageRequest page) {
+        if (userId == null) {
+            return lu == null ? notificationRepo.findFluxAvant(avantTs, avantId, page)
+                    : notificationRepo.findFluxAvantByLu(lu, avantTs, avantId, page);
+        }
+        return lu == null ? notificationRepo.findFluxAvantByUser(userId, avantTs, avantId, page)
+                : notificationRepo.findFluxAvantByUserAndLu(userId, lu, avantTs, avantId, page);
+    }
+
+    private List<NotificationFluxDTO> fluxApres(Long userId, Boolean lu, LocalDateTime apresTs, Long apresId,
+                                                PageRequest page) {
+        if (userId == null) {
+            return lu == null ? notificationRepo.findFluxApres(apresTs, apresId, page)
+                    : notificationRepo.findFluxApresByLu(lu, apresTs, apresId, page);
+        }
+        return lu == null ? notificationRepo.findFluxApresByUser(userId, apresTs, apresId, page)
+                : notificationRepo.findFluxApresByUserAndLu(userId, lu, apresTs, apresId, page);
+    }
+
+    // Compter les notifications non lues (compteur en mémoire, amorcé depuis la base)
     public Long countNotificationsNonLues() {
-        return notificationRepo.countByLu(false);
+        return compteurs.nonLues();
     }
 
-    // Compter les notifications non lues d'un utilisateur
+    // Compter les notifications non lues d'un utilisateur (compteur en mémoire, amorcé depuis la base)
     public Long countNotificationsNonLuesByUser(Long userId) {
-        return notificationRepo.countByUserActionIdAndLuFalse(userId);
+        return compteurs.nonLuesByUser(userId);
     }
 
     // Obtenir l'icône selon le type de notification
@@ -104,54 +208,4 @@ public class NotificationService {
                 return "ti ti-file";
         }
     }
-
-    // Créer une notification pour l'envoi d'un fichier
-    public Notification creerNotificationEnvoi(Fichier fichier, User userAction) {
-        System.out.println("🔍 DEBUG - Création de notification d'envoi pour fichier: " + fichier.getNomFichier());
-        System.out.println("🔍 DEBUG - Utilisateur qui a envoyé: " + userAction.getUsername());
-
-        String titre = "Fichier envoyé";
-        String message = "Le fichier \"" + fichier.getNomFichier() + "\" a été envoyé par " + userAction.getUsername()
-                + ".";
-        String icon = getNotificationIcon(Notification.NotificationType.ENVOI);
-
-        Notification notification = new Notification();
-        notification.setType(Notification.NotificationType.ENVOI);
-        notification.setTitre(titre);
-        notification.setMessage(message);
-        notification.setFichier(fichier);
-        notification.setUserAction(userAction);
-        notification.setIcon(icon);
-        notification.setLu(false);
-
-        Notification savedNotification = notificationRepo.save(notification);
-        System.out.println("🔍 DEBUG - Notification d'envoi créée avec ID: " + savedNotification.getId());
-
-        return savedNotification;
-    }
-
-    // Créer une notification pour la réception d'un fichier
-    public Notification creerNotificationReception(Fichier fichier, User userAction) {
-        System.out.println("🔍 DEBUG - Création de notification de réception pour fichier: " + fichier.getNomFichier());
-        System.out.println("🔍 DEBUG - Utilisateur qui a reçu: " + userAction.getUsername());
-
-        String titre = "Fichier reçu";
-        String message = "Le fichier \"" + fichier.getNomFichier() + "\" a été reçu par " + userAction.getUsername()
-                + ".";
-        String icon = getNotificationIcon(Notification.NotificationType.RECEPTION);
-
-        Notification notification = new Notification();
-        notification.setType(Notification.NotificationType.RECEPTION);
-        notification.setTitre(titre);
-        notification.setMessage(message);
-        notification.setFichier(fichier);
-        notification.setUserAction(userAction);
-        notification.setIcon(icon);
-        notification.setLu(false);
-
-        Notification savedNotification = notificationRepo.save(notification);
-        System.out.println("🔍 DEBUG - Notification de réception créée avec ID: " + savedNotification.getId());
-
-        return savedNotification;
-    }
-}
\ No newline at end of file
+}
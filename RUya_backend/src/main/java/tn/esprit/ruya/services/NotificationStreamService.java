@@ -0,0 +1,275 @@
+package tn.esprit.ruya.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import tn.esprit.ruya.models.Notification;
+import tn.esprit.ruya.models.NotificationFluxDTO;
+import tn.esprit.ruya.repositories.INotificationRepo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Diffusion temps réel des notifications (Server-Sent Events).
+ *
+ * Chaque connexion s'abonne à un utilisateur (notifications de ses actions) ou
+ * au flux global, éventuellement restreint à certains types. Les notifications
+ * créées ou regroupées sont relues en base sur chaque nœud
+ * (SuiviNotificationsService) : un client reçoit le flux quel que soit le nœud
+ * auquel il est connecté. Elles sont placées dans un tampon borné par
+ * connexion (les plus anciennes sont écartées s'il déborde, le client en est
+ * averti par un événement "perte") et envoyées par lots à intervalle régulier.
+ *
+ * Les envois sont faits par un pool, au plus un en cours par connexion : un
+ * client lent ne retarde pas les autres, son tampon se remplit puis écarte ses
+ * plus anciennes notifications, et il est déconnecté si un envoi reste bloqué.
+ *
+ * Chaque lot porte la plus grande version (VERSION_FLUX) envoyée : à la
+ * reconnexion, Last-Event-ID (ou dernierId) permet de rattraper depuis la base
+ * les notifications manquées, y compris les regroupements mis à jour sous un
+ * id déjà reçu, sans recharger tout le fil.
+ */
+@Service
+@Order(0)
+public class NotificationStreamService implements LecteurNotifications {
+
+    private final INotificationRepo notificationRepo;
+    private final ScheduledExecutorService emetteur = Executors.newSingleThreadScheduledExecutor();
+    private final ExecutorService envois;
+    private final Set<Abonne> abonnes = ConcurrentHashMap.newKeySet();
+
+    @Value("${ruya.notifications.sse.tampon:200}")
+    private int tailleTampon;
+
+    @Value("${ruya.notifications.sse.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    @Value("${ruya.notifications.sse.max-connexions:1000}")
+    private int maxConnexions;
+
+    // Envoi bloqué au-delà de ce délai (client qui ne lit plus) : connexion fermée
+    @Value("${ruya.notifications.sse.envoi-max-ms:10000}")
+    private long envoiMaxMs;
+
+    private final long heartbeatMs;
+
+    public NotificationStreamService(INotificationRepo notificationRepo,
+                                     @Value("${ruya.notifications.sse.intervalle-ms:250}") long intervalleMs,
+                                     @Value("${ruya.notifications.sse.heartbeat-ms:25000}") long heartbeatMs,
+                                     @Value("${ruya.notifications.sse.threads-envoi:4}") int threadsEnvoi) {
+        this.notificationRepo = notificationRepo;
+        this.heartbeatMs = heartbeatMs;
+        this.envois = Executors.newFixedThreadPool(Math.max(1, threadsEnvoi));
+        emetteur.scheduleWithFixedDelay(this::envoyerLots, intervalleMs, intervalleMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void arreter() {
+        emetteur.shutdownNow();
+        envois.shutdownNow();
+        abonnes.forEach(abonne -> abonne.emitter.complete());
+        abonnes.clear();
+    }
+
+    /**
+     * Ouvre un flux pour un utilisateur (ou global si userId est null).
+     * @param dernierId dernière version reçue avant déconnexion (null = pas de rattrapage)
+     * @return null si le nombre maximal de connexions est atteint
+     */
+    public SseEmitter abonner(Long userId, Set<Notification.NotificationType> types, Long dernierId) {
+        if (abonnes.size() >= maxConnexions) {
+            return null;
+        }
+        Abonne abonne = new Abonne(new SseEmitter(timeoutMs), userId,
+                types == null || types.isEmpty() ? null : Set.copyOf(types), tailleTampon);
+        abonne.emitter.onCompletion(() -> abonnes.remove(abonne));
+        abonne.emitter.onTimeout(() -> abonnes.remove(abonne));
+        abonne.emitter.onError(e -> abonnes.remove(abonne));
+
+        // Inscription avant le rattrapage : le tampon dédoublonne par id et garde la version la plus récente
+        abonnes.add(abonne);
+        if (dernierId != null) {
+            // Les plus récentes d'abord : en cas de retard, ce sont les plus anciennes qui sont écartées
+            List<NotificationFluxDTO> manquees = new ArrayList<>(notificationRepo.findDernieresModifications(
+                    userId, dernierId, PageRequest.of(0, tailleTampon + 1)));
+            if (manquees.size() > tailleTampon) {
+                // Trop de retard pour le flux : le client recharge via /flux
+                abonne.perdues.addAndGet(notificationRepo.countModificationsDepuis(userId, dernierId) - tailleTampon);
+                manquees = manquees.subList(0, tailleTampon);
+            }
+            Collections.reverse(manquees);
+            manquees.stream().filter(abonne::accepte).forEach(abonne::ajouter);
+        }
+        System.out.println("📡 Flux notifications ouvert (user " + userId + ", " + abonnes.size() + " connexion(s))");
+        return abonne.emitter;
+    }
+
+    @Override
+    public void recevoir(List<NotificationFluxDTO> modifiees) {
+        if (abonnes.isEmpty()) {
+            return;
+        }
+        for (Abonne abonne : abonnes) {
+            for (NotificationFluxDTO element : modifiees) {
+                if (abonne.accepte(element)) {
+                    abonne.ajouter(element);
+                }
+            }
+        }
+    }
+
+    public Map<String, Object> statut() {
+        Map<String, Object> statut = new LinkedHashMap<>();
+        statut.put("connexions", abonnes.size());
+        statut.put("maxConnexions", maxConnexions);
+        statut.put("tampon", tailleTampon);
+        statut.put("envoisEnCours", abonnes.stream().filter(abonne -> abonne.envoiEnCours.get()).count());
+        return statut;
+    }
+
+    // Planification seule : l'écriture sur la connexion est confiée au pool d'envoi
+    private void envoyerLots() {
+        long maintenant = System.currentTimeMillis();
+        for (Abonne abonne : abonnes) {
+            if (!abonne.envoiEnCours.compareAndSet(false, true)) {
+                if (maintenant - abonne.debutEnvoi > envoiMaxMs) {
+                    System.err.println("⚠️ Flux notifications: envoi bloqué depuis "
+                            + (maintenant - abonne.debutEnvoi) + " ms, connexion fermée (user " + abonne.userId + ")");
+                    fermer(abonne, new IOException("Envoi bloqué"));
+                }
+                continue;
+            }
+            boolean ping = maintenant - abonne.dernierEcrit >= heartbeatMs;
+            if (!ping && !abonne.aEnvoyer()) {
+                abonne.envoiEnCours.set(false);
+                continue;
+            }
+            abonne.debutEnvoi = maintenant;
+            try {
+                envois.execute(() -> envoyer(abonne, ping));
+            } catch (RejectedExecutionException e) {
+                abonne.envoiEnCours.set(false); // arrêt en cours
+            }
+        }
+    }
+
+    private void envoyer(Abonne abonne, boolean ping) {
+        try {
+            long perdues = abonne.perdues.getAndSet(0);
+            if (perdues > 0) {
+                abonne.emitter.send(SseEmitter.event().name("perte").data(Map.of("perdues", perdues)));
+            }
+            List<NotificationFluxDTO> lot = abonne.vider();
+            if (!lot.isEmpty()) {
+                abonne.emitter.send(SseEmitter.event()
+                        .id(String.valueOf(abonne.dernierEnvoye()))
+                        .name("notifications")
+                        .data(lot));
+            } else if (ping) {
+                abonne.emitter.send(SseEmitter.event().comment("ping"));
+            }
+            abonne.dernierEcrit = System.currentTimeMillis();
+        } catch (IOException | IllegalStateException e) {
+            // Connexion fermée côté client
+            fermer(abonne, e);
+        } catch (Exception e) {
+            System.err.println("❌ Erreur envoi flux notifications: " + e.getMessage());
+        } finally {
+            abonne.envoiEnCours.set(false);
+        }
+    }
+
+    private void fermer(Abonne abonne, Exception cause) {
+        abonnes.remove(abonne);
+        try {
+            abonne.emitter.completeWithError(cause);
+        } catch (Exception e) {
+            // Déjà fermée
+        }
+    }
+
+    /**
+     * Connexion abonnée et son tampon d'envoi, dans l'ordre des versions et borné.
+     */
+    private static final class Abonne {
+
+        private final SseEmitter emitter;
+        private final Long userId; // null = toutes les notifications
+        private final Set<Notification.NotificationType> types; // null = tous les types
+        private final int capacite;
+        // Par id, dans l'ordre d'arrivée : une mise à jour est replacée en fin de tampon
+        private final LinkedHashMap<Long, NotificationFluxDTO> tampon = new LinkedHashMap<>();
+        private final AtomicLong perdues = new AtomicLong();
+        private final AtomicBoolean envoiEnCours = new AtomicBoolean();
+        private volatile long debutEnvoi;
+        private volatile long dernierEcrit = System.currentTimeMillis();
+        private long dernierEnvoye; // plus grande version envoyée, reprise via Last-Event-ID
+
+        private Abonne(SseEmitter emitter, Long userId, Set<Notification.NotificationType> types, int capacite) {
+            this.emitter = emitter;
+            this.userId = userId;
+            this.types = types;
+            this.capacite = capacite;
+        }
+
+        private boolean accepte(NotificationFluxDTO element) {
+            return (userId == null || userId.equals(element.getIdUserAction()))
+                    && (types == null || types.contains(element.getType()));
+        }
+
+        private synchronized void ajouter(NotificationFluxDTO element) {
+            if (element.getId() == null || element.getVersion() == null) {
+                return;
+            }
+            NotificationFluxDTO precedente = tampon.remove(element.getId());
+            // Une notification regroupée mise à jour remplace sa version précédente (jamais l'inverse)
+            tampon.put(element.getId(), precedente != null && precedente.getVersion() > element.getVersion()
+                    ? precedente : element);
+            // Contre-pression : on écarte les plus anciennes
+            Iterator<Long> ids = tampon.keySet().iterator();
+            while (tampon.size() > capacite) {
+                ids.next();
+                ids.remove();
+                perdues.incrementAndGet();
+            }
+        }
+
+        private synchronized boolean aEnvoyer() {
+            return !tampon.isEmpty() || perdues.get() > 0;
+        }
+
+        private synchronized long dernierEnvoye() {
+            return dernierEnvoye;
+        }
+
+        private synchronized List<NotificationFluxDTO> vider() {
+            if (tampon.isEmpty()) {
+                return List.of();
+            }
+            List<NotificationFluxDTO> lot = new ArrayList<>(tampon.values());
+            for (NotificationFluxDTO element : lot) {
+                dernierEnvoye = Math.max(dernierEnvoye, element.getVersion());
+            }
+            tampon.clear();
+            return lot;
+        }
+    }
+}
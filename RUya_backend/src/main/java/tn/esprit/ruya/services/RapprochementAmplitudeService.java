@@ -0,0 +1,158 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import tn.esprit.ruya.models.CodeValeur;
+import tn.esprit.ruya.models.RapprochementAmplitude;
+import tn.esprit.ruya.repositories.RapprochementAmplitudeRepository;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Rapprochement des chèques Carthago avec les lignes Amplitude d'une session,
+ * sur la clé numéro de chèque + montant en millimes (ROUND(MONTANT * 1000) des
+ * deux côtés : deux FLOAT égaux au millime près peuvent différer en binaire).
+ *
+ * Le côté Amplitude est rattaché à la session par le chèque et non par le jour
+ * d'import : une ligne importée un autre jour est rapprochée de son chèque. Les
+ * lignes sans chèque Carthago (orphelines) sont rattachées à leur jour d'import.
+ *
+ * La jointure est exécutée par Oracle (FULL OUTER JOIN en hachage, linéaire
+ * sur le volume de la journée) et le résultat est écrit directement dans
+ * RAPPROCHEMENT_AMPLITUDE par un INSERT ... SELECT : aucune ligne ne transite
+ * par l'application. Le passage programmé recalcule la session du jour et les
+ * sessions récentes encore ouvertes (chèques en cours, absents ou orphelins),
+ * sur un seul nœud (VERROU_TRAITEMENT), le bail étant prolongé après chaque session.
+ */
+@Service
+@RequiredArgsConstructor
+public class RapprochementAmplitudeService {
+
+    static final String TRAITEMENT = "RAPPROCHEMENT_AMPLITUDE";
+
+    private static final List<RapprochementAmplitude.Resultat> RESULTATS_OUVERTS = List.of(
+            RapprochementAmplitude.Resultat.EN_COURS,
+            RapprochementAmplitude.Resultat.ABSENT_AMPLITUDE,
+            RapprochementAmplitude.Resultat.ORPHELIN_AMPLITUDE);
+
+    private static final String SQL_RAPPROCHEMENT =
+            "INSERT INTO RAPPROCHEMENT_AMPLITUDE " +
+            "(SESSION_DATE, NUMERO_CHEQUE, MONTANT_MILLIMES, ID_CARTHAGO, ID_AMPLITUDE, TYPE_CHEQUE, RESULTAT, CREATED_AT) " +
+            "SELECT /*+ USE_HASH(c a) */ ?, COALESCE(c.NUMERO_CHEQUE, a.NUMERO_CHEQUE), ROUND(COALESCE(c.MONTANT, a.MONTANT) * 1000), " +
+            "c.ID_CARTHAGO, a.ID_AMPLITUDE, a.TYPE_CHEQUE, " +
+            "CASE WHEN a.ID_AMPLITUDE IS NULL THEN 'ABSENT_AMPLITUDE' " +
+            "     WHEN c.ID_CARTHAGO IS NULL THEN 'ORPHELIN_AMPLITUDE' " +
+            "     WHEN a.STATUT_TRAITEMENT = 'INTEGRE' THEN 'INTEGRE' " +
+            "     WHEN a.STATUT_TRAITEMENT = 'REJETE' THEN 'REJETE' " +
+            "     ELSE 'EN_COURS' END, ? " +
+            "FROM (SELECT ID_CARTHAGO, NUMERO_CHEQUE, MONTANT, ROUND(MONTANT * 1000) AS MILLIMES FROM CARTHAGO " +
+            "      WHERE CODE_VALEUR_ID = " + CodeValeur.CHEQUE.getId() + " AND NUMERO_CHEQUE IS NOT NULL " +
+            "      AND CREATED_AT >= ? AND CREATED_AT < ?) c " +
+            "FULL OUTER JOIN (SELECT ID_AMPLITUDE, NUMERO_CHEQUE, MONTANT, ROUND(MONTANT * 1000) AS MILLIMES, " +
+            "      TYPE_CHEQUE, STATUT_TRAITEMENT FROM AMPLITUDE am " +
+            // Lignes des chèques de la session, quel que soit leur jour d'import
+            "      WHERE (am.NUMERO_CHEQUE, ROUND(am.MONTANT * 1000)) IN " +
+            "            (SELECT NUMERO_CHEQUE, ROUND(MONTANT * 1000) FROM CARTHAGO " +
+            "             WHERE CODE_VALEUR_ID = " + CodeValeur.CHEQUE.getId() + " AND NUMERO_CHEQUE IS NOT NULL " +
+            "             AND CREATED_AT >= ? AND CREATED_AT < ?) " +
+            // Orphelines : importées ce jour et sans chèque Carthago
+            "      OR (am.CREATED_AT >= ? AND am.CREATED_AT < ? AND NOT EXISTS " +
+            "            (SELECT 1 FROM CARTHAGO cx WHERE cx.CODE_VALEUR_ID = " + CodeValeur.CHEQUE.getId() + " " +
+            "             AND cx.NUMERO_CHEQUE = am.NUMERO_CHEQUE AND ROUND(cx.MONTANT * 1000) = ROUND(am.MONTANT * 1000)))) a " +
+            "ON (a.NUMERO_CHEQUE = c.NUMERO_CHEQUE AND a.MILLIMES = c.MILLIMES)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final RapprochementAmplitudeRepository rapprochementRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final VerrouService verrouService;
+
+    @Value("${ruya.rapprochement.active:true}")
+    private boolean rapprochementActif;
+
+    @Value("${ruya.rapprochement.bail-secondes:300}")
+    private long bailSecondes;
+
+    // Sessions passées encore recalculées tant qu'elles ont des chèques non définitifs
+    @Value("${ruya.rapprochement.jours-ouverts:7}")
+    private int joursOuverts;
+
+    @Scheduled(fixedDelayString = "${ruya.rapprochement.intervalle-ms:600000}",
+            initialDelayString = "${ruya.rapprochement.delai-initial-ms:120000}")
+    public void rapprochementProgramme() {
+        // Un seul nœud recalcule les sessions : les autres passent leur tour
+        if (!rapprochementActif || !verrouService.acquerir(TRAITEMENT, bailSecondes)) {
+            return;
+        }
+        try {
+            LocalDate aujourdhui = LocalDate.now();
+            Set<LocalDate> sessions = new TreeSet<>(rapprochementRepository.findSessionsOuvertes(
+                    aujourdhui.minusDays(joursOuverts), RESULTATS_OUVERTS));
+            sessions.add(aujourdhui);
+            for (LocalDate session : sessions) {
+                try {
+                    // Appel interne : la transaction de rapprocher() est ouverte explicitement
+                    transactionTemplate.execute(status -> rapprocher(session));
+                } catch (Exception e) {
+                    System.err.println("❌ Erreur rapprochement Amplitude " + session + ": " + e.getMessage());
+                }
+                if (!verrouService.prolonger(TRAITEMENT, bailSecondes)) {
+                    System.out.println("⚠️ Bail de rapprochement Amplitude perdu, reprise au prochain passage");
+                    return;
+                }
+            }
+        } finally {
+            verrouService.liberer(TRAITEMENT);
+        }
+    }
+
+    /**
+     * Recalcule entièrement le rapprochement d'une session (remplace le précédent).
+     */
+    @Transactional
+    public Map<String, Object> rapprocher(LocalDate session) {
+        long debut = System.currentTimeMillis();
+        Timestamp jour = Timestamp.valueOf(session.atStartOfDay());
+        Timestamp lendemain = Timestamp.valueOf(session.plusDays(1).atStartOfDay());
+
+        int supprimees = rapprochementRepository.deleteBySessionDate(session);
+        int lignes = jdbcTemplate.update(SQL_RAPPROCHEMENT,
+                Date.valueOf(session), Timestamp.valueOf(LocalDateTime.now()),
+                jour, lendemain, jour, lendemain, jour, lendemain);
+
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("session", session.toString());
+        resultat.put("lignes", lignes);
+        resultat.put("remplacees", supprimees);
+        resultat.put("dureeMs", System.currentTimeMillis() - debut);
+        System.out.println("🔗 Rapprochement Amplitude: " + resultat);
+        return resultat;
+    }
+
+    /**
+     * Nombre de chèques par résultat sur une période de sessions.
+     */
+    public Map<RapprochementAmplitude.Resultat, Long> synthese(LocalDate debut, LocalDate fin) {
+        Map<RapprochementAmplitude.Resultat, Long> synthese = new EnumMap<>(RapprochementAmplitude.Resultat.class);
+        for (RapprochementAmplitude.Resultat r : RapprochementAmplitude.Resultat.values()) {
+            synthese.put(r, 0L);
+        }
+        for (Object[] ligne : rapprochementRepository.syntheseBySessionDateBetween(debut, fin)) {
+            synthese.merge((RapprochementAmplitude.Resultat) ligne[0], (Long) ligne[2], Long::sum);
+        }
+        return synthese;
+    }
+}
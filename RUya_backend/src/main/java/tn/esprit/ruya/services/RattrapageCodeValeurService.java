@@ -0,0 +1,87 @@
+package tn.esprit.ruya.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.Job;
+import tn.esprit.ruya.repositories.JobRepository;
+
+import java.util.List;
+
+/**
+ * Lancement automatique des jobs *_CODE_VALEUR_ID.
+ *
+ * CODE_VALEUR_ID n'est renseigné par JPA (@PrePersist / @PreUpdate) que pour
+ * les lignes écrites par les entités. Les lignes antérieures au dictionnaire et
+ * celles écrites hors JPA (scripts SQL, chargements externes, JdbcTemplate) le
+ * laissent vide, alors que les filtres (tableau de bord, statistiques et alertes
+ * des fichiers, génération CTR, rapprochement Amplitude, trace d'un chèque)
+ * portent sur CODE_VALEUR_ID. Au démarrage puis chaque nuit, un seul nœud
+ * (bail RATTRAPAGE_CODE_VALEUR) vérifie chaque table et démarre le job de
+ * rattrapage s'il reste des lignes à renseigner et qu'aucun job de ce type
+ * n'est déjà en cours.
+ */
+@Service
+public class RattrapageCodeValeurService {
+
+    private static final String VERROU = "RATTRAPAGE_CODE_VALEUR";
+
+    private static final List<Job.Statut> STATUTS_ACTIFS =
+            List.of(Job.Statut.EN_ATTENTE, Job.Statut.EN_COURS, Job.Statut.EN_PAUSE);
+
+    private final List<JobCodeValeur> traitements;
+    private final JobService jobService;
+    private final JobRepository jobRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final VerrouService verrouService;
+
+    @Value("${ruya.code-valeur.rattrapage-auto:true}")
+    private boolean rattrapageAuto;
+
+    @Value("${ruya.code-valeur.workers:2}")
+    private int workers;
+
+    public RattrapageCodeValeurService(List<JobCodeValeur> traitements,
+                                       JobService jobService,
+                                       JobRepository jobRepository,
+                                       JdbcTemplate jdbcTemplate,
+                                       VerrouService verrouService) {
+        this.traitements = traitements;
+        this.jobService = jobService;
+        this.jobRepository = jobRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.verrouService = verrouService;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${ruya.code-valeur.rattrapage-cron:0 15 3 * * *}")
+    public void rattraper() {
+        if (!rattrapageAuto || !verrouService.acquerir(VERROU, 60)) {
+            return;
+        }
+        try {
+            for (JobCodeValeur traitement : traitements) {
+                try {
+                    if (aRenseigner(traitement) && !jobRepository.existsByTypeAndStatutIn(traitement.nom(), STATUTS_ACTIFS)) {
+                        jobService.creer(traitement.nom(), workers, null);
+                        System.out.println("🔁 Rattrapage CODE_VALEUR_ID lancé sur " + traitement.table());
+                    }
+                } catch (Exception e) {
+                    System.err.println("❌ Erreur rattrapage CODE_VALEUR_ID sur " + traitement.table() + ": " + e.getMessage());
+                }
+            }
+        } finally {
+            verrouService.liberer(VERROU);
+        }
+    }
+
+    // Parcours de l'index (CODE_VALEUR_ID, CREATED_AT) : arrêt à la première ligne trouvée
+    private boolean aRenseigner(JobCodeValeur traitement) {
+        Integer trouve = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + traitement.table()
+                + " WHERE CODE_VALEUR_ID IS NULL AND CODE_VALEUR IS NOT NULL AND ROWNUM = 1", Integer.class);
+        return trouve != null && trouve > 0;
+    }
+}
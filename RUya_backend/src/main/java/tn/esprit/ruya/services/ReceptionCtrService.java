@@ -0,0 +1,282 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Import des fichiers d'accusé de réception CTR, en réponse aux fichiers
+ * produits par GenerationCtrService.
+ *
+ * Format (ISO-8859-1, une ligne par enregistrement, terminée par LF ou CRLF) :
+ * <pre>
+ *  En-tête : 'E' + code envoi (20) + date de réception AAAAMMJJ (8)
+ *  Détail  : 'D' + numéro chèque (20) + montant en millimes (15) + statut A (accepté) / R (rejeté)
+ *  Fin     : 'T' ... (ignoré)
+ * </pre>
+ *
+ * Les chèques de l'envoi sont chargés dans un index haché (IndexCheques) puis
+ * chaque détail est recherché directement dans le fichier projeté en mémoire.
+ * Les chèques reçus sont marqués traités par CTR par lots ; ceux de l'envoi
+ * absents de l'accusé restent non traités et constituent les remises non
+ * parvenues. Le CTR d'envoi est marqué reçu.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReceptionCtrService {
+
+    private static final int LONGUEUR_CODE = 20;
+    private static final int LONGUEUR_NUMERO = 20;
+    private static final int LONGUEUR_MONTANT = 15;
+    private static final int LONGUEUR_DETAIL = 1 + LONGUEUR_NUMERO + LONGUEUR_MONTANT + 1;
+
+    private static final byte ABSENT = 0;
+    private static final byte ACCEPTE = 1;
+    private static final byte REJETE = 2;
+
+    private static final String SQL_CHEQUES_ENVOI =
+            "SELECT ID_CARTHAGO, NUMERO_CHEQUE, MONTANT FROM CARTHAGO WHERE CODE_ENV = ?";
+
+    private static final String SQL_MARQUER_RECU =
+            "UPDATE CARTHAGO SET TRAITE_PAR_CTR = ?, APRES_CTR = ?, AVANT_CTR = ?, DATE_TRAITEMENT_CTR = ?, " +
+            "STATUT_CHEQUE = COALESCE(?, STATUT_CHEQUE), UPDATED_AT = ? WHERE ID_CARTHAGO = ?";
+
+    private static final String SQL_CTR_RECU =
+            "UPDATE CTR SET RECU_PAR_CTR = ?, DATE_RECEPTION = ?, REMISE_NON_PARVENUE = ?, UPDATED_AT = ? " +
+            "WHERE NUMERO_CTR = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CarthagoSessionSnapshot snapshot;
+
+    @Value("${ruya.ctr.reception-dir:import/ctr}")
+    private String dossierReception;
+
+    @Value("${ruya.ctr.taille-lot:1000}")
+    private int tailleLot;
+
+    /**
+     * Importe un accusé de réception du dossier ruya.ctr.reception-dir.
+     */
+    @Transactional
+    public Map<String, Object> importer(String nomFichier) throws IOException {
+        Path dossier = Paths.get(dossierReception).toAbsolutePath().normalize();
+        Path chemin = dossier.resolve(nomFichier).normalize();
+        if (!chemin.startsWith(dossier)) {
+            throw new IllegalArgumentException("Le fichier doit se trouver dans le dossier de réception");
+        }
+        if (!Files.isRegularFile(chemin)) {
+            throw new IllegalArgumentException("Fichier introuvable : " + nomFichier);
+        }
+
+        long debut = System.currentTimeMillis();
+        // Marquage JDBC invisible du listener du snapshot : rechargement après commit
+        snapshot.demanderRechargementApresCommit();
+        try (FileChannel canal = FileChannel.open(chemin, StandardOpenOption.READ)) {
+            if (canal.size() > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("Accusé de réception trop volumineux : " + nomFichier);
+            }
+            MappedByteBuffer buffer = canal.map(FileChannel.MapMode.READ_ONLY, 0, canal.size());
+            int limite = buffer.limit();
+
+            // En-tête : code de l'envoi acquitté
+            int finEntete = finDeLigne(buffer, 0, limite);
+            if (finEntete < 1 + LONGUEUR_CODE || buffer.get(0) != 'E') {
+                throw new IllegalArgumentException("En-tête d'accusé de réception invalide");
+            }
+            String codeEnv = lireTexte(buffer, 1, 1 + LONGUEUR_CODE);
+
+            IndexCheques index = chargerEnvoi(codeEnv);
+            byte[] etats = new byte[index.taille()];
+            long lignes = 0;
+            long inconnus = 0;
+            long invalides = 0;
+            long doublons = 0;
+
+            int debutLigne = prochaineLigne(buffer, finEntete, limite);
+            while (debutLigne < limite) {
+                int finLigne = finDeLigne(buffer, debutLigne, limite);
+                if (finLigne > debutLigne && buffer.get(debutLigne) == 'D') {
+                    lignes++;
+                    int entree = chercherDetail(buffer, debutLigne, finLigne, index);
+                    if (entree == -2) {
+                        invalides++;
+                    } else if (entree == -1) {
+                        inconnus++;
+                    } else {
+                        // Chèques de même numéro et montant : chaque ligne acquitte la prochaine occurrence
+                        while (etats[entree] != ABSENT && index.suivant(entree) >= 0) {
+                            entree = index.suivant(entree);
+                        }
+                        if (etats[entree] != ABSENT) {
+                            doublons++; // plus de lignes que de chèques envoyés sous cette clé
+                        } else {
+                            etats[entree] = buffer.get(debutLigne + LONGUEUR_DETAIL - 1) == 'R' ? REJETE : ACCEPTE;
+                        }
+                    }
+                }
+                debutLigne = prochaineLigne(buffer, finLigne, limite);
+            }
+
+            long[] compteurs = appliquer(index, etats);
+            long nonParvenus = compteurs[ABSENT];
+
+            Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+            int ctrMisAJour = jdbcTemplate.update(SQL_CTR_RECU, true, maintenant, nonParvenus > 0, maintenant, codeEnv);
+
+            Map<String, Object> resultat = new LinkedHashMap<>();
+            resultat.put("fichier", nomFichier);
+            resultat.put("codeEnv", codeEnv);
+            resultat.put("chequesEnvoyes", index.taille());
+            resultat.put("lignes", lignes);
+            resultat.put("acceptes", compteurs[ACCEPTE]);
+            resultat.put("rejetes", compteurs[REJETE]);
+            resultat.put("nonParvenus", nonParvenus);
+            resultat.put("inconnus", inconnus);
+            resultat.put("invalides", invalides);
+            resultat.put("doublons", doublons);
+            resultat.put("ctrMisAJour", ctrMisAJour);
+            resultat.put("dureeMs", System.currentTimeMillis() - debut);
+            System.out.println("📨 Accusé de réception CTR importé: " + resultat);
+            return resultat;
+        }
+    }
+
+    private IndexCheques chargerEnvoi(String codeEnv) {
+        Integer nombre = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM CARTHAGO WHERE CODE_ENV = ?", Integer.class, codeEnv);
+        IndexCheques index = new IndexCheques(nombre == null ? 0 : nombre);
+        jdbcTemplate.query(SQL_CHEQUES_ENVOI, rs -> {
+            String numero = rs.getString(2);
+            if (numero != null) {
+                index.ajouter(rs.getLong(1), numero, Math.round(rs.getDouble(3) * 1000));
+            }
+        }, codeEnv);
+        return index;
+    }
+
+    /**
+     * @return indice de l'entrée, -1 si chèque inconnu de l'envoi, -2 si ligne invalide
+     */
+    private static int chercherDetail(MappedByteBuffer buffer, int debut, int fin, IndexCheques index) {
+        if (fin - debut < LONGUEUR_DETAIL) {
+            return -2;
+        }
+        int debutNumero = debut + 1;
+        int finNumero = debutNumero + LONGUEUR_NUMERO;
+        while (debutNumero < finNumero && buffer.get(debutNumero) == ' ') {
+            debutNumero++;
+        }
+        while (finNumero > debutNumero && buffer.get(finNumero - 1) == ' ') {
+            finNumero--;
+        }
+
+        long montant = 0;
+        int debutMontant = debut + 1 + LONGUEUR_NUMERO;
+        for (int i = debutMontant; i < debutMontant + LONGUEUR_MONTANT; i++) {
+            byte b = buffer.get(i);
+            if (b == ' ') {
+                continue;
+            }
+            if (b < '0' || b > '9') {
+                return -2;
+            }
+            montant = montant * 10 + (b - '0');
+        }
+        return index.chercher(buffer, debutNumero, finNumero, montant);
+    }
+
+    /**
+     * Marque par lots les chèques acceptés ou rejetés.
+     * @return nombre de chèques par état (ABSENT, ACCEPTE, REJETE)
+     */
+    private long[] appliquer(IndexCheques index, byte[] etats) {
+        long[] compteurs = new long[3];
+        int[] lot = new int[Math.max(1, tailleLot)];
+        int tailleCourante = 0;
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+
+        for (int entree = 0; entree < etats.length; entree++) {
+            compteurs[etats[entree]]++;
+            if (etats[entree] == ABSENT) {
+                continue;
+            }
+            lot[tailleCourante++] = entree;
+            if (tailleCourante == lot.length) {
+                envoyerLot(index, etats, lot, tailleCourante, maintenant);
+                tailleCourante = 0;
+            }
+        }
+        envoyerLot(index, etats, lot, tailleCourante, maintenant);
+        return compteurs;
+    }
+
+    private void envoyerLot(IndexCheques index, byte[] etats, int[] lot, int taille, Timestamp maintenant) {
+        if (taille == 0) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(SQL_MARQUER_RECU, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                int entree = lot[i];
+                ps.setBoolean(1, true);
+                ps.setBoolean(2, true);
+                ps.setBoolean(3, false);
+                ps.setTimestamp(4, maintenant);
+                if (etats[entree] == REJETE) {
+                    ps.setString(5, "REJETE");
+                } else {
+                    ps.setNull(5, Types.VARCHAR);
+                }
+                ps.setTimestamp(6, maintenant);
+                ps.setLong(7, index.id(entree));
+            }
+
+            @Override
+            public int getBatchSize() {
+                return taille;
+            }
+        });
+    }
+
+    // Fin de la ligne courante, sans le CR éventuel
+    private static int finDeLigne(MappedByteBuffer buffer, int debut, int limite) {
+        int i = debut;
+        while (i < limite && buffer.get(i) != '\n') {
+            i++;
+        }
+        return i > debut && buffer.get(i - 1) == '\r' ? i - 1 : i;
+    }
+
+    private static int prochaineLigne(MappedByteBuffer buffer, int finLigne, int limite) {
+        int i = finLigne;
+        while (i < limite && buffer.get(i) != '\n') {
+            i++; // CR de fin de ligne
+        }
+        return i + 1;
+    }
+
+    private static String lireTexte(MappedByteBuffer buffer, int debut, int fin) {
+        byte[] octets = new byte[fin - debut];
+        buffer.get(debut, octets);
+        return new String(octets, StandardCharsets.ISO_8859_1).trim();
+    }
+}
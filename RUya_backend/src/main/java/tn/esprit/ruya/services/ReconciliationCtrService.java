@@ -0,0 +1,354 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.CodeValeur;
+import tn.esprit.ruya.models.DashboardConfigDTO;
+import tn.esprit.ruya.models.FamilleValeur;
+import tn.esprit.ruya.models.Montant;
+import tn.esprit.ruya.models.VerrouTraitement;
+import tn.esprit.ruya.repositories.VerrouTraitementRepository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Réconciliation planifiée des compteurs d'équilibrage des CTR
+ * (nombre/montant Carthago, nombre/montant Fichiers, équilibre, remise non parvenue).
+ *
+ * Seules les sessions (jours de CREATED_AT) modifiées depuis le dernier passage
+ * sont recalculées. Un CTR d'envoi (FICHIER_ENV_CTR) est comparé aux seuls
+ * chèques Carthago de son envoi (CODE_ENV = NUMERO_CTR) ; les autres CTR de la
+ * session le sont aux lignes de leur famille qui ne font partie d'aucun envoi.
+ *
+ * Un verrou en base (VERROU_TRAITEMENT) garantit qu'un seul nœud exécute la
+ * réconciliation à la fois ; prolongé après chaque session, il porte aussi le
+ * watermark et les métriques du dernier passage.
+ */
+@Service
+@RequiredArgsConstructor
+public class ReconciliationCtrService {
+
+    static final String TRAITEMENT = "RECONCILIATION_CTR";
+
+    private static final String SQL_SESSIONS_MODIFIEES =
+            "SELECT TRUNC(CREATED_AT) FROM CARTHAGO WHERE UPDATED_AT >= ? OR CREATED_AT >= ? " +
+            "UNION SELECT TRUNC(CREATED_AT) FROM FICHIERS WHERE UPDATED_AT >= ? OR CREATED_AT >= ? " +
+            "UNION SELECT TRUNC(CREATED_AT) FROM CTR WHERE UPDATED_AT >= ? OR CREATED_AT >= ? " +
+            // Chèque d'un envoi modifié : session du CTR d'envoi
+            "UNION SELECT TRUNC(t.CREATED_AT) FROM CARTHAGO c JOIN CTR t ON t.NUMERO_CTR = c.CODE_ENV " +
+            "WHERE c.UPDATED_AT >= ?";
+
+    // Identifiant du dictionnaire CodeValeur ; repli sur le code texte pour les lignes non encore migrées
+    private static final String CODE_VALEUR_ID =
+            "COALESCE(CODE_VALEUR_ID, " + CodeValeur.expressionSql("CODE_VALEUR") + ")";
+
+    private static final String SQL_AGREGAT_CARTHAGO =
+            "SELECT " + CODE_VALEUR_ID + ", COUNT(*), COALESCE(SUM(ROUND(MONTANT * 1000)), 0) FROM CARTHAGO " +
+            "WHERE CREATED_AT >= ? AND CREATED_AT < ? AND CODE_ENV IS NULL GROUP BY " + CODE_VALEUR_ID;
+
+    // Chèques de chaque envoi de la session, quelle que soit leur date de saisie
+    private static final String SQL_AGREGAT_ENVOIS =
+            "SELECT CODE_ENV, COUNT(*), COALESCE(SUM(ROUND(MONTANT * 1000)), 0) FROM CARTHAGO " +
+            "WHERE CODE_ENV IN (SELECT NUMERO_CTR FROM CTR WHERE CREATED_AT >= ? AND CREATED_AT < ? " +
+            "AND FICHIER_ENV_CTR = ?) GROUP BY CODE_ENV";
+
+    private static final String SQL_AGREGAT_FICHIERS =
+            "SELECT " + CODE_VALEUR_ID + ", COUNT(*), COALESCE(SUM(ROUND(MONTANT * 1000)), 0) FROM FICHIERS " +
+            "WHERE CREATED_AT >= ? AND CREATED_AT < ? GROUP BY " + CODE_VALEUR_ID;
+
+    private static final String SQL_CTR_SESSION =
+            "SELECT ID_CTR, " + CODE_VALEUR_ID + " CODE_VALEUR_ID, MONTANT, NOMBRE_ELEMENTS, NOMBRE_CARTHAGO, MONTANT_CARTHAGO_MILLIMES, " +
+            "NOMBRE_FICHIERS, MONTANT_FICHIERS_MILLIMES, EQUILIBRE, DIFFERENCE_MILLIMES, REMISE_NON_PARVENUE, " +
+            "RECU_PAR_CTR, NUMERO_CTR, FICHIER_ENV_CTR " +
+            "FROM CTR WHERE CREATED_AT >= ? AND CREATED_AT < ?";
+
+    private static final String SQL_MISE_A_JOUR_CTR =
+            "UPDATE CTR SET NOMBRE_CARTHAGO = ?, MONTANT_CARTHAGO_MILLIMES = ?, NOMBRE_FICHIERS = ?, " +
+            "MONTANT_FICHIERS_MILLIMES = ?, EQUILIBRE = ?, DIFFERENCE_MILLIMES = ?, REMISE_NON_PARVENUE = ?, " +
+            "UPDATED_AT = ? WHERE ID_CTR = ?";
+
+    private static final int[] TYPES_MISE_A_JOUR_CTR = {
+            Types.INTEGER, Types.BIGINT, Types.INTEGER, Types.BIGINT,
+            Types.BOOLEAN, Types.BIGINT, Types.BOOLEAN, Types.TIMESTAMP, Types.BIGINT };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final VerrouTraitementRepository verrouRepository;
+    private final VerrouService verrouService;
+
+    // Heures d'activité du dashboard (08:00 - 18:00 par défaut)
+    private final DashboardConfigDTO configActivite = new DashboardConfigDTO();
+
+    @Value("${ruya.reconciliation.active:true}")
+    private boolean reconciliationActive;
+
+    @Value("${ruya.reconciliation.bail-secondes:600}")
+    private long bailSecondes;
+
+    // Recouvrement du watermark pour les transactions validées après leur horodatage
+    @Value("${ruya.reconciliation.marge-secondes:60}")
+    private long margeSecondes;
+
+    @Scheduled(fixedDelayString = "${ruya.reconciliation.intervalle-ms:300000}",
+            initialDelayString = "${ruya.reconciliation.delai-initial-ms:60000}")
+    public void reconciliationProgrammee() {
+        if (!reconciliationActive || !dansHeuresActivite(LocalTime.now())) {
+            return;
+        }
+        reconcilier();
+    }
+
+    /**
+     * Recalcule les CTR des sessions modifiées depuis le dernier passage.
+     * Sans effet si un autre nœud détient déjà le verrou.
+     */
+    public Map<String, Object> reconcilier() {
+        LocalDateTime debut = LocalDateTime.now();
+        Map<String, Object> resultat = new LinkedHashMap<>();
+        resultat.put("noeud", verrouService.noeud());
+
+        if (!verrouService.acquerir(TRAITEMENT, bailSecondes)) {
+            resultat.put("statut", "VERROUILLE");
+            return resultat;
+        }
+
+        VerrouTraitement verrou = verrouRepository.findById(TRAITEMENT).orElseThrow();
+        LocalDateTime depuis = verrou.getWatermark() != null
+                ? verrou.getWatermark().minusSeconds(margeSecondes)
+                : debut.toLocalDate().atStartOfDay();
+
+        int sessions = 0;
+        int misesAJour = 0;
+        String erreur = null;
+        try {
+            List<LocalDate> sessionsModifiees = sessionsModifiees(depuis);
+            for (LocalDate session : sessionsModifiees) {
+                misesAJour += reconcilierSession(session);
+                sessions++;
+                if (!verrouService.prolonger(TRAITEMENT, bailSecondes)) {
+                    throw new IllegalStateException("bail " + TRAITEMENT + " perdu après " + sessions + " sessions");
+                }
+            }
+        } catch (Exception e) {
+            erreur = e.getMessage();
+            System.err.println("❌ Erreur réconciliation CTR: " + e.getMessage());
+        }
+
+        LocalDateTime fin = LocalDateTime.now();
+        long dureeMs = Duration.between(debut, fin).toMillis();
+
+        // Mise à jour conditionnelle : rien n'est écrit si le bail a été repris par un autre nœud
+        if (!verrouService.terminer(TRAITEMENT, erreur == null ? debut : null, debut, fin,
+                sessions, misesAJour, erreur)) {
+            System.out.println("⚠️ Bail de réconciliation perdu pendant le traitement, watermark inchangé");
+        }
+
+        resultat.put("statut", erreur == null ? "OK" : "ERREUR");
+        resultat.put("depuis", depuis);
+        resultat.put("sessions", sessions);
+        resultat.put("misesAJour", misesAJour);
+        resultat.put("dureeMs", dureeMs);
+        if (erreur != null) {
+            resultat.put("erreur", erreur);
+        }
+        System.out.println("🔄 Réconciliation CTR: " + resultat);
+        return resultat;
+    }
+
+    /**
+     * Métriques du dernier passage, tous nœuds confondus.
+     */
+    public Map<String, Object> statut() {
+        Map<String, Object> statut = new LinkedHashMap<>();
+        statut.put("actif", reconciliationActive);
+        statut.put("heureDebutActivite", configActivite.getHeureDebutActivite());
+        statut.put("heureFinActivite", configActivite.getHeureFinActivite());
+
+        VerrouTraitement verrou = verrouRepository.findById(TRAITEMENT).orElse(null);
+        if (verrou == null) {
+            statut.put("statut", "JAMAIS_EXECUTE");
+            return statut;
+        }
+
+        LocalDateTime maintenant = LocalDateTime.now();
+        boolean enCours = verrou.getVerrouilleJusqua() != null && verrou.getVerrouilleJusqua().isAfter(maintenant);
+        statut.put("statut", enCours ? "EN_COURS" : "INACTIF");
+        statut.put("watermark", verrou.getWatermark());
+        statut.put("retardSecondes", verrou.getWatermark() != null
+                ? Duration.between(verrou.getWatermark(), maintenant).getSeconds() : null);
+        statut.put("dernierDebut", verrou.getDernierDebut());
+        statut.put("derniereFin", verrou.getDerniereFin());
+        statut.put("derniereDureeMs", verrou.getDerniereDureeMs());
+        statut.put("dernieresSessions", verrou.getDernieresSessions());
+        statut.put("dernieresMisesAJour", verrou.getDernieresMisesAJour());
+        statut.put("derniereErreur", verrou.getDerniereErreur());
+        statut.put("verrouillePar", enCours ? verrou.getVerrouillePar() : null);
+        return statut;
+    }
+
+    private boolean dansHeuresActivite(LocalTime heure) {
+        return !heure.isBefore(configActivite.getHeureDebutActivite())
+                && !heure.isAfter(configActivite.getHeureFinActivite());
+    }
+
+
+    private List<LocalDate> sessionsModifiees(LocalDateTime depuis) {
+        Timestamp borne = Timestamp.valueOf(depuis);
+        return jdbcTemplate.query(SQL_SESSIONS_MODIFIEES,
+                (rs, i) -> rs.getTimestamp(1).toLocalDateTime().toLocalDate(),
+                borne, borne, borne, borne, borne, borne, borne);
+    }
+
+    /**
+     * Recalcule tous les CTR d'une session et n'écrit que ceux dont les valeurs changent.
+     * @return nombre de CTR mis à jour
+     */
+    private int reconcilierSession(LocalDate session) {
+        Timestamp jour = Timestamp.valueOf(session.atStartOfDay());
+        Timestamp lendemain = Timestamp.valueOf(session.plusDays(1).atStartOfDay());
+
+        Map<FamilleValeur, Agregat> carthago = agreger(SQL_AGREGAT_CARTHAGO, jour, lendemain);
+        Map<FamilleValeur, Agregat> fichiers = agreger(SQL_AGREGAT_FICHIERS, jour, lendemain);
+        Map<String, Agregat> envois = agregerEnvois(jour, lendemain);
+
+        Timestamp maintenant = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> lots = new ArrayList<>();
+        jdbcTemplate.query(SQL_CTR_SESSION, rs -> {
+            Object[] parametres = recalculer(rs, carthago, fichiers, envois, maintenant);
+            if (parametres != null) {
+                lots.add(parametres);
+            }
+        }, jour, lendemain);
+
+        if (!lots.isEmpty()) {
+            jdbcTemplate.batchUpdate(SQL_MISE_A_JOUR_CTR, lots, TYPES_MISE_A_JOUR_CTR);
+        }
+        return lots.size();
+    }
+
+    private Object[] recalculer(ResultSet rs, Map<FamilleValeur, Agregat> carthago,
+                                Map<FamilleValeur, Agregat> fichiers, Map<String, Agregat> envois,
+                                Timestamp maintenant) throws SQLException {
+        long id = rs.getLong("ID_CTR");
+        Double montant = lireDouble(rs, "MONTANT");
+        Integer nombreElements = lireEntier(rs, "NOMBRE_ELEMENTS");
+
+        Agregat c;
+        Agregat f;
+        if (Boolean.TRUE.equals(lireBooleen(rs, "FICHIER_ENV_CTR"))) {
+            // CTR d'envoi : uniquement les chèques Carthago de son code envoi
+            c = envois.getOrDefault(rs.getString("NUMERO_CTR"), Agregat.VIDE);
+            f = Agregat.VIDE;
+        } else {
+            FamilleValeur famille = famille(lireEntier(rs, "CODE_VALEUR_ID"));
+            c = famille != null ? carthago.getOrDefault(famille, Agregat.VIDE) : Agregat.VIDE;
+            f = famille != null ? fichiers.getOrDefault(famille, Agregat.VIDE) : Agregat.VIDE;
+        }
+        long total = c.millimes + f.millimes;
+        int nombreTotal = c.nombre + f.nombre;
+
+        // Tout est en millimes : l'équilibre est une égalité exacte
+        Long difference = montant != null ? Montant.versMillimes(montant) - total : null;
+        Boolean equilibre = difference != null && difference == 0L;
+        Boolean remiseNonParvenue = nombreElements != null ? nombreTotal < nombreElements : nombreTotal == 0;
+        if (Boolean.TRUE.equals(lireBooleen(rs, "RECU_PAR_CTR"))) {
+            // Accusé de réception CTR importé : il fait foi (ReceptionCtrService)
+            remiseNonParvenue = lireBooleen(rs, "REMISE_NON_PARVENUE");
+        }
+
+        boolean inchange = Objects.equals(lireEntier(rs, "NOMBRE_CARTHAGO"), c.nombre)
+                && Objects.equals(lireLong(rs, "MONTANT_CARTHAGO_MILLIMES"), c.millimes)
+                && Objects.equals(lireEntier(rs, "NOMBRE_FICHIERS"), f.nombre)
+                && Objects.equals(lireLong(rs, "MONTANT_FICHIERS_MILLIMES"), f.millimes)
+                && Objects.equals(lireBooleen(rs, "EQUILIBRE"), equilibre)
+                && Objects.equals(lireLong(rs, "DIFFERENCE_MILLIMES"), difference)
+                && Objects.equals(lireBooleen(rs, "REMISE_NON_PARVENUE"), remiseNonParvenue);
+        if (inchange) {
+            return null;
+        }
+
+        return new Object[] { c.nombre, c.millimes, f.nombre, f.millimes,
+                equilibre, difference, remiseNonParvenue, maintenant, id };
+    }
+
+    private Map<FamilleValeur, Agregat> agreger(String sql, Timestamp jour, Timestamp lendemain) {
+        Map<FamilleValeur, Agregat> agregats = new EnumMap<>(FamilleValeur.class);
+        jdbcTemplate.query(sql, rs -> {
+            FamilleValeur famille = famille(lireEntier(rs, 1));
+            if (famille == null) {
+                return; // code hors dictionnaire
+            }
+            Agregat agregat = agregats.computeIfAbsent(famille, k -> new Agregat());
+            agregat.nombre += rs.getInt(2);
+            agregat.millimes += rs.getLong(3);
+        }, jour, lendemain);
+        return agregats;
+    }
+
+    private Map<String, Agregat> agregerEnvois(Timestamp jour, Timestamp lendemain) {
+        Map<String, Agregat> agregats = new HashMap<>();
+        jdbcTemplate.query(SQL_AGREGAT_ENVOIS, rs -> {
+            Agregat agregat = new Agregat();
+            agregat.nombre = rs.getInt(2);
+            agregat.millimes = rs.getLong(3);
+            agregats.put(rs.getString(1), agregat);
+        }, jour, lendemain, true);
+        return agregats;
+    }
+
+    /**
+     * Famille CTR d'un identifiant du dictionnaire : les fichiers utilisent les codes
+     * numériques (30-34 chèques, 40-41 effets, 10 virements, 20 prélèvements).
+     */
+    private static FamilleValeur famille(Integer codeValeurId) {
+        CodeValeur code = codeValeurId != null ? CodeValeur.parId(codeValeurId) : null;
+        return code != null ? code.getFamille() : null;
+    }
+
+    private static Integer lireEntier(ResultSet rs, String colonne) throws SQLException {
+        int valeur = rs.getInt(colonne);
+        return rs.wasNull() ? null : valeur;
+    }
+
+    private static Integer lireEntier(ResultSet rs, int colonne) throws SQLException {
+        int valeur = rs.getInt(colonne);
+        return rs.wasNull() ? null : valeur;
+    }
+
+    private static Long lireLong(ResultSet rs, String colonne) throws SQLException {
+        long valeur = rs.getLong(colonne);
+        return rs.wasNull() ? null : valeur;
+    }
+
+    private static Double lireDouble(ResultSet rs, String colonne) throws SQLException {
+        double valeur = rs.getDouble(colonne);
+        return rs.wasNull() ? null : valeur;
+    }
+
+    private static Boolean lireBooleen(ResultSet rs, String colonne) throws SQLException {
+        boolean valeur = rs.getBoolean(colonne);
+        return rs.wasNull() ? null : valeur;
+    }
+
+    private static final class Agregat {
+        static final Agregat VIDE = new Agregat();
+        int nombre;
+        long millimes;
+    }
+}
@@ -0,0 +1,117 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import tn.esprit.ruya.models.CodeReinitialisation;
+import tn.esprit.ruya.repositories.CodeReinitialisationRepository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Codes de réinitialisation en base (CODES_REINITIALISATION), pour un
+ * déploiement sur plusieurs nœuds : chaque opération verrouille la ligne de
+ * l'email dans sa transaction.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "ruya.reset.stockage", havingValue = "base")
+public class StockCodesBase implements StockCodesReinitialisation {
+
+    // Création simultanée de la même ligne par deux nœuds : un seul nouvel essai suffit
+    private static final int ESSAIS_CREATION = 2;
+
+    private final CodeReinitialisationRepository codeRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final EmpreinteCodes empreintes;
+
+    @Value("${ruya.reset.validite-minutes:10}")
+    private long validiteMinutes;
+
+    @Value("${ruya.reset.max-tentatives:5}")
+    private int maxTentatives;
+
+    @Value("${ruya.reset.max-envois-email:3}")
+    private int maxEnvois;
+
+    @Value("${ruya.reset.fenetre-minutes:15}")
+    private long fenetreMinutes;
+
+    @Override
+    public String nouveauCode(String email) {
+        for (int essai = 0; essai < ESSAIS_CREATION; essai++) {
+            try {
+                return transactionTemplate.execute(status -> enregistrer(email));
+            } catch (DataIntegrityViolationException e) {
+                // Ligne créée simultanément par un autre nœud : nouvel essai, la ligne est alors verrouillée
+            }
+        }
+        return null;
+    }
+
+    private String enregistrer(String email) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        CodeReinitialisation entree = codeRepository.findPourMiseAJour(email)
+                .orElseGet(() -> new CodeReinitialisation(email, maintenant));
+        if (entree.getFenetreDebut().plusMinutes(fenetreMinutes).isBefore(maintenant)) {
+            entree.setFenetreDebut(maintenant);
+            entree.setEnvois(0);
+        }
+        if (entree.getEnvois() >= maxEnvois) {
+            return null;
+        }
+
+        String code = StockCodesReinitialisation.genererCode();
+        entree.setEmpreinte(empreintes.empreinte(email, code));
+        entree.setExpiration(maintenant.plusMinutes(validiteMinutes));
+        entree.setTentatives(0);
+        entree.setEnvois(entree.getEnvois() + 1);
+        codeRepository.saveAndFlush(entree);
+        return code;
+    }
+
+    @Override
+    public String consommer(String email, String code) {
+        if (email == null || code == null) {
+            return null;
+        }
+        String empreinte = empreintes.empreinte(email, code);
+        return transactionTemplate.execute(status -> {
+            CodeReinitialisation entree = codeRepository.findPourMiseAJour(email).orElse(null);
+            if (entree == null || entree.getEmpreinte() == null) {
+                return null;
+            }
+            String resultat = null;
+            if (entree.getExpiration().isBefore(LocalDateTime.now())) {
+                invalider(entree);
+            } else if (StockCodesReinitialisation.egales(entree.getEmpreinte(), empreinte)) {
+                invalider(entree);
+                resultat = email;
+            } else {
+                entree.setTentatives(entree.getTentatives() + 1);
+                if (entree.getTentatives() >= maxTentatives) {
+                    invalider(entree);
+                }
+            }
+            codeRepository.save(entree);
+            return resultat;
+        });
+    }
+
+    @Scheduled(fixedDelayString = "${ruya.reset.purge-ms:60000}")
+    @Override
+    public int purger() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        codeRepository.invaliderExpires(maintenant);
+        return codeRepository.supprimerInactifs(maintenant.minusMinutes(fenetreMinutes));
+    }
+
+    private void invalider(CodeReinitialisation entree) {
+        entree.setEmpreinte(null);
+        entree.setExpiration(null);
+    }
+}
@@ -0,0 +1,137 @@
+package tn.esprit.ruya.services;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Codes de réinitialisation en mémoire (un seul nœud).
+ *
+ * Chaque entrée est modifiée atomiquement par ConcurrentHashMap.compute. Le nombre
+ * d'entrées est borné (ruya.reset.max-codes) et un balayage périodique retire
+ * les entrées expirées.
+ */
+@Component
+@ConditionalOnProperty(name = "ruya.reset.stockage", havingValue = "memoire", matchIfMissing = true)
+public class StockCodesMemoire implements StockCodesReinitialisation {
+
+    private final Map<String, Entree> parEmail = new ConcurrentHashMap<>();
+    private final EmpreinteCodes empreintes;
+
+    @Value("${ruya.reset.validite-minutes:10}")
+    private long validiteMinutes;
+
+    @Value("${ruya.reset.max-tentatives:5}")
+    private int maxTentatives;
+
+    @Value("${ruya.reset.max-envois-email:3}")
+    private int maxEnvois;
+
+    @Value("${ruya.reset.fenetre-minutes:15}")
+    private long fenetreMinutes;
+
+    @Value("${ruya.reset.max-codes:10000}")
+    private int maxCodes;
+
+    public StockCodesMemoire(EmpreinteCodes empreintes) {
+        this.empreintes = empreintes;
+    }
+
+    @Override
+    public String nouveauCode(String email) {
+        if (parEmail.size() >= maxCodes && !parEmail.containsKey(email)) {
+            purger();
+            if (parEmail.size() >= maxCodes) {
+                System.err.println("⚠️ Stock des codes de réinitialisation plein (" + maxCodes + ")");
+                return null;
+            }
+        }
+
+        String[] resultat = new String[1];
+        parEmail.compute(email, (cle, entree) -> {
+            LocalDateTime maintenant = LocalDateTime.now();
+            if (entree == null) {
+                entree = new Entree(maintenant);
+            } else if (entree.fenetreDebut.plusMinutes(fenetreMinutes).isBefore(maintenant)) {
+                entree.fenetreDebut = maintenant;
+                entree.envois = 0;
+            }
+            if (entree.envois >= maxEnvois) {
+                return entree;
+            }
+            String code = StockCodesReinitialisation.genererCode();
+            entree.empreinte = empreintes.empreinte(cle, code);
+            entree.expiration = maintenant.plusMinutes(validiteMinutes);
+            entree.tentatives = 0;
+            entree.envois++;
+            resultat[0] = code;
+            return entree;
+        });
+        return resultat[0];
+    }
+
+    @Override
+    public String consommer(String email, String code) {
+        if (email == null || code == null) {
+            return null;
+        }
+        String empreinte = empreintes.empreinte(email, code);
+
+        String[] resultat = new String[1];
+        parEmail.computeIfPresent(email, (cle, entree) -> {
+            if (entree.empreinte == null) {
+                return entree;
+            }
+            if (entree.expiration.isBefore(LocalDateTime.now())) {
+                invalider(entree);
+            } else if (StockCodesReinitialisation.egales(entree.empreinte, empreinte)) {
+                invalider(entree);
+                resultat[0] = cle;
+            } else if (++entree.tentatives >= maxTentatives) {
+                invalider(entree);
+            }
+            return entree;
+        });
+        return resultat[0];
+    }
+
+    @Scheduled(fixedDelayString = "${ruya.reset.purge-ms:60000}")
+    @Override
+    public int purger() {
+        LocalDateTime maintenant = LocalDateTime.now();
+        int avant = parEmail.size();
+        for (String email : parEmail.keySet()) {
+            parEmail.computeIfPresent(email, (cle, entree) -> {
+                if (entree.empreinte != null && entree.expiration.isBefore(maintenant)) {
+                    invalider(entree);
+                }
+                // Conservée tant que le code est actif ou que la fenêtre de limitation court
+                boolean fenetreEcoulee = entree.fenetreDebut.plusMinutes(fenetreMinutes).isBefore(maintenant);
+                return entree.empreinte == null && fenetreEcoulee ? null : entree;
+            });
+        }
+        return avant - parEmail.size();
+    }
+
+    private void invalider(Entree entree) {
+        entree.empreinte = null;
+        entree.expiration = null;
+    }
+
+    private static final class Entree {
+        private String empreinte; // null = pas de code actif
+        private LocalDateTime expiration;
+        private int tentatives;
+        private LocalDateTime fenetreDebut;
+        private int envois;
+
+        private Entree(LocalDateTime fenetreDebut) {
+            this.fenetreDebut = fenetreDebut;
+        }
+    }
+}
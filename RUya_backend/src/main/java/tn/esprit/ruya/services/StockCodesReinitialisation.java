@@ -0,0 +1,50 @@
+package tn.esprit.ruya.services;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Stockage des codes de réinitialisation de mot de passe.
+ *
+ * Un code par email, valable ruya.reset.validite-minutes, invalidé après
+ * ruya.reset.max-tentatives essais erronés, et au plus ruya.reset.max-envois-email
+ * codes par email et par fenêtre. Seule l'empreinte HMAC du code est conservée
+ * (EmpreinteCodes). La vérification exige l'email : il n'y a pas de recherche
+ * par code seul, chaque essai est compté sur le compteur de l'email visé.
+ *
+ * Deux implémentations, choisies par ruya.reset.stockage : "memoire" (nœud unique)
+ * et "base" (table CODES_REINITIALISATION, partagée entre les nœuds).
+ */
+public interface StockCodesReinitialisation {
+
+    /**
+     * Génère et enregistre un nouveau code pour l'email (remplace le précédent).
+     * @return le code, ou null si la limite d'envois est atteinte
+     */
+    String nouveauCode(String email);
+
+    /**
+     * Vérifie le code de l'email et le consomme s'il est valide.
+     * @return l'email du code validé, ou null (pas de code, expiré, erroné ou bloqué)
+     */
+    String consommer(String email, String code);
+
+    /**
+     * Supprime les codes expirés et les compteurs dont la fenêtre est écoulée.
+     * @return nombre d'entrées supprimées
+     */
+    int purger();
+
+    SecureRandom GENERATEUR = new SecureRandom();
+
+    static String genererCode() {
+        return String.format("%06d", GENERATEUR.nextInt(1_000_000));
+    }
+
+    // Comparaison en temps constant
+    static boolean egales(String a, String b) {
+        return a != null && b != null
+                && MessageDigest.isEqual(a.getBytes(StandardCharsets.UTF_8), b.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,145 @@
+package tn.esprit.ruya.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.NotificationFluxDTO;
+import tn.esprit.ruya.models.NotificationSuppression;
+import tn.esprit.ruya.repositories.INotificationRepo;
+import tn.esprit.ruya.repositories.NotificationSuppressionRepository;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Suivi, sur chaque nœud, des notifications écrites par l'outbox.
+ *
+ * L'outbox n'est distribuée que par le nœud qui détient son bail ; elle numérote
+ * chaque écriture (VERSION_FLUX, unique et croissant). Chaque nœud relit
+ * périodiquement les notifications de version supérieure à la dernière vue
+ * (parcours de IDX_NOTIFICATIONS_VERSION) et les transmet à ses
+ * LecteurNotifications. Une notification regroupée reçoit une nouvelle version
+ * à chaque mise à jour : elle est relue comme une nouvelle.
+ *
+ * Les suppressions de la rétention sont relues de la même façon dans le
+ * journal NOTIFICATIONS_SUPPRESSIONS et transmises par
+ * LecteurNotifications.supprimer.
+ */
+@Service
+public class SuiviNotificationsService {
+
+    private final INotificationRepo notificationRepo;
+    private final NotificationSuppressionRepository suppressionRepository;
+    private final ObjectProvider<LecteurNotifications> lecteurs;
+    private final ScheduledExecutorService suivi = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "suivi-notifications");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${ruya.notifications.suivi.intervalle-ms:250}")
+    private long intervalleMs;
+
+    @Value("${ruya.notifications.suivi.taille-lot:500}")
+    private int tailleLot;
+
+    // Dernière version transmise aux lecteurs (écrite par le seul thread de suivi)
+    private volatile long derniereVersion;
+
+    // Dernière suppression journalisée transmise aux lecteurs
+    private volatile long derniereSuppression;
+
+    public SuiviNotificationsService(INotificationRepo notificationRepo,
+                                     NotificationSuppressionRepository suppressionRepository,
+                                     ObjectProvider<LecteurNotifications> lecteurs) {
+        this.notificationRepo = notificationRepo;
+        this.suppressionRepository = suppressionRepository;
+        this.lecteurs = lecteurs;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void demarrer() {
+        derniereVersion = versionCourante();
+        Long suppression = suppressionRepository.findMaxId();
+        derniereSuppression = suppression != null ? suppression : 0L;
+        suivi.scheduleWithFixedDelay(this::suivre, intervalleMs, intervalleMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void arreter() {
+        suivi.shutdownNow();
+    }
+
+    /**
+     * Version la plus récente en base : point de départ d'un état chargé depuis la base.
+     */
+    public long versionCourante() {
+        Long version = notificationRepo.findMaxVersionFlux();
+        return version != null ? version : 0L;
+    }
+
+    public long derniereVersion() {
+        return derniereVersion;
+    }
+
+    public Map<String, Object> statut() {
+        Map<String, Object> statut = new LinkedHashMap<>();
+        statut.put("derniereVersion", derniereVersion);
+        statut.put("derniereSuppression", derniereSuppression);
+        statut.put("intervalleMs", intervalleMs);
+        return statut;
+    }
+
+    private void suivre() {
+        try {
+            List<NotificationFluxDTO> lot;
+            do {
+                lot = notificationRepo.findModifieesDepuis(derniereVersion, PageRequest.of(0, tailleLot));
+                if (lot.isEmpty()) {
+                    break;
+                }
+                transmettre(lot);
+                derniereVersion = lot.get(lot.size() - 1).getVersion();
+            } while (lot.size() == tailleLot);
+
+            List<NotificationSuppression> suppressions;
+            do {
+                suppressions = suppressionRepository.findDepuis(derniereSuppression, PageRequest.of(0, tailleLot));
+                if (suppressions.isEmpty()) {
+                    break;
+                }
+                List<Long> ids = suppressions.stream().map(NotificationSuppression::getIdNotification).toList();
+                lecteurs.orderedStream().forEach(lecteur -> {
+                    try {
+                        lecteur.supprimer(ids);
+                    } catch (Exception e) {
+                        System.err.println("❌ Erreur lecteur de notifications " + lecteur.getClass().getSimpleName()
+                                + ": " + e.getMessage());
+                    }
+                });
+                derniereSuppression = suppressions.get(suppressions.size() - 1).getId();
+            } while (suppressions.size() == tailleLot);
+        } catch (Exception e) {
+            System.err.println("❌ Erreur suivi des notifications: " + e.getMessage());
+        }
+    }
+
+    private void transmettre(List<NotificationFluxDTO> lot) {
+        lecteurs.orderedStream().forEach(lecteur -> {
+            try {
+                lecteur.recevoir(lot);
+            } catch (Exception e) {
+                System.err.println("❌ Erreur lecteur de notifications " + lecteur.getClass().getSimpleName()
+                        + ": " + e.getMessage());
+            }
+        });
+    }
+}
@@ -0,0 +1,139 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.CodeValeur;
+import tn.esprit.ruya.models.TraceChequeDTO;
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Recherche du parcours d'un chèque dans CARTHAGO, CTR et AMPLITUDE en un seul
+ * aller-retour (UNION ALL de trois accès indexés).
+ *
+ * CTR ne porte pas de numéro de chèque : les CTR retournés sont ceux de la
+ * famille CHEQUE créés le même jour que le chèque Carthago (session de
+ * réconciliation, voir ReconciliationCtrService).
+ */
+@Service
+@RequiredArgsConstructor
+public class TraceChequeService {
+
+    // Colonnes communes : SOURCE, ID, REFERENCE, LIBELLE, MONTANT, STATUT, TYPE, JOUR,
+    // CREE_LE, TRAITE_LE, CONTROLE_LE, F1..F7 (indicateurs propres à chaque source)
+    private static final String SQL_TRACE =
+            "SELECT 'CARTHAGO' SOURCE, ID_CARTHAGO ID, NOM_FICHIER REFERENCE, BANQUE_EMETTRICE LIBELLE, MONTANT, " +
+            "STATUT_CHEQUE STATUT, TYPE_FICHIER TYPE, SESSION_DATE JOUR, CREATED_AT CREE_LE, " +
+            "DATE_TRAITEMENT_CTR TRAITE_LE, DATE_CONTROLE CONTROLE_LE, AVANT_CTR F1, APRES_CTR F2, " +
+            "TRAITE_PAR_CTR F3, FICHIER_ENV F4, CONTROLE_EFFECTUE F5, A_VERIFIER F6, REMISE_DOUBLE F7 " +
+            "FROM CARTHAGO WHERE %1$s " +
+            "UNION ALL " +
+            "SELECT 'CTR', t.ID_CTR, t.NUMERO_CTR, t.SESSION_CTR, t.MONTANT, t.STATUT_CTR, t.TYPE_OPERATION, NULL, " +
+            "t.CREATED_AT, t.DATE_TRAITEMENT, NULL, t.EQUILIBRE, t.REMISE_NON_PARVENUE, NULL, NULL, NULL, NULL, NULL " +
+            "FROM (SELECT DISTINCT TRUNC(CREATED_AT) JOUR FROM CARTHAGO WHERE %1$s) s " +
+            "JOIN CTR t ON t.CREATED_AT >= s.JOUR AND t.CREATED_AT < s.JOUR + 1 AND t.CODE_VALEUR_ID = " + CodeValeur.CHEQUE.getId() + " " +
+            "UNION ALL " +
+            "SELECT 'AMPLITUDE', ID_AMPLITUDE, NULL, NULL, MONTANT, STATUT_TRAITEMENT, TYPE_CHEQUE, NULL, " +
+            "CREATED_AT, UPDATED_AT, NULL, NULL, NULL, NULL, NULL, NULL, NULL, NULL " +
+            "FROM AMPLITUDE WHERE NUMERO_CHEQUE = ?";
+
+    private static final String SQL_TRACE_NUMERO = String.format(SQL_TRACE, "NUMERO_CHEQUE = ?");
+    private static final String SQL_TRACE_NUMERO_BANQUE =
+            String.format(SQL_TRACE, "NUMERO_CHEQUE = ? AND BANQUE_EMETTRICE = ?");
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public TraceChequeDTO tracer(String numeroCheque, String banqueEmettrice) {
+        if (numeroCheque == null || numeroCheque.isBlank()) {
+            throw new IllegalArgumentException("Le numéro de chèque est obligatoire");
+        }
+        long debut = System.nanoTime();
+        String numero = numeroCheque.trim();
+        String banque = banqueEmettrice != null && !banqueEmettrice.isBlank() ? banqueEmettrice.trim() : null;
+
+        TraceChequeDTO trace = new TraceChequeDTO();
+        trace.setNumeroCheque(numero);
+        trace.setBanqueEmettrice(banque);
+
+        if (banque == null) {
+            jdbcTemplate.query(SQL_TRACE_NUMERO, rs -> { lireLigne(rs, trace); }, numero, numero, numero);
+        } else {
+            jdbcTemplate.query(SQL_TRACE_NUMERO_BANQUE, rs -> { lireLigne(rs, trace); },
+                    numero, banque, numero, banque, numero);
+        }
+
+        trace.setDureeMicros((System.nanoTime() - debut) / 1_000);
+        return trace;
+    }
+
+    private void lireLigne(ResultSet rs, TraceChequeDTO trace) throws SQLException {
+        switch (rs.getString("SOURCE")) {
+            case "CARTHAGO" -> {
+                TraceChequeDTO.EtapeCarthago etape = new TraceChequeDTO.EtapeCarthago();
+                etape.setId(rs.getLong("ID"));
+                etape.setNomFichier(rs.getString("REFERENCE"));
+                etape.setBanqueEmettrice(rs.getString("LIBELLE"));
+                etape.setMontant(lireDouble(rs, "MONTANT"));
+                etape.setStatutCheque(rs.getString("STATUT"));
+                etape.setTypeFichier(rs.getString("TYPE"));
+                Date jour = rs.getDate("JOUR");
+                etape.setSessionDate(jour != null ? jour.toLocalDate() : null);
+                etape.setCreatedAt(lireDate(rs, "CREE_LE"));
+                etape.setDateTraitementCTR(lireDate(rs, "TRAITE_LE"));
+                etape.setDateControle(lireDate(rs, "CONTROLE_LE"));
+                etape.setAvantCTR(lireBooleen(rs, "F1"));
+                etape.setApresCTR(lireBooleen(rs, "F2"));
+                etape.setTraiteParCTR(lireBooleen(rs, "F3"));
+                etape.setFichierEnv(lireBooleen(rs, "F4"));
+                etape.setControleEffectue(lireBooleen(rs, "F5"));
+                etape.setAVerifier(lireBooleen(rs, "F6"));
+                etape.setRemiseDouble(lireBooleen(rs, "F7"));
+                trace.getCarthago().add(etape);
+            }
+            case "CTR" -> {
+                TraceChequeDTO.EtapeCtr etape = new TraceChequeDTO.EtapeCtr();
+                etape.setId(rs.getLong("ID"));
+                etape.setNumeroCtr(rs.getString("REFERENCE"));
+                etape.setSessionCtr(rs.getString("LIBELLE"));
+                etape.setMontant(lireDouble(rs, "MONTANT"));
+                etape.setStatutCtr(rs.getString("STATUT"));
+                etape.setTypeOperation(rs.getString("TYPE"));
+                etape.setCreatedAt(lireDate(rs, "CREE_LE"));
+                etape.setDateTraitement(lireDate(rs, "TRAITE_LE"));
+                etape.setEquilibre(lireBooleen(rs, "F1"));
+                etape.setRemiseNonParvenue(lireBooleen(rs, "F2"));
+                trace.getCtr().add(etape);
+            }
+            default -> {
+                TraceChequeDTO.EtapeAmplitude etape = new TraceChequeDTO.EtapeAmplitude();
+                etape.setId(rs.getLong("ID"));
+                etape.setMontant(lireDouble(rs, "MONTANT"));
+                etape.setStatutTraitement(rs.getString("STATUT"));
+                etape.setTypeCheque(rs.getString("TYPE"));
+                etape.setCreatedAt(lireDate(rs, "CREE_LE"));
+                etape.setUpdatedAt(lireDate(rs, "TRAITE_LE"));
+                trace.getAmplitude().add(etape);
+            }
+        }
+    }
+
+    private static LocalDateTime lireDate(ResultSet rs, String colonne) throws SQLException {
+        Timestamp valeur = rs.getTimestamp(colonne);
+        return valeur != null ? valeur.toLocalDateTime() : null;
+    }
+
+    private static Double lireDouble(ResultSet rs, String colonne) throws SQLException {
+        double valeur = rs.getDouble(colonne);
+        return rs.wasNull() ? null : valeur;
+    }
+
+    private static Boolean lireBooleen(ResultSet rs, String colonne) throws SQLException {
+        boolean valeur = rs.getBoolean(colonne);
+        return rs.wasNull() ? null : valeur;
+    }
+}
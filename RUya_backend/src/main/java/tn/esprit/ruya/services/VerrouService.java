@@ -0,0 +1,70 @@
+package tn.esprit.ruya.services;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import tn.esprit.ruya.models.VerrouTraitement;
+import tn.esprit.ruya.repositories.VerrouTraitementRepository;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+/**
+ * Baux partagés entre les nœuds (VERROU_TRAITEMENT) : un traitement planifié
+ * n'est exécuté que par le nœud qui détient le bail de son nom. Un traitement
+ * long prolonge son bail entre deux lots, sinon un autre nœud peut le reprendre
+ * à l'expiration.
+ */
+@Service
+@RequiredArgsConstructor
+public class VerrouService {
+
+    private final VerrouTraitementRepository verrouRepository;
+
+    // Identifiant du nœud : pid@hôte
+    private final String noeud = ManagementFactory.getRuntimeMXBean().getName();
+
+    public String noeud() {
+        return noeud;
+    }
+
+    /**
+     * Prend le bail s'il est libre ou expiré (la ligne est créée au premier usage).
+     * @return false si un autre nœud (ou ce nœud, dans un autre passage) le détient
+     */
+    public boolean acquerir(String nom, long bailSecondes) {
+        if (!verrouRepository.existsById(nom)) {
+            try {
+                verrouRepository.saveAndFlush(new VerrouTraitement(nom));
+            } catch (DataIntegrityViolationException e) {
+                // Ligne créée simultanément par un autre nœud
+            }
+        }
+        LocalDateTime maintenant = LocalDateTime.now();
+        return verrouRepository.acquerir(nom, noeud, maintenant, maintenant.plusSeconds(bailSecondes)) == 1;
+    }
+
+    /**
+     * Repousse la fin du bail détenu par ce nœud.
+     * @return false si le bail a expiré ou a été repris : le traitement doit s'arrêter
+     */
+    public boolean prolonger(String nom, long bailSecondes) {
+        LocalDateTime maintenant = LocalDateTime.now();
+        return verrouRepository.prolonger(nom, noeud, maintenant, maintenant.plusSeconds(bailSecondes)) == 1;
+    }
+
+    public void liberer(String nom) {
+        verrouRepository.liberer(nom, noeud);
+    }
+
+    /**
+     * Libère le bail en enregistrant les métriques du passage (watermark inchangé si null).
+     * @return false si le bail a été repris par un autre nœud : rien n'est écrit
+     */
+    public boolean terminer(String nom, LocalDateTime watermark, LocalDateTime debut, LocalDateTime fin,
+                            int sessions, int misesAJour, String erreur) {
+        long dureeMs = Duration.between(debut, fin).toMillis();
+        return verrouRepository.terminer(nom, noeud, watermark, debut, fin, dureeMs, sessions, misesAJour, erreur) == 1;
+    }
+}
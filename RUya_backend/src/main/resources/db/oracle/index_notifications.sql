@@ -0,0 +1,21 @@
+-- =====================================================================
+-- Index du fil paginé des notifications (INotificationRepo.findFlux*)
+--
+-- ddl-auto=update crée les nouveaux index (IDX_NOTIFICATIONS_USER_FLUX,
+-- IDX_NOTIFICATIONS_LU_FLUX) mais ne supprime pas IDX_NOTIFICATIONS_LU
+-- (LU seul) : deux valeurs, jamais sélectif, remplacé par
+-- IDX_NOTIFICATIONS_LU_FLUX. IDX_NOTIFICATIONS_FLUX (ID_USER_ACTION, LU,
+-- TIMESTAMP, ID) est conservé : il sert le fil d'un utilisateur filtré sur
+-- lu, IDX_NOTIFICATIONS_USER_FLUX le fil d'un utilisateur sans filtre.
+--
+-- Script rejouable : un index déjà supprimé est ignoré.
+-- =====================================================================
+
+BEGIN
+    FOR i IN (SELECT INDEX_NAME FROM USER_INDEXES
+              WHERE TABLE_NAME = 'NOTIFICATIONS'
+                AND INDEX_NAME = 'IDX_NOTIFICATIONS_LU') LOOP
+        EXECUTE IMMEDIATE 'DROP INDEX ' || i.INDEX_NAME;
+    END LOOP;
+END;
+/
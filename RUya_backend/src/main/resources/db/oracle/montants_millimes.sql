@@ -0,0 +1,71 @@
+-- =====================================================================
+-- Montants d'équilibrage en millimes (NUMBER(19))
+--
+-- Les montants d'équilibrage des CTR (Carthago, Fichiers, différence) et
+-- du rapprochement Amplitude sont stockés en entiers de millimes
+-- (MontantMillimesConverter) : sommes exactes et équilibre comparé sans
+-- tolérance. Les colonnes MONTANT des tables sources restent en dinars.
+--
+-- Script rejouable, avant ou après le démarrage de la version
+-- correspondante (ddl-auto=update crée déjà les colonnes *_MILLIMES) :
+-- - une colonne n'est ajoutée que si elle est absente ;
+-- - seules les lignes sans montant en millimes sont renseignées, depuis
+--   l'ancienne colonne en dinars si elle existe encore ;
+-- - les anciennes colonnes sont conservées (plus lues par l'application),
+--   leur suppression est laissée à l'exploitation après vérification.
+-- =====================================================================
+
+-- Ajoute une colonne NUMBER(19) si elle n'existe pas
+CREATE OR REPLACE PROCEDURE RUYA_AJOUTER_MILLIMES(p_table VARCHAR2, p_colonne VARCHAR2) AS
+    v_nombre NUMBER;
+BEGIN
+    SELECT COUNT(*) INTO v_nombre FROM USER_TAB_COLUMNS
+    WHERE TABLE_NAME = p_table AND COLUMN_NAME = p_colonne;
+    IF v_nombre = 0 THEN
+        EXECUTE IMMEDIATE 'ALTER TABLE ' || p_table || ' ADD (' || p_colonne || ' NUMBER(19))';
+    END IF;
+END;
+/
+
+-- Renseigne la colonne en millimes depuis l'ancienne colonne en dinars (lignes non encore converties)
+CREATE OR REPLACE PROCEDURE RUYA_CONVERTIR_MILLIMES(p_table VARCHAR2, p_dinars VARCHAR2, p_millimes VARCHAR2) AS
+    v_nombre NUMBER;
+BEGIN
+    SELECT COUNT(*) INTO v_nombre FROM USER_TAB_COLUMNS
+    WHERE TABLE_NAME = p_table AND COLUMN_NAME = p_dinars;
+    IF v_nombre > 0 THEN
+        EXECUTE IMMEDIATE 'UPDATE ' || p_table || ' SET ' || p_millimes || ' = ROUND(' || p_dinars || ' * 1000)'
+            || ' WHERE ' || p_millimes || ' IS NULL AND ' || p_dinars || ' IS NOT NULL';
+        COMMIT;
+    END IF;
+END;
+/
+
+-- === CTR ===
+BEGIN
+    RUYA_AJOUTER_MILLIMES('CTR', 'MONTANT_CARTHAGO_MILLIMES');
+    RUYA_AJOUTER_MILLIMES('CTR', 'MONTANT_FICHIERS_MILLIMES');
+    RUYA_AJOUTER_MILLIMES('CTR', 'DIFFERENCE_MILLIMES');
+    RUYA_CONVERTIR_MILLIMES('CTR', 'MONTANT_CARTHAGO', 'MONTANT_CARTHAGO_MILLIMES');
+    RUYA_CONVERTIR_MILLIMES('CTR', 'MONTANT_FICHIERS', 'MONTANT_FICHIERS_MILLIMES');
+    RUYA_CONVERTIR_MILLIMES('CTR', 'DIFFERENCE', 'DIFFERENCE_MILLIMES');
+END;
+/
+
+-- === RAPPROCHEMENT_AMPLITUDE ===
+-- Table reconstruite à chaque passage de RapprochementAmplitudeService
+BEGIN
+    RUYA_AJOUTER_MILLIMES('RAPPROCHEMENT_AMPLITUDE', 'MONTANT_MILLIMES');
+    RUYA_CONVERTIR_MILLIMES('RAPPROCHEMENT_AMPLITUDE', 'MONTANT', 'MONTANT_MILLIMES');
+END;
+/
+
+DROP PROCEDURE RUYA_AJOUTER_MILLIMES;
+DROP PROCEDURE RUYA_CONVERTIR_MILLIMES;
+
+-- Après vérification, les anciennes colonnes peuvent être supprimées à la main :
+-- ALTER TABLE CTR SET UNUSED (MONTANT_CARTHAGO, MONTANT_FICHIERS, DIFFERENCE);
+-- ALTER TABLE RAPPROCHEMENT_AMPLITUDE SET UNUSED (MONTANT);
+
+-- Les sessions dont l'équilibre doit être recalculé au millime près
+-- seront reprises par la réconciliation (POST /api/ctr/reconciliation).
@@ -0,0 +1,50 @@
+-- =====================================================================
+-- Partitionnement par intervalle des tables CARTHAGO et FICHIERS
+-- (Oracle 12.2+ : conversion en ligne, sans interruption de service)
+--
+-- Une partition par jour de session sur CREATED_AT : toutes les requêtes
+-- du dashboard (createdAt BETWEEN :start AND :end) ne lisent que les
+-- partitions de la période demandée (partition pruning).
+--
+-- Les sessions clôturées sont ensuite déplacées vers le tablespace
+-- d'archive par ArchivageService (ruya.archivage.*) : les lignes restent
+-- dans la même table, les requêtes sur les périodes archivées sont donc
+-- inchangées.
+-- =====================================================================
+
+-- Prérequis : tablespace d'archive (à adapter au stockage de l'instance)
+-- CREATE TABLESPACE RUYA_ARCHIVE DATAFILE 'ruya_archive01.dbf' SIZE 1G AUTOEXTEND ON;
+
+-- === CARTHAGO ===
+-- La clé de partitionnement d'une table par intervalle ne peut pas être NULL
+UPDATE CARTHAGO SET CREATED_AT = NVL(UPDATED_AT, SYSTIMESTAMP) WHERE CREATED_AT IS NULL;
+COMMIT;
+ALTER TABLE CARTHAGO MODIFY (CREATED_AT NOT NULL);
+
+CREATE INDEX IDX_CARTHAGO_CREATED_AT ON CARTHAGO (CREATED_AT);
+CREATE INDEX IDX_CARTHAGO_SESSION_DATE ON CARTHAGO (SESSION_DATE);
+
+ALTER TABLE CARTHAGO MODIFY
+    PARTITION BY RANGE (CREATED_AT) INTERVAL (NUMTODSINTERVAL(1, 'DAY'))
+    (PARTITION P_CARTHAGO_ORIGINE VALUES LESS THAN (TIMESTAMP '2025-01-01 00:00:00'))
+    ONLINE
+    UPDATE INDEXES (
+        IDX_CARTHAGO_CREATED_AT LOCAL,
+        IDX_CARTHAGO_SESSION_DATE LOCAL
+    );
+
+-- === FICHIERS === (CREATED_AT déjà NOT NULL via BaseEntity)
+CREATE INDEX IDX_FICHIERS_CREATED_AT ON FICHIERS (CREATED_AT);
+
+ALTER TABLE FICHIERS MODIFY
+    PARTITION BY RANGE (CREATED_AT) INTERVAL (NUMTODSINTERVAL(1, 'DAY'))
+    (PARTITION P_FICHIERS_ORIGINE VALUES LESS THAN (TIMESTAMP '2025-01-01 00:00:00'))
+    ONLINE
+    UPDATE INDEXES (
+        IDX_FICHIERS_CREATED_AT LOCAL
+    );
+
+-- Vérification
+-- SELECT TABLE_NAME, PARTITION_NAME, TABLESPACE_NAME, HIGH_VALUE
+-- FROM USER_TAB_PARTITIONS WHERE TABLE_NAME IN ('CARTHAGO', 'FICHIERS')
+-- ORDER BY TABLE_NAME, PARTITION_POSITION;
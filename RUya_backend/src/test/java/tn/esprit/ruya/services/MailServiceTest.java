@@ -0,0 +1,129 @@
+package tn.esprit.ruya.services;
+
+import com.icegreen.greenmail.junit5.GreenMailExtension;
+import com.icegreen.greenmail.util.GreenMailUtil;
+import com.icegreen.greenmail.util.ServerSetupTest;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.RegisterExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thymeleaf.spring6.SpringTemplateEngine;
+import org.thymeleaf.templateresolver.ClassLoaderTemplateResolver;
+import tn.esprit.ruya.models.OutboxMail;
+import tn.esprit.ruya.repositories.OutboxMailRepository;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Envoi réel des emails vers un serveur SMTP en mémoire (GreenMail) ; la file
+ * OUTBOX_MAILS et le verrou sont simulés.
+ */
+class MailServiceTest {
+
+    @RegisterExtension
+    static GreenMailExtension greenMail = new GreenMailExtension(ServerSetupTest.SMTP);
+
+    private final OutboxMailRepository outboxRepository = mock(OutboxMailRepository.class);
+    private final VerrouService verrouService = mock(VerrouService.class);
+
+    private MailService mailService;
+
+    @BeforeEach
+    void setUp() {
+        mailService = creer(ServerSetupTest.SMTP.getPort());
+        when(verrouService.acquerir(eq(MailService.TRAITEMENT), anyLong())).thenReturn(true);
+        when(outboxRepository.save(any(OutboxMail.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void envoyer_lotEnvoyeSurLeServeurEtSupprimeDeLaFile() throws Exception {
+        List<OutboxMail> lot = List.of(
+                new OutboxMail("a@ruya.tn", "Sujet A", "<p>Corps A</p>"),
+                new OutboxMail("b@ruya.tn", "Sujet B", "<p>Corps B</p>"));
+        when(outboxRepository.findPrets(eq(OutboxMail.Statut.EN_ATTENTE), any(), any(Pageable.class)))
+                .thenReturn(lot);
+
+        assertThat(mailService.envoyer()).isEqualTo(2);
+
+        MimeMessage[] recus = greenMail.getReceivedMessages();
+        assertThat(recus).hasSize(2);
+        assertThat(recus).extracting(MimeMessage::getSubject).containsExactlyInAnyOrder("Sujet A", "Sujet B");
+        assertThat(GreenMailUtil.getBody(recus[0])).contains("Corps");
+        verify(outboxRepository).deleteAllInBatch(lot);
+        verify(verrouService).liberer(MailService.TRAITEMENT);
+    }
+
+    @Test
+    void envoyer_serveurInjoignable_emailReprogramme() {
+        MailService horsLigne = creer(ServerSetupTest.SMTP.getPort() + 1);
+        OutboxMail mail = new OutboxMail("a@ruya.tn", "Sujet", "<p>Corps</p>");
+        when(outboxRepository.findPrets(eq(OutboxMail.Statut.EN_ATTENTE), any(), any(Pageable.class)))
+                .thenReturn(List.of(mail));
+
+        assertThat(horsLigne.envoyer()).isZero();
+
+        assertThat(mail.getTentatives()).isEqualTo(1);
+        assertThat(mail.getProchainEssai()).isAfter(LocalDateTime.now());
+        assertThat(mail.getStatut()).isEqualTo(OutboxMail.Statut.EN_ATTENTE);
+        verify(outboxRepository).deleteAllInBatch(List.of());
+    }
+
+    @Test
+    void envoyer_tentativesEpuisees_corpsEfface() {
+        MailService horsLigne = creer(ServerSetupTest.SMTP.getPort() + 1);
+        OutboxMail mail = new OutboxMail("a@ruya.tn", "Sujet", "<p>Code 123456</p>");
+        mail.setTentatives(7);
+        when(outboxRepository.findPrets(eq(OutboxMail.Statut.EN_ATTENTE), any(), any(Pageable.class)))
+                .thenReturn(List.of(mail));
+
+        horsLigne.envoyer();
+
+        assertThat(mail.getStatut()).isEqualTo(OutboxMail.Statut.ECHEC);
+        assertThat(mail.getCorps()).doesNotContain("123456");
+    }
+
+    @Test
+    void mettreEnFile_codeReinitialisation_renduAvecExpiration() {
+        ReflectionTestUtils.setField(mailService, "mailActif", false); // pas d'envoi en arrière-plan
+
+        OutboxMail mail = mailService.mettreEnFile("a@ruya.tn", "Code", "code-reinitialisation",
+                Map.of("code", "654321", "validiteMinutes", 10L), Duration.ofMinutes(10));
+
+        assertThat(mail.getCorps()).contains("654321");
+        assertThat(mail.getExpiration()).isBetween(LocalDateTime.now().plusMinutes(9), LocalDateTime.now().plusMinutes(11));
+        verify(outboxRepository, never()).deleteAllInBatch(anyList());
+    }
+
+    private MailService creer(int port) {
+        JavaMailSenderImpl mailSender = new JavaMailSenderImpl();
+        mailSender.setHost(ServerSetupTest.SMTP.getBindAddress());
+        mailSender.setPort(port);
+
+        ClassLoaderTemplateResolver resolver = new ClassLoaderTemplateResolver();
+        resolver.setPrefix("templates/");
+        resolver.setSuffix(".html");
+        resolver.setCharacterEncoding("UTF-8");
+        SpringTemplateEngine templateEngine = new SpringTemplateEngine();
+        templateEngine.setTemplateResolver(resolver);
+
+        MailService service = new MailService(mailSender, templateEngine, outboxRepository, verrouService);
+        ReflectionTestUtils.setField(service, "mailActif", true);
+        ReflectionTestUtils.setField(service, "expediteur", "ruya@ruya.tn");
+        ReflectionTestUtils.setField(service, "tailleLot", 50);
+        ReflectionTestUtils.setField(service, "maxTentatives", 8);
+        ReflectionTestUtils.setField(service, "bailSecondes", 120L);
+        return service;
+    }
+}
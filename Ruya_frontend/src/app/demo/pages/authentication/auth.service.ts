@@ -28,8 +28,9 @@ resetPassword(email: string): Observable<any> {
   return this.http.post(`${this.apiUrl}/reset-password`, { email });
 }
 
-resetPasswordConfirm(code: string, newPassword: string): Observable<any> {
+resetPasswordConfirm(email: string, code: string, newPassword: string): Observable<any> {
   return this.http.post(`${this.apiUrl}/confirm-reset-password`, {
+    email: email,
     resetCode: code,
     newPassword: newPassword
   });
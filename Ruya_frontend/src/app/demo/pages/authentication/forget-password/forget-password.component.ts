@@ -75,7 +75,8 @@ export default class ForgetPasswordComponent implements OnInit {
         next: (res) => {
           this.isLoading = false;
           this.successMessage = 'Un lien de réinitialisation a été envoyé.';
-          this.router.navigate(['/guest/reset-password']);
+          // L'email accompagne le code à la confirmation
+          this.router.navigate(['/guest/reset-password'], { queryParams: { email } });
         },
         error: (err) => {
           this.isLoading = false;
@@ -27,7 +27,9 @@ export class ResetPasswordComponent {
     private route: ActivatedRoute,
     private authService: AuthService
   ) {
+    this.email = this.route.snapshot.queryParamMap.get('email') || '';
     this.resetForm = this.fb.group({
+      email: [this.email, [Validators.required, Validators.email]],
       code: ['', [Validators.required, Validators.pattern(/^[0-9]{6}$/)]],
       password: ['', [Validators.required, Validators.minLength(6)]]
     });
@@ -44,10 +46,11 @@ onSubmit() {
   if (this.resetForm.invalid) return;
 
   this.loading = true;
+  const email = this.f['email'].value;
   const code = this.f['code'].value;
   const password = this.f['password'].value;
 
-  this.authService.resetPasswordConfirm(code, password).subscribe({
+  this.authService.resetPasswordConfirm(email, code, password).subscribe({
     next: () => {
       this.successMsg = 'Mot de passe changé avec succès !';
       this.loading = false;